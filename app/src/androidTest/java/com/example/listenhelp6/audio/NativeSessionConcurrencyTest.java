@@ -0,0 +1,125 @@
+package com.example.listenhelp6.audio;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * 原生会话（每个AAudioProcessorJNI一个）的并发创建与释放测试，不打开音频流，在设备上运行。
+ * 包括释放时其他线程正在调用同一实例（释放必须等这些调用结束，之后的调用直接返回默认值）。
+ */
+@RunWith(AndroidJUnit4.class)
+public class NativeSessionConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 50;
+
+    @Test
+    public void createAndReleaseInParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    AAudioProcessorJNI processor = new AAudioProcessorJNI();
+                    processor.setWaveformCallback(data -> { }, data -> { });
+                    processor.setStreamEventCallback((event, attempts, elapsedMs) -> { });
+                    processor.setInputVolume(50);
+                    processor.setEqualizerBand(i % 8, 3);
+                    assertEquals(AAudioProcessorJNI.LATENCY_REPORT_COUNT, processor.getLatencyReport().length);
+                    assertEquals(AAudioProcessorJNI.RECOVERY_STAT_COUNT, processor.getRecoveryStats().length);
+                    processor.release();
+                    processor.release();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void releaseWhileOtherThreadsCallIn() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < ITERATIONS; i++) {
+            AAudioProcessorJNI processor = new AAudioProcessorJNI();
+            AtomicBoolean running = new AtomicBoolean(true);
+            CountDownLatch callersStarted = new CountDownLatch(THREADS);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int kind = t;
+                futures.add(executor.submit(() -> {
+                    callersStarted.countDown();
+                    int call = 0;
+                    while (running.get()) {
+                        switch ((kind + call++) % 4) {
+                            case 0:
+                                processor.setInputVolume(call % 100);
+                                break;
+                            case 1:
+                                processor.setEqualizerBand(call % 8, call % 31 - 15);
+                                break;
+                            case 2:
+                                assertEquals(AAudioProcessorJNI.STATS_COUNT, processor.getStats().length);
+                                break;
+                            default:
+                                assertEquals(AAudioProcessorJNI.LATENCY_REPORT_COUNT,
+                                        processor.getLatencyReport().length);
+                                break;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            callersStarted.await();
+            Thread.sleep(i % 3);
+            processor.release();
+            // 释放之后的调用不做任何事
+            processor.setInputVolume(10);
+            assertEquals(0, processor.getSampleRate());
+            running.set(false);
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void releasingOneSessionLeavesOthersIntact() {
+        AAudioProcessorJNI main = new AAudioProcessorJNI();
+        AAudioProcessorJNI standby = new AAudioProcessorJNI();
+        main.setWaveformCallback(data -> { }, data -> { });
+        standby.setWaveformCallback(data -> { }, data -> { });
+
+        // 以前创建第二个实例会删除第一个实例的原生对象，释放时会清除所有实例的回调
+        AAudioProcessorJNI third = new AAudioProcessorJNI();
+        third.release();
+
+        main.setInputVolume(60);
+        int[] stats = main.getRecoveryStats();
+        assertEquals(0, stats[AAudioProcessorJNI.RECOVERY_STAT_FAILURES]);
+        standby.setStreamEventCallback((event, attempts, elapsedMs) -> { });
+        assertEquals(AAudioProcessorJNI.LATENCY_STATE_COUNT, standby.getLatencyState().length);
+
+        main.release();
+        assertEquals(AAudioProcessorJNI.RECOVERY_STAT_COUNT, standby.getRecoveryStats().length);
+        standby.release();
+    }
+}
@@ -1,38 +1,166 @@
 #include "AAudioProcessor.h"
+#include "RealtimeGuard.h"
 #include <cmath>
 #include <algorithm>
+#include <chrono>
+#include <cstring>
+#include <ctime>
+#include <pthread.h>
+
+const int AAudioProcessor::kWaveformIntervalMs;
+const int AAudioProcessor::kMaxEqualizerGainDb;
+const int32_t AAudioProcessor::AAudioInputSource::kReadChunkFrames;
+
+namespace {
+
+// 音频回调路径上的日志事件，在RtLog的写出线程上格式化
+const RtLog::Event kLogCallbackTooLarge = {
+        ANDROID_LOG_ERROR, [](char *buffer, size_t size, const int64_t *args) {
+            return snprintf(buffer, size, "回调帧数超出预分配容量: %lld > %lld",
+                            static_cast<long long>(args[0]), static_cast<long long>(args[1]));
+        }};
+const RtLog::Event kLogInputReadFailed = {
+        ANDROID_LOG_ERROR, [](char *buffer, size_t size, const int64_t *args) {
+            return snprintf(buffer, size, "读取输入流失败: %s",
+                            AAudio_convertResultToText(static_cast<aaudio_result_t>(args[0])));
+        }};
+const RtLog::Event kLogStreamError = {
+        ANDROID_LOG_ERROR, [](char *buffer, size_t size, const int64_t *args) {
+            return snprintf(buffer, size, "AAudio错误回调: %s",
+                            AAudio_convertResultToText(static_cast<aaudio_result_t>(args[0])));
+        }};
+
+} // namespace
 
 AAudioProcessor::AAudioProcessor()
     : mInputStream(nullptr)
     , mOutputStream(nullptr)
-    , mInputVolume(0.8f)      // 默认输入音量80%
-    , mOutputVolume(0.8f)     // 默认输出音量80%
-    , mAmplification(1.0f)    // 默认放大倍数1.0
-    , mNoiseReduction(false)  // 默认关闭降噪
-    , mWaveformCallbackCounter(0)
+    , mInputChannelCount(0)
+    , mOutputChannelCount(0)
+    , mMaxFramesPerCallback(0)
+    , mSampleRate(kDefaultSampleRate)
+    , mDuplexSource(&mInputSource)
+    , mResamplerQuality(PolyphaseResampler::kDefaultQuality)
+    , mResamplerDelayFrames(0.0)
+    , mDriftCompensation(true)
+    , mDriftCompensationActive(false)
+    , mRtLog("AAudioProcessor")
+    , mKernels(&dsp::kernels())
+    , mFeedbackCancellerActive(false)
+    , mNoiseReducerActive(false)
+    , mCompressorActive(false)
+    , mHowlSuppressorActive(false)
+    , mWaveformDroppedFrames(0)
+    , mWaveformThreadRunning(false)
+    , mBufferSizeFrames(0)
+    , mKnownGoodBufferFrames(0)
+    , mTunerThreadRunning(false)
+    , mHasLoopbackResult(false)
+    , mLifecycleGeneration(0)
+    , mRecoveryGeneration(0)
+    , mRequestedSampleRate(0)
+    , mRequestedChannelCount(0)
+    , mRequestedFormat(0)
+    , mRequestedInputDeviceId(0)
+    , mRequestedOutputDeviceId(0)
+    , mRecoveryOutputDeviceId(0)
+    , mRecoveryBursts(0)
     , mIsInitialized(false)
     , mIsRunning(false) {
     
-    // 初始化均衡器增益为中性（0dB）
-    mEqualizerGains.resize(kNumEqualizerBands, 1.0f);
+    // 默认参数（见DspParameters），压缩系数和平滑帧数先按默认采样率计算
+    updateRampFrames();
+    updateCompressorCrossovers();
+    for (int band = 0; band < kNumCompressorBands; band++) {
+        updateCompressorBand(band);
+    }
+    mParams.reset(mParamState);
+    
+    mRtLog.start();
+    mStreamRecovery.start([this] { return closeStreamsForRecovery(); },
+                          [this](int32_t attempt) { return reopenStreamsForRecovery(attempt); });
 }
 
 AAudioProcessor::~AAudioProcessor() {
+    // 先停止恢复线程，避免析构期间重新打开流
+    mStreamRecovery.stop();
     cleanup();
+    // 流已关闭，不会再有回调写入日志
+    mRtLog.stop();
 }
 
 bool AAudioProcessor::setupStreams(int32_t sampleRate, int32_t channelCount, int32_t format,
                                   int32_t inputDeviceId, int32_t outputDeviceId) {
+    std::lock_guard<std::recursive_mutex> lifecycleLock(mLifecycleMutex);
+    mLifecycleGeneration++;
     cleanup();
+    mRequestedSampleRate = sampleRate;
+    mRequestedChannelCount = channelCount;
+    mRequestedFormat = format;
+    mRequestedInputDeviceId = inputDeviceId;
+    mRequestedOutputDeviceId = outputDeviceId;
     
     // 记录开始时间，用于判断是否超时
     auto startTime = std::chrono::high_resolution_clock::now();
     
+    // 先打开输出流：未指定采样率时由系统选择设备的原生采样率，避免框架重采样并保留MMAP快速通道
+    AAudioStreamBuilder *outputBuilder;
+    aaudio_result_t result = AAudio_createStreamBuilder(&outputBuilder);
+    if (result != AAUDIO_OK) {
+        LOGE("创建输出流构建器失败: %s", AAudio_convertResultToText(result));
+        return false;
+    }
+    
+    // 配置输出流
+    AAudioStreamBuilder_setDirection(outputBuilder, AAUDIO_DIRECTION_OUTPUT);
+    AAudioStreamBuilder_setSharingMode(outputBuilder, AAUDIO_SHARING_MODE_EXCLUSIVE);
+    AAudioStreamBuilder_setPerformanceMode(outputBuilder, AAUDIO_PERFORMANCE_MODE_LOW_LATENCY);
+    // 未指定格式时由系统选择设备的原生格式（许多USB声卡和旧设备只支持I16），转换在回调中自己完成
+    if (format != AAUDIO_FORMAT_UNSPECIFIED) {
+        AAudioStreamBuilder_setFormat(outputBuilder, format);
+    }
+    if (sampleRate > 0) {
+        AAudioStreamBuilder_setSampleRate(outputBuilder, sampleRate);
+    }
+    AAudioStreamBuilder_setChannelCount(outputBuilder, channelCount);
+    // 由输出流回调驱动整个处理过程
+    AAudioStreamBuilder_setDataCallback(outputBuilder, dataCallback, this);
+    AAudioStreamBuilder_setErrorCallback(outputBuilder, errorCallback, this);
+    
+    // 如果指定了输出设备ID，设置设备ID
+    if (outputDeviceId > 0) {
+        AAudioStreamBuilder_setDeviceId(outputBuilder, outputDeviceId);
+    }
+    
+    // 打开输出流
+    result = AAudioStreamBuilder_openStream(outputBuilder, &mOutputStream);
+    // 未指定时回调帧数可能变化（可以大于一个突发），而反馈消除器以一个回调作为整体延迟。
+    // 突发大小打开后才知道：按实际的采样率和格式把回调固定为一个突发后重新打开
+    if (result == AAUDIO_OK) {
+        int32_t burstFrames = AAudioStream_getFramesPerBurst(mOutputStream);
+        AAudioStreamBuilder_setSampleRate(outputBuilder, AAudioStream_getSampleRate(mOutputStream));
+        AAudioStreamBuilder_setFormat(outputBuilder, AAudioStream_getFormat(mOutputStream));
+        AAudioStreamBuilder_setFramesPerDataCallback(outputBuilder, burstFrames);
+        AAudioStream_close(mOutputStream);
+        mOutputStream = nullptr;
+        result = AAudioStreamBuilder_openStream(outputBuilder, &mOutputStream);
+    }
+    AAudioStreamBuilder_delete(outputBuilder);
+    
+    if (result != AAUDIO_OK) {
+        LOGE("打开输出流失败: %s", AAudio_convertResultToText(result));
+        return false;
+    }
+    
+    // 处理链运行在输出流的采样率上
+    int32_t outputSampleRate = AAudioStream_getSampleRate(mOutputStream);
+    
     // 创建输入流构建器
     AAudioStreamBuilder *inputBuilder;
-    aaudio_result_t result = AAudio_createStreamBuilder(&inputBuilder);
+    result = AAudio_createStreamBuilder(&inputBuilder);
     if (result != AAUDIO_OK) {
         LOGE("创建输入流构建器失败: %s", AAudio_convertResultToText(result));
+        cleanup();
         return false;
     }
     
@@ -40,10 +168,15 @@ bool AAudioProcessor::setupStreams(int32_t sampleRate, int32_t channelCount, int
     AAudioStreamBuilder_setDirection(inputBuilder, AAUDIO_DIRECTION_INPUT);
     AAudioStreamBuilder_setSharingMode(inputBuilder, AAUDIO_SHARING_MODE_EXCLUSIVE);
     AAudioStreamBuilder_setPerformanceMode(inputBuilder, AAUDIO_PERFORMANCE_MODE_LOW_LATENCY);
-    AAudioStreamBuilder_setFormat(inputBuilder, AAUDIO_FORMAT_PCM_FLOAT);
-    AAudioStreamBuilder_setSampleRate(inputBuilder, sampleRate);
+    if (format != AAUDIO_FORMAT_UNSPECIFIED) {
+        AAudioStreamBuilder_setFormat(inputBuilder, format);
+    }
+    // 输入流同样使用设备的原生采样率，与输出不同时由重采样器转换，不经过框架的重采样
+    if (sampleRate > 0) {
+        AAudioStreamBuilder_setSampleRate(inputBuilder, sampleRate);
+    }
     AAudioStreamBuilder_setChannelCount(inputBuilder, channelCount);
-    AAudioStreamBuilder_setDataCallback(inputBuilder, dataCallback, this);
+    // 输入流不设置数据回调，由输出流回调非阻塞地读取
     AAudioStreamBuilder_setErrorCallback(inputBuilder, errorCallback, this);
     
     // 如果指定了输入设备ID，设置设备ID
@@ -57,56 +190,113 @@ bool AAudioProcessor::setupStreams(int32_t sampleRate, int32_t channelCount, int
     
     if (result != AAUDIO_OK) {
         LOGE("打开输入流失败: %s", AAudio_convertResultToText(result));
+        cleanup();
         return false;
     }
     
-    // 创建输出流构建器
-    AAudioStreamBuilder *outputBuilder;
-    result = AAudio_createStreamBuilder(&outputBuilder);
-    if (result != AAUDIO_OK) {
-        LOGE("创建输出流构建器失败: %s", AAudio_convertResultToText(result));
-        if (mInputStream) {
-            AAudioStream_close(mInputStream);
-            mInputStream = nullptr;
-        }
+    int32_t inputSampleRate = AAudioStream_getSampleRate(mInputStream);
+    LOGD("采样率: 输入 %d Hz, 输出 %d Hz（%s）", inputSampleRate, outputSampleRate,
+         sampleRate > 0 ? "指定" : "设备原生");
+    
+    // 两个流实际使用的格式，处理链与设备之间的转换在回调中完成
+    aaudio_format_t inputFormat = AAudioStream_getFormat(mInputStream);
+    aaudio_format_t outputFormat = AAudioStream_getFormat(mOutputStream);
+    if (PcmConverter::bytesPerSample(inputFormat) == 0 || !mOutputConverter.setFormat(outputFormat)) {
+        LOGE("不支持的音频格式: 输入 %d, 输出 %d", inputFormat, outputFormat);
+        cleanup();
         return false;
     }
+    LOGD("格式: 输入 %s, 输出 %s（%s）", PcmConverter::formatName(inputFormat),
+         PcmConverter::formatName(outputFormat), format != AAUDIO_FORMAT_UNSPECIFIED ? "指定" : "设备原生");
     
-    // 配置输出流
-    AAudioStreamBuilder_setDirection(outputBuilder, AAUDIO_DIRECTION_OUTPUT);
-    AAudioStreamBuilder_setSharingMode(outputBuilder, AAUDIO_SHARING_MODE_EXCLUSIVE);
-    AAudioStreamBuilder_setPerformanceMode(outputBuilder, AAUDIO_PERFORMANCE_MODE_LOW_LATENCY);
-    AAudioStreamBuilder_setFormat(outputBuilder, AAUDIO_FORMAT_PCM_FLOAT);
-    AAudioStreamBuilder_setSampleRate(outputBuilder, sampleRate);
-    AAudioStreamBuilder_setChannelCount(outputBuilder, channelCount);
+    // 缓存声道数，避免在音频回调中查询流属性
+    mInputChannelCount = AAudioStream_getChannelCount(mInputStream);
+    mOutputChannelCount = AAudioStream_getChannelCount(mOutputStream);
+    mInputSource.setStream(mInputStream, mInputChannelCount, inputFormat);
     
-    // 如果指定了输出设备ID，设置设备ID
-    if (outputDeviceId > 0) {
-        AAudioStreamBuilder_setDeviceId(outputBuilder, outputDeviceId);
+    // 输出回调每次的帧数不会超过输出缓冲区容量，据此预分配输入和处理缓冲区
+    mMaxFramesPerCallback = std::max(AAudioStream_getBufferCapacityInFrames(mOutputStream),
+                                     AAudioStream_getFramesPerBurst(mOutputStream));
+    mInputBuffer.assign(static_cast<size_t>(mMaxFramesPerCallback) * mInputChannelCount, 0.0f);
+    mWorkBuffer.assign(mMaxFramesPerCallback, 0.0f);
+    if (mOutputConverter.isFloat() || mOutputChannelCount == 1) {
+        mOutputScratch.clear();
+    } else {
+        mOutputScratch.assign(static_cast<size_t>(mMaxFramesPerCallback) * mOutputChannelCount, 0.0f);
     }
     
-    // 打开输出流
-    result = AAudioStreamBuilder_openStream(outputBuilder, &mOutputStream);
-    AAudioStreamBuilder_delete(outputBuilder);
-    
-    if (result != AAUDIO_OK) {
-        LOGE("打开输出流失败: %s", AAudio_convertResultToText(result));
-        if (mInputStream) {
-            AAudioStream_close(mInputStream);
-            mInputStream = nullptr;
+    // 输入与输出采样率不同（例如USB麦克风配蓝牙或有线输出）时插入重采样器；
+    // 两个设备的时钟即使标称采样率相同也有偏差，启用漂移补偿时同样经过重采样器微调比例
+    mDuplexSource = &mInputSource;
+    mResamplerDelayFrames = 0.0;
+    mDriftCompensationActive = mDriftCompensation.load();
+    if (inputSampleRate != outputSampleRate || mDriftCompensationActive) {
+        int quality = mResamplerQuality.load();
+        if (!mResamplingSource.configure(&mInputSource, mInputChannelCount, inputSampleRate, outputSampleRate,
+                                         quality, mMaxFramesPerCallback)) {
+            LOGE("不支持的采样率转换: %d -> %d Hz", inputSampleRate, outputSampleRate);
+            cleanup();
+            return false;
         }
-        return false;
+        mDuplexSource = &mResamplingSource;
+        mResamplerDelayFrames = mResamplingSource.getDelayFrames();
+        LOGD("输入重采样: %d -> %d Hz，质量 %d，延迟 %.2f 帧，漂移补偿%s", inputSampleRate, outputSampleRate,
+             quality, mResamplerDelayFrames, mDriftCompensationActive ? "启用" : "关闭");
     }
     
-    // 确保输入输出流的格式匹配
-    int32_t inputSampleRate = AAudioStream_getSampleRate(mInputStream);
-    int32_t outputSampleRate = AAudioStream_getSampleRate(mOutputStream);
+    // 输出缓冲区从最小的突发倍数开始（最低延迟），运行中由调整线程根据欠载情况增减
+    mLatencyTuner.configure(AAudioStream_getFramesPerBurst(mOutputStream),
+                            AAudioStream_getBufferCapacityInFrames(mOutputStream), LatencyTuner::kMinBursts);
+    applyBufferSize();
     
-    if (inputSampleRate != outputSampleRate) {
-        LOGE("输入输出采样率不匹配: %d vs %d", inputSampleRate, outputSampleRate);
-        cleanup();
-        return false;
+    // 输入目标水位为一个输入突发，超出两个突发视为过载（数据泵按输出采样率计帧）
+    int32_t inputBurst = static_cast<int32_t>(static_cast<int64_t>(AAudioStream_getFramesPerBurst(mInputStream))
+                                              * outputSampleRate / inputSampleRate);
+    mDuplexPump.configure(mInputChannelCount, inputBurst, inputBurst * 2);
+    // 漂移补偿把读取后的水位保持在数据泵允许范围的中点
+    mDriftController.configure(outputSampleRate, mDuplexPump.getMaxFillFrames() / 2);
+    mProfiler.configure(outputSampleRate);
+    
+    // 按实际采样率重新计算所有与采样率相关的系数
+    {
+        std::lock_guard<std::mutex> lock(mParamWriteMutex);
+        mSampleRate = outputSampleRate;
+        updateRampFrames();
+        for (int band = 0; band < kNumEqualizerBands; band++) {
+            updateEqualizerBand(band);
+        }
+        updateCompressorCrossovers();
+        for (int band = 0; band < kNumCompressorBands; band++) {
+            updateCompressorBand(band);
+        }
+        publishParameters();
+    }
+    // 输出写入后至少要等一个回调（已固定为一个突发）才会被播放，再被麦克风采集，以此作为反馈路径的整体延迟；
+    // 回调帧数未能固定时只能按最大回调帧数（保证参考样本已生成，但可建模的最短路径变长）
+    int32_t framesPerCallback = AAudioStream_getFramesPerDataCallback(mOutputStream);
+    if (!mFeedbackCanceller.configure(framesPerCallback, framesPerCallback)) {
+        LOGE("回调帧数未固定（%d），反馈消除的整体延迟按最大回调 %d 帧", framesPerCallback, mMaxFramesPerCallback);
+        mFeedbackCanceller.configure(mMaxFramesPerCallback, mMaxFramesPerCallback);
     }
+    mNoiseReducer.configure(outputSampleRate);
+    mHowlSuppressor.configure(outputSampleRate);
+    mLimiter.configure(outputSampleRate);
+    
+    // 回环测量的录音长度与采样率有关；换了设备或路由后旧的测量结果不再有效
+    mLoopbackProbe.configure(outputSampleRate);
+    {
+        std::lock_guard<std::mutex> lock(mLoopbackMutex);
+        mHasLoopbackResult = false;
+    }
+    
+    // 预分配波形环形缓冲区和消费线程的暂存区（波形为单声道处理信号）
+    // 每个桶的帧数按采样率取，使每个发送间隔约有kWaveformBinsPerInterval个桶
+    int32_t framesPerBin = std::max(1, outputSampleRate * kWaveformIntervalMs / (1000 * kWaveformBinsPerInterval));
+    mInputWaveform.configure(framesPerBin, kWaveformRingBins);
+    mOutputWaveform.configure(framesPerBin, kWaveformRingBins);
+    mWaveformBins.assign(kWaveformMaxBinsPerCallback, WaveformBin{0.0f, 0.0f, 0.0f});
+    mWaveformScratch.assign(static_cast<size_t>(kWaveformMaxBinsPerCallback) * kWaveformBinStride, 0.0f);
+    mWaveformDroppedFrames = 0;
     
     // 检查创建过程是否超时
     auto endTime = std::chrono::high_resolution_clock::now();
@@ -118,36 +308,73 @@ bool AAudioProcessor::setupStreams(int32_t sampleRate, int32_t channelCount, int
 }
 
 bool AAudioProcessor::start() {
+    std::lock_guard<std::recursive_mutex> lifecycleLock(mLifecycleMutex);
+    mLifecycleGeneration++;
     if (!mIsInitialized || mIsRunning) {
         LOGE("AAudioProcessor::start - 流未初始化或已在运行");
         return false;
     }
     
-    // 启动输出流
-    aaudio_result_t result = AAudioStream_requestStart(mOutputStream);
+    // 先启动波形消费线程，保证音频开始后环形缓冲区有人消费
+    startWaveformThread();
+    mDuplexPump.reset();
+    mResamplingSource.reset();
+    mDriftController.reset();
+    mProfiler.reset();
+    mPreGainRamp.reset();
+    mOutputGainRamp.reset();
+    mEqualizer.reset();
+    mFeedbackCanceller.reset();
+    mFeedbackCancellerActive = false;
+    mNoiseReducer.reset();
+    mNoiseReducerActive = false;
+    mCompressor.reset();
+    mCompressorActive = false;
+    mHowlSuppressor.reset();
+    mHowlSuppressorActive = false;
+    mLimiter.reset();
+    
+    // 先启动输入流，输出回调开始时输入已在采集
+    aaudio_result_t result = AAudioStream_requestStart(mInputStream);
     if (result != AAUDIO_OK) {
-        LOGE("启动输出流失败: %s", AAudio_convertResultToText(result));
+        LOGE("启动输入流失败: %s", AAudio_convertResultToText(result));
+        stopWaveformThread();
         return false;
     }
     
-    // 启动输入流
-    result = AAudioStream_requestStart(mInputStream);
+    // 启动输出流（驱动处理回调）
+    result = AAudioStream_requestStart(mOutputStream);
     if (result != AAUDIO_OK) {
-        LOGE("启动输入流失败: %s", AAudio_convertResultToText(result));
-        AAudioStream_requestStop(mOutputStream);
+        LOGE("启动输出流失败: %s", AAudio_convertResultToText(result));
+        AAudioStream_requestStop(mInputStream);
+        stopWaveformThread();
         return false;
     }
     
+    startTunerThread();
     mIsRunning = true;
     LOGD("AAudio流已开始运行");
     return true;
 }
 
 void AAudioProcessor::stop() {
+    std::lock_guard<std::recursive_mutex> lifecycleLock(mLifecycleMutex);
+    mLifecycleGeneration++;
     if (!mIsRunning) {
         return;
     }
     
+    // 先停止缓冲区调整，不再修改正在停止的流
+    stopTunerThread();
+    
+    // 先停止输出流（驱动处理回调）
+    if (mOutputStream) {
+        aaudio_result_t result = AAudioStream_requestStop(mOutputStream);
+        if (result != AAUDIO_OK) {
+            LOGE("停止输出流失败: %s", AAudio_convertResultToText(result));
+        }
+    }
+    
     // 停止输入流
     if (mInputStream) {
         aaudio_result_t result = AAudioStream_requestStop(mInputStream);
@@ -156,19 +383,16 @@ void AAudioProcessor::stop() {
         }
     }
     
-    // 停止输出流
-    if (mOutputStream) {
-        aaudio_result_t result = AAudioStream_requestStop(mOutputStream);
-        if (result != AAUDIO_OK) {
-            LOGE("停止输出流失败: %s", AAudio_convertResultToText(result));
-        }
-    }
+    // 音频回调已停止，最后停止波形消费线程
+    stopWaveformThread();
     
     mIsRunning = false;
     LOGD("AAudio流已停止");
 }
 
 void AAudioProcessor::cleanup() {
+    std::lock_guard<std::recursive_mutex> lifecycleLock(mLifecycleMutex);
+    mLifecycleGeneration++;
     stop();
     
     // 关闭输入流
@@ -183,6 +407,12 @@ void AAudioProcessor::cleanup() {
         mOutputStream = nullptr;
     }
     
+    mInputSource.setStream(nullptr, 1, AAUDIO_FORMAT_PCM_FLOAT);
+    mInputChannelCount = 0;
+    mOutputChannelCount = 0;
+    mMaxFramesPerCallback = 0;
+    mBufferSizeFrames = 0;
+    mKnownGoodBufferFrames = 0;
     mIsInitialized = false;
     LOGD("AAudio资源已释放");
 }
@@ -190,22 +420,81 @@ void AAudioProcessor::cleanup() {
 void AAudioProcessor::setInputVolume(int volume) {
     // 转换为0.0-1.0范围
     float normalizedVolume = std::max(0, std::min(100, volume)) / 100.0f;
-    mInputVolume = normalizedVolume;
+    std::lock_guard<std::mutex> lock(mParamWriteMutex);
+    mParamState.inputVolume = normalizedVolume;
+    publishParameters();
 }
 
 void AAudioProcessor::setOutputVolume(int volume) {
     // 转换为0.0-1.0范围
     float normalizedVolume = std::max(0, std::min(100, volume)) / 100.0f;
-    mOutputVolume = normalizedVolume;
+    std::lock_guard<std::mutex> lock(mParamWriteMutex);
+    mParamState.outputVolume = normalizedVolume;
+    publishParameters();
 }
 
 void AAudioProcessor::setAmplificationFactor(float factor) {
     // 限制在0.1-100.0范围内（助听器应用需要非常大的放大倍数）
-    mAmplification = std::max(0.1f, std::min(100.0f, factor));
+    std::lock_guard<std::mutex> lock(mParamWriteMutex);
+    mParamState.amplification = std::max(0.1f, std::min(100.0f, factor));
+    publishParameters();
+}
+
+void AAudioProcessor::setParameterRampTime(float rampMs) {
+    std::lock_guard<std::mutex> lock(mParamWriteMutex);
+    mParamState.rampTimeMs = std::max(GainRamp::kMinRampMs, std::min(GainRamp::kMaxRampMs, rampMs));
+    updateRampFrames();
+    publishParameters();
+}
+
+void AAudioProcessor::updateRampFrames() {
+    mParamState.rampFrames = static_cast<int32_t>(std::lround(mParamState.rampTimeMs * 0.001f * mSampleRate));
+}
+
+void AAudioProcessor::setFeedbackCancellation(bool enabled) {
+    std::lock_guard<std::mutex> lock(mParamWriteMutex);
+    mParamState.feedbackCancellation = enabled;
+    publishParameters();
+}
+
+void AAudioProcessor::getFeedbackMetrics(float *metrics) {
+    float forwardGain;
+    bool enabled;
+    {
+        std::lock_guard<std::mutex> lock(mParamWriteMutex);
+        forwardGain = mParamState.inputVolume * mParamState.amplification * mParamState.outputVolume;
+        enabled = mParamState.feedbackCancellation;
+    }
+    
+    // 宽带估计（不含均衡器和压缩的频率相关增益）：环路增益 = 前向增益 + 反馈路径增益，
+    // 启用消除时残余反馈约降低ERLE，余量为正表示环路增益低于0dB
+    float pathGainDb = mFeedbackCanceller.getPathGainDb();
+    float erleDb = enabled ? std::max(0.0f, mFeedbackCanceller.getErleDb()) : 0.0f;
+    float forwardGainDb = 20.0f * std::log10(std::max(forwardGain, 1e-5f));
+    metrics[kFeedbackMetricPathGainDb] = pathGainDb;
+    metrics[kFeedbackMetricErleDb] = erleDb;
+    metrics[kFeedbackMetricForwardGainDb] = forwardGainDb;
+    metrics[kFeedbackMetricStableMarginDb] = erleDb - (forwardGainDb + pathGainDb);
 }
 
-void AAudioProcessor::setNoiseReduction(bool enabled) {
-    mNoiseReduction = enabled;
+void AAudioProcessor::setHowlSuppression(bool enabled) {
+    std::lock_guard<std::mutex> lock(mParamWriteMutex);
+    mParamState.howlSuppression = enabled;
+    publishParameters();
+}
+
+void AAudioProcessor::getHowlState(float *state) {
+    state[kHowlStateDetections] = static_cast<float>(mHowlSuppressor.getDetectionCount());
+    for (int notch = 0; notch < HowlSuppressor::kMaxNotches; notch++) {
+        state[kHowlStateNotchFrequencies + notch] = mHowlSuppressor.getNotchFrequency(notch);
+    }
+}
+
+void AAudioProcessor::setNoiseReduction(bool enabled, float strength) {
+    std::lock_guard<std::mutex> lock(mParamWriteMutex);
+    mParamState.noiseReduction = enabled;
+    mParamState.noiseReductionStrength = std::max(0.0f, std::min(1.0f, strength));
+    publishParameters();
 }
 
 void AAudioProcessor::setEqualizerBand(int band, int gain) {
@@ -214,12 +503,76 @@ void AAudioProcessor::setEqualizerBand(int band, int gain) {
         return;
     }
     
-    // 将均衡器增益从-15到15的范围映射到0.25到4的增益倍数
-    // -15 -> 0.25 (衰减4倍), 0 -> 1.0 (无变化), +15 -> 4.0 (放大4倍)
-    float gainFactor = std::pow(2.0f, gain / 5.0f);
+    // 滑块的-15到15直接对应频段中心处的增益（dB）
+    float gainDb = static_cast<float>(std::max(-kMaxEqualizerGainDb, std::min(kMaxEqualizerGainDb, gain)));
     
-    std::lock_guard<std::mutex> lock(mEqualizerMutex);
-    mEqualizerGains[band] = gainFactor;
+    // 系数在调用线程（UI线程）上计算，音频线程只使用计算好的结果
+    std::lock_guard<std::mutex> lock(mParamWriteMutex);
+    mParamState.equalizerGainsDb[band] = gainDb;
+    updateEqualizerBand(band);
+    publishParameters();
+}
+
+void AAudioProcessor::updateEqualizerBand(int band) {
+    float gainDb = mParamState.equalizerGainsDb[band];
+    mParamState.equalizerCoeffs[band] = Equalizer::designBand(band, mSampleRate, gainDb);
+    mParamState.equalizerGeneration++;
+    if (gainDb != 0.0f) {
+        mParamState.equalizerActiveMask |= (1u << band);
+    } else {
+        mParamState.equalizerActiveMask &= ~(1u << band);
+    }
+}
+
+void AAudioProcessor::setCompressorEnabled(bool enabled) {
+    std::lock_guard<std::mutex> lock(mParamWriteMutex);
+    mParamState.compressorEnabled = enabled;
+    publishParameters();
+}
+
+void AAudioProcessor::setCompressorBand(int band, float thresholdDb, float ratio,
+                                        float attackMs, float releaseMs, float makeupGainDb) {
+    if (band < 0 || band >= kNumCompressorBands) {
+        LOGE("无效的压缩频段: %d", band);
+        return;
+    }
+    
+    CompressorBandSettings settings;
+    settings.thresholdDb = std::max(-100.0f, std::min(0.0f, thresholdDb));
+    settings.ratio = std::max(1.0f, std::min(20.0f, ratio));
+    settings.attackMs = std::max(0.1f, std::min(200.0f, attackMs));
+    settings.releaseMs = std::max(5.0f, std::min(2000.0f, releaseMs));
+    settings.makeupGainDb = std::max(0.0f, std::min(40.0f, makeupGainDb));
+    
+    // 增益表在调用线程（UI线程）上计算，音频线程只查表
+    std::lock_guard<std::mutex> lock(mParamWriteMutex);
+    mParamState.compressorSettings[band] = settings;
+    updateCompressorBand(band);
+    publishParameters();
+}
+
+void AAudioProcessor::setLimiterLookahead(float lookaheadMs) {
+    std::lock_guard<std::mutex> lock(mParamWriteMutex);
+    mParamState.limiterLookaheadMs = std::max(Limiter::kMinLookaheadMs,
+                                              std::min(Limiter::kMaxLookaheadMs, lookaheadMs));
+    publishParameters();
+}
+
+void AAudioProcessor::updateCompressorBand(int band) {
+    MultibandCompressor::designBand(mParamState.compressorSettings[band], mSampleRate,
+                                    mParamState.compressorBands[band]);
+    mParamState.compressorGeneration++;
+}
+
+void AAudioProcessor::updateCompressorCrossovers() {
+    for (int crossover = 0; crossover < kNumCompressorCrossovers; crossover++) {
+        mParamState.compressorCrossovers[crossover] = MultibandCompressor::designCrossover(crossover, mSampleRate);
+    }
+}
+
+void AAudioProcessor::publishParameters() {
+    mParams.writeBuffer() = mParamState;
+    mParams.publish();
 }
 
 void AAudioProcessor::setWaveformCallback(AudioDataCallback inputCallback, AudioDataCallback outputCallback) {
@@ -231,25 +584,451 @@ void AAudioProcessor::setWaveformCallback(AudioDataCallback inputCallback, Audio
          outputCallback ? "已设置" : "未设置");
 }
 
-void AAudioProcessor::sendWaveformData(const float* data, size_t size, bool isInput) {
+bool AAudioProcessor::setWaveformSharedBuffer(void *data, size_t size) {
     std::lock_guard<std::mutex> lock(mCallbackMutex);
+    if (mWaveformShared.attach(data, size)) {
+        LOGD("设置波形共享缓冲区: %zu 字节", size);
+        return true;
+    }
+    if (data != nullptr) {
+        LOGE("波形共享缓冲区不合法: %zu 字节", size);
+        return false;
+    }
+    LOGD("分离波形共享缓冲区");
+    return true;
+}
+
+int32_t AAudioProcessor::getSampleRate() {
+    if (!mIsInitialized) {
+        return 0;
+    }
+    std::lock_guard<std::mutex> lock(mParamWriteMutex);
+    return mSampleRate;
+}
+
+int64_t AAudioProcessor::getWaveformDroppedFrames() const {
+    return mWaveformDroppedFrames.load(std::memory_order_relaxed);
+}
+
+void AAudioProcessor::sendWaveformData(const float* data, size_t size, bool isInput) {
+    WaveformDecimator &decimator = isInput ? mInputWaveform : mOutputWaveform;
+    
+    // 桶跨回调累积，只有已完成的桶写入环形缓冲区；缓冲区已满时丢弃新的桶并计数
+    int32_t dropped = decimator.process(data, static_cast<int32_t>(size));
+    if (dropped > 0) {
+        mWaveformDroppedFrames.fetch_add(dropped, std::memory_order_relaxed);
+    }
+}
+
+void AAudioProcessor::setResamplerQuality(int quality) {
+    mResamplerQuality = std::max(0, std::min(PolyphaseResampler::kNumQualities - 1, quality));
+    LOGD("设置重采样质量: %d（下次打开音频流时生效）", mResamplerQuality.load());
+}
+
+void AAudioProcessor::setDriftCompensationEnabled(bool enabled) {
+    mDriftCompensation = enabled;
+    LOGD("%s时钟漂移补偿（下次打开音频流时生效）", enabled ? "启用" : "禁用");
+}
+
+void AAudioProcessor::setInitialBufferBursts(int32_t bursts) {
+    std::lock_guard<std::recursive_mutex> lifecycleLock(mLifecycleMutex);
+    if (!mIsInitialized || mIsRunning) {
+        LOGE("setInitialBufferBursts - 流未初始化或已在运行");
+        return;
+    }
+    mLatencyTuner.configure(AAudioStream_getFramesPerBurst(mOutputStream),
+                            AAudioStream_getBufferCapacityInFrames(mOutputStream), bursts);
+    applyBufferSize();
+}
+
+void AAudioProcessor::getLatencyState(int32_t *state) {
+    state[kLatencyStateBufferFrames] = mBufferSizeFrames.load(std::memory_order_relaxed);
+    state[kLatencyStateKnownGoodFrames] = mKnownGoodBufferFrames.load(std::memory_order_relaxed);
+    // 恢复线程正在重新打开流时不等待，流属性报告为0
+    std::unique_lock<std::recursive_mutex> lifecycleLock(mLifecycleMutex, std::try_to_lock);
+    if (lifecycleLock.owns_lock() && mIsInitialized) {
+        state[kLatencyStateBurstFrames] = AAudioStream_getFramesPerBurst(mOutputStream);
+        state[kLatencyStateCapacityFrames] = AAudioStream_getBufferCapacityInFrames(mOutputStream);
+        state[kLatencyStateOutputXRuns] = AAudioStream_getXRunCount(mOutputStream);
+        state[kLatencyStateInputXRuns] = AAudioStream_getXRunCount(mInputStream);
+        state[kLatencyStateOutputDeviceId] = AAudioStream_getDeviceId(mOutputStream);
+        state[kLatencyStateSampleRate] = AAudioStream_getSampleRate(mOutputStream);
+        state[kLatencyStateInputFormat] = AAudioStream_getFormat(mInputStream);
+        state[kLatencyStateOutputFormat] = AAudioStream_getFormat(mOutputStream);
+    } else {
+        for (int i = kLatencyStateBurstFrames; i < kNumLatencyState; i++) {
+            state[i] = 0;
+        }
+    }
+}
+
+bool AAudioProcessor::startLoopbackMeasurement() {
+    if (!mIsRunning) {
+        LOGE("startLoopbackMeasurement - 音频未在运行");
+        return false;
+    }
+    if (!mLoopbackProbe.start()) {
+        LOGE("startLoopbackMeasurement - 已有测量正在进行");
+        return false;
+    }
+    LOGD("开始回环延迟测量");
+    return true;
+}
+
+void AAudioProcessor::getLatencyReport(float *report) {
+    for (int i = 0; i < kNumLatencyReport; i++) {
+        report[i] = -1.0f;
+    }
+    // 恢复线程正在重新打开流时不等待，整个报告为不可用
+    std::unique_lock<std::recursive_mutex> lifecycleLock(mLifecycleMutex, std::try_to_lock);
+    if (!lifecycleLock.owns_lock() || !mIsInitialized) {
+        return;
+    }
+    
+    // 处理链的固定延迟：声反馈消除和降噪的块适配器、限幅器的前瞻
+    int32_t processingFrames;
+    int32_t sampleRate;
+    {
+        std::lock_guard<std::mutex> lock(mParamWriteMutex);
+        sampleRate = mSampleRate;
+        float lookaheadMs = std::max(Limiter::kMinLookaheadMs,
+                                     std::min(Limiter::kMaxLookaheadMs, mParamState.limiterLookaheadMs));
+        processingFrames = static_cast<int32_t>(lookaheadMs * 0.001f * sampleRate + 0.5f);
+        if (mParamState.feedbackCancellation) {
+            processingFrames += FeedbackCanceller::kLatencyFrames;
+        }
+        if (mParamState.noiseReduction) {
+            processingFrames += NoiseReducer::kLatencyFrames;
+        }
+    }
+    const double framesToMs = 1000.0 / sampleRate;
+    double processingMs = processingFrames * framesToMs;
+    report[kLatencyReportProcessingMs] = static_cast<float>(processingMs);
+    
+    // 被动估计：运行中才有时间戳
+    double inputMs = estimateStreamLatencyMs(mInputStream, true);
+    if (inputMs >= 0.0) {
+        // 重采样器的延迟属于输入路径（回环测量中也包含它）
+        inputMs += mResamplerDelayFrames * framesToMs;
+    }
+    double outputMs = estimateStreamLatencyMs(mOutputStream, false);
+    report[kLatencyReportInputMs] = static_cast<float>(inputMs);
+    report[kLatencyReportOutputMs] = static_cast<float>(outputMs);
+    if (inputMs >= 0.0 && outputMs >= 0.0) {
+        report[kLatencyReportEstimatedTotalMs] = static_cast<float>(inputMs + outputMs + processingMs);
+    }
+    
+    // 回环测量：有新完成的测量时在这里计算互相关（约1ms），结果保留到下一次测量或流重建
+    std::lock_guard<std::mutex> lock(mLoopbackMutex);
+    LoopbackProbe::Result result;
+    if (mLoopbackProbe.collect(result)) {
+        mLoopbackResult = result;
+        mHasLoopbackResult = true;
+        LOGD("回环延迟测量完成: %.1f 帧，置信度 %.1f%s", result.delayFrames, result.confidence,
+             result.valid ? "" : "（无效）");
+    }
+    if (mHasLoopbackResult) {
+        report[kLatencyReportLoopbackConfidence] = mLoopbackResult.confidence;
+        if (mLoopbackResult.valid) {
+            // 回环测量的是输出写入到输入读出之间的往返延迟（含两侧的流缓冲和声学路径），不含处理链
+            double loopbackMs = mLoopbackResult.delayFrames * framesToMs;
+            report[kLatencyReportLoopbackMs] = static_cast<float>(loopbackMs);
+            report[kLatencyReportMeasuredTotalMs] = static_cast<float>(loopbackMs + processingMs);
+        }
+    }
+    report[kLatencyReportLoopbackPending] = mLoopbackProbe.isBusy() ? 1.0f : 0.0f;
+    report[kLatencyReportClockDriftPpm] = mDriftCompensationActive ? mDriftController.getDriftPpm() : 0.0f;
+}
+
+double AAudioProcessor::estimateStreamLatencyMs(AAudioStream *stream, bool isInput) {
+    if (!mIsRunning || stream == nullptr) {
+        return -1.0;
+    }
+    int64_t framePosition;
+    int64_t frameTimeNanos;
+    aaudio_result_t result = AAudioStream_getTimestamp(stream, CLOCK_MONOTONIC, &framePosition, &frameTimeNanos);
+    if (result != AAUDIO_OK) {
+        return -1.0;
+    }
+    struct timespec now;
+    clock_gettime(CLOCK_MONOTONIC, &now);
+    int64_t nowNanos = static_cast<int64_t>(now.tv_sec) * 1000000000LL + now.tv_nsec;
+    const double nanosPerFrame = 1e9 / AAudioStream_getSampleRate(stream);
     
-    if (isInput && mInputWaveformCallback) {
-        LOGD("发送输入波形数据: %zu 个样本, 第一个样本值: %f", size, data[0]);
-        mInputWaveformCallback(data, size, true);
-    } else if (!isInput && mOutputWaveformCallback) {
-        LOGD("发送输出波形数据: %zu 个样本, 第一个样本值: %f", size, data[0]);
-        mOutputWaveformCallback(data, size, false);
+    // 时间戳给出某一帧在硬件上（ADC采样或DAC播放）的时间，按帧数差推算应用当前读写位置的帧对应的时间
+    double latencyNanos;
+    if (isInput) {
+        // 刚读出的帧是在多久之前被采样的
+        int64_t framesRead = AAudioStream_getFramesRead(stream);
+        double readFrameNanos = frameTimeNanos + (framesRead - framePosition) * nanosPerFrame;
+        latencyNanos = nowNanos - readFrameNanos;
     } else {
-        // 检查回调是否为空
-        if (isInput) {
-            LOGD("输入波形回调为空，未能发送数据");
+        // 刚写入的帧要在多久之后才被播放
+        int64_t framesWritten = AAudioStream_getFramesWritten(stream);
+        double writtenFrameNanos = frameTimeNanos + (framesWritten - framePosition) * nanosPerFrame;
+        latencyNanos = writtenFrameNanos - nowNanos;
+    }
+    return std::max(0.0, latencyNanos * 1e-6);
+}
+
+void AAudioProcessor::setStreamEventCallback(StreamRecovery::EventListener callback) {
+    mStreamRecovery.setListener(callback);
+}
+
+void AAudioProcessor::getRecoveryStats(int32_t *stats) {
+    stats[kRecoveryStatDisconnects] = mStreamRecovery.getRequestCount();
+    stats[kRecoveryStatRecoveries] = mStreamRecovery.getRecoveryCount();
+    stats[kRecoveryStatFailures] = mStreamRecovery.getFailureCount();
+    stats[kRecoveryStatLastMs] = mStreamRecovery.getLastRecoveryMs();
+    stats[kRecoveryStatMaxMs] = mStreamRecovery.getMaxRecoveryMs();
+}
+
+void AAudioProcessor::getStats(int64_t *stats) {
+    stats[kStatCallbacks] = mProfiler.getCallbackCount();
+    stats[kStatFrames] = mProfiler.getFrameCount();
+    stats[kStatMinFrames] = mProfiler.getMinFrames();
+    stats[kStatMaxFrames] = mProfiler.getMaxFrames();
+    stats[kStatLateCallbacks] = mProfiler.getLateCallbackCount();
+    stats[kStatWallTimeSumUs] = static_cast<int64_t>(mProfiler.getWallTimeHistogram().getSum());
+    stats[kStatWallTimeMaxUs] = mProfiler.getWallTimeHistogram().getMax();
+    stats[kStatLoadSum] = static_cast<int64_t>(mProfiler.getLoadHistogram().getSum());
+    stats[kStatLoadMax] = mProfiler.getLoadHistogram().getMax();
+    stats[kStatInputUnderruns] = mDuplexPump.getUnderrunCount();
+    stats[kStatInputOverruns] = mDuplexPump.getOverrunCount();
+    stats[kStatLogDropped] = mRtLog.getDroppedCount();
+    stats[kStatLogSuppressed] = mRtLog.getSuppressedCount();
+    stats[kStatWaveformDropped] = mWaveformDroppedFrames.load(std::memory_order_relaxed);
+    mProfiler.getWallTimeHistogram().copyCounts(stats + kStatWallTimeHistogram);
+    mProfiler.getLoadHistogram().copyCounts(stats + kStatLoadHistogram);
+    
+    // 流的xrun计数在读取方查询：旧版（非MMAP）实现中获取计数要加锁，不在音频线程上调用
+    std::unique_lock<std::recursive_mutex> lifecycleLock(mLifecycleMutex, std::try_to_lock);
+    if (lifecycleLock.owns_lock() && mIsInitialized) {
+        stats[kStatOutputXRuns] = AAudioStream_getXRunCount(mOutputStream);
+        stats[kStatInputXRuns] = AAudioStream_getXRunCount(mInputStream);
+    } else {
+        stats[kStatOutputXRuns] = 0;
+        stats[kStatInputXRuns] = 0;
+    }
+}
+
+bool AAudioProcessor::setRealtimeLogFile(const std::string &path) {
+    bool result = mRtLog.setOutputFile(path);
+    if (result) {
+        LOGD("实时日志文件: %s", path.empty() ? "无（只写logcat）" : path.c_str());
+    }
+    return result;
+}
+
+bool AAudioProcessor::closeStreamsForRecovery() {
+    std::lock_guard<std::recursive_mutex> lifecycleLock(mLifecycleMutex);
+    if (!mIsRunning) {
+        // 用户已经停止
+        return false;
+    }
+    // 旧的流发出的通知可能在恢复完成后才被处理（如输入输出流先后断开），此时新的流并没有断开
+    if (AAudioStream_getState(mOutputStream) != AAUDIO_STREAM_STATE_DISCONNECTED &&
+        AAudioStream_getState(mInputStream) != AAUDIO_STREAM_STATE_DISCONNECTED) {
+        LOGD("当前的流没有断开，忽略断开通知");
+        return false;
+    }
+    
+    // 记下断开前的输出设备和已验证的缓冲区大小，重新打开同一设备时从该大小开始
+    mRecoveryOutputDeviceId = AAudioStream_getDeviceId(mOutputStream);
+    int32_t burstFrames = AAudioStream_getFramesPerBurst(mOutputStream);
+    mRecoveryBursts = burstFrames > 0 ? mKnownGoodBufferFrames.load() / burstFrames : 0;
+    
+    LOGD("音频流断开，关闭旧的流");
+    cleanup();
+    mRecoveryGeneration = mLifecycleGeneration;
+    return true;
+}
+
+StreamRecovery::OpenResult AAudioProcessor::reopenStreamsForRecovery(int32_t attempt) {
+    std::lock_guard<std::recursive_mutex> lifecycleLock(mLifecycleMutex);
+    if (mLifecycleGeneration != mRecoveryGeneration) {
+        LOGD("恢复期间流被用户停止或重新设置，放弃恢复");
+        return StreamRecovery::kOpenAborted;
+    }
+    
+    // 第一次尝试原来指定的设备；失败通常是该设备已被拔出，之后改用系统默认设备
+    int32_t inputDeviceId = attempt == 0 ? mRequestedInputDeviceId : 0;
+    int32_t outputDeviceId = attempt == 0 ? mRequestedOutputDeviceId : 0;
+    LOGD("重新打开音频流（第 %d 次）: 输入设备 %d, 输出设备 %d", attempt + 1, inputDeviceId, outputDeviceId);
+    
+    // 处理参数保存在mParamState中，setupStreams按新的采样率重新计算系数，start清除DSP状态
+    bool success = setupStreams(mRequestedSampleRate, mRequestedChannelCount, mRequestedFormat,
+                                inputDeviceId, outputDeviceId);
+    if (success) {
+        if (mRecoveryBursts > 0 && AAudioStream_getDeviceId(mOutputStream) == mRecoveryOutputDeviceId) {
+            setInitialBufferBursts(mRecoveryBursts);
+        }
+        success = start();
+    }
+    if (!success) {
+        cleanup();
+    }
+    mRecoveryGeneration = mLifecycleGeneration;
+    return success ? StreamRecovery::kOpenSucceeded : StreamRecovery::kOpenFailed;
+}
+
+void AAudioProcessor::applyBufferSize() {
+    int32_t requested = mLatencyTuner.getBufferFrames();
+    aaudio_result_t result = AAudioStream_setBufferSizeInFrames(mOutputStream, requested);
+    if (result < 0) {
+        LOGE("设置输出缓冲区大小失败: %s", AAudio_convertResultToText(result));
+        result = AAudioStream_getBufferSizeInFrames(mOutputStream);
+    }
+    // 返回值为实际设置的大小（可能被限制在容量之内）
+    mBufferSizeFrames = result;
+    mKnownGoodBufferFrames = std::min(result, mLatencyTuner.getKnownGoodFrames());
+}
+
+void AAudioProcessor::startTunerThread() {
+    std::lock_guard<std::mutex> lock(mTunerMutex);
+    if (mTunerThreadRunning) {
+        return;
+    }
+    mTunerThreadRunning = true;
+    mTunerThread = std::thread(&AAudioProcessor::tunerThreadLoop, this);
+}
+
+void AAudioProcessor::stopTunerThread() {
+    {
+        std::lock_guard<std::mutex> lock(mTunerMutex);
+        if (!mTunerThreadRunning) {
+            return;
+        }
+        mTunerThreadRunning = false;
+    }
+    mTunerCondition.notify_all();
+    if (mTunerThread.joinable()) {
+        mTunerThread.join();
+    }
+    LOGD("输出缓冲区: %d 帧（已验证 %d 帧），输出xrun %d 次",
+         mBufferSizeFrames.load(), mKnownGoodBufferFrames.load(), AAudioStream_getXRunCount(mOutputStream));
+}
+
+void AAudioProcessor::tunerThreadLoop() {
+    pthread_setname_np(pthread_self(), "LatencyTuner");
+    
+    std::unique_lock<std::mutex> lock(mTunerMutex);
+    while (!mTunerCondition.wait_for(lock, std::chrono::milliseconds(LatencyTuner::kCheckIntervalMs),
+                                     [this] { return !mTunerThreadRunning; })) {
+        int32_t previous = mLatencyTuner.getBufferFrames();
+        int32_t frames = mLatencyTuner.update(AAudioStream_getXRunCount(mOutputStream));
+        if (frames != previous) {
+            applyBufferSize();
+            LOGD("输出缓冲区调整: %d -> %d 帧", previous, mBufferSizeFrames.load());
         } else {
-            LOGD("输出波形回调为空，未能发送数据");
+            // 试探期结束时已验证的大小会变化
+            mKnownGoodBufferFrames = std::min(mBufferSizeFrames.load(), mLatencyTuner.getKnownGoodFrames());
         }
     }
 }
 
+void AAudioProcessor::startWaveformThread() {
+    if (mWaveformThreadRunning.exchange(true)) {
+        return;
+    }
+    mWaveformThread = std::thread(&AAudioProcessor::waveformThreadLoop, this);
+}
+
+void AAudioProcessor::stopWaveformThread() {
+    if (!mWaveformThreadRunning.exchange(false)) {
+        return;
+    }
+    if (mWaveformThread.joinable()) {
+        mWaveformThread.join();
+    }
+}
+
+void AAudioProcessor::waveformThreadLoop() {
+    pthread_setname_np(pthread_self(), "WaveformConsumer");
+    
+    while (mWaveformThreadRunning.load(std::memory_order_acquire)) {
+        deliverWaveformData(mInputWaveform, true);
+        deliverWaveformData(mOutputWaveform, false);
+        std::this_thread::sleep_for(std::chrono::milliseconds(kWaveformIntervalMs));
+    }
+}
+
+void AAudioProcessor::deliverWaveformData(WaveformDecimator &decimator, bool isInput) {
+    int32_t available = decimator.availableBins();
+    if (available <= 0 || mWaveformBins.empty()) {
+        return;
+    }
+    
+    // 每个周期发送自上次以来完成的所有桶（通常约kWaveformBinsPerInterval个），积压过多时跳过较旧的
+    int32_t count = std::min(available, static_cast<int32_t>(mWaveformBins.size()));
+    decimator.skipBins(available - count);
+    count = decimator.readBins(mWaveformBins.data(), count);
+    // 回调和共享缓冲区使用相同的桶布局
+    static_assert(WaveformSharedBuffer::kBinStride == kWaveformBinStride, "共享缓冲区的桶布局与回调不同");
+    float *packed = mWaveformScratch.data();
+    for (int32_t i = 0; i < count; i++) {
+        packed[i * kWaveformBinStride + kWaveformBinMin] = mWaveformBins[i].min;
+        packed[i * kWaveformBinStride + kWaveformBinMax] = mWaveformBins[i].max;
+        packed[i * kWaveformBinStride + kWaveformBinRms] = mWaveformBins[i].rms;
+    }
+    
+    std::lock_guard<std::mutex> lock(mCallbackMutex);
+    mWaveformShared.publish(isInput ? WaveformSharedBuffer::kChannelInput : WaveformSharedBuffer::kChannelOutput,
+                            packed, count);
+    AudioDataCallback &callback = isInput ? mInputWaveformCallback : mOutputWaveformCallback;
+    if (callback) {
+        callback(packed, static_cast<size_t>(count) * kWaveformBinStride, isInput);
+    }
+}
+
+void AAudioProcessor::AAudioInputSource::setStream(AAudioStream *stream, int32_t channelCount,
+                                                   aaudio_format_t format) {
+    mStream = stream;
+    mChannelCount = channelCount;
+    mConverter.setFormat(format);
+    if (mConverter.isFloat()) {
+        mReadScratch.clear();
+    } else {
+        mReadScratch.assign(static_cast<size_t>(kReadChunkFrames) * channelCount * mConverter.getBytesPerSample(), 0);
+    }
+}
+
+int32_t AAudioProcessor::AAudioInputSource::readInput(float *buffer, int32_t numFrames) {
+    if (mStream == nullptr) {
+        return AAUDIO_ERROR_INVALID_STATE;
+    }
+    // 超时为0：非阻塞读取
+    if (mConverter.isFloat()) {
+        return AAudioStream_read(mStream, buffer, numFrames, 0);
+    }
+    
+    // 整数格式：分块读到暂存区再转换，读到的帧不足一块说明输入流已读空
+    int32_t framesRead = 0;
+    while (framesRead < numFrames) {
+        int32_t frames = std::min(numFrames - framesRead, kReadChunkFrames);
+        aaudio_result_t result = AAudioStream_read(mStream, mReadScratch.data(), frames, 0);
+        if (result < 0) {
+            // 已读到的数据先交给调用者，错误留到下一次读取时报告
+            return framesRead > 0 ? framesRead : result;
+        }
+        mConverter.toFloat(mReadScratch.data(), buffer + static_cast<size_t>(framesRead) * mChannelCount,
+                           result * mChannelCount);
+        framesRead += result;
+        if (result < frames) {
+            break;
+        }
+    }
+    return framesRead;
+}
+
+int32_t AAudioProcessor::AAudioInputSource::availableInputFrames() {
+    if (mStream == nullptr) {
+        return -1;
+    }
+    int64_t available = AAudioStream_getFramesWritten(mStream) - AAudioStream_getFramesRead(mStream);
+    return static_cast<int32_t>(std::max<int64_t>(0, available));
+}
+
 // 静态回调函数，将调用转发到类实例
 aaudio_data_callback_result_t AAudioProcessor::dataCallback(
         AAudioStream *stream,
@@ -264,119 +1043,161 @@ void AAudioProcessor::errorCallback(
         AAudioStream *stream,
         void *userData,
         aaudio_result_t error) {
-    LOGE("AAudio错误回调: %s", AAudio_convertResultToText(error));
-    // 尝试重启流
+    AAudioProcessor *processor = static_cast<AAudioProcessor*>(userData);
+    processor->mRtLog.log(kLogStreamError, error);
+    // 设备拔出或路由变化：不能在回调线程上关闭流，交给恢复线程重新打开
     if (error == AAUDIO_ERROR_DISCONNECTED) {
-        // 通知主线程进行重启
-        // 在实际应用中，应该通过消息队列或其他方式通知主线程
-        LOGD("AAudio流断开连接，应重新启动");
+        processor->mStreamRecovery.requestRecovery();
     }
 }
 
-// 音频数据处理
+// 音频数据处理（输出流回调）
+// 从输入流非阻塞读取同样帧数，混合为单声道处理后再分发到各输出声道。
+// 回调中不做任何堆分配，所有缓冲区都在setupStreams中预分配
 aaudio_data_callback_result_t AAudioProcessor::processAudioData(
         void *audioData,
         int32_t numFrames) {
-    float *buffer = static_cast<float*>(audioData);
-    
-    // 同时处理所有声道
-    int32_t channelCount = AAudioStream_getChannelCount(mInputStream);
-    int totalSamples = numFrames * channelCount;
+    rtguard::ScopedRealtime realtimeScope;
+    // 在所有返回点记录本次回调的耗时（代替在音频线程上写日志）
+    CallbackProfiler::Scope profile(mProfiler, numFrames);
     
-    // 创建输入数据的副本，因为原始数据会被修改
-    std::vector<float> inputBuffer(totalSamples);
-    std::copy(buffer, buffer + totalSamples, inputBuffer.begin());
-    
-    // 发送原始输入波形数据
-    mWaveformCallbackCounter++;
-    if (mWaveformCallbackCounter >= 2) { // 减少帧间隔，提高回调频率
-        mWaveformCallbackCounter = 0;
-        LOGD("处理音频数据: %d 帧, %d 总样本", numFrames, totalSamples);
-        sendWaveformData(inputBuffer.data(), totalSamples, true);
+    // 各种格式的0都是全零字节，静音时不需要转换
+    const size_t outputSamples = static_cast<size_t>(numFrames) * mOutputChannelCount;
+    const size_t outputBytes = outputSamples * mOutputConverter.getBytesPerSample();
+    if (numFrames > mMaxFramesPerCallback) {
+        mRtLog.log(kLogCallbackTooLarge, numFrames, mMaxFramesPerCallback);
+        memset(audioData, 0, outputBytes);
+        return AAUDIO_CALLBACK_RESULT_CONTINUE;
     }
     
-    // 第1步：应用输入音量
-    for (int i = 0; i < totalSamples; i++) {
-        buffer[i] *= mInputVolume;
+    // 从输入流拉取数据，不足部分已补零
+    int32_t framesRead = mDuplexPump.pull(*mDuplexSource, mInputBuffer.data(), numFrames);
+    if (framesRead < 0) {
+        mRtLog.log(kLogInputReadFailed, framesRead);
+        memset(audioData, 0, outputBytes);
+        return AAUDIO_CALLBACK_RESULT_CONTINUE;
     }
     
-    // 第2步：应用放大
-    for (int i = 0; i < totalSamples; i++) {
-        buffer[i] *= mAmplification;
+    // 按读取后的水位微调下一次读取的重采样比例，抵消输入与输出设备之间的时钟漂移
+    if (mDriftCompensationActive) {
+        mResamplingSource.setRatioAdjustment(mDriftController.update(mDuplexPump.getFillFrames(), numFrames));
     }
     
-    // 第3步：应用降噪（简单模拟）
-    if (mNoiseReduction) {
-        for (int i = 0; i < totalSamples; i++) {
-            // 简单的噪声门限，抑制低于阈值的信号
-            if (std::abs(buffer[i]) < 0.02f) { // 低于2%的幅度视为噪声
-                buffer[i] *= 0.5f; // 衰减噪声
+    // 混合为单声道
+    float *work = mWorkBuffer.data();
+    const float *input = mInputBuffer.data();
+    if (mInputChannelCount == 1) {
+        memcpy(work, input, numFrames * sizeof(float));
+    } else {
+        const float scale = 1.0f / mInputChannelCount;
+        for (int32_t frame = 0; frame < numFrames; frame++) {
+            float sum = 0.0f;
+            for (int32_t ch = 0; ch < mInputChannelCount; ch++) {
+                sum += input[frame * mInputChannelCount + ch];
             }
+            work[frame] = sum * scale;
         }
     }
     
-    // 第4步：应用均衡器
-    applyEqualizer(buffer, numFrames);
+    // 发送原始输入波形数据
+    sendWaveformData(work, numFrames, true);
     
-    // 第5步：应用输出音量并写入输出流
-    for (int i = 0; i < totalSamples; i++) {
-        // 对于助听器应用，我们需要允许更大的幅度
-        // 使用改进的软限幅算法，适应更高的放大倍数
-        if (buffer[i] > 1.0f) {
-            // 软限幅：超过1.0的部分用对数压缩，系数增加以处理更大的放大倍数
-            buffer[i] = 1.0f + log10f(1.0f + buffer[i]) * 0.5f;
-        } else if (buffer[i] < -1.0f) {
-            buffer[i] = -1.0f - log10f(1.0f - buffer[i]) * 0.5f;
-        }
-        
-        // 应用输出音量
-        buffer[i] *= mOutputVolume;
+    // 回环测量期间录下麦克风信号，处理结果被测试信号替换（处理仍照常进行，各级状态保持连续）
+    bool probing = mLoopbackProbe.record(work, numFrames);
+    
+    processBlock(work, numFrames);
+    
+    if (probing) {
+        mLoopbackProbe.play(work, numFrames);
+    }
+    
+    // 声反馈消除的参考信号必须是实际送往扬声器的信号：回环测量期间是测试信号而不是处理结果
+    if (mFeedbackCancellerActive) {
+        mFeedbackCanceller.pushReference(work, numFrames);
     }
     
     // 发送输出波形数据
-    sendWaveformData(buffer, totalSamples, false);
+    sendWaveformData(work, numFrames, false);
     
-    // 写入输出流
-    if (mOutputStream) {
-        aaudio_result_t result = AAudioStream_write(mOutputStream, buffer, numFrames, 0);
-        if (result < 0) {
-            LOGE("写入输出流失败: %s", AAudio_convertResultToText(result));
-            return AAUDIO_CALLBACK_RESULT_STOP;
+    // 分发到各输出声道；设备格式不是浮点时，单声道直接从处理缓冲区转换，多声道先交错到暂存区再转换
+    if (mOutputChannelCount == 1) {
+        mOutputConverter.fromFloat(work, audioData, numFrames);
+    } else {
+        float *output = mOutputConverter.isFloat() ? static_cast<float*>(audioData) : mOutputScratch.data();
+        for (int32_t frame = 0; frame < numFrames; frame++) {
+            for (int32_t ch = 0; ch < mOutputChannelCount; ch++) {
+                output[frame * mOutputChannelCount + ch] = work[frame];
+            }
+        }
+        if (!mOutputConverter.isFloat()) {
+            mOutputConverter.fromFloat(output, audioData, static_cast<int32_t>(outputSamples));
         }
     }
     
     return AAUDIO_CALLBACK_RESULT_CONTINUE;
 }
 
-// 均衡器处理
-void AAudioProcessor::applyEqualizer(float *buffer, int32_t numFrames) {
-    // 获取当前均衡器设置的副本，避免处理过程中更改
-    std::vector<float> equalizerGains;
-    {
-        std::lock_guard<std::mutex> lock(mEqualizerMutex);
-        equalizerGains = mEqualizerGains;
-    }
-    
-    // 实际应用中，这里应该使用FFT进行频域处理，并应用均衡器增益
-    // 为简化，这里使用一个简单模拟，直接应用均衡增益
-    // 注：实际均衡器实现要比这复杂得多
-
-    // 简单模拟：每个样本按一定比例应用不同频段的增益
-    int32_t channelCount = AAudioStream_getChannelCount(mInputStream);
-    for (int frame = 0; frame < numFrames; frame++) {
-        for (int ch = 0; ch < channelCount; ch++) {
-            int sampleIndex = frame * channelCount + ch;
-            
-            // 简单的模拟均衡效果
-            float originalSample = buffer[sampleIndex];
-            buffer[sampleIndex] = 0;
-            
-            // 简单地将信号分配到不同频段并应用增益
-            for (int band = 0; band < kNumEqualizerBands; band++) {
-                // 按频段权重分配信号（简化）
-                float weight = 1.0f / kNumEqualizerBands;
-                buffer[sampleIndex] += originalSample * weight * equalizerGains[band];
-            }
+void AAudioProcessor::processBlock(float *buffer, int32_t numFrames) {
+    // 每块在块边界获取一次参数快照（无锁），整块使用同一组参数
+    const DspParameters &params = mParams.acquire();
+    const float preGain = params.inputVolume * params.amplification;
+    const float outputVolume = params.outputVolume;
+    const bool noiseReduction = params.noiseReduction;
+    
+    // 声反馈消除：在任何增益之前减去扬声器经空气传回麦克风的信号，固定延迟FeedbackCanceller::kLatencyFrames帧
+    if (params.feedbackCancellation) {
+        if (!mFeedbackCancellerActive) {
+            mFeedbackCanceller.reset();
+            mFeedbackCancellerActive = true;
+        }
+        mFeedbackCanceller.process(buffer, numFrames);
+    } else {
+        mFeedbackCancellerActive = false;
+    }
+    
+    // 输入音量与放大（目标改变时在params.rampFrames帧内渐变）
+    mPreGainRamp.process(mKernels, buffer, numFrames, preGain, params.rampFrames);
+    
+    // 降噪（STFT谱减），启用期间有固定的NoiseReducer::kLatencyFrames帧延迟
+    if (noiseReduction) {
+        if (!mNoiseReducerActive) {
+            mNoiseReducer.reset();
+            mNoiseReducerActive = true;
         }
+        mNoiseReducer.process(buffer, numFrames, params.noiseReductionStrength);
+    } else {
+        mNoiseReducerActive = false;
     }
-} 
\ No newline at end of file
+    
+    // 均衡器（逐段处理整块数据，0dB的频段直接跳过；系数改变时交叉淡化）
+    mEqualizer.process(buffer, numFrames, params.equalizerCoeffs, params.equalizerActiveMask,
+                       params.equalizerGeneration, params.rampFrames);
+    
+    // 多频段压缩：安静的声音获得补偿增益，响亮的声音按压缩比降低增益
+    if (params.compressorEnabled) {
+        if (!mCompressorActive) {
+            mCompressor.reset();
+            mCompressorActive = true;
+        }
+        mCompressor.process(buffer, numFrames, params.compressorCrossovers, params.compressorBands,
+                            params.compressorGeneration, params.rampFrames);
+    } else {
+        mCompressorActive = false;
+    }
+    
+    // 啸叫抑制：在所有增益之后、限幅之前检测持续增长的窄带峰值并自动陷波，没有额外延迟
+    if (params.howlSuppression) {
+        if (!mHowlSuppressorActive) {
+            mHowlSuppressor.reset();
+            mHowlSuppressorActive = true;
+        }
+        mHowlSuppressor.process(buffer, numFrames);
+    } else {
+        mHowlSuppressorActive = false;
+    }
+    
+    // 前瞻限幅：峰值到达前平滑地降低增益，输出不超过Limiter::kCeiling，之后乘以输出音量（渐变）
+    mLimiter.setLookahead(params.limiterLookaheadMs);
+    mLimiter.process(buffer, numFrames);
+    mOutputGainRamp.process(mKernels, buffer, numFrames, outputVolume, params.rampFrames);
+}
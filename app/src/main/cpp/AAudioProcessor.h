@@ -6,13 +6,38 @@
 #include <memory>
 #include <atomic>
 #include <mutex>
+#include <condition_variable>
 #include <vector>
 #include <functional>
+#include <thread>
+#include "CallbackProfiler.h"
+#include "ClockDriftController.h"
+#include "DspKernels.h"
+#include "DspParameters.h"
+#include "Equalizer.h"
+#include "FeedbackCanceller.h"
+#include "FullDuplexPump.h"
+#include "GainRamp.h"
+#include "HowlSuppressor.h"
+#include "LatencyTuner.h"
+#include "Limiter.h"
+#include "LoopbackProbe.h"
+#include "MultibandCompressor.h"
+#include "NoiseReducer.h"
+#include "PcmConverter.h"
+#include "ResamplingInputSource.h"
+#include "RtLog.h"
+#include "SpscRingBuffer.h"
+#include "StreamRecovery.h"
+#include "TripleBuffer.h"
+#include "WaveformDecimator.h"
+#include "WaveformSharedBuffer.h"
 
+// 非实时线程上的日志；音频回调（包括错误回调）中使用mRtLog
 #define LOGD(...) __android_log_print(ANDROID_LOG_DEBUG, "AAudioProcessor", __VA_ARGS__)
 #define LOGE(...) __android_log_print(ANDROID_LOG_ERROR, "AAudioProcessor", __VA_ARGS__)
 
-// 音频回调函数类型，用于波形数据
+// 音频回调函数类型，用于波形数据：每个桶依次为最小值、最大值、均方根（kWaveformBinStride个float），size为float个数
 typedef std::function<void(const float*, size_t, bool)> AudioDataCallback;
 
 class AAudioProcessor {
@@ -20,7 +45,10 @@ public:
     AAudioProcessor();
     ~AAudioProcessor();
 
-    // 初始化音频流
+    // 初始化音频流：sampleRate为0（AAUDIO_UNSPECIFIED）时输入、输出流各自使用设备的原生采样率，
+    // 两者不同时输入经多相重采样器转换到输出采样率；所有与采样率相关的处理状态按输出采样率重新计算。
+    // format为0（AAUDIO_FORMAT_UNSPECIFIED）时两个流各自使用设备的原生格式，否则按指定格式打开；
+    // 处理链始终为浮点，整数格式（I16、I24、I32）在回调中用SIMD内核转换
     bool setupStreams(int32_t sampleRate, int32_t channelCount, int32_t format, 
                      int32_t inputDeviceId, int32_t outputDeviceId);
     
@@ -33,6 +61,9 @@ public:
     // 释放资源
     void cleanup();
 
+    // 实际使用的采样率（Hz），流未打开时为0
+    int32_t getSampleRate();
+
     // 设置输入音量（0-100）
     void setInputVolume(int volume);
 
@@ -42,14 +73,144 @@ public:
     // 设置放大倍数（0.1-100.0）
     void setAmplificationFactor(float factor);
 
-    // 启用/禁用降噪
-    void setNoiseReduction(bool enabled);
+    // 设置参数平滑时间（毫秒，0-200）：音量/放大倍数的渐变和均衡器/压缩系数的交叉淡化
+    void setParameterRampTime(float rampMs);
+
+    // 启用/禁用声反馈消除
+    void setFeedbackCancellation(bool enabled);
+
+    // 声反馈指标：估计的反馈路径峰值增益、回声损耗增强、当前前向增益、稳定增益余量（均为dB）
+    static const int kFeedbackMetricPathGainDb = 0;
+    static const int kFeedbackMetricErleDb = 1;
+    static const int kFeedbackMetricForwardGainDb = 2;
+    static const int kFeedbackMetricStableMarginDb = 3;
+    static const int kNumFeedbackMetrics = 4;
+    void getFeedbackMetrics(float *metrics);
+    
+    // 启用/禁用啸叫检测与自动陷波
+    void setHowlSuppression(bool enabled);
+    
+    // 啸叫抑制状态：累计判定次数，以及各陷波器的中心频率（Hz，未使用为0）
+    static const int kHowlStateDetections = 0;
+    static const int kHowlStateNotchFrequencies = 1;
+    static const int kNumHowlState = kHowlStateNotchFrequencies + HowlSuppressor::kMaxNotches;
+    void getHowlState(float *state);
+
+    // 启用/禁用降噪，strength为降噪强度（0.0-1.0）
+    void setNoiseReduction(bool enabled, float strength);
 
-    // 设置均衡器频段增益
+    // 设置均衡器频段增益（dB，-15到15）
     void setEqualizerBand(int band, int gain);
     
-    // 设置波形数据回调
+    // 启用/禁用多频段压缩
+    void setCompressorEnabled(bool enabled);
+
+    // 设置压缩频段（0-3）：阈值（dBFS）、压缩比、启动/释放时间（毫秒）、补偿增益（dB）
+    void setCompressorBand(int band, float thresholdDb, float ratio,
+                           float attackMs, float releaseMs, float makeupGainDb);
+
+    // 设置输出限幅器的前瞻时间（毫秒，0.5-5.0）
+    void setLimiterLookahead(float lookaheadMs);
+    
+    // 设置输入/输出采样率不同时的重采样质量（PolyphaseResampler::Quality），下次setupStreams时生效
+    void setResamplerQuality(int quality);
+
+    // 启用/禁用输入与输出设备之间的时钟漂移补偿（默认启用），下次setupStreams时生效
+    void setDriftCompensationEnabled(bool enabled);
+
+    // 设置输出缓冲区的起始大小（突发数，通常为上次会话对同一设备保存的值），在setupStreams之后、start之前调用
+    void setInitialBufferBursts(int32_t bursts);
+
+    // 输出缓冲区调整状态：当前大小、已验证不欠载的大小、突发大小、容量（均为帧），
+    // 输出/输入xrun次数、实际输出设备ID、采样率、输入/输出流的实际格式（AAUDIO_FORMAT_*）
+    static const int kLatencyStateBufferFrames = 0;
+    static const int kLatencyStateKnownGoodFrames = 1;
+    static const int kLatencyStateBurstFrames = 2;
+    static const int kLatencyStateCapacityFrames = 3;
+    static const int kLatencyStateOutputXRuns = 4;
+    static const int kLatencyStateInputXRuns = 5;
+    static const int kLatencyStateOutputDeviceId = 6;
+    static const int kLatencyStateSampleRate = 7;
+    static const int kLatencyStateInputFormat = 8;
+    static const int kLatencyStateOutputFormat = 9;
+    static const int kNumLatencyState = 10;
+    void getLatencyState(int32_t *state);
+    
+    // 开始一次回环延迟测量（播放约21ms的测试信号并录音，约0.5秒后结果出现在延迟报告中），需在运行中调用
+    bool startLoopbackMeasurement();
+    
+    // 延迟报告（毫秒，不可用时为-1）：
+    // 由流时间戳估计的输入/输出延迟、处理链引入的延迟及三者之和（麦克风到耳朵的估计），
+    // 最近一次回环测量的往返延迟、置信度，加上处理延迟后的实测总延迟，以及是否有测量正在进行（0/1），
+    // 估计的输入相对输出的时钟偏差（ppm，未启用漂移补偿时为0）
+    static const int kLatencyReportInputMs = 0;
+    static const int kLatencyReportOutputMs = 1;
+    static const int kLatencyReportProcessingMs = 2;
+    static const int kLatencyReportEstimatedTotalMs = 3;
+    static const int kLatencyReportLoopbackMs = 4;
+    static const int kLatencyReportLoopbackConfidence = 5;
+    static const int kLatencyReportMeasuredTotalMs = 6;
+    static const int kLatencyReportLoopbackPending = 7;
+    static const int kLatencyReportClockDriftPpm = 8;
+    static const int kNumLatencyReport = 9;
+    void getLatencyReport(float *report);
+    
+    // 设置流事件回调（在恢复线程上调用）：设备断开后开始恢复、恢复成功、恢复失败、恢复被中止（见StreamRecovery::Event）
+    void setStreamEventCallback(StreamRecovery::EventListener callback);
+    
+    // 断开恢复统计：断开通知次数、成功恢复次数、失败次数、最近一次和最长一次的恢复耗时（毫秒）
+    static const int kRecoveryStatDisconnects = 0;
+    static const int kRecoveryStatRecoveries = 1;
+    static const int kRecoveryStatFailures = 2;
+    static const int kRecoveryStatLastMs = 3;
+    static const int kRecoveryStatMaxMs = 4;
+    static const int kNumRecoveryStats = 5;
+    void getRecoveryStats(int32_t *stats);
+    
+    // 回调性能统计（start时清零）：回调次数、总帧数、最少/最多帧数、超时（负载超过100%）次数，
+    // 耗时（微秒）的总和与最大值、负载（0.01%）的总和与最大值，当前流的输出/输入xrun次数，
+    // 数据泵的输入欠载/过载次数，实时日志因队列满丢弃/因限速省略的条数（自创建起累计），
+    // 波形环形缓冲区满时丢弃的帧数（打开流时清零，同getWaveformDroppedFrames），
+    // 之后依次是耗时和负载直方图的各桶计数（见LogLinearHistogram）
+    static const int kStatCallbacks = 0;
+    static const int kStatFrames = 1;
+    static const int kStatMinFrames = 2;
+    static const int kStatMaxFrames = 3;
+    static const int kStatLateCallbacks = 4;
+    static const int kStatWallTimeSumUs = 5;
+    static const int kStatWallTimeMaxUs = 6;
+    static const int kStatLoadSum = 7;
+    static const int kStatLoadMax = 8;
+    static const int kStatOutputXRuns = 9;
+    static const int kStatInputXRuns = 10;
+    static const int kStatInputUnderruns = 11;
+    static const int kStatInputOverruns = 12;
+    static const int kStatLogDropped = 13;
+    static const int kStatLogSuppressed = 14;
+    static const int kStatWaveformDropped = 15;
+    static const int kStatWallTimeHistogram = 16;
+    static const int kStatLoadHistogram = kStatWallTimeHistogram + LogLinearHistogram::kNumBuckets;
+    static const int kNumStats = kStatLoadHistogram + LogLinearHistogram::kNumBuckets;
+    void getStats(int64_t *stats);
+    
+    // 音频回调路径上的日志同时追加到文件（为空时只写logcat）
+    bool setRealtimeLogFile(const std::string &path);
+    
+    // 设置波形数据回调（在波形消费线程上调用，不在音频线程上调用）
     void setWaveformCallback(AudioDataCallback inputCallback, AudioDataCallback outputCallback);
+    
+    // 设置与Java共享的波形缓冲区（布局见WaveformSharedBuffer），消费线程每个周期把新的桶写入其中；
+    // data为nullptr时分离。返回后消费线程不再访问旧的缓冲区，调用方可以释放它；缓冲区不合法时返回false
+    bool setWaveformSharedBuffer(void *data, size_t size);
+
+    // 波形数据中每个桶的float个数与各项的偏移
+    static const int kWaveformBinStride = 3;
+    static const int kWaveformBinMin = 0;
+    static const int kWaveformBinMax = 1;
+    static const int kWaveformBinRms = 2;
+    
+    // 因波形环形缓冲区已满而丢弃的帧数
+    int64_t getWaveformDroppedFrames() const;
 
     // AAudio数据回调函数
     static aaudio_data_callback_result_t dataCallback(
@@ -65,40 +226,166 @@ public:
             aaudio_result_t error);
 
 private:
-    // 音频处理函数
+    // 包装AAudio输入流的输入源，供全双工数据泵非阻塞读取
+    // 设备格式不是浮点时分块读到暂存区再转换为浮点（暂存区在setStream中分配）
+    class AAudioInputSource : public AudioInputSource {
+    public:
+        void setStream(AAudioStream *stream, int32_t channelCount, aaudio_format_t format);
+        int32_t readInput(float *buffer, int32_t numFrames) override;
+        int32_t availableInputFrames() override;
+
+    private:
+        static const int32_t kReadChunkFrames = 256;
+
+        AAudioStream *mStream = nullptr;
+        int32_t mChannelCount = 1;
+        PcmConverter mConverter;
+        std::vector<uint8_t> mReadScratch;
+    };
+
+    // 音频处理函数（由输出流回调驱动）
     aaudio_data_callback_result_t processAudioData(
             void *audioData,
             int32_t numFrames);
 
-    // 处理音频样本
-    void processAudioSample(float &sample);
+    // 处理一块单声道数据（声反馈消除、输入音量与放大、降噪、均衡器、多频段压缩、前瞻限幅、输出音量）
+    void processBlock(float *buffer, int32_t numFrames);
+
+    // 按当前采样率重新计算均衡器系数（调用者需持有mParamWriteMutex）
+    void updateEqualizerBand(int band);
 
-    // 应用均衡器
-    void applyEqualizer(float *buffer, int32_t numFrames);
+    // 按当前采样率重新计算压缩频段的系数和增益表、分频滤波器（调用者需持有mParamWriteMutex）
+    void updateCompressorBand(int band);
+    void updateCompressorCrossovers();
+
+    // 按当前采样率换算参数平滑的帧数（调用者需持有mParamWriteMutex）
+    void updateRampFrames();
+    
+    // 将mParamState发布给音频线程（调用者需持有mParamWriteMutex）
+    void publishParameters();
     
-    // 发送波形数据
+    // 发送波形数据（音频线程：只归并为最小/最大/均方根桶写入环形缓冲区）
     void sendWaveformData(const float* data, size_t size, bool isInput);
     
+    // 波形消费线程
+    void startWaveformThread();
+    void stopWaveformThread();
+    void waveformThreadLoop();
+    void deliverWaveformData(WaveformDecimator &decimator, bool isInput);
+    
+    // 延迟调整线程：定期检查输出流的xrun计数并调整缓冲区大小
+    void startTunerThread();
+    void stopTunerThread();
+    void tunerThreadLoop();
+    void applyBufferSize();
+    
+    // 断开恢复：在恢复线程上关闭旧的流、重新打开并启动（见StreamRecovery）
+    bool closeStreamsForRecovery();
+    StreamRecovery::OpenResult reopenStreamsForRecovery(int32_t attempt);
+    
+    // 由流时间戳估计流缓冲区中的延迟（毫秒），不可用时返回-1
+    double estimateStreamLatencyMs(AAudioStream *stream, bool isInput);
+    
+    // 流尚未打开时用于计算系数的默认采样率
+    static const int32_t kDefaultSampleRate = 48000;
+    // 均衡器增益范围（dB）
+    static const int kMaxEqualizerGainDb = 15;
+    
     // 音频流
     AAudioStream *mInputStream;
     AAudioStream *mOutputStream;
+    int32_t mInputChannelCount;           // 在setupStreams中缓存，回调内不再查询
+    int32_t mOutputChannelCount;
+    int32_t mMaxFramesPerCallback;        // 预分配缓冲区能容纳的最大回调帧数
+    int32_t mSampleRate;                  // 实际采样率，用于计算滤波器系数（受mParamWriteMutex保护）
+
+    // 全双工：输出回调通过数据泵从输入流非阻塞拉取数据
+    // 输入与输出采样率不同或启用漂移补偿时数据泵从重采样输入源拉取，mDuplexSource在setupStreams中选定
+    AAudioInputSource mInputSource;
+    ResamplingInputSource mResamplingSource;
+    AudioInputSource *mDuplexSource;
+    std::atomic<int> mResamplerQuality;
+    double mResamplerDelayFrames;         // 重采样延迟（输出采样率的帧数），不重采样时为0
+    FullDuplexPump mDuplexPump;
+    std::atomic<bool> mDriftCompensation;
+    bool mDriftCompensationActive;        // 本次打开的流是否启用了漂移补偿（setupStreams中确定）
+    ClockDriftController mDriftController;
+    CallbackProfiler mProfiler;           // 回调耗时与负载，只在音频线程上记录
+    RtLog mRtLog;                         // 音频回调与错误回调的日志，由写出线程格式化
+    std::vector<float> mInputBuffer;      // 交错格式的输入数据
+    std::vector<float> mWorkBuffer;       // 单声道处理缓冲区
+    PcmConverter mOutputConverter;        // 输出流的设备格式
+    std::vector<float> mOutputScratch;    // 输出格式不是浮点且多声道时，先交错到这里再转换
 
     // 处理参数
-    std::atomic<float> mInputVolume;      // 输入音量 (0.0-1.0)
-    std::atomic<float> mOutputVolume;     // 输出音量 (0.0-1.0)
-    std::atomic<float> mAmplification;   // 放大倍数 (0.1-100.0)
-    std::atomic<bool> mNoiseReduction;    // 是否启用降噪
+    // UI线程在mParamWriteMutex保护下修改mParamState并整体发布，
+    // 音频线程每块通过mParams.acquire()无锁获取一次快照，从不等待写入端
+    std::mutex mParamWriteMutex;
+    DspParameters mParamState;
+    TripleBuffer<DspParameters> mParams;
 
-    // 均衡器参数
-    static const int kNumEqualizerBands = 8;
-    std::mutex mEqualizerMutex;
-    std::vector<float> mEqualizerGains;  // 均衡器各频段增益
+    // DSP状态（仅音频线程访问）
+    const DspKernels *mKernels;           // 按CPU能力选定的SIMD内核，构造时检测
+    GainRamp mPreGainRamp;                // 输入音量×放大倍数
+    GainRamp mOutputGainRamp;             // 输出音量
+    FeedbackCanceller mFeedbackCanceller; // 参考信号缓冲区在setupStreams中按输出突发大小分配
+    bool mFeedbackCancellerActive;        // 当前块是否启用了声反馈消除（启用时回调末尾推送参考信号）
+    Equalizer mEqualizer;
+    NoiseReducer mNoiseReducer;           // 缓冲区在setupStreams中按采样率分配
+    bool mNoiseReducerActive;             // 上一块是否启用了降噪，重新启用时先清除旧状态
+    MultibandCompressor mCompressor;
+    bool mCompressorActive;               // 上一块是否启用了压缩
+    HowlSuppressor mHowlSuppressor;       // 分析缓冲区在setupStreams中按采样率分配
+    bool mHowlSuppressorActive;           // 上一块是否启用了啸叫抑制
+    Limiter mLimiter;                     // 缓冲区在setupStreams中按采样率分配
     
     // 波形回调
+    // 音频线程把样本归并为最小/最大/均方根桶写入环形缓冲区，由独立的消费线程按显示频率取出已完成的桶，
+    // 写入共享缓冲区（若已设置）并调用回调（含JNI调用）
+    static const int kWaveformIntervalMs = 16;         // 消费线程的发送间隔（约60Hz）
+    static const int kWaveformBinsPerInterval = 32;    // 每个发送间隔的桶数，决定每个桶的帧数
+    static const int kWaveformRingBins = 1024;         // 环形缓冲区容量（桶）
+    static const int kWaveformMaxBinsPerCallback = 256; // 每次回调最多发送的桶数，积压更多时跳过较旧的
     std::mutex mCallbackMutex;
     AudioDataCallback mInputWaveformCallback;
     AudioDataCallback mOutputWaveformCallback;
-    int mWaveformCallbackCounter;  // 控制回调频率
+    WaveformSharedBuffer mWaveformShared;              // 受mCallbackMutex保护
+    WaveformDecimator mInputWaveform;
+    WaveformDecimator mOutputWaveform;
+    std::vector<WaveformBin> mWaveformBins;            // 仅消费线程使用
+    std::vector<float> mWaveformScratch;               // 仅消费线程使用
+    std::atomic<int64_t> mWaveformDroppedFrames;
+    std::thread mWaveformThread;
+    std::atomic<bool> mWaveformThreadRunning;
+    
+    // 输出缓冲区大小调整（mLatencyTuner在调整线程运行期间只由该线程访问）
+    LatencyTuner mLatencyTuner;
+    std::atomic<int32_t> mBufferSizeFrames;            // 实际设置成功的缓冲区大小
+    std::atomic<int32_t> mKnownGoodBufferFrames;
+    std::mutex mTunerMutex;
+    std::condition_variable mTunerCondition;
+    bool mTunerThreadRunning;                          // 由mTunerMutex保护
+    std::thread mTunerThread;
+    
+    // 回环延迟测量（record/play在音频线程，collect在查询延迟报告的线程）
+    LoopbackProbe mLoopbackProbe;                      // 缓冲区在setupStreams中按采样率分配
+    std::mutex mLoopbackMutex;
+    LoopbackProbe::Result mLoopbackResult;             // 最近一次测量结果，由mLoopbackMutex保护
+    bool mHasLoopbackResult;
+    
+    // 流的生命周期：setupStreams/start/stop/cleanup与恢复线程互斥（可重入，setupStreams内部会调用cleanup）
+    // 每次调用使mLifecycleGeneration加1，恢复线程据此发现期间用户停止或重新设置了流
+    std::recursive_mutex mLifecycleMutex;
+    uint32_t mLifecycleGeneration;
+    uint32_t mRecoveryGeneration;                      // 恢复线程上次操作后的mLifecycleGeneration
+    int32_t mRequestedSampleRate;                      // 最近一次setupStreams的参数，恢复时重新使用
+    int32_t mRequestedChannelCount;
+    int32_t mRequestedFormat;
+    int32_t mRequestedInputDeviceId;
+    int32_t mRequestedOutputDeviceId;
+    int32_t mRecoveryOutputDeviceId;                   // 断开前的实际输出设备和已验证的缓冲区突发数
+    int32_t mRecoveryBursts;
+    StreamRecovery mStreamRecovery;
     
     // 状态标志
     std::atomic<bool> mIsInitialized;
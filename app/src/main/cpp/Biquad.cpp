@@ -0,0 +1,135 @@
+#include "Biquad.h"
+#include <algorithm>
+#include <cmath>
+
+namespace biquad {
+
+namespace {
+
+const double kPi = 3.14159265358979323846;
+
+// 频率限制在(0, Nyquist)之内，避免设计出不稳定的滤波器
+double clampFrequency(double sampleRate, double frequency) {
+    return std::max(1.0, std::min(frequency, sampleRate * 0.499));
+}
+
+BiquadCoefficients normalize(double b0, double b1, double b2, double a0, double a1, double a2) {
+    BiquadCoefficients c;
+    c.b0 = static_cast<float>(b0 / a0);
+    c.b1 = static_cast<float>(b1 / a0);
+    c.b2 = static_cast<float>(b2 / a0);
+    c.a1 = static_cast<float>(a1 / a0);
+    c.a2 = static_cast<float>(a2 / a0);
+    return c;
+}
+
+} // namespace
+
+BiquadCoefficients peaking(double sampleRate, double frequency, double q, double gainDb) {
+    double A = std::pow(10.0, gainDb / 40.0);
+    double w0 = 2.0 * kPi * clampFrequency(sampleRate, frequency) / sampleRate;
+    double alpha = std::sin(w0) / (2.0 * q);
+    double cosW0 = std::cos(w0);
+    
+    return normalize(1.0 + alpha * A, -2.0 * cosW0, 1.0 - alpha * A,
+                     1.0 + alpha / A, -2.0 * cosW0, 1.0 - alpha / A);
+}
+
+BiquadCoefficients lowShelf(double sampleRate, double frequency, double q, double gainDb) {
+    double A = std::pow(10.0, gainDb / 40.0);
+    double w0 = 2.0 * kPi * clampFrequency(sampleRate, frequency) / sampleRate;
+    double alpha = std::sin(w0) / (2.0 * q);
+    double cosW0 = std::cos(w0);
+    double sqrtA2alpha = 2.0 * std::sqrt(A) * alpha;
+    
+    return normalize(A * ((A + 1.0) - (A - 1.0) * cosW0 + sqrtA2alpha),
+                     2.0 * A * ((A - 1.0) - (A + 1.0) * cosW0),
+                     A * ((A + 1.0) - (A - 1.0) * cosW0 - sqrtA2alpha),
+                     (A + 1.0) + (A - 1.0) * cosW0 + sqrtA2alpha,
+                     -2.0 * ((A - 1.0) + (A + 1.0) * cosW0),
+                     (A + 1.0) + (A - 1.0) * cosW0 - sqrtA2alpha);
+}
+
+BiquadCoefficients highShelf(double sampleRate, double frequency, double q, double gainDb) {
+    double A = std::pow(10.0, gainDb / 40.0);
+    double w0 = 2.0 * kPi * clampFrequency(sampleRate, frequency) / sampleRate;
+    double alpha = std::sin(w0) / (2.0 * q);
+    double cosW0 = std::cos(w0);
+    double sqrtA2alpha = 2.0 * std::sqrt(A) * alpha;
+    
+    return normalize(A * ((A + 1.0) + (A - 1.0) * cosW0 + sqrtA2alpha),
+                     -2.0 * A * ((A - 1.0) + (A + 1.0) * cosW0),
+                     A * ((A + 1.0) + (A - 1.0) * cosW0 - sqrtA2alpha),
+                     (A + 1.0) - (A - 1.0) * cosW0 + sqrtA2alpha,
+                     2.0 * ((A - 1.0) - (A + 1.0) * cosW0),
+                     (A + 1.0) - (A - 1.0) * cosW0 - sqrtA2alpha);
+}
+
+BiquadCoefficients lowPass(double sampleRate, double frequency, double q) {
+    double w0 = 2.0 * kPi * clampFrequency(sampleRate, frequency) / sampleRate;
+    double alpha = std::sin(w0) / (2.0 * q);
+    double cosW0 = std::cos(w0);
+    
+    return normalize((1.0 - cosW0) / 2.0, 1.0 - cosW0, (1.0 - cosW0) / 2.0,
+                     1.0 + alpha, -2.0 * cosW0, 1.0 - alpha);
+}
+
+BiquadCoefficients highPass(double sampleRate, double frequency, double q) {
+    double w0 = 2.0 * kPi * clampFrequency(sampleRate, frequency) / sampleRate;
+    double alpha = std::sin(w0) / (2.0 * q);
+    double cosW0 = std::cos(w0);
+    
+    return normalize((1.0 + cosW0) / 2.0, -(1.0 + cosW0), (1.0 + cosW0) / 2.0,
+                     1.0 + alpha, -2.0 * cosW0, 1.0 - alpha);
+}
+
+BiquadCoefficients notch(double sampleRate, double frequency, double q) {
+    double w0 = 2.0 * kPi * clampFrequency(sampleRate, frequency) / sampleRate;
+    double alpha = std::sin(w0) / (2.0 * q);
+    double cosW0 = std::cos(w0);
+    
+    return normalize(1.0, -2.0 * cosW0, 1.0,
+                     1.0 + alpha, -2.0 * cosW0, 1.0 - alpha);
+}
+
+BiquadCoefficients allPass(double sampleRate, double frequency, double q) {
+    double w0 = 2.0 * kPi * clampFrequency(sampleRate, frequency) / sampleRate;
+    double alpha = std::sin(w0) / (2.0 * q);
+    double cosW0 = std::cos(w0);
+    
+    return normalize(1.0 - alpha, -2.0 * cosW0, 1.0 + alpha,
+                     1.0 + alpha, -2.0 * cosW0, 1.0 - alpha);
+}
+
+double magnitudeDb(const BiquadCoefficients &c, double sampleRate, double frequency) {
+    double w = 2.0 * kPi * frequency / sampleRate;
+    double cos1 = std::cos(w);
+    double sin1 = std::sin(w);
+    double cos2 = std::cos(2.0 * w);
+    double sin2 = std::sin(2.0 * w);
+    
+    double numRe = c.b0 + c.b1 * cos1 + c.b2 * cos2;
+    double numIm = -(c.b1 * sin1 + c.b2 * sin2);
+    double denRe = 1.0 + c.a1 * cos1 + c.a2 * cos2;
+    double denIm = -(c.a1 * sin1 + c.a2 * sin2);
+    
+    double num = numRe * numRe + numIm * numIm;
+    double den = denRe * denRe + denIm * denIm;
+    return 10.0 * std::log10(num / den);
+}
+
+void process(float *buffer, int32_t numFrames, const BiquadCoefficients &c, BiquadState &state) {
+    float z1 = state.z1;
+    float z2 = state.z2;
+    for (int32_t i = 0; i < numFrames; i++) {
+        float x = buffer[i];
+        float y = c.b0 * x + z1;
+        z1 = c.b1 * x - c.a1 * y + z2;
+        z2 = c.b2 * x - c.a2 * y;
+        buffer[i] = y;
+    }
+    state.z1 = z1;
+    state.z2 = z2;
+}
+
+} // namespace biquad
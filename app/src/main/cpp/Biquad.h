@@ -0,0 +1,52 @@
+#ifndef LISTENHELP6_BIQUAD_H
+#define LISTENHELP6_BIQUAD_H
+
+#include <cstdint>
+
+// 二阶IIR滤波器系数（已按a0归一化）
+// y[n] = b0*x[n] + b1*x[n-1] + b2*x[n-2] - a1*y[n-1] - a2*y[n-2]
+struct BiquadCoefficients {
+    float b0;
+    float b1;
+    float b2;
+    float a1;
+    float a2;
+
+    // 直通（单位增益）系数
+    static BiquadCoefficients identity() {
+        BiquadCoefficients c;
+        c.b0 = 1.0f;
+        c.b1 = 0.0f;
+        c.b2 = 0.0f;
+        c.a1 = 0.0f;
+        c.a2 = 0.0f;
+        return c;
+    }
+};
+
+// 转置直接II型的状态
+struct BiquadState {
+    float z1;
+    float z2;
+};
+
+// 系数设计（RBJ Audio EQ Cookbook），内部使用双精度计算，只应在非实时线程调用
+namespace biquad {
+
+BiquadCoefficients peaking(double sampleRate, double frequency, double q, double gainDb);
+BiquadCoefficients lowShelf(double sampleRate, double frequency, double q, double gainDb);
+BiquadCoefficients highShelf(double sampleRate, double frequency, double q, double gainDb);
+BiquadCoefficients lowPass(double sampleRate, double frequency, double q);
+BiquadCoefficients highPass(double sampleRate, double frequency, double q);
+BiquadCoefficients notch(double sampleRate, double frequency, double q);
+BiquadCoefficients allPass(double sampleRate, double frequency, double q);
+
+// 计算给定频率处的幅度响应（dB），用于校验与调试
+double magnitudeDb(const BiquadCoefficients &coeffs, double sampleRate, double frequency);
+
+// 原地处理一段单声道数据（转置直接II型）
+void process(float *buffer, int32_t numFrames, const BiquadCoefficients &coeffs, BiquadState &state);
+
+} // namespace biquad
+
+#endif //LISTENHELP6_BIQUAD_H
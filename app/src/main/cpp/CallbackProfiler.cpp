@@ -0,0 +1,59 @@
+#include "CallbackProfiler.h"
+#include <algorithm>
+#include <limits>
+
+CallbackProfiler::CallbackProfiler()
+    : mLoadPerNanosecondFrame(0.0)
+    , mCallbacks(0)
+    , mFrames(0)
+    , mMinFrames(std::numeric_limits<int32_t>::max())
+    , mMaxFrames(0)
+    , mLateCallbacks(0) {
+}
+
+void CallbackProfiler::configure(int32_t sampleRate) {
+    // numFrames帧的周期为 numFrames / sampleRate 秒
+    mLoadPerNanosecondFrame = sampleRate > 0 ? kLoadFullScale * 1e-9 * sampleRate : 0.0;
+}
+
+void CallbackProfiler::reset() {
+    mCallbacks.store(0, std::memory_order_relaxed);
+    mFrames.store(0, std::memory_order_relaxed);
+    mMinFrames.store(std::numeric_limits<int32_t>::max(), std::memory_order_relaxed);
+    mMaxFrames.store(0, std::memory_order_relaxed);
+    mLateCallbacks.store(0, std::memory_order_relaxed);
+    mWallMicros.reset();
+    mLoad.reset();
+}
+
+void CallbackProfiler::record(std::chrono::steady_clock::time_point start, int32_t numFrames) {
+    int64_t elapsedNs = std::chrono::duration_cast<std::chrono::nanoseconds>(
+            std::chrono::steady_clock::now() - start).count();
+    elapsedNs = std::max<int64_t>(0, elapsedNs);
+    
+    // 只有音频线程写入，读取+写入即可，不需要原子读改写
+    mCallbacks.store(mCallbacks.load(std::memory_order_relaxed) + 1, std::memory_order_relaxed);
+    mFrames.store(mFrames.load(std::memory_order_relaxed) + numFrames, std::memory_order_relaxed);
+    if (numFrames < mMinFrames.load(std::memory_order_relaxed)) {
+        mMinFrames.store(numFrames, std::memory_order_relaxed);
+    }
+    if (numFrames > mMaxFrames.load(std::memory_order_relaxed)) {
+        mMaxFrames.store(numFrames, std::memory_order_relaxed);
+    }
+    
+    mWallMicros.record(static_cast<uint32_t>(std::min<int64_t>((elapsedNs + 500) / 1000,
+                                                               LogLinearHistogram::kMaxValue)));
+    if (numFrames > 0) {
+        double load = elapsedNs * mLoadPerNanosecondFrame / numFrames;
+        uint32_t loadValue = static_cast<uint32_t>(std::min<double>(load + 0.5, LogLinearHistogram::kMaxValue));
+        mLoad.record(loadValue);
+        if (loadValue > kLoadFullScale) {
+            mLateCallbacks.store(mLateCallbacks.load(std::memory_order_relaxed) + 1, std::memory_order_relaxed);
+        }
+    }
+}
+
+int32_t CallbackProfiler::getMinFrames() const {
+    int32_t minFrames = mMinFrames.load(std::memory_order_relaxed);
+    return minFrames == std::numeric_limits<int32_t>::max() ? 0 : minFrames;
+}
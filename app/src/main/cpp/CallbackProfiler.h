@@ -0,0 +1,69 @@
+#ifndef LISTENHELP6_CALLBACKPROFILER_H
+#define LISTENHELP6_CALLBACKPROFILER_H
+
+#include <atomic>
+#include <chrono>
+#include <cstdint>
+#include "LogLinearHistogram.h"
+
+// 音频回调的性能统计
+// 每个回调记录一次：耗时（微秒）、帧数，以及CPU负载——耗时占这些帧播放时长（缓冲区周期）的比例，
+// 以0.01%为单位；负载超过100%的回调计为超时（该回调一定赶不上播放，会造成欠载）。
+// 耗时和负载分别计入对数线性直方图，分位数由读取方计算。
+// 所有记录在音频线程上完成，不加锁、不分配内存、不写日志；其他线程可随时读取。
+class CallbackProfiler {
+public:
+    CallbackProfiler();
+
+    // 配置（非实时线程）：输出采样率，用于把帧数换算为缓冲区周期
+    void configure(int32_t sampleRate);
+
+    // 清除所有统计（不可与record并发，在启动音频流之前调用）
+    void reset();
+
+    // 音频线程：记录一次回调（开始时刻与处理的帧数）
+    void record(std::chrono::steady_clock::time_point start, int32_t numFrames);
+
+    // 在作用域结束时记录本次回调，回调中有多个返回点时使用
+    class Scope {
+    public:
+        Scope(CallbackProfiler &profiler, int32_t numFrames)
+            : mProfiler(profiler)
+            , mNumFrames(numFrames)
+            , mStart(std::chrono::steady_clock::now()) {
+        }
+        ~Scope() {
+            mProfiler.record(mStart, mNumFrames);
+        }
+
+    private:
+        CallbackProfiler &mProfiler;
+        int32_t mNumFrames;
+        std::chrono::steady_clock::time_point mStart;
+    };
+
+    int64_t getCallbackCount() const { return mCallbacks.load(std::memory_order_relaxed); }
+    int64_t getFrameCount() const { return mFrames.load(std::memory_order_relaxed); }
+    int32_t getMinFrames() const;
+    int32_t getMaxFrames() const { return mMaxFrames.load(std::memory_order_relaxed); }
+    int64_t getLateCallbackCount() const { return mLateCallbacks.load(std::memory_order_relaxed); }
+
+    // 耗时（微秒）与负载（0.01%）直方图
+    const LogLinearHistogram &getWallTimeHistogram() const { return mWallMicros; }
+    const LogLinearHistogram &getLoadHistogram() const { return mLoad; }
+
+private:
+    // 负载的单位：100%对应的值
+    static const uint32_t kLoadFullScale = 10000;
+
+    double mLoadPerNanosecondFrame;       // 负载 = 耗时(ns) * 该系数 / 帧数
+    std::atomic<int64_t> mCallbacks;
+    std::atomic<int64_t> mFrames;
+    std::atomic<int32_t> mMinFrames;
+    std::atomic<int32_t> mMaxFrames;
+    std::atomic<int64_t> mLateCallbacks;
+    LogLinearHistogram mWallMicros;
+    LogLinearHistogram mLoad;
+};
+
+#endif //LISTENHELP6_CALLBACKPROFILER_H
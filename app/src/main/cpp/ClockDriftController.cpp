@@ -0,0 +1,86 @@
+#include "ClockDriftController.h"
+#include <algorithm>
+
+constexpr double ClockDriftController::kFillTimeConstantSeconds;
+constexpr double ClockDriftController::kAcquireSeconds;
+constexpr double ClockDriftController::kAcquireLoopPeriodSeconds;
+constexpr double ClockDriftController::kTrackLoopPeriodSeconds;
+constexpr double ClockDriftController::kMaxAdjustment;
+
+namespace {
+const double kTwoPi = 6.28318530717958647692;
+} // namespace
+
+ClockDriftController::ClockDriftController()
+    : mSampleRate(48000.0)
+    , mAcquireGains{0.0, 0.0}
+    , mTrackGains{0.0, 0.0}
+    , mElapsedSeconds(0.0)
+    , mHasFill(false)
+    , mFilteredFill(0.0)
+    , mSetpoint(0.0)
+    , mIntegral(0.0)
+    , mDriftPpm(0.0f)
+    , mAdjustmentPpm(0.0f)
+    , mFillErrorFrames(0.0f) {
+    configure(48000, 0);
+}
+
+void ClockDriftController::configure(int32_t sampleRate, int32_t setpointFrames) {
+    mSampleRate = std::max(1, sampleRate);
+    mSetpoint = std::max(0, setpointFrames);
+    mAcquireGains = computeGains(kAcquireLoopPeriodSeconds);
+    mTrackGains = computeGains(kTrackLoopPeriodSeconds);
+    reset();
+}
+
+ClockDriftController::Gains ClockDriftController::computeGains(double loopPeriodSeconds) const {
+    // 水位的变化率 = 采样率 * (时钟偏差 - 比例微调)，与PI控制器构成二阶系统：
+    // s^2 + fs*Kp*s + fs*Ki = 0，取临界阻尼 fs*Kp = 2*wn、fs*Ki = wn^2
+    const double naturalFrequency = kTwoPi / loopPeriodSeconds;
+    Gains gains;
+    gains.proportional = 2.0 * naturalFrequency / mSampleRate;
+    gains.integral = naturalFrequency * naturalFrequency / mSampleRate;
+    return gains;
+}
+
+void ClockDriftController::reset() {
+    mHasFill = false;
+    mFilteredFill = 0.0;
+    mIntegral = 0.0;
+    mElapsedSeconds = 0.0;
+    mDriftPpm.store(0.0f, std::memory_order_relaxed);
+    mAdjustmentPpm.store(0.0f, std::memory_order_relaxed);
+    mFillErrorFrames.store(0.0f, std::memory_order_relaxed);
+}
+
+double ClockDriftController::update(int32_t fillFrames, int32_t numFrames) {
+    if (fillFrames < 0) {
+        // 水位不连续（正在积累水位或刚丢弃了积压）：只按漂移估计补偿，恢复后重新开始滤波
+        mHasFill = false;
+        mFillErrorFrames.store(0.0f, std::memory_order_relaxed);
+        mAdjustmentPpm.store(static_cast<float>(mIntegral * 1e6), std::memory_order_relaxed);
+        return mIntegral;
+    }
+
+    const double dt = numFrames / mSampleRate;
+    mElapsedSeconds += dt;
+    if (!mHasFill) {
+        mHasFill = true;
+        mFilteredFill = fillFrames;
+    } else {
+        mFilteredFill += (fillFrames - mFilteredFill) * dt / (kFillTimeConstantSeconds + dt);
+    }
+
+    // 水位高于设定点说明输入比输出快，需要更快地消耗输入
+    const double error = mFilteredFill - mSetpoint;
+    const Gains &gains = mElapsedSeconds < kAcquireSeconds ? mAcquireGains : mTrackGains;
+    mIntegral = std::max(-kMaxAdjustment, std::min(kMaxAdjustment, mIntegral + gains.integral * error * dt));
+    const double adjustment = std::max(-kMaxAdjustment,
+                                       std::min(kMaxAdjustment, mIntegral + gains.proportional * error));
+
+    mDriftPpm.store(static_cast<float>(mIntegral * 1e6), std::memory_order_relaxed);
+    mAdjustmentPpm.store(static_cast<float>(adjustment * 1e6), std::memory_order_relaxed);
+    mFillErrorFrames.store(static_cast<float>(error), std::memory_order_relaxed);
+    return adjustment;
+}
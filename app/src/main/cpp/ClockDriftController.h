@@ -0,0 +1,66 @@
+#ifndef LISTENHELP6_CLOCKDRIFTCONTROLLER_H
+#define LISTENHELP6_CLOCKDRIFTCONTROLLER_H
+
+#include <atomic>
+#include <cstdint>
+
+// 输入与输出设备之间的时钟漂移补偿（只含控制逻辑，不访问音频流）
+// 两个设备各有自己的晶振，即使标称采样率相同，实际速率也会相差几十到几百ppm：
+// 输入快了数据泵中的积压越来越多，慢了越来越少，长时间运行后必然过载/欠载。
+// - 每个输出回调传入数据泵读取后剩余的输入帧数（水位），一阶低通滤掉突发大小造成的锯齿
+// - 设定点取数据泵允许范围（0到欠载/过载阈值之间）的中点：瞬时水位围绕平均值有约半个输入突发的起伏，
+//   放在中点两侧的余量最大，平均延迟也固定不变
+// - PI控制器按水位偏差输出重采样比例微调：比例项把水位拉回设定点，积分项收敛到两个时钟的实际偏差，
+//   参数按临界阻尼选取；启动后的kAcquireSeconds内用较快的闭环周期尽快捕获漂移（此时水位偏差最大），
+//   之后换成较慢的跟踪周期，减少突发锯齿引起的比例抖动；微调幅度限制在±kMaxAdjustment之内（1000ppm的音高变化不到2音分，听不出）
+// - 水位暂时未知（数据泵正在积累水位或刚丢弃了积压）时保持积分项（漂移估计）继续补偿，之后重新开始滤波
+// update在音频回调中调用，不分配内存；统计值可在其他线程读取。
+class ClockDriftController {
+public:
+    static constexpr double kFillTimeConstantSeconds = 1.0;
+    static constexpr double kAcquireSeconds = 60.0;
+    static constexpr double kAcquireLoopPeriodSeconds = 30.0;
+    static constexpr double kTrackLoopPeriodSeconds = 60.0;
+    static constexpr double kMaxAdjustment = 1000e-6;
+
+    ClockDriftController();
+
+    // 配置（非实时线程）：输出采样率与目标水位（均以输出采样率的帧计）
+    void configure(int32_t sampleRate, int32_t setpointFrames);
+
+    // 启动前调用：清除水位滤波和漂移估计
+    void reset();
+
+    // 每个输出回调调用一次：fillFrames为读取numFrames帧后剩余的输入帧数，水位未知或刚发生欠载/过载时传负值
+    // 返回重采样比例微调（正值表示更快地消耗输入）
+    double update(int32_t fillFrames, int32_t numFrames);
+
+    // 估计的时钟偏差（ppm，正值表示输入设备比输出快）与当前的比例微调（ppm）
+    float getDriftPpm() const { return mDriftPpm.load(std::memory_order_relaxed); }
+    float getAdjustmentPpm() const { return mAdjustmentPpm.load(std::memory_order_relaxed); }
+
+    // 滤波后的水位相对设定点的偏差（帧），水位未知时为0
+    float getFillErrorFrames() const { return mFillErrorFrames.load(std::memory_order_relaxed); }
+
+private:
+    double mSampleRate;
+    // 临界阻尼PI参数：每帧水位偏差对应的比例微调，每帧·秒水位偏差对应的比例微调
+    struct Gains {
+        double proportional;
+        double integral;
+    };
+    Gains computeGains(double loopPeriodSeconds) const;
+
+    Gains mAcquireGains;
+    Gains mTrackGains;
+    double mElapsedSeconds;               // reset之后经过的时间，用于切换捕获/跟踪参数
+    bool mHasFill;
+    double mFilteredFill;
+    double mSetpoint;
+    double mIntegral;                     // 积分项，稳定后等于时钟偏差
+    std::atomic<float> mDriftPpm;
+    std::atomic<float> mAdjustmentPpm;
+    std::atomic<float> mFillErrorFrames;
+};
+
+#endif //LISTENHELP6_CLOCKDRIFTCONTROLLER_H
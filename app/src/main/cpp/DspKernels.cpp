@@ -0,0 +1,136 @@
+#include "DspKernels.h"
+
+#if defined(__arm__)
+#include <sys/auxv.h>
+#include <asm/hwcap.h>
+#endif
+
+namespace dsp {
+
+namespace {
+
+const DspKernels *selectKernels() {
+#if defined(__aarch64__)
+    // ARMv8必定支持NEON
+    return &kNeonKernels;
+#elif defined(__arm__)
+    if (getauxval(AT_HWCAP) & HWCAP_NEON) {
+        return &kNeonKernels;
+    }
+    return &scalarKernels();
+#elif defined(LISTENHELP_HAS_X86_KERNELS)
+    // Android的x86/x86_64 ABI保证SSE，AVX2需要运行时检测
+    __builtin_cpu_init();
+    if (__builtin_cpu_supports("avx2") && __builtin_cpu_supports("fma")) {
+        return &kAvx2Kernels;
+    }
+    return &kSseKernels;
+#else
+    return &scalarKernels();
+#endif
+}
+
+} // namespace
+
+const DspKernels &kernels() {
+    static const DspKernels *selected = selectKernels();
+    return *selected;
+}
+
+int availableKernels(const DspKernels **kernelList, int maxCount) {
+    int count = 0;
+    if (count < maxCount) {
+        kernelList[count++] = &scalarKernels();
+    }
+#if defined(__aarch64__)
+    if (count < maxCount) {
+        kernelList[count++] = &kNeonKernels;
+    }
+#elif defined(__arm__)
+    if (count < maxCount && (getauxval(AT_HWCAP) & HWCAP_NEON)) {
+        kernelList[count++] = &kNeonKernels;
+    }
+#elif defined(LISTENHELP_HAS_X86_KERNELS)
+    if (count < maxCount) {
+        kernelList[count++] = &kSseKernels;
+    }
+    __builtin_cpu_init();
+    if (count < maxCount && __builtin_cpu_supports("avx2") && __builtin_cpu_supports("fma")) {
+        kernelList[count++] = &kAvx2Kernels;
+    }
+#endif
+    return count;
+}
+
+void computeBiquadBlock4(const BiquadCoefficients &c, BiquadBlock4 &block) {
+    // 状态空间形式：y = C*s + D*x，s' = A*s + B*x
+    // A = [[-a1, 1], [-a2, 0]]，B = [b1 - a1*b0, b2 - a2*b0]，C = [1, 0]，D = b0
+    const float a1 = c.a1;
+    const float a2 = c.a2;
+    const float B0 = c.b1 - a1 * c.b0;
+    const float B1 = c.b2 - a2 * c.b0;
+    
+    // 行向量 r_k = C*A^k，对应状态对第k个输出的贡献
+    float r0 = 1.0f;
+    float r1 = 0.0f;
+    // 冲激响应 h_0 = D，h_m = C*A^(m-1)*B
+    float h[4];
+    h[0] = c.b0;
+    for (int k = 0; k < 4; k++) {
+        block.cz1[k] = r0;
+        block.cz2[k] = r1;
+        if (k < 3) {
+            h[k + 1] = r0 * B0 + r1 * B1;
+        }
+        float next0 = -a1 * r0 - a2 * r1;
+        float next1 = r0;
+        r0 = next0;
+        r1 = next1;
+    }
+    
+    // 输入xj对输出yk的贡献为 h_(k-j)
+    for (int j = 0; j < 4; j++) {
+        for (int k = 0; k < 4; k++) {
+            block.cx[j][k] = k >= j ? h[k - j] : 0.0f;
+        }
+    }
+    
+    // 列向量 A^k*B，输入xj对新状态的贡献为 A^(3-j)*B
+    float v0 = B0;
+    float v1 = B1;
+    for (int k = 0; k < 4; k++) {
+        int j = 3 - k;
+        block.px[j][0] = v0;
+        block.px[j][1] = v1;
+        block.px[j][2] = 0.0f;
+        block.px[j][3] = 0.0f;
+        float next0 = -a1 * v0 + v1;
+        float next1 = -a2 * v0;
+        v0 = next0;
+        v1 = next1;
+    }
+    
+    // A^4 的两列，即旧状态对新状态的贡献
+    float e1[2] = {1.0f, 0.0f};
+    float e2[2] = {0.0f, 1.0f};
+    for (int k = 0; k < 4; k++) {
+        float n10 = -a1 * e1[0] + e1[1];
+        float n11 = -a2 * e1[0];
+        e1[0] = n10;
+        e1[1] = n11;
+        float n20 = -a1 * e2[0] + e2[1];
+        float n21 = -a2 * e2[0];
+        e2[0] = n20;
+        e2[1] = n21;
+    }
+    block.pz1[0] = e1[0];
+    block.pz1[1] = e1[1];
+    block.pz1[2] = 0.0f;
+    block.pz1[3] = 0.0f;
+    block.pz2[0] = e2[0];
+    block.pz2[1] = e2[1];
+    block.pz2[2] = 0.0f;
+    block.pz2[3] = 0.0f;
+}
+
+} // namespace dsp
@@ -0,0 +1,84 @@
+#ifndef LISTENHELP6_DSPKERNELS_H
+#define LISTENHELP6_DSPKERNELS_H
+
+#include <cstdint>
+#include "Biquad.h"
+
+// 逐样本DSP内核表
+// 每种指令集（标量、NEON、SSE、AVX2）各提供一份实现，运行时按CPU能力选择一次。
+// 所有内核都不分配内存、不调用libm，可在音频回调中使用；SIMD实现与标量参考实现的结果只允许有浮点舍入误差。
+struct DspKernels {
+    const char *name;
+
+    // buffer *= gain
+    void (*applyGain)(float *buffer, int32_t numSamples, float gain);
+
+    // buffer[i] *= gain + i * gainStep（增益线性渐变）
+    void (*applyGainRamp)(float *buffer, int32_t numSamples, float gain, float gainStep);
+
+    // buffer[i] = from[i] + (buffer[i] - from[i]) * (weight + i * weightStep)（从from线性交叉淡入到buffer）
+    void (*crossfade)(float *buffer, const float *from, int32_t numSamples, float weight, float weightStep);
+
+    // 二阶滤波器级联（单声道，原地处理），activeMask中未置位的段跳过并清零状态
+    void (*biquadCascade)(float *buffer, int32_t numSamples, const BiquadCoefficients *coeffs,
+                          BiquadState *states, int numSections, uint32_t activeMask);
+
+    // 浮点与16位整数互相转换（浮点范围[-1, 1]）
+    void (*floatToI16)(const float *input, int16_t *output, int32_t numSamples);
+    void (*i16ToFloat)(const int16_t *input, float *output, int32_t numSamples);
+
+    // 浮点与24位整数（每样本3字节，小端）互相转换
+    void (*floatToI24)(const float *input, uint8_t *output, int32_t numSamples);
+    void (*i24ToFloat)(const uint8_t *input, float *output, int32_t numSamples);
+
+    // 浮点与32位整数互相转换
+    void (*floatToI32)(const float *input, int32_t *output, int32_t numSamples);
+    void (*i32ToFloat)(const int32_t *input, float *output, int32_t numSamples);
+
+    // 返回 Σ a[i] * b[i]（FIR滤波器/重采样器的内积），求和顺序因实现而异
+    float (*dotProduct)(const float *a, const float *b, int32_t numSamples);
+};
+
+namespace dsp {
+
+// 当前CPU上最快的实现（首次调用时检测，应在非实时线程上先调用一次）
+const DspKernels &kernels();
+
+// 标量参考实现
+const DspKernels &scalarKernels();
+
+// 所有可在当前CPU上运行的实现，用于对比测试和基准测试，返回数量
+int availableKernels(const DspKernels **kernelList, int maxCount);
+
+// 二阶滤波器的4样本块状态空间形式：
+// 对于每4个输入x0..x3，输出 y = cz1*z1 + cz2*z2 + Σ cx[j]*xj，
+// 新状态 [z1, z2] = pz1*z1 + pz2*z2 + Σ px[j]*xj（仅前两个元素有效）。
+// 把递归展开成与输入无关的矩阵运算，使单声道IIR也能按4路并行计算。
+struct BiquadBlock4 {
+    float cz1[4];
+    float cz2[4];
+    float cx[4][4];
+    float pz1[4];
+    float pz2[4];
+    float px[4][4];
+};
+
+void computeBiquadBlock4(const BiquadCoefficients &coeffs, BiquadBlock4 &block);
+
+} // namespace dsp
+
+// 各指令集的内核表（仅在对应架构上编译，armeabi-v7a上NEON文件单独以-mfpu=neon编译）
+#if defined(__arm__) || defined(__aarch64__)
+#define LISTENHELP_HAS_NEON_KERNELS 1
+namespace dsp { extern const DspKernels kNeonKernels; }
+#endif
+
+#if defined(__i386__) || defined(__x86_64__)
+#define LISTENHELP_HAS_X86_KERNELS 1
+namespace dsp {
+extern const DspKernels kSseKernels;
+extern const DspKernels kAvx2Kernels;
+}
+#endif
+
+#endif //LISTENHELP6_DSPKERNELS_H
@@ -0,0 +1,250 @@
+#include "DspKernels.h"
+
+#if defined(LISTENHELP_HAS_X86_KERNELS)
+
+#include <immintrin.h>
+
+// AVX2 + FMA实现（本文件以-mavx2 -mfma编译，只有运行时检测通过才会被选用）
+namespace {
+
+void applyGain(float *buffer, int32_t numSamples, float gain) {
+    const __m256 vGain = _mm256_set1_ps(gain);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        _mm256_storeu_ps(buffer + i, _mm256_mul_ps(_mm256_loadu_ps(buffer + i), vGain));
+    }
+    dsp::scalarKernels().applyGain(buffer + i, numSamples - i, gain);
+}
+
+void applyGainRamp(float *buffer, int32_t numSamples, float gain, float gainStep) {
+    const __m256 vStart = _mm256_set1_ps(gain);
+    const __m256 vStep = _mm256_set1_ps(gainStep);
+    const __m256 vEight = _mm256_set1_ps(8.0f);
+    __m256 vIndex = _mm256_setr_ps(0.0f, 1.0f, 2.0f, 3.0f, 4.0f, 5.0f, 6.0f, 7.0f);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        __m256 vGain = _mm256_fmadd_ps(vIndex, vStep, vStart);
+        _mm256_storeu_ps(buffer + i, _mm256_mul_ps(_mm256_loadu_ps(buffer + i), vGain));
+        vIndex = _mm256_add_ps(vIndex, vEight);
+    }
+    dsp::scalarKernels().applyGainRamp(buffer + i, numSamples - i, gain + static_cast<float>(i) * gainStep, gainStep);
+}
+
+void crossfade(float *buffer, const float *from, int32_t numSamples, float weight, float weightStep) {
+    const __m256 vStart = _mm256_set1_ps(weight);
+    const __m256 vStep = _mm256_set1_ps(weightStep);
+    const __m256 vEight = _mm256_set1_ps(8.0f);
+    __m256 vIndex = _mm256_setr_ps(0.0f, 1.0f, 2.0f, 3.0f, 4.0f, 5.0f, 6.0f, 7.0f);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        __m256 vWeight = _mm256_fmadd_ps(vIndex, vStep, vStart);
+        __m256 vFrom = _mm256_loadu_ps(from + i);
+        __m256 vDiff = _mm256_sub_ps(_mm256_loadu_ps(buffer + i), vFrom);
+        _mm256_storeu_ps(buffer + i, _mm256_fmadd_ps(vDiff, vWeight, vFrom));
+        vIndex = _mm256_add_ps(vIndex, vEight);
+    }
+    dsp::scalarKernels().crossfade(buffer + i, from + i, numSamples - i,
+                                   weight + static_cast<float>(i) * weightStep, weightStep);
+}
+
+void processBiquad(float *buffer, int32_t numSamples, const BiquadCoefficients &coeffs, BiquadState &state) {
+    dsp::BiquadBlock4 block;
+    dsp::computeBiquadBlock4(coeffs, block);
+    
+    // 低4路计算4个输出，高4路计算新状态，一条FMA同时完成两者
+    const __m256 kz1 = _mm256_setr_m128(_mm_loadu_ps(block.cz1), _mm_loadu_ps(block.pz1));
+    const __m256 kz2 = _mm256_setr_m128(_mm_loadu_ps(block.cz2), _mm_loadu_ps(block.pz2));
+    const __m256 kx0 = _mm256_setr_m128(_mm_loadu_ps(block.cx[0]), _mm_loadu_ps(block.px[0]));
+    const __m256 kx1 = _mm256_setr_m128(_mm_loadu_ps(block.cx[1]), _mm_loadu_ps(block.px[1]));
+    const __m256 kx2 = _mm256_setr_m128(_mm_loadu_ps(block.cx[2]), _mm_loadu_ps(block.px[2]));
+    const __m256 kx3 = _mm256_setr_m128(_mm_loadu_ps(block.cx[3]), _mm_loadu_ps(block.px[3]));
+    
+    // 状态以广播形式保存在寄存器中，输入部分与状态无关，先算好再接上两条FMA，缩短递归依赖链
+    const __m256i laneZ1 = _mm256_set1_epi32(4);
+    const __m256i laneZ2 = _mm256_set1_epi32(5);
+    __m256 z1 = _mm256_set1_ps(state.z1);
+    __m256 z2 = _mm256_set1_ps(state.z2);
+    int32_t i = 0;
+    for (; i + 4 <= numSamples; i += 4) {
+        __m256 acc = _mm256_mul_ps(kx0, _mm256_broadcast_ss(buffer + i));
+        acc = _mm256_fmadd_ps(kx1, _mm256_broadcast_ss(buffer + i + 1), acc);
+        __m256 acc2 = _mm256_mul_ps(kx2, _mm256_broadcast_ss(buffer + i + 2));
+        acc2 = _mm256_fmadd_ps(kx3, _mm256_broadcast_ss(buffer + i + 3), acc2);
+        acc = _mm256_add_ps(acc, acc2);
+        acc = _mm256_fmadd_ps(kz2, z2, acc);
+        acc = _mm256_fmadd_ps(kz1, z1, acc);
+        
+        _mm_storeu_ps(buffer + i, _mm256_castps256_ps128(acc));
+        z1 = _mm256_permutevar8x32_ps(acc, laneZ1);
+        z2 = _mm256_permutevar8x32_ps(acc, laneZ2);
+    }
+    
+    state.z1 = _mm256_cvtss_f32(z1);
+    state.z2 = _mm256_cvtss_f32(z2);
+    biquad::process(buffer + i, numSamples - i, coeffs, state);
+}
+
+void biquadCascade(float *buffer, int32_t numSamples, const BiquadCoefficients *coeffs,
+                   BiquadState *states, int numSections, uint32_t activeMask) {
+    for (int section = 0; section < numSections; section++) {
+        if (activeMask & (1u << section)) {
+            processBiquad(buffer, numSamples, coeffs[section], states[section]);
+        } else {
+            states[section].z1 = 0.0f;
+            states[section].z2 = 0.0f;
+        }
+    }
+}
+
+void floatToI16(const float *input, int16_t *output, int32_t numSamples) {
+    const __m256 vScale = _mm256_set1_ps(32768.0f);
+    const __m256 vMax = _mm256_set1_ps(32767.0f);
+    const __m256 vMin = _mm256_set1_ps(-32768.0f);
+    const __m256 vHalf = _mm256_set1_ps(0.5f);
+    const __m256 signMask = _mm256_castsi256_ps(_mm256_set1_epi32(0x80000000));
+    int32_t i = 0;
+    for (; i + 16 <= numSamples; i += 16) {
+        __m256 a = _mm256_mul_ps(_mm256_loadu_ps(input + i), vScale);
+        __m256 b = _mm256_mul_ps(_mm256_loadu_ps(input + i + 8), vScale);
+        a = _mm256_max_ps(_mm256_min_ps(a, vMax), vMin);
+        b = _mm256_max_ps(_mm256_min_ps(b, vMax), vMin);
+        a = _mm256_add_ps(a, _mm256_or_ps(vHalf, _mm256_and_ps(a, signMask)));
+        b = _mm256_add_ps(b, _mm256_or_ps(vHalf, _mm256_and_ps(b, signMask)));
+        // packs按128位通道交错，需要重新排列
+        __m256i packed = _mm256_packs_epi32(_mm256_cvttps_epi32(a), _mm256_cvttps_epi32(b));
+        packed = _mm256_permute4x64_epi64(packed, _MM_SHUFFLE(3, 1, 2, 0));
+        _mm256_storeu_si256(reinterpret_cast<__m256i*>(output + i), packed);
+    }
+    dsp::scalarKernels().floatToI16(input + i, output + i, numSamples - i);
+}
+
+void i16ToFloat(const int16_t *input, float *output, int32_t numSamples) {
+    const __m256 vScale = _mm256_set1_ps(1.0f / 32768.0f);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        __m128i samples = _mm_loadu_si128(reinterpret_cast<const __m128i*>(input + i));
+        __m256 converted = _mm256_cvtepi32_ps(_mm256_cvtepi16_epi32(samples));
+        _mm256_storeu_ps(output + i, _mm256_mul_ps(converted, vScale));
+    }
+    dsp::scalarKernels().i16ToFloat(input + i, output + i, numSamples - i);
+}
+
+// 8个浮点样本按scale缩放、限幅后远离零舍入为整数（与标量实现相同的运算顺序）
+inline __m256i roundToInt(__m256 x, __m256 scale, __m256 maxValue, __m256 minValue) {
+    const __m256 signMask = _mm256_castsi256_ps(_mm256_set1_epi32(0x80000000));
+    x = _mm256_max_ps(_mm256_min_ps(_mm256_mul_ps(x, scale), maxValue), minValue);
+    x = _mm256_add_ps(x, _mm256_or_ps(_mm256_set1_ps(0.5f), _mm256_and_ps(x, signMask)));
+    return _mm256_cvttps_epi32(x);
+}
+
+void floatToI24(const float *input, uint8_t *output, int32_t numSamples) {
+    const __m256 vScale = _mm256_set1_ps(8388608.0f);
+    const __m256 vMax = _mm256_set1_ps(8388607.0f);
+    const __m256 vMin = _mm256_set1_ps(-8388608.0f);
+    // 每个128位通道内取各样本的低3字节紧排到前12字节，再把两个通道的12字节拼成连续的24字节
+    const __m256i byteShuffle = _mm256_setr_epi8(
+            0, 1, 2, 4, 5, 6, 8, 9, 10, 12, 13, 14, -1, -1, -1, -1,
+            0, 1, 2, 4, 5, 6, 8, 9, 10, 12, 13, 14, -1, -1, -1, -1);
+    const __m256i laneMerge = _mm256_setr_epi32(0, 1, 2, 4, 5, 6, 3, 7);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        __m256i values = roundToInt(_mm256_loadu_ps(input + i), vScale, vMax, vMin);
+        __m256i packed = _mm256_permutevar8x32_epi32(_mm256_shuffle_epi8(values, byteShuffle), laneMerge);
+        _mm_storeu_si128(reinterpret_cast<__m128i*>(output + 3 * i), _mm256_castsi256_si128(packed));
+        _mm_storel_epi64(reinterpret_cast<__m128i*>(output + 3 * i + 16), _mm256_extracti128_si256(packed, 1));
+    }
+    dsp::scalarKernels().floatToI24(input + i, output + 3 * i, numSamples - i);
+}
+
+void i24ToFloat(const uint8_t *input, float *output, int32_t numSamples) {
+    const __m256 vScale = _mm256_set1_ps(1.0f / 2147483648.0f);
+    // 24字节先按32位分到两个128位通道（各12字节），再在通道内把每3字节放到32位整数的高24位
+    const __m256i laneSplit = _mm256_setr_epi32(0, 1, 2, 0, 3, 4, 5, 0);
+    const __m256i byteShuffle = _mm256_setr_epi8(
+            -1, 0, 1, 2, -1, 3, 4, 5, -1, 6, 7, 8, -1, 9, 10, 11,
+            -1, 0, 1, 2, -1, 3, 4, 5, -1, 6, 7, 8, -1, 9, 10, 11);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        // 只读这24字节，不越界
+        __m128i low = _mm_loadu_si128(reinterpret_cast<const __m128i*>(input + 3 * i));
+        __m128i high = _mm_loadl_epi64(reinterpret_cast<const __m128i*>(input + 3 * i + 16));
+        __m256i bytes = _mm256_inserti128_si256(_mm256_castsi128_si256(low), high, 1);
+        __m256i values = _mm256_shuffle_epi8(_mm256_permutevar8x32_epi32(bytes, laneSplit), byteShuffle);
+        _mm256_storeu_ps(output + i, _mm256_mul_ps(_mm256_cvtepi32_ps(values), vScale));
+    }
+    dsp::scalarKernels().i24ToFloat(input + 3 * i, output + i, numSamples - i);
+}
+
+void floatToI32(const float *input, int32_t *output, int32_t numSamples) {
+    const __m256 vScale = _mm256_set1_ps(2147483648.0f);
+    const __m256 vMax = _mm256_set1_ps(2147483520.0f);
+    const __m256 vMin = _mm256_set1_ps(-2147483648.0f);
+    int32_t i = 0;
+    for (; i + 16 <= numSamples; i += 16) {
+        __m256i a = roundToInt(_mm256_loadu_ps(input + i), vScale, vMax, vMin);
+        __m256i b = roundToInt(_mm256_loadu_ps(input + i + 8), vScale, vMax, vMin);
+        _mm256_storeu_si256(reinterpret_cast<__m256i*>(output + i), a);
+        _mm256_storeu_si256(reinterpret_cast<__m256i*>(output + i + 8), b);
+    }
+    dsp::scalarKernels().floatToI32(input + i, output + i, numSamples - i);
+}
+
+void i32ToFloat(const int32_t *input, float *output, int32_t numSamples) {
+    const __m256 vScale = _mm256_set1_ps(1.0f / 2147483648.0f);
+    int32_t i = 0;
+    for (; i + 16 <= numSamples; i += 16) {
+        __m256i a = _mm256_loadu_si256(reinterpret_cast<const __m256i*>(input + i));
+        __m256i b = _mm256_loadu_si256(reinterpret_cast<const __m256i*>(input + i + 8));
+        _mm256_storeu_ps(output + i, _mm256_mul_ps(_mm256_cvtepi32_ps(a), vScale));
+        _mm256_storeu_ps(output + i + 8, _mm256_mul_ps(_mm256_cvtepi32_ps(b), vScale));
+    }
+    dsp::scalarKernels().i32ToFloat(input + i, output + i, numSamples - i);
+}
+
+float dotProduct(const float *a, const float *b, int32_t numSamples) {
+    // 两个累加器交替使用，隐藏FMA延迟
+    __m256 sum0 = _mm256_setzero_ps();
+    __m256 sum1 = _mm256_setzero_ps();
+    int32_t i = 0;
+    for (; i + 16 <= numSamples; i += 16) {
+        sum0 = _mm256_fmadd_ps(_mm256_loadu_ps(a + i), _mm256_loadu_ps(b + i), sum0);
+        sum1 = _mm256_fmadd_ps(_mm256_loadu_ps(a + i + 8), _mm256_loadu_ps(b + i + 8), sum1);
+    }
+    if (i + 8 <= numSamples) {
+        sum0 = _mm256_fmadd_ps(_mm256_loadu_ps(a + i), _mm256_loadu_ps(b + i), sum0);
+        i += 8;
+    }
+    __m256 sum8 = _mm256_add_ps(sum0, sum1);
+    __m128 sum = _mm_add_ps(_mm256_castps256_ps128(sum8), _mm256_extractf128_ps(sum8, 1));
+    sum = _mm_add_ps(sum, _mm_movehl_ps(sum, sum));
+    sum = _mm_add_ss(sum, _mm_shuffle_ps(sum, sum, 1));
+    float result = _mm_cvtss_f32(sum);
+    // 每个输出样本调用一次，抽头数通常是8的倍数，没有尾部时不调用标量实现
+    if (i < numSamples) {
+        result += dsp::scalarKernels().dotProduct(a + i, b + i, numSamples - i);
+    }
+    return result;
+}
+
+} // namespace
+
+namespace dsp {
+
+const DspKernels kAvx2Kernels = {
+        "avx2",
+        applyGain,
+        applyGainRamp,
+        crossfade,
+        biquadCascade,
+        floatToI16,
+        i16ToFloat,
+        floatToI24,
+        i24ToFloat,
+        floatToI32,
+        i32ToFloat,
+        dotProduct,
+};
+
+} // namespace dsp
+
+#endif
@@ -0,0 +1,248 @@
+#include "DspKernels.h"
+
+#if defined(LISTENHELP_HAS_NEON_KERNELS)
+
+#include <arm_neon.h>
+
+// NEON实现（armeabi-v7a上本文件以-mfpu=neon编译，只有运行时检测通过才会被选用）
+// 只使用ARMv7也有的指令，舍入通过加减0.5后截断完成，不依赖vcvtnq
+namespace {
+
+void applyGain(float *buffer, int32_t numSamples, float gain) {
+    int32_t i = 0;
+    for (; i + 4 <= numSamples; i += 4) {
+        vst1q_f32(buffer + i, vmulq_n_f32(vld1q_f32(buffer + i), gain));
+    }
+    dsp::scalarKernels().applyGain(buffer + i, numSamples - i, gain);
+}
+
+void applyGainRamp(float *buffer, int32_t numSamples, float gain, float gainStep) {
+    static const float kIndices[4] = {0.0f, 1.0f, 2.0f, 3.0f};
+    const float32x4_t vStart = vdupq_n_f32(gain);
+    float32x4_t vIndex = vld1q_f32(kIndices);
+    int32_t i = 0;
+    for (; i + 4 <= numSamples; i += 4) {
+        float32x4_t vGain = vmlaq_n_f32(vStart, vIndex, gainStep);
+        vst1q_f32(buffer + i, vmulq_f32(vld1q_f32(buffer + i), vGain));
+        vIndex = vaddq_f32(vIndex, vdupq_n_f32(4.0f));
+    }
+    dsp::scalarKernels().applyGainRamp(buffer + i, numSamples - i, gain + static_cast<float>(i) * gainStep, gainStep);
+}
+
+void crossfade(float *buffer, const float *from, int32_t numSamples, float weight, float weightStep) {
+    static const float kIndices[4] = {0.0f, 1.0f, 2.0f, 3.0f};
+    const float32x4_t vStart = vdupq_n_f32(weight);
+    float32x4_t vIndex = vld1q_f32(kIndices);
+    int32_t i = 0;
+    for (; i + 4 <= numSamples; i += 4) {
+        float32x4_t vWeight = vmlaq_n_f32(vStart, vIndex, weightStep);
+        float32x4_t vFrom = vld1q_f32(from + i);
+        float32x4_t vDiff = vsubq_f32(vld1q_f32(buffer + i), vFrom);
+        vst1q_f32(buffer + i, vmlaq_f32(vFrom, vDiff, vWeight));
+        vIndex = vaddq_f32(vIndex, vdupq_n_f32(4.0f));
+    }
+    dsp::scalarKernels().crossfade(buffer + i, from + i, numSamples - i,
+                                   weight + static_cast<float>(i) * weightStep, weightStep);
+}
+
+void processBiquad(float *buffer, int32_t numSamples, const BiquadCoefficients &coeffs, BiquadState &state) {
+    dsp::BiquadBlock4 block;
+    dsp::computeBiquadBlock4(coeffs, block);
+    
+    const float32x4_t cz1 = vld1q_f32(block.cz1);
+    const float32x4_t cz2 = vld1q_f32(block.cz2);
+    const float32x4_t cx0 = vld1q_f32(block.cx[0]);
+    const float32x4_t cx1 = vld1q_f32(block.cx[1]);
+    const float32x4_t cx2 = vld1q_f32(block.cx[2]);
+    const float32x4_t cx3 = vld1q_f32(block.cx[3]);
+    const float32x4_t pz1 = vld1q_f32(block.pz1);
+    const float32x4_t pz2 = vld1q_f32(block.pz2);
+    const float32x4_t px0 = vld1q_f32(block.px[0]);
+    const float32x4_t px1 = vld1q_f32(block.px[1]);
+    const float32x4_t px2 = vld1q_f32(block.px[2]);
+    const float32x4_t px3 = vld1q_f32(block.px[3]);
+    
+    float z1 = state.z1;
+    float z2 = state.z2;
+    int32_t i = 0;
+    for (; i + 4 <= numSamples; i += 4) {
+        float x0 = buffer[i];
+        float x1 = buffer[i + 1];
+        float x2 = buffer[i + 2];
+        float x3 = buffer[i + 3];
+        
+        // 输入部分与状态无关，先算好再加上状态项，缩短递归依赖链
+        float32x4_t y = vmlaq_n_f32(vmulq_n_f32(cx0, x0), cx1, x1);
+        y = vaddq_f32(y, vmlaq_n_f32(vmulq_n_f32(cx2, x2), cx3, x3));
+        y = vmlaq_n_f32(y, cz2, z2);
+        y = vmlaq_n_f32(y, cz1, z1);
+        
+        float32x4_t s = vmlaq_n_f32(vmulq_n_f32(px0, x0), px1, x1);
+        s = vaddq_f32(s, vmlaq_n_f32(vmulq_n_f32(px2, x2), px3, x3));
+        s = vmlaq_n_f32(s, pz2, z2);
+        s = vmlaq_n_f32(s, pz1, z1);
+        
+        vst1q_f32(buffer + i, y);
+        z1 = vgetq_lane_f32(s, 0);
+        z2 = vgetq_lane_f32(s, 1);
+    }
+    
+    state.z1 = z1;
+    state.z2 = z2;
+    biquad::process(buffer + i, numSamples - i, coeffs, state);
+}
+
+void biquadCascade(float *buffer, int32_t numSamples, const BiquadCoefficients *coeffs,
+                   BiquadState *states, int numSections, uint32_t activeMask) {
+    for (int section = 0; section < numSections; section++) {
+        if (activeMask & (1u << section)) {
+            processBiquad(buffer, numSamples, coeffs[section], states[section]);
+        } else {
+            states[section].z1 = 0.0f;
+            states[section].z2 = 0.0f;
+        }
+    }
+}
+
+void floatToI16(const float *input, int16_t *output, int32_t numSamples) {
+    const float32x4_t vMax = vdupq_n_f32(32767.0f);
+    const float32x4_t vMin = vdupq_n_f32(-32768.0f);
+    const uint32x4_t vHalf = vreinterpretq_u32_f32(vdupq_n_f32(0.5f));
+    const uint32x4_t signMask = vdupq_n_u32(0x80000000);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        float32x4_t a = vmulq_n_f32(vld1q_f32(input + i), 32768.0f);
+        float32x4_t b = vmulq_n_f32(vld1q_f32(input + i + 4), 32768.0f);
+        a = vmaxq_f32(vminq_f32(a, vMax), vMin);
+        b = vmaxq_f32(vminq_f32(b, vMax), vMin);
+        // 加上与样本同号的0.5后截断，即远离零舍入
+        a = vaddq_f32(a, vreinterpretq_f32_u32(vorrq_u32(vHalf, vandq_u32(vreinterpretq_u32_f32(a), signMask))));
+        b = vaddq_f32(b, vreinterpretq_f32_u32(vorrq_u32(vHalf, vandq_u32(vreinterpretq_u32_f32(b), signMask))));
+        int16x8_t packed = vcombine_s16(vqmovn_s32(vcvtq_s32_f32(a)), vqmovn_s32(vcvtq_s32_f32(b)));
+        vst1q_s16(output + i, packed);
+    }
+    dsp::scalarKernels().floatToI16(input + i, output + i, numSamples - i);
+}
+
+void i16ToFloat(const int16_t *input, float *output, int32_t numSamples) {
+    const float scale = 1.0f / 32768.0f;
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        int16x8_t samples = vld1q_s16(input + i);
+        float32x4_t low = vcvtq_f32_s32(vmovl_s16(vget_low_s16(samples)));
+        float32x4_t high = vcvtq_f32_s32(vmovl_s16(vget_high_s16(samples)));
+        vst1q_f32(output + i, vmulq_n_f32(low, scale));
+        vst1q_f32(output + i + 4, vmulq_n_f32(high, scale));
+    }
+    dsp::scalarKernels().i16ToFloat(input + i, output + i, numSamples - i);
+}
+
+// 4个浮点样本按scale缩放、限幅后远离零舍入为整数（与标量实现相同的运算顺序）
+inline int32x4_t roundToInt(float32x4_t x, float scale, float32x4_t maxValue, float32x4_t minValue) {
+    const uint32x4_t vHalf = vreinterpretq_u32_f32(vdupq_n_f32(0.5f));
+    const uint32x4_t signMask = vdupq_n_u32(0x80000000);
+    x = vmaxq_f32(vminq_f32(vmulq_n_f32(x, scale), maxValue), minValue);
+    x = vaddq_f32(x, vreinterpretq_f32_u32(vorrq_u32(vHalf, vandq_u32(vreinterpretq_u32_f32(x), signMask))));
+    return vcvtq_s32_f32(x);
+}
+
+void floatToI24(const float *input, uint8_t *output, int32_t numSamples) {
+    const float32x4_t vMax = vdupq_n_f32(8388607.0f);
+    const float32x4_t vMin = vdupq_n_f32(-8388608.0f);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        int32x4_t a = roundToInt(vld1q_f32(input + i), 8388608.0f, vMax, vMin);
+        int32x4_t b = roundToInt(vld1q_f32(input + i + 4), 8388608.0f, vMax, vMin);
+        // 8个样本的低16位和高16位分开，再拆成3个字节平面，交错存储为每样本3字节
+        uint16x8x2_t halves = vuzpq_u16(vreinterpretq_u16_s32(a), vreinterpretq_u16_s32(b));
+        uint8x8x3_t bytes;
+        bytes.val[0] = vmovn_u16(halves.val[0]);
+        bytes.val[1] = vshrn_n_u16(halves.val[0], 8);
+        bytes.val[2] = vmovn_u16(halves.val[1]);
+        vst3_u8(output + 3 * i, bytes);
+    }
+    dsp::scalarKernels().floatToI24(input + i, output + 3 * i, numSamples - i);
+}
+
+void i24ToFloat(const uint8_t *input, float *output, int32_t numSamples) {
+    const float scale = 1.0f / 2147483648.0f;
+    const uint8x8_t zero = vdup_n_u8(0);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        // 解交错为3个字节平面，再按[0, 字节0, 字节1, 字节2]交错成32位整数（样本在高24位）
+        uint8x8x3_t bytes = vld3_u8(input + 3 * i);
+        uint8x8x2_t low = vzip_u8(zero, bytes.val[0]);
+        uint8x8x2_t high = vzip_u8(bytes.val[1], bytes.val[2]);
+        uint16x8x2_t words = vzipq_u16(vreinterpretq_u16_u8(vcombine_u8(low.val[0], low.val[1])),
+                                       vreinterpretq_u16_u8(vcombine_u8(high.val[0], high.val[1])));
+        float32x4_t a = vcvtq_f32_s32(vreinterpretq_s32_u16(words.val[0]));
+        float32x4_t b = vcvtq_f32_s32(vreinterpretq_s32_u16(words.val[1]));
+        vst1q_f32(output + i, vmulq_n_f32(a, scale));
+        vst1q_f32(output + i + 4, vmulq_n_f32(b, scale));
+    }
+    dsp::scalarKernels().i24ToFloat(input + 3 * i, output + i, numSamples - i);
+}
+
+void floatToI32(const float *input, int32_t *output, int32_t numSamples) {
+    const float32x4_t vMax = vdupq_n_f32(2147483520.0f);
+    const float32x4_t vMin = vdupq_n_f32(-2147483648.0f);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        vst1q_s32(output + i, roundToInt(vld1q_f32(input + i), 2147483648.0f, vMax, vMin));
+        vst1q_s32(output + i + 4, roundToInt(vld1q_f32(input + i + 4), 2147483648.0f, vMax, vMin));
+    }
+    dsp::scalarKernels().floatToI32(input + i, output + i, numSamples - i);
+}
+
+void i32ToFloat(const int32_t *input, float *output, int32_t numSamples) {
+    const float scale = 1.0f / 2147483648.0f;
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        vst1q_f32(output + i, vmulq_n_f32(vcvtq_f32_s32(vld1q_s32(input + i)), scale));
+        vst1q_f32(output + i + 4, vmulq_n_f32(vcvtq_f32_s32(vld1q_s32(input + i + 4)), scale));
+    }
+    dsp::scalarKernels().i32ToFloat(input + i, output + i, numSamples - i);
+}
+
+float dotProduct(const float *a, const float *b, int32_t numSamples) {
+    // 两个累加器交替使用，隐藏乘加延迟
+    float32x4_t sum0 = vdupq_n_f32(0.0f);
+    float32x4_t sum1 = vdupq_n_f32(0.0f);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        sum0 = vmlaq_f32(sum0, vld1q_f32(a + i), vld1q_f32(b + i));
+        sum1 = vmlaq_f32(sum1, vld1q_f32(a + i + 4), vld1q_f32(b + i + 4));
+    }
+    float32x4_t sum = vaddq_f32(sum0, sum1);
+    float32x2_t pair = vadd_f32(vget_low_f32(sum), vget_high_f32(sum));
+    pair = vpadd_f32(pair, pair);
+    float result = vget_lane_f32(pair, 0);
+    // 每个输出样本调用一次，抽头数通常是8的倍数，没有尾部时不调用标量实现
+    if (i < numSamples) {
+        result += dsp::scalarKernels().dotProduct(a + i, b + i, numSamples - i);
+    }
+    return result;
+}
+
+} // namespace
+
+namespace dsp {
+
+const DspKernels kNeonKernels = {
+        "neon",
+        applyGain,
+        applyGainRamp,
+        crossfade,
+        biquadCascade,
+        floatToI16,
+        i16ToFloat,
+        floatToI24,
+        i24ToFloat,
+        floatToI32,
+        i32ToFloat,
+        dotProduct,
+};
+
+} // namespace dsp
+
+#endif
@@ -0,0 +1,126 @@
+#include "DspKernels.h"
+
+// 标量参考实现：所有SIMD实现都以此为准
+namespace {
+
+void applyGain(float *buffer, int32_t numSamples, float gain) {
+    for (int32_t i = 0; i < numSamples; i++) {
+        buffer[i] *= gain;
+    }
+}
+
+void applyGainRamp(float *buffer, int32_t numSamples, float gain, float gainStep) {
+    for (int32_t i = 0; i < numSamples; i++) {
+        buffer[i] *= gain + static_cast<float>(i) * gainStep;
+    }
+}
+
+void crossfade(float *buffer, const float *from, int32_t numSamples, float weight, float weightStep) {
+    for (int32_t i = 0; i < numSamples; i++) {
+        float w = weight + static_cast<float>(i) * weightStep;
+        buffer[i] = from[i] + (buffer[i] - from[i]) * w;
+    }
+}
+
+void biquadCascade(float *buffer, int32_t numSamples, const BiquadCoefficients *coeffs,
+                   BiquadState *states, int numSections, uint32_t activeMask) {
+    for (int section = 0; section < numSections; section++) {
+        if (activeMask & (1u << section)) {
+            biquad::process(buffer, numSamples, coeffs[section], states[section]);
+        } else {
+            states[section].z1 = 0.0f;
+            states[section].z2 = 0.0f;
+        }
+    }
+}
+
+// 整数 -> 浮点 -> 整数往返精确：转换为整数使用与反方向相同的比例（2^15、2^23、2^31），正满量程1.0限幅到最大整数
+void floatToI16(const float *input, int16_t *output, int32_t numSamples) {
+    for (int32_t i = 0; i < numSamples; i++) {
+        float sample = input[i] * 32768.0f;
+        sample = sample > 32767.0f ? 32767.0f : sample;
+        sample = sample < -32768.0f ? -32768.0f : sample;
+        // 四舍五入（远离零）
+        output[i] = static_cast<int16_t>(sample < 0.0f ? sample - 0.5f : sample + 0.5f);
+    }
+}
+
+void i16ToFloat(const int16_t *input, float *output, int32_t numSamples) {
+    const float scale = 1.0f / 32768.0f;
+    for (int32_t i = 0; i < numSamples; i++) {
+        output[i] = input[i] * scale;
+    }
+}
+
+void floatToI24(const float *input, uint8_t *output, int32_t numSamples) {
+    for (int32_t i = 0; i < numSamples; i++) {
+        float sample = input[i] * 8388608.0f;
+        sample = sample > 8388607.0f ? 8388607.0f : sample;
+        sample = sample < -8388608.0f ? -8388608.0f : sample;
+        int32_t value = static_cast<int32_t>(sample < 0.0f ? sample - 0.5f : sample + 0.5f);
+        output[3 * i] = static_cast<uint8_t>(value);
+        output[3 * i + 1] = static_cast<uint8_t>(value >> 8);
+        output[3 * i + 2] = static_cast<uint8_t>(value >> 16);
+    }
+}
+
+void i24ToFloat(const uint8_t *input, float *output, int32_t numSamples) {
+    const float scale = 1.0f / 2147483648.0f;
+    for (int32_t i = 0; i < numSamples; i++) {
+        // 3个字节放到32位整数的高24位，符号位随之就位
+        uint32_t bits = static_cast<uint32_t>(input[3 * i]) << 8
+                        | static_cast<uint32_t>(input[3 * i + 1]) << 16
+                        | static_cast<uint32_t>(input[3 * i + 2]) << 24;
+        output[i] = static_cast<int32_t>(bits) * scale;
+    }
+}
+
+void floatToI32(const float *input, int32_t *output, int32_t numSamples) {
+    for (int32_t i = 0; i < numSamples; i++) {
+        // 2^31 - 1在单精度下舍入为2^31，已超出int32范围，上限取小于2^31的最大浮点数
+        float sample = input[i] * 2147483648.0f;
+        sample = sample > 2147483520.0f ? 2147483520.0f : sample;
+        sample = sample < -2147483648.0f ? -2147483648.0f : sample;
+        output[i] = static_cast<int32_t>(sample < 0.0f ? sample - 0.5f : sample + 0.5f);
+    }
+}
+
+void i32ToFloat(const int32_t *input, float *output, int32_t numSamples) {
+    const float scale = 1.0f / 2147483648.0f;
+    for (int32_t i = 0; i < numSamples; i++) {
+        output[i] = input[i] * scale;
+    }
+}
+
+float dotProduct(const float *a, const float *b, int32_t numSamples) {
+    float sum = 0.0f;
+    for (int32_t i = 0; i < numSamples; i++) {
+        sum += a[i] * b[i];
+    }
+    return sum;
+}
+
+const DspKernels kScalarKernels = {
+        "scalar",
+        applyGain,
+        applyGainRamp,
+        crossfade,
+        biquadCascade,
+        floatToI16,
+        i16ToFloat,
+        floatToI24,
+        i24ToFloat,
+        floatToI32,
+        i32ToFloat,
+        dotProduct,
+};
+
+} // namespace
+
+namespace dsp {
+
+const DspKernels &scalarKernels() {
+    return kScalarKernels;
+}
+
+} // namespace dsp
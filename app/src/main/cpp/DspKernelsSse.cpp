@@ -0,0 +1,266 @@
+#include "DspKernels.h"
+
+#if defined(LISTENHELP_HAS_X86_KERNELS)
+
+#include <emmintrin.h>
+#include <cstring>
+
+// SSE2实现（Android x86/x86_64 ABI的基线指令集）
+namespace {
+
+void applyGain(float *buffer, int32_t numSamples, float gain) {
+    const __m128 vGain = _mm_set1_ps(gain);
+    int32_t i = 0;
+    for (; i + 4 <= numSamples; i += 4) {
+        _mm_storeu_ps(buffer + i, _mm_mul_ps(_mm_loadu_ps(buffer + i), vGain));
+    }
+    dsp::scalarKernels().applyGain(buffer + i, numSamples - i, gain);
+}
+
+void applyGainRamp(float *buffer, int32_t numSamples, float gain, float gainStep) {
+    const __m128 vStart = _mm_set1_ps(gain);
+    const __m128 vStep = _mm_set1_ps(gainStep);
+    const __m128 vFour = _mm_set1_ps(4.0f);
+    __m128 vIndex = _mm_setr_ps(0.0f, 1.0f, 2.0f, 3.0f);
+    int32_t i = 0;
+    for (; i + 4 <= numSamples; i += 4) {
+        __m128 vGain = _mm_add_ps(vStart, _mm_mul_ps(vIndex, vStep));
+        _mm_storeu_ps(buffer + i, _mm_mul_ps(_mm_loadu_ps(buffer + i), vGain));
+        vIndex = _mm_add_ps(vIndex, vFour);
+    }
+    dsp::scalarKernels().applyGainRamp(buffer + i, numSamples - i, gain + static_cast<float>(i) * gainStep, gainStep);
+}
+
+void crossfade(float *buffer, const float *from, int32_t numSamples, float weight, float weightStep) {
+    const __m128 vStart = _mm_set1_ps(weight);
+    const __m128 vStep = _mm_set1_ps(weightStep);
+    const __m128 vFour = _mm_set1_ps(4.0f);
+    __m128 vIndex = _mm_setr_ps(0.0f, 1.0f, 2.0f, 3.0f);
+    int32_t i = 0;
+    for (; i + 4 <= numSamples; i += 4) {
+        __m128 vWeight = _mm_add_ps(vStart, _mm_mul_ps(vIndex, vStep));
+        __m128 vFrom = _mm_loadu_ps(from + i);
+        __m128 vDiff = _mm_sub_ps(_mm_loadu_ps(buffer + i), vFrom);
+        _mm_storeu_ps(buffer + i, _mm_add_ps(vFrom, _mm_mul_ps(vDiff, vWeight)));
+        vIndex = _mm_add_ps(vIndex, vFour);
+    }
+    dsp::scalarKernels().crossfade(buffer + i, from + i, numSamples - i,
+                                   weight + static_cast<float>(i) * weightStep, weightStep);
+}
+
+void processBiquad(float *buffer, int32_t numSamples, const BiquadCoefficients &coeffs, BiquadState &state) {
+    dsp::BiquadBlock4 block;
+    dsp::computeBiquadBlock4(coeffs, block);
+    
+    const __m128 cz1 = _mm_loadu_ps(block.cz1);
+    const __m128 cz2 = _mm_loadu_ps(block.cz2);
+    const __m128 cx0 = _mm_loadu_ps(block.cx[0]);
+    const __m128 cx1 = _mm_loadu_ps(block.cx[1]);
+    const __m128 cx2 = _mm_loadu_ps(block.cx[2]);
+    const __m128 cx3 = _mm_loadu_ps(block.cx[3]);
+    const __m128 pz1 = _mm_loadu_ps(block.pz1);
+    const __m128 pz2 = _mm_loadu_ps(block.pz2);
+    const __m128 px0 = _mm_loadu_ps(block.px[0]);
+    const __m128 px1 = _mm_loadu_ps(block.px[1]);
+    const __m128 px2 = _mm_loadu_ps(block.px[2]);
+    const __m128 px3 = _mm_loadu_ps(block.px[3]);
+    
+    __m128 z1 = _mm_set1_ps(state.z1);
+    __m128 z2 = _mm_set1_ps(state.z2);
+    int32_t i = 0;
+    for (; i + 4 <= numSamples; i += 4) {
+        __m128 x = _mm_loadu_ps(buffer + i);
+        __m128 x0 = _mm_shuffle_ps(x, x, _MM_SHUFFLE(0, 0, 0, 0));
+        __m128 x1 = _mm_shuffle_ps(x, x, _MM_SHUFFLE(1, 1, 1, 1));
+        __m128 x2 = _mm_shuffle_ps(x, x, _MM_SHUFFLE(2, 2, 2, 2));
+        __m128 x3 = _mm_shuffle_ps(x, x, _MM_SHUFFLE(3, 3, 3, 3));
+        
+        __m128 y = _mm_add_ps(_mm_mul_ps(cz1, z1), _mm_mul_ps(cz2, z2));
+        y = _mm_add_ps(y, _mm_add_ps(_mm_mul_ps(cx0, x0), _mm_mul_ps(cx1, x1)));
+        y = _mm_add_ps(y, _mm_add_ps(_mm_mul_ps(cx2, x2), _mm_mul_ps(cx3, x3)));
+        
+        __m128 s = _mm_add_ps(_mm_mul_ps(pz1, z1), _mm_mul_ps(pz2, z2));
+        s = _mm_add_ps(s, _mm_add_ps(_mm_mul_ps(px0, x0), _mm_mul_ps(px1, x1)));
+        s = _mm_add_ps(s, _mm_add_ps(_mm_mul_ps(px2, x2), _mm_mul_ps(px3, x3)));
+        
+        _mm_storeu_ps(buffer + i, y);
+        z1 = _mm_shuffle_ps(s, s, _MM_SHUFFLE(0, 0, 0, 0));
+        z2 = _mm_shuffle_ps(s, s, _MM_SHUFFLE(1, 1, 1, 1));
+    }
+    
+    state.z1 = _mm_cvtss_f32(z1);
+    state.z2 = _mm_cvtss_f32(z2);
+    biquad::process(buffer + i, numSamples - i, coeffs, state);
+}
+
+void biquadCascade(float *buffer, int32_t numSamples, const BiquadCoefficients *coeffs,
+                   BiquadState *states, int numSections, uint32_t activeMask) {
+    for (int section = 0; section < numSections; section++) {
+        if (activeMask & (1u << section)) {
+            processBiquad(buffer, numSamples, coeffs[section], states[section]);
+        } else {
+            states[section].z1 = 0.0f;
+            states[section].z2 = 0.0f;
+        }
+    }
+}
+
+void floatToI16(const float *input, int16_t *output, int32_t numSamples) {
+    const __m128 vScale = _mm_set1_ps(32768.0f);
+    const __m128 vMax = _mm_set1_ps(32767.0f);
+    const __m128 vMin = _mm_set1_ps(-32768.0f);
+    const __m128 vHalf = _mm_set1_ps(0.5f);
+    const __m128 signMask = _mm_castsi128_ps(_mm_set1_epi32(0x80000000));
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        __m128 a = _mm_mul_ps(_mm_loadu_ps(input + i), vScale);
+        __m128 b = _mm_mul_ps(_mm_loadu_ps(input + i + 4), vScale);
+        a = _mm_max_ps(_mm_min_ps(a, vMax), vMin);
+        b = _mm_max_ps(_mm_min_ps(b, vMax), vMin);
+        // 加上带符号的0.5后截断，即远离零的四舍五入；打包时饱和
+        a = _mm_add_ps(a, _mm_or_ps(vHalf, _mm_and_ps(a, signMask)));
+        b = _mm_add_ps(b, _mm_or_ps(vHalf, _mm_and_ps(b, signMask)));
+        __m128i packed = _mm_packs_epi32(_mm_cvttps_epi32(a), _mm_cvttps_epi32(b));
+        _mm_storeu_si128(reinterpret_cast<__m128i*>(output + i), packed);
+    }
+    dsp::scalarKernels().floatToI16(input + i, output + i, numSamples - i);
+}
+
+void i16ToFloat(const int16_t *input, float *output, int32_t numSamples) {
+    const __m128 vScale = _mm_set1_ps(1.0f / 32768.0f);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        __m128i samples = _mm_loadu_si128(reinterpret_cast<const __m128i*>(input + i));
+        // 符号扩展：先放到高16位再算术右移
+        __m128i low = _mm_srai_epi32(_mm_unpacklo_epi16(samples, samples), 16);
+        __m128i high = _mm_srai_epi32(_mm_unpackhi_epi16(samples, samples), 16);
+        _mm_storeu_ps(output + i, _mm_mul_ps(_mm_cvtepi32_ps(low), vScale));
+        _mm_storeu_ps(output + i + 4, _mm_mul_ps(_mm_cvtepi32_ps(high), vScale));
+    }
+    dsp::scalarKernels().i16ToFloat(input + i, output + i, numSamples - i);
+}
+
+// 4个浮点样本按scale缩放、限幅后远离零舍入为整数（与标量实现相同的运算顺序）
+inline __m128i roundToInt(__m128 x, __m128 scale, __m128 maxValue, __m128 minValue) {
+    const __m128 signMask = _mm_castsi128_ps(_mm_set1_epi32(0x80000000));
+    x = _mm_max_ps(_mm_min_ps(_mm_mul_ps(x, scale), maxValue), minValue);
+    x = _mm_add_ps(x, _mm_or_ps(_mm_set1_ps(0.5f), _mm_and_ps(x, signMask)));
+    return _mm_cvttps_epi32(x);
+}
+
+// 4个32位整数的低24位紧排成12字节（SSE2没有字节重排指令，用64位移位拼接）
+inline void storeI24x4(uint8_t *output, __m128i values) {
+    // 每个64位通道内：第一个样本的3字节之后接第二个样本的3字节
+    __m128i even = _mm_and_si128(values, _mm_set_epi32(0, 0x00FFFFFF, 0, 0x00FFFFFF));
+    __m128i odd = _mm_and_si128(values, _mm_set_epi32(0x00FFFFFF, 0, 0x00FFFFFF, 0));
+    __m128i pairs = _mm_or_si128(even, _mm_srli_epi64(odd, 8));
+    // 高通道的6字节接到低通道的6字节之后
+    __m128i packed = _mm_or_si128(_mm_move_epi64(pairs),
+                                  _mm_slli_si128(_mm_unpackhi_epi64(pairs, _mm_setzero_si128()), 6));
+    _mm_storel_epi64(reinterpret_cast<__m128i*>(output), packed);
+    int32_t last = _mm_cvtsi128_si32(_mm_srli_si128(packed, 8));
+    memcpy(output + 8, &last, sizeof(last));
+}
+
+// 读取12字节（4个24位样本），每个样本放到32位整数的高24位；只读这12字节，不越界
+inline __m128i loadI24x4(const uint8_t *input) {
+    // 低64位通道为第0-5字节，高通道为第6-11字节
+    __m128i low = _mm_loadl_epi64(reinterpret_cast<const __m128i*>(input));
+    __m128i high = _mm_srli_epi64(_mm_loadl_epi64(reinterpret_cast<const __m128i*>(input + 4)), 16);
+    __m128i pairs = _mm_unpacklo_epi64(low, high);
+    // 偶数样本左移8位（最高字节移出），奇数样本在64位通道内左移16位后去掉低字节
+    __m128i even = _mm_and_si128(_mm_slli_epi32(pairs, 8), _mm_set_epi32(0, -1, 0, -1));
+    __m128i odd = _mm_and_si128(_mm_slli_epi64(pairs, 16), _mm_set_epi32(-256, 0, -256, 0));
+    return _mm_or_si128(even, odd);
+}
+
+void floatToI24(const float *input, uint8_t *output, int32_t numSamples) {
+    const __m128 vScale = _mm_set1_ps(8388608.0f);
+    const __m128 vMax = _mm_set1_ps(8388607.0f);
+    const __m128 vMin = _mm_set1_ps(-8388608.0f);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        storeI24x4(output + 3 * i, roundToInt(_mm_loadu_ps(input + i), vScale, vMax, vMin));
+        storeI24x4(output + 3 * i + 12, roundToInt(_mm_loadu_ps(input + i + 4), vScale, vMax, vMin));
+    }
+    dsp::scalarKernels().floatToI24(input + i, output + 3 * i, numSamples - i);
+}
+
+void i24ToFloat(const uint8_t *input, float *output, int32_t numSamples) {
+    const __m128 vScale = _mm_set1_ps(1.0f / 2147483648.0f);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        _mm_storeu_ps(output + i, _mm_mul_ps(_mm_cvtepi32_ps(loadI24x4(input + 3 * i)), vScale));
+        _mm_storeu_ps(output + i + 4, _mm_mul_ps(_mm_cvtepi32_ps(loadI24x4(input + 3 * i + 12)), vScale));
+    }
+    dsp::scalarKernels().i24ToFloat(input + 3 * i, output + i, numSamples - i);
+}
+
+void floatToI32(const float *input, int32_t *output, int32_t numSamples) {
+    const __m128 vScale = _mm_set1_ps(2147483648.0f);
+    const __m128 vMax = _mm_set1_ps(2147483520.0f);
+    const __m128 vMin = _mm_set1_ps(-2147483648.0f);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        __m128i a = roundToInt(_mm_loadu_ps(input + i), vScale, vMax, vMin);
+        __m128i b = roundToInt(_mm_loadu_ps(input + i + 4), vScale, vMax, vMin);
+        _mm_storeu_si128(reinterpret_cast<__m128i*>(output + i), a);
+        _mm_storeu_si128(reinterpret_cast<__m128i*>(output + i + 4), b);
+    }
+    dsp::scalarKernels().floatToI32(input + i, output + i, numSamples - i);
+}
+
+void i32ToFloat(const int32_t *input, float *output, int32_t numSamples) {
+    const __m128 vScale = _mm_set1_ps(1.0f / 2147483648.0f);
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        __m128i a = _mm_loadu_si128(reinterpret_cast<const __m128i*>(input + i));
+        __m128i b = _mm_loadu_si128(reinterpret_cast<const __m128i*>(input + i + 4));
+        _mm_storeu_ps(output + i, _mm_mul_ps(_mm_cvtepi32_ps(a), vScale));
+        _mm_storeu_ps(output + i + 4, _mm_mul_ps(_mm_cvtepi32_ps(b), vScale));
+    }
+    dsp::scalarKernels().i32ToFloat(input + i, output + i, numSamples - i);
+}
+
+float dotProduct(const float *a, const float *b, int32_t numSamples) {
+    // 两个累加器交替使用，隐藏加法延迟
+    __m128 sum0 = _mm_setzero_ps();
+    __m128 sum1 = _mm_setzero_ps();
+    int32_t i = 0;
+    for (; i + 8 <= numSamples; i += 8) {
+        sum0 = _mm_add_ps(sum0, _mm_mul_ps(_mm_loadu_ps(a + i), _mm_loadu_ps(b + i)));
+        sum1 = _mm_add_ps(sum1, _mm_mul_ps(_mm_loadu_ps(a + i + 4), _mm_loadu_ps(b + i + 4)));
+    }
+    __m128 sum = _mm_add_ps(sum0, sum1);
+    sum = _mm_add_ps(sum, _mm_movehl_ps(sum, sum));
+    sum = _mm_add_ss(sum, _mm_shuffle_ps(sum, sum, 1));
+    float result = _mm_cvtss_f32(sum);
+    // 每个输出样本调用一次，抽头数通常是8的倍数，没有尾部时不调用标量实现
+    if (i < numSamples) {
+        result += dsp::scalarKernels().dotProduct(a + i, b + i, numSamples - i);
+    }
+    return result;
+}
+
+} // namespace
+
+namespace dsp {
+
+const DspKernels kSseKernels = {
+        "sse2",
+        applyGain,
+        applyGainRamp,
+        crossfade,
+        biquadCascade,
+        floatToI16,
+        i16ToFloat,
+        floatToI24,
+        i24ToFloat,
+        floatToI32,
+        i32ToFloat,
+        dotProduct,
+};
+
+} // namespace dsp
+
+#endif
@@ -0,0 +1,72 @@
+#ifndef LISTENHELP6_DSPPARAMETERS_H
+#define LISTENHELP6_DSPPARAMETERS_H
+
+#include <cstdint>
+#include "Biquad.h"
+#include "GainRamp.h"
+#include "Limiter.h"
+#include "MultibandCompressor.h"
+
+// 均衡器频段数
+static const int kNumEqualizerBands = 8;
+
+// 音频线程使用的全部处理参数
+// 由UI线程整体写入，通过TripleBuffer在块边界处原子地交给音频线程。
+// 新增的DSP参数（包括预先计算好的系数）都应放在这里，而不是单独的原子变量或加锁的成员。
+struct DspParameters {
+    float inputVolume;                          // 输入音量 (0.0-1.0)
+    float outputVolume;                         // 输出音量 (0.0-1.0)
+    float amplification;                        // 放大倍数 (0.1-100.0)
+    float rampTimeMs;                           // 增益渐变和系数交叉淡化的时间（毫秒）
+    int32_t rampFrames;                         // 按采样率换算的帧数，由UI线程计算
+    bool feedbackCancellation;                  // 是否启用声反馈消除
+    bool noiseReduction;                        // 是否启用降噪
+    float noiseReductionStrength;               // 降噪强度 (0.0-1.0)
+
+    // 均衡器
+    float equalizerGainsDb[kNumEqualizerBands];                 // 各频段增益（dB）
+    BiquadCoefficients equalizerCoeffs[kNumEqualizerBands];     // 由UI线程预先计算的滤波器系数
+    uint32_t equalizerActiveMask;                               // 增益不为0dB的频段
+    uint32_t equalizerGeneration;                               // 系数每次改变时加1，音频线程据此开始交叉淡化
+
+    // 多频段压缩（WDRC）
+    bool compressorEnabled;                                             // 是否启用压缩
+    CompressorBandSettings compressorSettings[kNumCompressorBands];     // 各频段用户设置
+    CompressorBandCoefficients compressorBands[kNumCompressorBands];    // 由UI线程预先计算的系数和增益表
+    CrossoverCoefficients compressorCrossovers[kNumCompressorCrossovers];
+    uint32_t compressorGeneration;                                      // 频段系数每次改变时加1
+
+    // 啸叫抑制
+    bool howlSuppression;                       // 是否启用啸叫检测与自动陷波
+
+    // 输出限幅
+    float limiterLookaheadMs;                   // 前瞻时间（毫秒），即限幅器引入的延迟
+
+    DspParameters()
+        : inputVolume(0.8f)      // 默认输入音量80%
+        , outputVolume(0.8f)     // 默认输出音量80%
+        , amplification(1.0f)    // 默认放大倍数1.0
+        , rampTimeMs(GainRamp::kDefaultRampMs)
+        , rampFrames(0)          // 由AAudioProcessor按采样率计算
+        , feedbackCancellation(false)
+        , noiseReduction(false)  // 默认关闭降噪
+        , noiseReductionStrength(0.5f)
+        , equalizerActiveMask(0)
+        , equalizerGeneration(0)
+        , compressorEnabled(false)
+        , compressorGeneration(0)
+        , howlSuppression(false)
+        , limiterLookaheadMs(Limiter::kDefaultLookaheadMs) {
+        // 初始化均衡器为中性（0dB，直通）
+        for (int band = 0; band < kNumEqualizerBands; band++) {
+            equalizerGainsDb[band] = 0.0f;
+            equalizerCoeffs[band] = BiquadCoefficients::identity();
+        }
+        // 压缩系数与采样率有关，由AAudioProcessor在构造和setupStreams时计算
+        for (int band = 0; band < kNumCompressorBands; band++) {
+            compressorSettings[band] = CompressorBandSettings::defaults();
+        }
+    }
+};
+
+#endif //LISTENHELP6_DSPPARAMETERS_H
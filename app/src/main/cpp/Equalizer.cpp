@@ -0,0 +1,93 @@
+#include "Equalizer.h"
+#include <algorithm>
+#include <cstring>
+
+// 助听器常用的听力测试频点
+const float Equalizer::kBandFrequencies[kNumEqualizerBands] = {
+        250.0f, 500.0f, 1000.0f, 2000.0f, 3000.0f, 4000.0f, 6000.0f, 8000.0f
+};
+
+namespace {
+
+// 峰值滤波器的Q值（约1.4倍频程带宽），搁架滤波器使用Butterworth斜率
+const double kPeakingQ = 1.0;
+const double kShelfQ = 0.7071;
+
+} // namespace
+
+BiquadCoefficients Equalizer::designBand(int band, int32_t sampleRate, float gainDb) {
+    if (band < 0 || band >= kNumEqualizerBands || sampleRate <= 0 || gainDb == 0.0f) {
+        return BiquadCoefficients::identity();
+    }
+    
+    double frequency = kBandFrequencies[band];
+    if (band == 0) {
+        return biquad::lowShelf(sampleRate, frequency, kShelfQ, gainDb);
+    }
+    if (band == kNumEqualizerBands - 1) {
+        return biquad::highShelf(sampleRate, frequency, kShelfQ, gainDb);
+    }
+    return biquad::peaking(sampleRate, frequency, kPeakingQ, gainDb);
+}
+
+const int32_t Equalizer::kFadeChunkFrames;
+
+Equalizer::Equalizer() : mKernels(&dsp::kernels()) {
+    reset();
+}
+
+void Equalizer::reset() {
+    mPrimed = false;
+    mActiveMask = 0;
+    mGeneration = 0;
+    mFadeMask = 0;
+    mFadeFrames = 0;
+    mFadeRemaining = 0;
+    for (int band = 0; band < kNumEqualizerBands; band++) {
+        mCoeffs[band] = BiquadCoefficients::identity();
+        mStates[band].z1 = 0.0f;
+        mStates[band].z2 = 0.0f;
+    }
+}
+
+void Equalizer::process(float *buffer, int32_t numFrames,
+                        const BiquadCoefficients *coeffs, uint32_t activeMask,
+                        uint32_t generation, int32_t rampFrames) {
+    if (!mPrimed || (generation != mGeneration && mFadeRemaining == 0)) {
+        // 旧滤波器连同状态移入淡出组，新滤波器从相同状态继续运行，其起始瞬态被淡化掩盖
+        if (mPrimed && rampFrames > 0) {
+            memcpy(mFadeCoeffs, mCoeffs, sizeof(mCoeffs));
+            memcpy(mFadeStates, mStates, sizeof(mStates));
+            mFadeMask = mActiveMask;
+            mFadeFrames = rampFrames;
+            mFadeRemaining = rampFrames;
+        }
+        memcpy(mCoeffs, coeffs, sizeof(mCoeffs));
+        mActiveMask = activeMask;
+        mGeneration = generation;
+        mPrimed = true;
+    }
+    
+    int32_t offset = 0;
+    while (mFadeRemaining > 0 && offset < numFrames) {
+        int32_t count = std::min(numFrames - offset, kFadeChunkFrames);
+        float *chunk = buffer + offset;
+        memcpy(mFadeBuffer, chunk, count * sizeof(float));
+        mKernels->biquadCascade(mFadeBuffer, count, mFadeCoeffs, mFadeStates, kNumEqualizerBands, mFadeMask);
+        mKernels->biquadCascade(chunk, count, mCoeffs, mStates, kNumEqualizerBands, mActiveMask);
+        
+        // 新滤波器的权重从1/mFadeFrames线性增加到1
+        int32_t fadeCount = std::min(count, mFadeRemaining);
+        float step = 1.0f / static_cast<float>(mFadeFrames);
+        float weight = static_cast<float>(mFadeFrames - mFadeRemaining + 1) * step;
+        mKernels->crossfade(chunk, mFadeBuffer, fadeCount, weight, step);
+        mFadeRemaining -= fadeCount;
+        offset += count;
+    }
+    
+    // 未启用的频段在内核中清零状态，重新启用时不会带入过期数据
+    if (offset < numFrames) {
+        mKernels->biquadCascade(buffer + offset, numFrames - offset, mCoeffs, mStates,
+                                kNumEqualizerBands, mActiveMask);
+    }
+}
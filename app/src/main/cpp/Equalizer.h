@@ -0,0 +1,54 @@
+#ifndef LISTENHELP6_EQUALIZER_H
+#define LISTENHELP6_EQUALIZER_H
+
+#include "Biquad.h"
+#include "DspKernels.h"
+#include "DspParameters.h"
+
+// 8段均衡器：每个滑块对应一个二阶滤波器，按固定的助听器听力测试频点排列
+// 第一段为低频搁架，最后一段为高频搁架，其余为峰值滤波器：峰值滤波器在中心频率处的增益等于滑块值，
+// 搁架滤波器在中心频率处为一半增益，低于250Hz/高于8kHz的频段达到滑块值。
+// 系数由UI线程计算后放入DspParameters，音频线程只执行级联滤波。
+// 系数改变时（generation变化）新旧两组滤波器并行运行rampFrames帧，输出从旧滤波器线性交叉淡化到新滤波器，
+// 拖动滑块不会因系数跳变产生咔嗒声；淡化期间到达的新系数等本次淡化结束后再生效。
+class Equalizer {
+public:
+    // 各频段中心频率（Hz）
+    static const float kBandFrequencies[kNumEqualizerBands];
+
+    // 计算单个频段的系数（非实时线程）
+    static BiquadCoefficients designBand(int band, int32_t sampleRate, float gainDb);
+
+    Equalizer();
+
+    // 清除滤波器状态，下一块直接使用传入的系数（不淡化）
+    void reset();
+
+    // 原地处理单声道数据，只处理activeMask中置位的频段
+    void process(float *buffer, int32_t numFrames,
+                 const BiquadCoefficients *coeffs, uint32_t activeMask,
+                 uint32_t generation, int32_t rampFrames);
+
+private:
+    // 交叉淡化时旧滤波器的输出按固定大小的块计算，不随回调帧数变化
+    static const int32_t kFadeChunkFrames = 128;
+
+    const DspKernels *mKernels;    // 构造时选定，音频线程不再检测CPU
+    bool mPrimed;
+
+    // 当前生效的系数（音频线程的副本）
+    BiquadCoefficients mCoeffs[kNumEqualizerBands];
+    uint32_t mActiveMask;
+    uint32_t mGeneration;
+    BiquadState mStates[kNumEqualizerBands];
+
+    // 正在淡出的旧滤波器
+    BiquadCoefficients mFadeCoeffs[kNumEqualizerBands];
+    uint32_t mFadeMask;
+    BiquadState mFadeStates[kNumEqualizerBands];
+    int32_t mFadeFrames;
+    int32_t mFadeRemaining;
+    float mFadeBuffer[kFadeChunkFrames];
+};
+
+#endif //LISTENHELP6_EQUALIZER_H
@@ -0,0 +1,261 @@
+#include "FeedbackCanceller.h"
+#include <algorithm>
+#include <cfloat>
+#include <cmath>
+#include <cstring>
+
+namespace {
+
+// 步长归一化的正则项（每个样本的功率，约-60dBFS），参考信号很弱时避免步长过大
+const float kRegularization = 1e-6f;
+
+// 指标的下限（dB），滤波器为零时的路径增益
+const float kMinMetricDb = -100.0f;
+
+// 一块中误差功率超过麦克风功率的这一倍数（+10dB）视为滤波器发散
+const float kDivergenceRatio = 10.0f;
+
+// 输入/误差功率的平滑系数（按块）
+const float kMetricsSmoothing = 0.99f;
+
+int32_t nextPowerOfTwo(int32_t value) {
+    int32_t result = 1;
+    while (result < value) {
+        result <<= 1;
+    }
+    return result;
+}
+
+} // namespace
+
+constexpr float FeedbackCanceller::kStepSize;
+constexpr float FeedbackCanceller::kPowerSmoothing;
+
+FeedbackCanceller::FeedbackCanceller()
+    : mConfigured(false)
+    , mFifoPosition(0)
+    , mReferenceMask(0)
+    , mReferenceWritten(0)
+    , mInputProcessed(0)
+    , mBulkDelayFrames(0)
+    , mReferenceHead(0)
+    , mConstrainPartition(0)
+    , mInputPower(0.0f)
+    , mErrorPower(0.0f)
+    , mMetricsCounter(0)
+    , mPathGainDb(kMinMetricDb)
+    , mErleDb(0.0f)
+    , mDivergenceCount(0) {
+}
+
+bool FeedbackCanceller::configure(int32_t bulkDelayFrames, int32_t maxFramesPerCallback) {
+    if (maxFramesPerCallback <= 0 || bulkDelayFrames < maxFramesPerCallback) {
+        mConfigured = false;
+        return false;
+    }
+    mFft.init(kFftSize);
+    mBulkDelayFrames = bulkDelayFrames;
+
+    // 处理一块时需要回看到整体延迟之前的两块参考样本，而参考信号最多领先一个回调
+    int32_t span = mBulkDelayFrames + maxFramesPerCallback + kFftSize * 2;
+    mReferenceRing.assign(nextPowerOfTwo(span), 0.0f);
+    mReferenceMask = static_cast<int32_t>(mReferenceRing.size()) - 1;
+
+    mInputFifo.assign(kBlockFrames, 0.0f);
+    mOutputFifo.assign(kBlockFrames, 0.0f);
+    mReferenceSpectraRe.assign(kNumPartitions * kNumBins, 0.0f);
+    mReferenceSpectraIm.assign(kNumPartitions * kNumBins, 0.0f);
+    mReferencePower.assign(kNumBins, 0.0f);
+    mWeightsRe.assign(kNumPartitions * kNumBins, 0.0f);
+    mWeightsIm.assign(kNumPartitions * kNumBins, 0.0f);
+    mFrame.assign(kFftSize, 0.0f);
+    mSpectrumRe.assign(kNumBins, 0.0f);
+    mSpectrumIm.assign(kNumBins, 0.0f);
+    mErrorRe.assign(kNumBins, 0.0f);
+    mErrorIm.assign(kNumBins, 0.0f);
+
+    mConfigured = true;
+    reset();
+    return true;
+}
+
+void FeedbackCanceller::reset() {
+    if (!mConfigured) {
+        return;
+    }
+
+    std::fill(mInputFifo.begin(), mInputFifo.end(), 0.0f);
+    std::fill(mOutputFifo.begin(), mOutputFifo.end(), 0.0f);
+    std::fill(mReferenceRing.begin(), mReferenceRing.end(), 0.0f);
+    std::fill(mReferenceSpectraRe.begin(), mReferenceSpectraRe.end(), 0.0f);
+    std::fill(mReferenceSpectraIm.begin(), mReferenceSpectraIm.end(), 0.0f);
+    std::fill(mReferencePower.begin(), mReferencePower.end(), 0.0f);
+    std::fill(mWeightsRe.begin(), mWeightsRe.end(), 0.0f);
+    std::fill(mWeightsIm.begin(), mWeightsIm.end(), 0.0f);
+    mFifoPosition = 0;
+    mReferenceWritten = 0;
+    mInputProcessed = 0;
+    mReferenceHead = 0;
+    mConstrainPartition = 0;
+    mInputPower = 0.0f;
+    mErrorPower = 0.0f;
+    mMetricsCounter = 0;
+    mPathGainDb.store(kMinMetricDb, std::memory_order_relaxed);
+    mErleDb.store(0.0f, std::memory_order_relaxed);
+}
+
+void FeedbackCanceller::pushReference(const float *output, int32_t numFrames) {
+    if (!mConfigured) {
+        return;
+    }
+
+    // 按环形缓冲区的回绕点分两段复制
+    int32_t position = static_cast<int32_t>(mReferenceWritten & mReferenceMask);
+    int32_t capacity = mReferenceMask + 1;
+    numFrames = std::min(numFrames, capacity);
+    int32_t first = std::min(numFrames, capacity - position);
+    memcpy(&mReferenceRing[position], output, first * sizeof(float));
+    memcpy(mReferenceRing.data(), output + first, (numFrames - first) * sizeof(float));
+    mReferenceWritten += numFrames;
+}
+
+void FeedbackCanceller::process(float *buffer, int32_t numFrames) {
+    if (!mConfigured) {
+        return;
+    }
+
+    // 块适配器：每攒够kBlockFrames个样本处理一块，输出队列中是上一块消除后的样本
+    while (numFrames > 0) {
+        int32_t count = std::min(numFrames, kBlockFrames - mFifoPosition);
+        memcpy(&mInputFifo[mFifoPosition], buffer, count * sizeof(float));
+        memcpy(buffer, &mOutputFifo[mFifoPosition], count * sizeof(float));
+        mFifoPosition += count;
+        buffer += count;
+        numFrames -= count;
+
+        if (mFifoPosition == kBlockFrames) {
+            processBlock();
+            mFifoPosition = 0;
+        }
+    }
+}
+
+void FeedbackCanceller::processBlock() {
+    // 本块麦克风样本[m, m+B)对应的参考样本向前偏移整体延迟，重叠保留需要前一块共2B个样本
+    int64_t start = mInputProcessed - mBulkDelayFrames - kBlockFrames;
+    for (int32_t i = 0; i < kFftSize; i++) {
+        int64_t index = start + i;
+        mFrame[i] = index >= 0 ? mReferenceRing[static_cast<int32_t>(index & mReferenceMask)] : 0.0f;
+    }
+    mInputProcessed += kBlockFrames;
+
+    // 新的参考频谱写入频域延迟线最新的位置
+    mReferenceHead = mReferenceHead + 1 == kNumPartitions ? 0 : mReferenceHead + 1;
+    float *newestRe = &mReferenceSpectraRe[mReferenceHead * kNumBins];
+    float *newestIm = &mReferenceSpectraIm[mReferenceHead * kNumBins];
+    mFft.forward(mFrame.data(), newestRe, newestIm);
+    for (int32_t k = 0; k < kNumBins; k++) {
+        // 功率上升时立即跟随（啸叫或突发的纯音会让单个频点的功率骤增，平滑后的步长会过大而发散），下降时平滑
+        float power = newestRe[k] * newestRe[k] + newestIm[k] * newestIm[k];
+        float smoothed = kPowerSmoothing * mReferencePower[k] + (1.0f - kPowerSmoothing) * power;
+        mReferencePower[k] = std::max(power, smoothed);
+    }
+
+    // 路径估计：各段系数乘以对应延迟的参考频谱后求和
+    std::fill(mSpectrumRe.begin(), mSpectrumRe.end(), 0.0f);
+    std::fill(mSpectrumIm.begin(), mSpectrumIm.end(), 0.0f);
+    for (int32_t p = 0; p < kNumPartitions; p++) {
+        int32_t slot = mReferenceHead - p;
+        slot += slot < 0 ? kNumPartitions : 0;
+        const float *xRe = &mReferenceSpectraRe[slot * kNumBins];
+        const float *xIm = &mReferenceSpectraIm[slot * kNumBins];
+        const float *wRe = &mWeightsRe[p * kNumBins];
+        const float *wIm = &mWeightsIm[p * kNumBins];
+        for (int32_t k = 0; k < kNumBins; k++) {
+            mSpectrumRe[k] += wRe[k] * xRe[k] - wIm[k] * xIm[k];
+            mSpectrumIm[k] += wRe[k] * xIm[k] + wIm[k] * xRe[k];
+        }
+    }
+    mFft.inverse(mSpectrumRe.data(), mSpectrumIm.data(), mFrame.data());
+
+    // 重叠保留：后半部分是线性卷积结果，相减得到误差（即消除后的输出）
+    float inputPower = 0.0f;
+    float errorPower = 0.0f;
+    for (int32_t i = 0; i < kBlockFrames; i++) {
+        float input = mInputFifo[i];
+        float error = input - mFrame[kBlockFrames + i];
+        mOutputFifo[i] = error;
+        inputPower += input * input;
+        errorPower += error * error;
+        mFrame[i] = 0.0f;
+        mFrame[kBlockFrames + i] = error;
+    }
+    
+    // 发散保护：消除后的信号明显强于麦克风信号（或出现非有限值）时清零滤波器，本块直接输出麦克风信号
+    if (!(errorPower <= kDivergenceRatio * inputPower + kRegularization * kBlockFrames)) {
+        memcpy(mOutputFifo.data(), mInputFifo.data(), kBlockFrames * sizeof(float));
+        std::fill(mWeightsRe.begin(), mWeightsRe.end(), 0.0f);
+        std::fill(mWeightsIm.begin(), mWeightsIm.end(), 0.0f);
+        mDivergenceCount.fetch_add(1, std::memory_order_relaxed);
+        return;
+    }
+    mInputPower = kMetricsSmoothing * mInputPower + (1.0f - kMetricsSmoothing) * inputPower;
+    mErrorPower = kMetricsSmoothing * mErrorPower + (1.0f - kMetricsSmoothing) * errorPower;
+
+    // 误差频谱（前半部分补零），按参考功率归一化后乘以参考频谱的共轭更新各段系数
+    mFft.forward(mFrame.data(), mErrorRe.data(), mErrorIm.data());
+    const float regularization = kRegularization * kFftSize;
+    for (int32_t k = 0; k < kNumBins; k++) {
+        float step = kStepSize / (mReferencePower[k] + regularization);
+        mErrorRe[k] *= step;
+        mErrorIm[k] *= step;
+    }
+    for (int32_t p = 0; p < kNumPartitions; p++) {
+        int32_t slot = mReferenceHead - p;
+        slot += slot < 0 ? kNumPartitions : 0;
+        const float *xRe = &mReferenceSpectraRe[slot * kNumBins];
+        const float *xIm = &mReferenceSpectraIm[slot * kNumBins];
+        float *wRe = &mWeightsRe[p * kNumBins];
+        float *wIm = &mWeightsIm[p * kNumBins];
+        for (int32_t k = 0; k < kNumBins; k++) {
+            wRe[k] += mErrorRe[k] * xRe[k] + mErrorIm[k] * xIm[k];
+            wIm[k] += mErrorIm[k] * xRe[k] - mErrorRe[k] * xIm[k];
+        }
+    }
+
+    // 未约束的更新会让系数混入循环卷积分量，轮流把一段变回时域截断为B个抽头
+    constrainPartition(mConstrainPartition);
+    mConstrainPartition = mConstrainPartition + 1 == kNumPartitions ? 0 : mConstrainPartition + 1;
+
+    if (++mMetricsCounter >= kMetricsIntervalBlocks) {
+        mMetricsCounter = 0;
+        updateMetrics();
+    }
+}
+
+void FeedbackCanceller::constrainPartition(int32_t partition) {
+    float *wRe = &mWeightsRe[partition * kNumBins];
+    float *wIm = &mWeightsIm[partition * kNumBins];
+    mFft.inverse(wRe, wIm, mFrame.data());
+    std::fill(mFrame.begin() + kBlockFrames, mFrame.end(), 0.0f);
+    mFft.forward(mFrame.data(), wRe, wIm);
+}
+
+void FeedbackCanceller::updateMetrics() {
+    // 第p段相对于第0段延迟pB个样本，在2B点FFT的第k个频点上相当于乘以(-1)^(pk)，
+    // 各段相加即为整个滤波器在这些频点上的频率响应
+    float peak = 0.0f;
+    for (int32_t k = 0; k < kNumBins; k++) {
+        float re = 0.0f;
+        float im = 0.0f;
+        for (int32_t p = 0; p < kNumPartitions; p++) {
+            float sign = ((p * k) & 1) ? -1.0f : 1.0f;
+            re += sign * mWeightsRe[p * kNumBins + k];
+            im += sign * mWeightsIm[p * kNumBins + k];
+        }
+        peak = std::max(peak, re * re + im * im);
+    }
+    mPathGainDb.store(std::max(kMinMetricDb, 10.0f * std::log10(peak + FLT_MIN)), std::memory_order_relaxed);
+    mErleDb.store(std::max(kMinMetricDb, 10.0f * std::log10((mInputPower + FLT_MIN) / (mErrorPower + FLT_MIN))),
+                  std::memory_order_relaxed);
+}
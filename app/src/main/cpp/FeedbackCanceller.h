@@ -0,0 +1,104 @@
+#ifndef LISTENHELP6_FEEDBACKCANCELLER_H
+#define LISTENHELP6_FEEDBACKCANCELLER_H
+
+#include <atomic>
+#include <cstdint>
+#include <vector>
+#include "Fft.h"
+
+// 自适应声反馈消除（分块频域自适应滤波，PBFDAF）
+// - 参考信号为实际送往扬声器的信号（通常是处理结果，回环测量期间是测试信号），麦克风信号减去其经扬声器到麦克风路径的估计
+// - 路径 = 固定的整体延迟（至少一个回调，输出写入后才会被播放和采集）+ kFilterFrames长度的自适应滤波器
+// - 滤波器按kBlockFrames分为kNumPartitions段，每块做重叠保留的频域卷积和按频点归一化的LMS更新，
+//   每块只对一段做梯度约束（轮流），一块的运算量约为5次128点FFT加两次分段复数乘加
+// 内部有块适配器，与回调帧数无关；引入kLatencyFrames帧的固定延迟。
+// 所有缓冲区在configure中分配，process/pushReference/reset不分配内存。
+class FeedbackCanceller {
+public:
+    static const int32_t kBlockFrames = 64;
+    static const int32_t kFftSize = kBlockFrames * 2;
+    static const int32_t kNumBins = kBlockFrames + 1;
+    static const int32_t kNumPartitions = 32;
+    static const int32_t kFilterFrames = kBlockFrames * kNumPartitions;
+    static const int32_t kLatencyFrames = kBlockFrames;
+
+    FeedbackCanceller();
+
+    // 按整体延迟分配参考信号缓冲区（非实时线程）
+    // bulkDelayFrames不能小于单次回调的帧数，否则块内最后的参考样本尚未生成，滤波器会对照缓冲区中的旧数据自适应；
+    // 不满足时返回false并保持未配置（process不做处理）
+    bool configure(int32_t bulkDelayFrames, int32_t maxFramesPerCallback);
+
+    // 清除滤波器和所有状态，可在音频线程调用
+    void reset();
+
+    // 原地处理单声道麦克风数据
+    void process(float *buffer, int32_t numFrames);
+
+    // 记录送往扬声器的信号，每个回调在process之后以相同帧数调用一次
+    void pushReference(const float *output, int32_t numFrames);
+
+    // 估计的扬声器到麦克风路径的峰值增益（dB），可在任意线程读取
+    float getPathGainDb() const { return mPathGainDb.load(std::memory_order_relaxed); }
+
+    // 回声损耗增强（麦克风信号与消除后信号的功率比，dB），可在任意线程读取
+    float getErleDb() const { return mErleDb.load(std::memory_order_relaxed); }
+
+    // 因发散而清零滤波器的次数，可在任意线程读取
+    int32_t getDivergenceCount() const { return mDivergenceCount.load(std::memory_order_relaxed); }
+
+private:
+    void processBlock();
+    void constrainPartition(int32_t partition);
+    void updateMetrics();
+
+    // 归一化步长
+    static constexpr float kStepSize = 0.01f;
+    // 参考信号功率谱的平滑系数
+    static constexpr float kPowerSmoothing = 0.9f;
+    // 每隔多少块更新一次路径增益估计
+    static const int32_t kMetricsIntervalBlocks = 64;
+
+    RealFft mFft;
+    bool mConfigured;
+
+    // 块适配器（与NoiseReducer相同：攒够一块处理，输出上一块的结果）
+    std::vector<float> mInputFifo;
+    std::vector<float> mOutputFifo;
+    int32_t mFifoPosition;
+
+    // 参考信号历史（环形缓冲区，容量为2的幂）
+    std::vector<float> mReferenceRing;
+    int32_t mReferenceMask;
+    int64_t mReferenceWritten;            // 已写入的参考样本总数
+    int64_t mInputProcessed;              // 已进入块适配器并完成处理的麦克风样本总数
+    int32_t mBulkDelayFrames;
+
+    // 频域延迟线：最近kNumPartitions块参考信号的频谱，mReferenceHead为最新一块
+    std::vector<float> mReferenceSpectraRe;
+    std::vector<float> mReferenceSpectraIm;
+    int32_t mReferenceHead;
+    std::vector<float> mReferencePower;   // 最新参考频谱的平滑功率
+
+    // 滤波器各段的频域系数
+    std::vector<float> mWeightsRe;
+    std::vector<float> mWeightsIm;
+    int32_t mConstrainPartition;          // 下一块做梯度约束的段
+
+    // 工作缓冲区
+    std::vector<float> mFrame;            // kFftSize个时域样本
+    std::vector<float> mSpectrumRe;
+    std::vector<float> mSpectrumIm;
+    std::vector<float> mErrorRe;
+    std::vector<float> mErrorIm;
+
+    // 指标
+    float mInputPower;
+    float mErrorPower;
+    int32_t mMetricsCounter;
+    std::atomic<float> mPathGainDb;
+    std::atomic<float> mErleDb;
+    std::atomic<int32_t> mDivergenceCount;
+};
+
+#endif //LISTENHELP6_FEEDBACKCANCELLER_H
@@ -0,0 +1,147 @@
+#include "Fft.h"
+#include <cmath>
+
+namespace {
+
+const double kPi = 3.14159265358979323846;
+
+} // namespace
+
+RealFft::RealFft()
+    : mSize(0)
+    , mHalfSize(0) {
+}
+
+bool RealFft::init(int32_t size) {
+    if (size < 4 || (size & (size - 1)) != 0) {
+        return false;
+    }
+    
+    mSize = size;
+    mHalfSize = size / 2;
+    
+    int32_t bits = 0;
+    while ((1 << bits) < mHalfSize) {
+        bits++;
+    }
+    mBitReverse.assign(mHalfSize, 0);
+    for (int32_t i = 0; i < mHalfSize; i++) {
+        int32_t reversed = 0;
+        for (int32_t b = 0; b < bits; b++) {
+            if (i & (1 << b)) {
+                reversed |= 1 << (bits - 1 - b);
+            }
+        }
+        mBitReverse[i] = reversed;
+    }
+    
+    mTwiddleCos.assign(mHalfSize / 2, 0.0f);
+    mTwiddleSin.assign(mHalfSize / 2, 0.0f);
+    for (int32_t k = 0; k < mHalfSize / 2; k++) {
+        double angle = 2.0 * kPi * k / mHalfSize;
+        mTwiddleCos[k] = static_cast<float>(std::cos(angle));
+        mTwiddleSin[k] = static_cast<float>(std::sin(angle));
+    }
+    
+    mSplitCos.assign(mHalfSize + 1, 0.0f);
+    mSplitSin.assign(mHalfSize + 1, 0.0f);
+    for (int32_t k = 0; k <= mHalfSize; k++) {
+        double angle = 2.0 * kPi * k / mSize;
+        mSplitCos[k] = static_cast<float>(std::cos(angle));
+        mSplitSin[k] = static_cast<float>(std::sin(angle));
+    }
+    
+    mWorkRe.assign(mHalfSize, 0.0f);
+    mWorkIm.assign(mHalfSize, 0.0f);
+    return true;
+}
+
+void RealFft::complexFft(float *re, float *im, bool inverse) {
+    const int32_t n = mHalfSize;
+    for (int32_t i = 0; i < n; i++) {
+        int32_t j = mBitReverse[i];
+        if (j > i) {
+            float tr = re[i];
+            re[i] = re[j];
+            re[j] = tr;
+            float ti = im[i];
+            im[i] = im[j];
+            im[j] = ti;
+        }
+    }
+    
+    // 正变换使用 e^(-iθ)，逆变换使用 e^(+iθ)
+    const float sinSign = inverse ? 1.0f : -1.0f;
+    for (int32_t length = 2; length <= n; length <<= 1) {
+        const int32_t half = length >> 1;
+        const int32_t step = n / length;
+        for (int32_t start = 0; start < n; start += length) {
+            for (int32_t j = 0; j < half; j++) {
+                float wr = mTwiddleCos[j * step];
+                float wi = sinSign * mTwiddleSin[j * step];
+                int32_t a = start + j;
+                int32_t b = a + half;
+                float tr = re[b] * wr - im[b] * wi;
+                float ti = re[b] * wi + im[b] * wr;
+                re[b] = re[a] - tr;
+                im[b] = im[a] - ti;
+                re[a] += tr;
+                im[a] += ti;
+            }
+        }
+    }
+}
+
+void RealFft::forward(const float *input, float *re, float *im) {
+    const int32_t n = mHalfSize;
+    float *zr = mWorkRe.data();
+    float *zi = mWorkIm.data();
+    
+    // 偶数样本作为实部，奇数样本作为虚部
+    for (int32_t i = 0; i < n; i++) {
+        zr[i] = input[2 * i];
+        zi[i] = input[2 * i + 1];
+    }
+    complexFft(zr, zi, false);
+    
+    // 拆分：X[k] = Ze[k] + W^k * Zo[k]，W = e^(-2πi/size)
+    for (int32_t k = 0; k <= n; k++) {
+        int32_t k1 = k == n ? 0 : k;
+        int32_t k2 = k == 0 ? 0 : n - k;
+        float evenRe = 0.5f * (zr[k1] + zr[k2]);
+        float evenIm = 0.5f * (zi[k1] - zi[k2]);
+        float oddRe = 0.5f * (zi[k1] + zi[k2]);
+        float oddIm = -0.5f * (zr[k1] - zr[k2]);
+        float wr = mSplitCos[k];
+        float wi = -mSplitSin[k];
+        re[k] = evenRe + wr * oddRe - wi * oddIm;
+        im[k] = evenIm + wr * oddIm + wi * oddRe;
+    }
+}
+
+void RealFft::inverse(const float *re, const float *im, float *output) {
+    const int32_t n = mHalfSize;
+    float *zr = mWorkRe.data();
+    float *zi = mWorkIm.data();
+    
+    // 合并：Z[k] = Ze[k] + i * Zo[k]，其中 Zo[k] = (X[k] - conj(X[n-k])) / 2 * W^(-k)
+    for (int32_t k = 0; k < n; k++) {
+        float evenRe = 0.5f * (re[k] + re[n - k]);
+        float evenIm = 0.5f * (im[k] - im[n - k]);
+        float diffRe = 0.5f * (re[k] - re[n - k]);
+        float diffIm = 0.5f * (im[k] + im[n - k]);
+        float wr = mSplitCos[k];
+        float wi = mSplitSin[k];
+        float oddRe = diffRe * wr - diffIm * wi;
+        float oddIm = diffRe * wi + diffIm * wr;
+        zr[k] = evenRe - oddIm;
+        zi[k] = evenIm + oddRe;
+    }
+    complexFft(zr, zi, true);
+    
+    const float scale = 1.0f / n;
+    for (int32_t i = 0; i < n; i++) {
+        output[2 * i] = zr[i] * scale;
+        output[2 * i + 1] = zi[i] * scale;
+    }
+}
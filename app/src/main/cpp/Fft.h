@@ -0,0 +1,40 @@
+#ifndef LISTENHELP6_FFT_H
+#define LISTENHELP6_FFT_H
+
+#include <cstdint>
+#include <vector>
+
+// 实数FFT（基2）
+// 长度为N的实数序列打包成N/2点复数序列做一次复数FFT，再拆分出N/2+1个频点。
+// 旋转因子、位反转表和工作缓冲区都在init中分配，forward/inverse不分配内存，可在音频线程调用。
+class RealFft {
+public:
+    RealFft();
+
+    // 分配内部表（非实时线程），size必须是2的幂且不小于4
+    bool init(int32_t size);
+
+    int32_t size() const { return mSize; }
+
+    // 正变换：input为size个实数样本，re/im各输出size/2+1个频点（未归一化）
+    void forward(const float *input, float *re, float *im);
+
+    // 逆变换（含1/size归一化）：re/im各为size/2+1个频点，output为size个实数样本
+    void inverse(const float *re, const float *im, float *output);
+
+private:
+    // size/2点复数FFT（原地），inverse为true时使用共轭旋转因子且不归一化
+    void complexFft(float *re, float *im, bool inverse);
+
+    int32_t mSize;
+    int32_t mHalfSize;
+    std::vector<int32_t> mBitReverse;     // size/2点的位反转下标
+    std::vector<float> mTwiddleCos;       // cos(2πk/(size/2))，k < size/4
+    std::vector<float> mTwiddleSin;
+    std::vector<float> mSplitCos;         // cos(2πk/size)，k <= size/2，用于拆分实数频谱
+    std::vector<float> mSplitSin;
+    std::vector<float> mWorkRe;
+    std::vector<float> mWorkIm;
+};
+
+#endif //LISTENHELP6_FFT_H
@@ -0,0 +1,128 @@
+#include "FullDuplexPump.h"
+#include <algorithm>
+#include <cstring>
+
+FullDuplexPump::FullDuplexPump()
+    : mInputChannelCount(1)
+    , mTargetFillFrames(0)
+    , mMaxExcessFrames(0)
+    , mState(State::Draining)
+    , mDrainCallbacksLeft(kDrainCallbacks)
+    , mFillFrames(-1)
+    , mUnderrunCount(0)
+    , mOverrunCount(0) {
+}
+
+void FullDuplexPump::configure(int32_t inputChannelCount, int32_t targetFillFrames, int32_t maxExcessFrames) {
+    mInputChannelCount = std::max(1, inputChannelCount);
+    mTargetFillFrames = std::max(0, targetFillFrames);
+    mMaxExcessFrames = std::max(0, maxExcessFrames);
+    reset();
+}
+
+void FullDuplexPump::reset() {
+    mState = State::Draining;
+    mDrainCallbacksLeft = kDrainCallbacks;
+    mFillFrames = -1;
+    mUnderrunCount.store(0, std::memory_order_relaxed);
+    mOverrunCount.store(0, std::memory_order_relaxed);
+}
+
+int32_t FullDuplexPump::pull(AudioInputSource &source, float *buffer, int32_t numFrames) {
+    const size_t bufferSamples = static_cast<size_t>(numFrames) * mInputChannelCount;
+    int32_t available = source.availableInputFrames();
+    mFillFrames = -1;
+    
+    switch (mState) {
+        case State::Draining: {
+            int32_t result = drainTo(source, buffer, numFrames, 0);
+            if (result < 0) {
+                return result;
+            }
+            if (--mDrainCallbacksLeft <= 0) {
+                mState = State::Priming;
+            }
+            memset(buffer, 0, bufferSamples * sizeof(float));
+            return 0;
+        }
+        
+        case State::Priming:
+            // 水位未知时（模拟流或旧设备）直接开始运行
+            if (available >= 0 && available < numFrames + mTargetFillFrames) {
+                memset(buffer, 0, bufferSamples * sizeof(float));
+                return 0;
+            }
+            mState = State::Running;
+            break;
+        
+        case State::Running:
+            if (available >= 0 && available < numFrames) {
+                // 欠载：输出静音并重新积累水位，避免之后每个回调都读到残缺的数据
+                mUnderrunCount.fetch_add(1, std::memory_order_relaxed);
+                mState = State::Priming;
+                memset(buffer, 0, bufferSamples * sizeof(float));
+                return 0;
+            }
+            if (available > numFrames + mTargetFillFrames + mMaxExcessFrames) {
+                // 过载：输入积压过多会增加延迟，丢弃多余部分回到目标水位
+                mOverrunCount.fetch_add(1, std::memory_order_relaxed);
+                int32_t result = drainTo(source, buffer, numFrames, numFrames + mTargetFillFrames);
+                if (result < 0) {
+                    return result;
+                }
+            } else if (available >= 0) {
+                mFillFrames = available - numFrames;
+            }
+            break;
+    }
+    
+    int32_t framesRead = source.readInput(buffer, numFrames);
+    if (framesRead < 0) {
+        mFillFrames = -1;
+        memset(buffer, 0, bufferSamples * sizeof(float));
+        return framesRead;
+    }
+    if (framesRead < numFrames) {
+        // 水位未知时的欠载
+        mFillFrames = -1;
+        mUnderrunCount.fetch_add(1, std::memory_order_relaxed);
+        memset(buffer + static_cast<size_t>(framesRead) * mInputChannelCount, 0,
+               static_cast<size_t>(numFrames - framesRead) * mInputChannelCount * sizeof(float));
+    }
+    return framesRead;
+}
+
+int32_t FullDuplexPump::drainTo(AudioInputSource &source, float *buffer, int32_t bufferFrames, int32_t keepFrames) {
+    int32_t available = source.availableInputFrames();
+    int32_t drained = 0;
+    
+    if (available < 0) {
+        // 水位未知：一直读到没有数据为止
+        if (keepFrames > 0) {
+            return 0;
+        }
+        int32_t framesRead;
+        do {
+            framesRead = source.readInput(buffer, bufferFrames);
+            if (framesRead < 0) {
+                return framesRead;
+            }
+            drained += framesRead;
+        } while (framesRead > 0);
+        return drained;
+    }
+    
+    int32_t toDrain = available - keepFrames;
+    while (toDrain > 0) {
+        int32_t framesRead = source.readInput(buffer, std::min(toDrain, bufferFrames));
+        if (framesRead < 0) {
+            return framesRead;
+        }
+        if (framesRead == 0) {
+            break;
+        }
+        toDrain -= framesRead;
+        drained += framesRead;
+    }
+    return drained;
+}
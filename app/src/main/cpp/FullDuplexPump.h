@@ -0,0 +1,72 @@
+#ifndef LISTENHELP6_FULLDUPLEXPUMP_H
+#define LISTENHELP6_FULLDUPLEXPUMP_H
+
+#include <atomic>
+#include <cstdint>
+
+// 输入源抽象：真实实现包装AAudio输入流，主机测试时可以用模拟流替代
+class AudioInputSource {
+public:
+    virtual ~AudioInputSource() = default;
+
+    // 非阻塞读取最多numFrames帧（交错格式），返回实际读取帧数或负的错误码
+    virtual int32_t readInput(float *buffer, int32_t numFrames) = 0;
+
+    // 当前可读取的帧数（输入流中已写入但尚未读取的帧），未知时返回负值
+    virtual int32_t availableInputFrames() = 0;
+};
+
+// 全双工数据泵
+// 由输出流回调驱动：每次输出回调从输入流非阻塞地拉取同样数量的帧。
+// 启动时先清空输入流中积压的数据，再等待输入积累到目标水位后开始输出；
+// 运行中输入不足（欠载）时补零并重新积累水位，输入积压过多（过载）时丢弃多余部分回到目标水位。
+// 不做任何内存分配，可在音频回调中使用。
+class FullDuplexPump {
+public:
+    FullDuplexPump();
+
+    // 配置（非实时线程）：输入声道数与目标水位（帧），目标水位之上允许的额外积压
+    void configure(int32_t inputChannelCount, int32_t targetFillFrames, int32_t maxExcessFrames);
+
+    // 启动前调用，回到清空状态
+    void reset();
+
+    // 在输出回调中调用：读取numFrames帧输入到buffer（容量至少numFrames*声道数），
+    // 不足部分补零。返回实际读到的有效帧数，或负的错误码
+    int32_t pull(AudioInputSource &source, float *buffer, int32_t numFrames);
+
+    int32_t getTargetFillFrames() const { return mTargetFillFrames; }
+
+    // 正常运行时读取后水位的允许范围上限，超过即视为过载（下限为0，低于0即欠载）
+    int32_t getMaxFillFrames() const { return mTargetFillFrames + mMaxExcessFrames; }
+
+    // 上一次pull读取之后输入源中剩余的帧数（水位），只在正常运行且水位已知时有效，
+    // 积累水位、欠载、丢弃积压的那次回调返回-1（水位不连续）。只能在回调线程上调用
+    int32_t getFillFrames() const { return mFillFrames; }
+    int64_t getUnderrunCount() const { return mUnderrunCount.load(std::memory_order_relaxed); }
+    int64_t getOverrunCount() const { return mOverrunCount.load(std::memory_order_relaxed); }
+
+private:
+    enum class State {
+        Draining,   // 丢弃启动前积压的输入
+        Priming,    // 输出静音，等待输入积累到目标水位
+        Running     // 正常全双工运行
+    };
+
+    // 启动时清空输入的回调次数
+    static const int kDrainCallbacks = 10;
+
+    // 把输入读到只剩keepFrames帧，buffer用作丢弃数据的暂存区，返回负值表示错误
+    int32_t drainTo(AudioInputSource &source, float *buffer, int32_t bufferFrames, int32_t keepFrames);
+
+    int32_t mInputChannelCount;
+    int32_t mTargetFillFrames;
+    int32_t mMaxExcessFrames;
+    State mState;
+    int mDrainCallbacksLeft;
+    int32_t mFillFrames;
+    std::atomic<int64_t> mUnderrunCount;
+    std::atomic<int64_t> mOverrunCount;
+};
+
+#endif //LISTENHELP6_FULLDUPLEXPUMP_H
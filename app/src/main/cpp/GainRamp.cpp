@@ -0,0 +1,44 @@
+#include "GainRamp.h"
+#include <algorithm>
+#include "DspKernels.h"
+
+constexpr float GainRamp::kMinRampMs;
+constexpr float GainRamp::kMaxRampMs;
+constexpr float GainRamp::kDefaultRampMs;
+
+GainRamp::GainRamp() {
+    reset();
+}
+
+void GainRamp::reset() {
+    mPrimed = false;
+    mGain = 1.0f;
+    mTarget = 1.0f;
+    mStep = 0.0f;
+    mRemaining = 0;
+}
+
+void GainRamp::process(const DspKernels *kernels, float *buffer, int32_t numFrames,
+                       float target, int32_t rampFrames) {
+    if (!mPrimed || rampFrames <= 0) {
+        mPrimed = true;
+        mGain = target;
+        mTarget = target;
+        mRemaining = 0;
+    } else if (target != mTarget) {
+        mTarget = target;
+        mStep = (target - mGain) / static_cast<float>(rampFrames);
+        mRemaining = rampFrames;
+    }
+    
+    // 渐变部分：第i帧的增益为 mGain + (i + 1) * mStep，最后一帧正好到达目标
+    int32_t rampCount = std::min(numFrames, mRemaining);
+    if (rampCount > 0) {
+        kernels->applyGainRamp(buffer, rampCount, mGain + mStep, mStep);
+        mRemaining -= rampCount;
+        mGain = mRemaining == 0 ? mTarget : mGain + mStep * static_cast<float>(rampCount);
+    }
+    if (rampCount < numFrames) {
+        kernels->applyGain(buffer + rampCount, numFrames - rampCount, mGain);
+    }
+}
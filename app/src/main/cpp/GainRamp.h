@@ -0,0 +1,38 @@
+#ifndef LISTENHELP6_GAINRAMP_H
+#define LISTENHELP6_GAINRAMP_H
+
+#include <cstdint>
+
+struct DspKernels;
+
+// 增益平滑：目标增益每块读取一次，在rampFrames帧内线性渐变到目标值
+// 渐变过程中目标再次改变时，从当前增益重新开始渐变，增益始终连续，拖动滑块不会产生咔嗒声。
+// 渐变结束后与直接乘以常数增益的开销相同。
+class GainRamp {
+public:
+    // 渐变时间范围（毫秒），均衡器和压缩系数的交叉淡化使用同一时间
+    static constexpr float kMinRampMs = 0.0f;
+    static constexpr float kMaxRampMs = 200.0f;
+    static constexpr float kDefaultRampMs = 20.0f;
+
+    GainRamp();
+
+    // 清除状态，下一块直接使用目标增益（不渐变）
+    void reset();
+
+    // 原地乘以增益；目标改变时在rampFrames帧内渐变过去，rampFrames <= 0时立即跳变
+    void process(const DspKernels *kernels, float *buffer, int32_t numFrames,
+                 float target, int32_t rampFrames);
+
+    // 当前增益（渐变中为已处理的最后一个样本的增益）
+    float getGain() const { return mGain; }
+
+private:
+    bool mPrimed;
+    float mGain;
+    float mTarget;
+    float mStep;
+    int32_t mRemaining;
+};
+
+#endif //LISTENHELP6_GAINRAMP_H
@@ -0,0 +1,363 @@
+#include "HowlSuppressor.h"
+#include <algorithm>
+#include <cfloat>
+#include <cmath>
+#include <cstring>
+
+namespace {
+
+const float kPi = 3.14159265358979323846f;
+
+float powerToDb(float power) {
+    return 10.0f * std::log10(power + FLT_MIN);
+}
+
+} // namespace
+
+constexpr float HowlSuppressor::kPaprDb;
+constexpr float HowlSuppressor::kPnprDb;
+constexpr float HowlSuppressor::kHarmonicDb;
+constexpr float HowlSuppressor::kMinLevelDbfs;
+constexpr float HowlSuppressor::kMaxDecayDb;
+constexpr float HowlSuppressor::kPersistMs;
+constexpr float HowlSuppressor::kMinFrequency;
+constexpr float HowlSuppressor::kNotchQ;
+constexpr float HowlSuppressor::kInitialDepthDb;
+constexpr float HowlSuppressor::kDepthStepDb;
+constexpr float HowlSuppressor::kMaxDepthDb;
+constexpr float HowlSuppressor::kAttackDbPerFrame;
+constexpr float HowlSuppressor::kReleaseDbPerSecond;
+constexpr float HowlSuppressor::kHoldMs;
+const int32_t HowlSuppressor::kPnprBins;
+const int32_t HowlSuppressor::kMaxCandidates;
+
+HowlSuppressor::HowlSuppressor()
+    : mConfigured(false)
+    , mKernels(&dsp::kernels())
+    , mSampleRate(0.0f)
+    , mFifoPosition(0)
+    , mMinBin(1)
+    , mMaxBin(kNumBins - 2)
+    , mMinPeakPower(0.0f)
+    , mPersistFrames(1)
+    , mHoldFrames(1)
+    , mReleaseDbPerFrame(1.0f)
+    , mNotchMask(0)
+    , mDetectionCount(0) {
+    for (int n = 0; n < kMaxNotches; n++) {
+        mNotchFrequencies[n].store(0.0f, std::memory_order_relaxed);
+    }
+}
+
+void HowlSuppressor::configure(int32_t sampleRate) {
+    mFft.init(kFftSize);
+    mSampleRate = static_cast<float>(std::max(sampleRate, 1));
+
+    // 周期性汉宁窗：主瓣宽±2个频点，第一旁瓣-31dB
+    mWindow.assign(kFftSize, 0.0f);
+    for (int32_t i = 0; i < kFftSize; i++) {
+        mWindow[i] = 0.5f * (1.0f - std::cos(2.0f * kPi * i / kFftSize));
+    }
+    mInputFifo.assign(kFftSize, 0.0f);
+    mFrame.assign(kFftSize, 0.0f);
+    mSpectrumRe.assign(kNumBins, 0.0f);
+    mSpectrumIm.assign(kNumBins, 0.0f);
+    mPower.assign(kNumBins, 0.0f);
+
+    // 检测范围：kMinFrequency到约0.9倍奈奎斯特频率，两端各留出PNPR比较需要的频点
+    float binHz = mSampleRate / kFftSize;
+    mMinBin = std::max(kPnprBins, static_cast<int32_t>(std::ceil(kMinFrequency / binHz)));
+    mMaxBin = std::min(kNumBins - 1 - kPnprBins, static_cast<int32_t>(kNumBins * 0.9f));
+
+    // 幅度为A的正弦经汉宁窗后峰值频点的幅度约为A*N/4
+    float amplitude = std::pow(10.0f, kMinLevelDbfs / 20.0f) * kFftSize / 4.0f;
+    mMinPeakPower = amplitude * amplitude;
+
+    float framesPerSecond = mSampleRate / kHopSize;
+    mPersistFrames = std::max(2, static_cast<int32_t>(std::ceil(kPersistMs * 0.001f * framesPerSecond)));
+    mHoldFrames = std::max(1, static_cast<int32_t>(std::ceil(kHoldMs * 0.001f * framesPerSecond)));
+    mReleaseDbPerFrame = kReleaseDbPerSecond / framesPerSecond;
+
+    mConfigured = true;
+    reset();
+}
+
+void HowlSuppressor::reset() {
+    if (!mConfigured) {
+        return;
+    }
+
+    std::fill(mInputFifo.begin(), mInputFifo.end(), 0.0f);
+    mFifoPosition = kFftSize - kHopSize;
+    for (int t = 0; t < kMaxTracks; t++) {
+        mTracks[t].active = false;
+    }
+    for (int n = 0; n < kMaxNotches; n++) {
+        mNotches[n].active = false;
+        mNotchCoeffs[n] = BiquadCoefficients::identity();
+        mNotchStates[n].z1 = 0.0f;
+        mNotchStates[n].z2 = 0.0f;
+        mNotchFrequencies[n].store(0.0f, std::memory_order_relaxed);
+    }
+    mNotchMask = 0;
+}
+
+float HowlSuppressor::getNotchFrequency(int notch) const {
+    if (notch < 0 || notch >= kMaxNotches) {
+        return 0.0f;
+    }
+    return mNotchFrequencies[notch].load(std::memory_order_relaxed);
+}
+
+void HowlSuppressor::process(float *buffer, int32_t numFrames) {
+    if (!mConfigured) {
+        return;
+    }
+
+    if (mNotchMask != 0) {
+        mKernels->biquadCascade(buffer, numFrames, mNotchCoeffs, mNotchStates, kMaxNotches, mNotchMask);
+    }
+
+    // 检测陷波后的信号：已被压住的啸叫不会再次触发，压不住的会让对应陷波继续加深
+    while (numFrames > 0) {
+        int32_t count = std::min(numFrames, kFftSize - mFifoPosition);
+        memcpy(&mInputFifo[mFifoPosition], buffer, count * sizeof(float));
+        mFifoPosition += count;
+        buffer += count;
+        numFrames -= count;
+
+        if (mFifoPosition == kFftSize) {
+            analyze();
+            memmove(mInputFifo.data(), mInputFifo.data() + kHopSize, (kFftSize - kHopSize) * sizeof(float));
+            mFifoPosition = kFftSize - kHopSize;
+        }
+    }
+}
+
+void HowlSuppressor::analyze() {
+    for (int32_t i = 0; i < kFftSize; i++) {
+        mFrame[i] = mInputFifo[i] * mWindow[i];
+    }
+    mFft.forward(mFrame.data(), mSpectrumRe.data(), mSpectrumIm.data());
+
+    float sum = 0.0f;
+    for (int32_t k = 0; k < kNumBins; k++) {
+        mPower[k] = mSpectrumRe[k] * mSpectrumRe[k] + mSpectrumIm[k] * mSpectrumIm[k];
+    }
+    for (int32_t k = mMinBin; k <= mMaxBin; k++) {
+        sum += mPower[k];
+    }
+    float meanPower = sum / (mMaxBin - mMinBin + 1);
+    float paprThreshold = meanPower * std::pow(10.0f, kPaprDb / 10.0f);
+
+    // 找出最强的kMaxCandidates个窄带峰值（按功率降序插入）
+    float candidateBins[kMaxCandidates];
+    float candidateLevelsDb[kMaxCandidates];
+    float candidatePowers[kMaxCandidates];
+    int32_t numCandidates = 0;
+    for (int32_t k = mMinBin; k <= mMaxBin; k++) {
+        float power = mPower[k];
+        if (power <= mPower[k - 1] || power < mPower[k + 1]
+                || power < mMinPeakPower || power < paprThreshold
+                || !isNarrowbandPeak(k, meanPower)) {
+            continue;
+        }
+        if (numCandidates == kMaxCandidates && power <= candidatePowers[kMaxCandidates - 1]) {
+            continue;
+        }
+
+        // 对数功率的抛物线插值，得到频点之间的峰值位置
+        float left = powerToDb(mPower[k - 1]);
+        float center = powerToDb(power);
+        float right = powerToDb(mPower[k + 1]);
+        float denominator = left - 2.0f * center + right;
+        float offset = denominator < 0.0f ? 0.5f * (left - right) / denominator : 0.0f;
+
+        int32_t slot = std::min(numCandidates, kMaxCandidates - 1);
+        while (slot > 0 && candidatePowers[slot - 1] < power) {
+            candidateBins[slot] = candidateBins[slot - 1];
+            candidateLevelsDb[slot] = candidateLevelsDb[slot - 1];
+            candidatePowers[slot] = candidatePowers[slot - 1];
+            slot--;
+        }
+        candidateBins[slot] = k + offset;
+        candidateLevelsDb[slot] = center;
+        candidatePowers[slot] = power;
+        numCandidates = std::min(numCandidates + 1, kMaxCandidates);
+    }
+
+    updateTracks(candidateBins, candidateLevelsDb, numCandidates);
+    updateNotches();
+}
+
+bool HowlSuppressor::isNarrowbandPeak(int32_t bin, float meanPower) const {
+    float power = mPower[bin];
+
+    // PNPR：两侧都要明显低于峰值
+    float pnpr = std::pow(10.0f, kPnprDb / 10.0f);
+    if (power < pnpr * std::max(mPower[bin - kPnprBins], mPower[bin + kPnprBins])) {
+        return false;
+    }
+
+    // 谐波：语音和乐音在2倍、3倍或1/2频率处有相近强度的分量，啸叫没有
+    float harmonicRatio = std::pow(10.0f, -kHarmonicDb / 10.0f);
+    const int32_t multiples[] = {2, 3};
+    for (int32_t multiple : multiples) {
+        int32_t harmonic = bin * multiple;
+        if (harmonic + 1 >= kNumBins) {
+            break;
+        }
+        float harmonicPower = std::max(mPower[harmonic], std::max(mPower[harmonic - 1], mPower[harmonic + 1]));
+        if (harmonicPower > power * harmonicRatio && harmonicPower > meanPower) {
+            return false;
+        }
+    }
+    int32_t subharmonic = bin / 2;
+    if (subharmonic >= mMinBin) {
+        float subharmonicPower = std::max(mPower[subharmonic], std::max(mPower[subharmonic - 1], mPower[subharmonic + 1]));
+        if (subharmonicPower > power * harmonicRatio && subharmonicPower > meanPower) {
+            return false;
+        }
+    }
+    return true;
+}
+
+void HowlSuppressor::updateTracks(const float *candidateBins, const float *candidateLevelsDb,
+                                  int32_t numCandidates) {
+    bool matched[kMaxTracks] = {};
+
+    for (int32_t c = 0; c < numCandidates; c++) {
+        // 与已有跟踪相差不到一个频点视为同一个峰值
+        int32_t track = -1;
+        for (int32_t t = 0; t < kMaxTracks; t++) {
+            if (mTracks[t].active && !matched[t] && std::fabs(mTracks[t].bin - candidateBins[c]) <= 1.0f) {
+                track = t;
+                break;
+            }
+        }
+        if (track < 0) {
+            for (int32_t t = 0; t < kMaxTracks; t++) {
+                if (!mTracks[t].active) {
+                    track = t;
+                    mTracks[t].active = true;
+                    mTracks[t].frames = 0;
+                    mTracks[t].firstLevelDb = candidateLevelsDb[c];
+                    break;
+                }
+            }
+        }
+        if (track < 0) {
+            continue;
+        }
+
+        PeakTrack &peak = mTracks[track];
+        matched[track] = true;
+        peak.bin = candidateBins[c];
+        peak.lastLevelDb = candidateLevelsDb[c];
+        peak.frames++;
+        peak.missedFrames = 0;
+
+        // 持续足够长：没有衰减则判定为啸叫；之后重新计时，仍未被压住时会再次判定
+        if (peak.frames >= mPersistFrames) {
+            if (peak.lastLevelDb >= peak.firstLevelDb - kMaxDecayDb) {
+                triggerNotch(peak.bin * mSampleRate / kFftSize);
+            }
+            peak.frames = 0;
+            peak.firstLevelDb = peak.lastLevelDb;
+        }
+    }
+
+    // 允许偶尔漏检，连续kMaxMissedFrames帧以上未出现则停止跟踪
+    for (int32_t t = 0; t < kMaxTracks; t++) {
+        if (mTracks[t].active && !matched[t] && ++mTracks[t].missedFrames > kMaxMissedFrames) {
+            mTracks[t].active = false;
+        }
+    }
+}
+
+void HowlSuppressor::triggerNotch(float frequency) {
+    mDetectionCount.fetch_add(1, std::memory_order_relaxed);
+
+    // 已有陷波覆盖此频率（在其带宽内）：说明还没压住，继续加深
+    for (int n = 0; n < kMaxNotches; n++) {
+        Notch &notch = mNotches[n];
+        if (notch.active && std::fabs(notch.frequency - frequency) < notch.frequency / kNotchQ) {
+            notch.targetDepthDb = std::min(kMaxDepthDb, std::max(notch.depthDb, notch.targetDepthDb) + kDepthStepDb);
+            notch.holdFrames = mHoldFrames;
+            return;
+        }
+    }
+
+    // 新的陷波：优先使用空闲的，否则替换剩余保持时间最短的
+    int slot = 0;
+    for (int n = 0; n < kMaxNotches; n++) {
+        if (!mNotches[n].active) {
+            slot = n;
+            break;
+        }
+        if (mNotches[n].holdFrames < mNotches[slot].holdFrames) {
+            slot = n;
+        }
+    }
+    Notch &notch = mNotches[slot];
+    notch.active = true;
+    notch.frequency = frequency;
+    notch.depthDb = 0.0f;
+    notch.targetDepthDb = kInitialDepthDb;
+    notch.holdFrames = mHoldFrames;
+    mNotchStates[slot].z1 = 0.0f;
+    mNotchStates[slot].z2 = 0.0f;
+    mNotchMask |= 1u << slot;
+    mNotchFrequencies[slot].store(frequency, std::memory_order_relaxed);
+}
+
+void HowlSuppressor::updateNotches() {
+    for (int n = 0; n < kMaxNotches; n++) {
+        Notch &notch = mNotches[n];
+        if (!notch.active) {
+            continue;
+        }
+
+        if (notch.holdFrames > 0) {
+            notch.holdFrames--;
+        } else {
+            notch.targetDepthDb = 0.0f;
+        }
+
+        // 深度按帧逐步变化，避免系数突变造成咔嗒声
+        float depth = notch.depthDb;
+        if (depth < notch.targetDepthDb) {
+            depth = std::min(notch.targetDepthDb, depth + kAttackDbPerFrame);
+        } else if (depth > notch.targetDepthDb) {
+            depth = std::max(notch.targetDepthDb, depth - mReleaseDbPerFrame);
+        }
+
+        if (depth <= 0.0f && notch.targetDepthDb <= 0.0f) {
+            notch.active = false;
+            mNotchMask &= ~(1u << n);
+            mNotchFrequencies[n].store(0.0f, std::memory_order_relaxed);
+            continue;
+        }
+        if (depth != notch.depthDb) {
+            notch.depthDb = depth;
+            designNotch(n);
+        }
+    }
+}
+
+void HowlSuppressor::designNotch(int n) {
+    // RBJ峰值滤波器的衰减形式（增益为-depthDb），用单精度计算，每个分析帧最多计算kMaxNotches次
+    const Notch &notch = mNotches[n];
+    float w0 = 2.0f * kPi * std::min(notch.frequency, mSampleRate * 0.49f) / mSampleRate;
+    float a = std::pow(10.0f, -notch.depthDb / 40.0f);
+    float alpha = std::sin(w0) / (2.0f * kNotchQ);
+    float cosW0 = std::cos(w0);
+    float a0 = 1.0f + alpha / a;
+
+    BiquadCoefficients &c = mNotchCoeffs[n];
+    c.b0 = (1.0f + alpha * a) / a0;
+    c.b1 = -2.0f * cosW0 / a0;
+    c.b2 = (1.0f - alpha * a) / a0;
+    c.a1 = c.b1;
+    c.a2 = (1.0f - alpha / a) / a0;
+}
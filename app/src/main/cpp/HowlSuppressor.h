@@ -0,0 +1,123 @@
+#ifndef LISTENHELP6_HOWLSUPPRESSOR_H
+#define LISTENHELP6_HOWLSUPPRESSOR_H
+
+#include <atomic>
+#include <cstdint>
+#include <vector>
+#include "Biquad.h"
+#include "DspKernels.h"
+#include "Fft.h"
+
+// 啸叫检测与自动陷波
+// - 检测：每kHopSize帧对陷波后的信号做一次kFftSize点加窗FFT，找出窄带峰值：
+//   峰值高出全频带平均功率（PAPR）和两侧频点（PNPR）足够多、电平足够高、且没有谐波（排除语音和乐音）
+// - 跟踪：同一频率的峰值连续出现约kPersistMs毫秒且没有衰减，判定为啸叫
+// - 抑制：在啸叫频率放置窄带陷波（最多kMaxNotches个），深度逐渐加深；同一频率再次被判定时继续加深；
+//   一段时间未再检测到时深度逐渐回到0并释放
+// 陷波器直接作用于本级的输出，没有额外延迟；缓冲区在configure中分配，process/reset不分配内存。
+class HowlSuppressor {
+public:
+    static const int32_t kMaxNotches = 4;
+    static const int32_t kFftSize = 1024;
+    static const int32_t kHopSize = kFftSize / 2;
+    static const int32_t kNumBins = kFftSize / 2 + 1;
+
+    HowlSuppressor();
+
+    // 按采样率分配缓冲区并计算时间常数（非实时线程）
+    void configure(int32_t sampleRate);
+
+    // 清除所有陷波和跟踪状态，可在音频线程调用
+    void reset();
+
+    // 原地处理单声道数据：先经过当前的陷波器，再送入检测
+    void process(float *buffer, int32_t numFrames);
+
+    // 累计判定的啸叫次数，可在任意线程读取
+    int32_t getDetectionCount() const { return mDetectionCount.load(std::memory_order_relaxed); }
+
+    // 第notch个陷波器的中心频率（Hz），未使用时为0，可在任意线程读取
+    float getNotchFrequency(int notch) const;
+
+private:
+    // 一个正在跟踪的窄带峰值
+    struct PeakTrack {
+        bool active;
+        float bin;                        // 插值后的频点位置
+        float firstLevelDb;               // 开始跟踪时的电平
+        float lastLevelDb;
+        int32_t frames;                   // 连续出现的帧数
+        int32_t missedFrames;
+    };
+
+    // 一个陷波器
+    struct Notch {
+        bool active;
+        float frequency;
+        float depthDb;                    // 当前深度
+        float targetDepthDb;              // 判定后要达到的深度，释放时为0
+        int32_t holdFrames;               // 剩余保持帧数，归零后开始释放
+    };
+
+    void analyze();
+    bool isNarrowbandPeak(int32_t bin, float meanPower) const;
+    void updateTracks(const float *candidateBins, const float *candidateLevelsDb, int32_t numCandidates);
+    void triggerNotch(float frequency);
+    void updateNotches();
+    void designNotch(int notch);
+
+    // 检测阈值
+    static constexpr float kPaprDb = 15.0f;           // 峰值与全频带平均功率之比
+    static constexpr float kPnprDb = 10.0f;           // 峰值与两侧（±kPnprBins个频点处）功率之比
+    static constexpr float kHarmonicDb = 25.0f;       // 谐波低于峰值不到这么多时视为语音/乐音
+    static constexpr float kMinLevelDbfs = -30.0f;    // 低于此电平（正弦幅度）的峰值不算啸叫
+    static constexpr float kMaxDecayDb = 6.0f;        // 跟踪期间电平下降超过此值则不是啸叫（临界啸叫会有起伏）
+    static constexpr float kPersistMs = 150.0f;
+    static constexpr float kMinFrequency = 150.0f;
+    // 陷波参数
+    static constexpr float kNotchQ = 20.0f;
+    static constexpr float kInitialDepthDb = 18.0f;
+    static constexpr float kDepthStepDb = 6.0f;       // 同一频率再次判定时加深
+    static constexpr float kMaxDepthDb = 36.0f;
+    static constexpr float kAttackDbPerFrame = 6.0f;  // 深度变化速度（每个分析帧）
+    static constexpr float kReleaseDbPerSecond = 12.0f;
+    static constexpr float kHoldMs = 3000.0f;
+    // 反馈环路的梳状响应使啸叫附近几个相邻模式同时增长，啸叫谱宽可达±3个频点，PNPR要在更远处比较
+    static const int32_t kPnprBins = 6;
+    static const int32_t kMaxMissedFrames = 2;
+    static const int32_t kMaxTracks = 8;
+    static const int32_t kMaxCandidates = 4;
+
+    RealFft mFft;
+    bool mConfigured;
+    const DspKernels *mKernels;
+    float mSampleRate;
+
+    // 分析缓冲区
+    std::vector<float> mWindow;
+    std::vector<float> mInputFifo;
+    int32_t mFifoPosition;
+    std::vector<float> mFrame;
+    std::vector<float> mSpectrumRe;
+    std::vector<float> mSpectrumIm;
+    std::vector<float> mPower;
+    int32_t mMinBin;
+    int32_t mMaxBin;
+    float mMinPeakPower;                  // kMinLevelDbfs的正弦对应的加窗峰值功率
+    int32_t mPersistFrames;
+    int32_t mHoldFrames;
+    float mReleaseDbPerFrame;
+
+    PeakTrack mTracks[kMaxTracks];
+
+    // 陷波器（系数在音频线程按深度重新计算，只在分析帧边界进行）
+    Notch mNotches[kMaxNotches];
+    BiquadCoefficients mNotchCoeffs[kMaxNotches];
+    BiquadState mNotchStates[kMaxNotches];
+    uint32_t mNotchMask;
+
+    std::atomic<int32_t> mDetectionCount;
+    std::atomic<float> mNotchFrequencies[kMaxNotches];
+};
+
+#endif //LISTENHELP6_HOWLSUPPRESSOR_H
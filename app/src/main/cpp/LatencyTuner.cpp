@@ -0,0 +1,62 @@
+#include "LatencyTuner.h"
+#include <algorithm>
+
+const int32_t LatencyTuner::kCheckIntervalMs;
+const int32_t LatencyTuner::kMinBursts;
+const int32_t LatencyTuner::kInitialShrinkAfterChecks;
+const int32_t LatencyTuner::kMaxShrinkAfterChecks;
+const int32_t LatencyTuner::kProbeChecks;
+
+LatencyTuner::LatencyTuner() {
+    configure(1, 1, kMinBursts);
+}
+
+void LatencyTuner::configure(int32_t framesPerBurst, int32_t capacityFrames, int32_t initialBursts) {
+    mFramesPerBurst = std::max(1, framesPerBurst);
+    mMaxBursts = std::max(kMinBursts, capacityFrames / mFramesPerBurst);
+    mBursts = std::max(kMinBursts, std::min(mMaxBursts, initialBursts));
+    mHasBaseline = false;
+    mLastXRunCount = 0;
+    mStableChecks = 0;
+    mShrinkAfterChecks = kInitialShrinkAfterChecks;
+    mProbeRemaining = 0;
+}
+
+int32_t LatencyTuner::update(int32_t xRunCount) {
+    if (!mHasBaseline || xRunCount < mLastXRunCount) {
+        // 第一次检查或流被重新打开（计数归零），只记录起点
+        mHasBaseline = true;
+        mLastXRunCount = xRunCount;
+        return getBufferFrames();
+    }
+    
+    bool glitched = xRunCount > mLastXRunCount;
+    mLastXRunCount = xRunCount;
+    
+    if (glitched) {
+        // 刚减小后就出现欠载：这个大小不够，下次要稳定更久才再尝试
+        if (mProbeRemaining > 0) {
+            mShrinkAfterChecks = std::min(kMaxShrinkAfterChecks, mShrinkAfterChecks * 2);
+            mProbeRemaining = 0;
+        }
+        mBursts = std::min(mMaxBursts, mBursts + 1);
+        mStableChecks = 0;
+        return getBufferFrames();
+    }
+    
+    if (mProbeRemaining > 0) {
+        mProbeRemaining--;
+    }
+    mStableChecks++;
+    if (mStableChecks >= mShrinkAfterChecks && mBursts > kMinBursts) {
+        mBursts--;
+        mStableChecks = 0;
+        mProbeRemaining = kProbeChecks;
+    }
+    return getBufferFrames();
+}
+
+int32_t LatencyTuner::getKnownGoodFrames() const {
+    int32_t bursts = mProbeRemaining > 0 ? std::min(mMaxBursts, mBursts + 1) : mBursts;
+    return bursts * mFramesPerBurst;
+}
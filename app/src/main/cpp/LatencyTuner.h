@@ -0,0 +1,49 @@
+#ifndef LISTENHELP6_LATENCYTUNER_H
+#define LISTENHELP6_LATENCYTUNER_H
+
+#include <cstdint>
+
+// 输出缓冲区大小的自适应调整策略（只含决策逻辑，不访问音频流）
+// - 从给定的突发数开始（默认1个突发，即最低延迟）
+// - 每kCheckIntervalMs检查一次xrun计数：有新的xrun就增大一个突发
+// - 连续一段时间没有xrun时尝试减小一个突发；减小后kProbeChecks次检查内出现xrun说明减小失败，
+//   恢复原大小，并把下次尝试前需要的稳定时间加倍（上限kMaxShrinkAfterChecks）
+// 由非实时线程调用，不需要同步。
+class LatencyTuner {
+public:
+    static const int32_t kCheckIntervalMs = 100;
+    static const int32_t kMinBursts = 1;
+
+    LatencyTuner();
+
+    // 设置突发大小、缓冲区容量和起始突发数（会被限制在有效范围内），并清除统计
+    void configure(int32_t framesPerBurst, int32_t capacityFrames, int32_t initialBursts);
+
+    // 每次检查时传入流的累计xrun计数，返回应设置的缓冲区大小（帧）
+    int32_t update(int32_t xRunCount);
+
+    // 当前的缓冲区大小（帧）与突发数
+    int32_t getBufferFrames() const { return mBursts * mFramesPerBurst; }
+    int32_t getBursts() const { return mBursts; }
+
+    // 已验证不会欠载的缓冲区大小（帧）：试探性减小期间为减小前的大小，用于持久化
+    int32_t getKnownGoodFrames() const;
+
+private:
+    // 首次尝试减小前需要的稳定时间（10秒），失败后加倍，最长约10分钟
+    static const int32_t kInitialShrinkAfterChecks = 10000 / kCheckIntervalMs;
+    static const int32_t kMaxShrinkAfterChecks = 64 * kInitialShrinkAfterChecks;
+    // 减小后的试探期（5秒）
+    static const int32_t kProbeChecks = 5000 / kCheckIntervalMs;
+
+    int32_t mFramesPerBurst;
+    int32_t mMaxBursts;
+    int32_t mBursts;
+    bool mHasBaseline;                    // 是否已记录xrun计数的起点
+    int32_t mLastXRunCount;
+    int32_t mStableChecks;                // 连续没有xrun的检查次数
+    int32_t mShrinkAfterChecks;
+    int32_t mProbeRemaining;              // 大于0表示正处于减小后的试探期
+};
+
+#endif //LISTENHELP6_LATENCYTUNER_H
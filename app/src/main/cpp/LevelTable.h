@@ -0,0 +1,56 @@
+#ifndef LISTENHELP6_LEVELTABLE_H
+#define LISTENHELP6_LEVELTABLE_H
+
+#include <cmath>
+#include <cstdint>
+#include <cstring>
+
+// 以幅度的浮点位模式为下标的查找表
+// 指数位加尾数最高4位即为表下标（每倍频程16个点，约0.38dB），余下的尾数位作为线性插值比例，
+// 查表时没有log/pow运算。表项i对应的幅度为 2^(minExponent + i/16) * (1 + (i%16)/16)，
+// 设计表格时必须用levelAt()取幅度，查表和设计才能一一对应。
+namespace leveltable {
+
+static const int kStepsPerOctave = 16;
+
+// 表项数：覆盖octaves个倍频程（含两端）
+inline constexpr int tableSize(int octaves) {
+    return octaves * kStepsPerOctave + 1;
+}
+
+// 表项index对应的幅度（设计时使用，非实时线程）
+inline double levelAt(int index, int minExponent) {
+    int exponent = minExponent + index / kStepsPerOctave;
+    int step = index % kStepsPerOctave;
+    return std::ldexp(1.0 + static_cast<double>(step) / kStepsPerOctave, exponent);
+}
+
+// 查表并线性插值，level必须非负；超出表范围时取两端的表项
+// 先把幅度限制在表范围内再取位模式，查表没有数据相关的分支
+inline float lookup(const float *table, int size, int minExponent, float level) {
+    const int mantissaShift = 23 - 4;
+    const uint32_t fractionMask = (1u << mantissaShift) - 1;
+    const float fractionScale = 1.0f / (1u << mantissaShift);
+    static_assert(kStepsPerOctave == 1 << (23 - mantissaShift), "每倍频程的点数必须与尾数位数一致");
+    
+    // 下限为2^minExponent，上限为略小于2^(minExponent + octaves)的最大浮点数（落在最后一段的末端）
+    const int octaves = (size - 1) / kStepsPerOctave;
+    const uint32_t minBits = static_cast<uint32_t>(127 + minExponent) << 23;
+    const uint32_t maxBits = (static_cast<uint32_t>(127 + minExponent + octaves) << 23) - 1;
+    float minLevel;
+    float maxLevel;
+    memcpy(&minLevel, &minBits, sizeof(minLevel));
+    memcpy(&maxLevel, &maxBits, sizeof(maxLevel));
+    level = level < minLevel ? minLevel : level;
+    level = level > maxLevel ? maxLevel : level;
+    
+    uint32_t bits;
+    memcpy(&bits, &level, sizeof(bits));
+    int32_t index = static_cast<int32_t>((bits - minBits) >> mantissaShift);
+    float fraction = (bits & fractionMask) * fractionScale;
+    return table[index] + (table[index + 1] - table[index]) * fraction;
+}
+
+} // namespace leveltable
+
+#endif //LISTENHELP6_LEVELTABLE_H
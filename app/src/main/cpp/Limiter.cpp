@@ -0,0 +1,315 @@
+#include "Limiter.h"
+#include <algorithm>
+#include <cmath>
+
+namespace {
+
+// 软拐点宽度：峰值超过上限以下6dB开始限幅
+const double kKneeWidthDb = 6.0;
+
+// 增益恢复的时间常数
+const double kReleaseMs = 50.0;
+
+// 表项之间线性插值的增益略高于真实曲线（1/x为凸函数），留出余量保证不超过上限
+const double kTableSafety = 0.999;
+
+// 释放后的增益高于此值视为已完全恢复（浮点运算下释放曲线不一定精确回到1）
+const float kIdleGain = 0.99999f;
+
+} // namespace
+
+constexpr float Limiter::kCeiling;
+constexpr float Limiter::kMinLookaheadMs;
+constexpr float Limiter::kMaxLookaheadMs;
+constexpr float Limiter::kDefaultLookaheadMs;
+
+Limiter::Limiter()
+    : mConfigured(false)
+    , mSampleRate(0)
+    , mMaxLookaheadFrames(1)
+    , mLookaheadFrames(1)
+    , mLookaheadMs(0.0f)
+    , mReleaseCoeff(0.0f)
+    , mKneeLevel(0.0f)
+    , mTableMaxLevel(1.0f)
+    , mPosition(0)
+    , mBlockPosition(0)
+    , mPrefixMax(0.0f)
+    , mReleasedGain(1.0f)
+    , mGainSum(0.0f) {
+    std::fill(mGainTable, mGainTable + kTableSize, 1.0f);
+}
+
+void Limiter::configure(int32_t sampleRate) {
+    mSampleRate = std::max(sampleRate, 1);
+    mMaxLookaheadFrames = std::max(1, static_cast<int32_t>(std::ceil(kMaxLookaheadMs * 0.001 * mSampleRate)));
+    mReleaseCoeff = static_cast<float>(std::exp(-1.0 / (kReleaseMs * 0.001 * mSampleRate)));
+    
+    // 软拐点曲线（dB域）：拐点以下为直通，拐点内二次过渡，之后输出等于上限
+    double ceilingDb = 20.0 * std::log10(static_cast<double>(kCeiling));
+    for (int i = 0; i < kTableSize; i++) {
+        double levelDb = 20.0 * std::log10(leveltable::levelAt(i, kTableMinExponent));
+        double overshoot = levelDb - (ceilingDb - kKneeWidthDb / 2.0);
+        double outputDb;
+        if (overshoot <= 0.0) {
+            outputDb = levelDb;
+        } else if (overshoot < kKneeWidthDb) {
+            outputDb = levelDb - overshoot * overshoot / (2.0 * kKneeWidthDb);
+        } else {
+            outputDb = ceilingDb;
+        }
+        double gain = std::pow(10.0, (outputDb - levelDb) / 20.0);
+        if (overshoot > 0.0) {
+            gain *= kTableSafety;
+        }
+        mGainTable[i] = static_cast<float>(std::min(1.0, gain));
+    }
+    
+    mTableMaxLevel = static_cast<float>(std::ldexp(1.0, kTableMinExponent + kTableOctaves));
+    
+    // 第一个小于1的表项之前两项的幅度：低于它时插值的两端都是1
+    mKneeLevel = 0.0f;
+    for (int i = 1; i < kTableSize; i++) {
+        if (mGainTable[i] < 1.0f) {
+            mKneeLevel = static_cast<float>(leveltable::levelAt(i - 1, kTableMinExponent));
+            break;
+        }
+    }
+    
+    mDelayLine.assign(mMaxLookaheadFrames, 0.0f);
+    mBlockPeaks.assign(mMaxLookaheadFrames + 1, 0.0f);
+    mSuffixMax.assign(mMaxLookaheadFrames + 2, 0.0f);
+    mGainHistory.assign(mMaxLookaheadFrames, 1.0f);
+    
+    mConfigured = true;
+    mLookaheadMs = 0.0f;
+    mLookaheadFrames = 1;
+    mPosition = 0;
+    setLookahead(kDefaultLookaheadMs);
+    reset();
+}
+
+void Limiter::setLookahead(float lookaheadMs) {
+    if (!mConfigured || lookaheadMs == mLookaheadMs) {
+        return;
+    }
+    mLookaheadMs = lookaheadMs;
+    
+    lookaheadMs = std::max(kMinLookaheadMs, std::min(kMaxLookaheadMs, lookaheadMs));
+    int32_t frames = static_cast<int32_t>(lookaheadMs * 0.001f * mSampleRate + 0.5f);
+    frames = std::max(1, std::min(mMaxLookaheadFrames, frames));
+    if (frames != mLookaheadFrames) {
+        resizeLookahead(frames);
+    }
+}
+
+void Limiter::resizeLookahead(int32_t frames) {
+    const int32_t oldFrames = mLookaheadFrames;
+    float *delayLine = mDelayLine.data();
+    float *gainHistory = mGainHistory.data();
+    
+    // 环形缓冲区展开为从最旧到最新（两者共用写入位置），之后写入位置为0
+    std::rotate(delayLine, delayLine + mPosition, delayLine + oldFrames);
+    std::rotate(gainHistory, gainHistory + mPosition, gainHistory + oldFrames);
+    mPosition = 0;
+    
+    if (frames < oldFrames) {
+        // 丢弃最旧的样本。保留的增益是按更长的窗口求得的，对更短的窗口同样足够
+        const int32_t dropped = oldFrames - frames;
+        std::copy(delayLine + dropped, delayLine + oldFrames, delayLine);
+        std::copy(gainHistory + dropped, gainHistory + oldFrames, gainHistory);
+    } else {
+        // 在最旧的样本之前补足延迟：从最旧的样本正向重放再反向回到它（较长时分为几段），
+        // 每段的两端都与相邻样本衔接，不插入静音
+        const int32_t added = frames - oldFrames;
+        std::copy_backward(delayLine, delayLine + oldFrames, delayLine + frames);
+        std::copy_backward(gainHistory, gainHistory + oldFrames, gainHistory + frames);
+        const float *oldest = delayLine + added;
+        const int32_t maxSegment = 2 * oldFrames - 1;
+        const int32_t segments = (added + maxSegment - 1) / maxSegment;
+        int32_t filled = 0;
+        for (int32_t segment = 0; segment < segments; segment++) {
+            const int32_t length = added / segments + (segment < added % segments ? 1 : 0);
+            for (int32_t j = 0; j < length; j++) {
+                delayLine[filled++] = oldest[j <= length / 2 ? j : length - j];
+            }
+        }
+        
+        // 已有的增益按较短的窗口求得，不一定覆盖新窗口内的所有样本，
+        // 因此都限制为延迟线中最大峰值所需的增益，补足的增益也取此值
+        float peak = 0.0f;
+        for (int32_t i = added; i < frames; i++) {
+            peak = std::max(peak, std::fabs(delayLine[i]));
+        }
+        const float limit = requiredGain(peak);
+        std::fill(gainHistory, gainHistory + added, limit);
+        for (int32_t i = added; i < frames; i++) {
+            gainHistory[i] = std::min(gainHistory[i], limit);
+        }
+        mReleasedGain = std::min(mReleasedGain, limit);
+    }
+    mLookaheadFrames = frames;
+    
+    // 延迟线中是最近frames帧输入，恰好是下一个窗口中来自上一块的部分：
+    // 新块第b帧的窗口覆盖上一块的b+1到末尾，上一块第j帧即延迟线第j-1帧
+    float *suffixMax = mSuffixMax.data();
+    float running = 0.0f;
+    suffixMax[frames + 1] = 0.0f;
+    for (int32_t j = frames; j >= 1; j--) {
+        running = std::max(running, std::fabs(delayLine[j - 1]));
+        suffixMax[j] = running;
+    }
+    suffixMax[0] = running;
+    mBlockPosition = 0;
+    mPrefixMax = 0.0f;
+    
+    float gainSum = 0.0f;
+    for (int32_t i = 0; i < frames; i++) {
+        gainSum += gainHistory[i];
+    }
+    mGainSum = gainSum;
+}
+
+float Limiter::requiredGain(float peak) const {
+    return peak < mTableMaxLevel
+            ? leveltable::lookup(mGainTable, kTableSize, kTableMinExponent, peak)
+            : static_cast<float>(kCeiling * kTableSafety) / peak;
+}
+
+void Limiter::reset() {
+    if (!mConfigured) {
+        return;
+    }
+    std::fill(mDelayLine.begin(), mDelayLine.end(), 0.0f);
+    std::fill(mGainHistory.begin(), mGainHistory.end(), 1.0f);
+    std::fill(mSuffixMax.begin(), mSuffixMax.end(), 0.0f);
+    mPosition = 0;
+    mBlockPosition = 0;
+    mPrefixMax = 0.0f;
+    mReleasedGain = 1.0f;
+    mGainSum = static_cast<float>(mLookaheadFrames);
+}
+
+bool Limiter::processIdle(float *buffer, int32_t numFrames) {
+    const int32_t lookahead = mLookaheadFrames;
+    if (mReleasedGain < kIdleGain || mGainSum < lookahead * kIdleGain
+            || mPrefixMax >= mKneeLevel || mSuffixMax[0] >= mKneeLevel) {
+        return false;
+    }
+    
+    // 本块输入都低于拐点时，窗口内所有峰值都低于拐点，所需增益恒为1。
+    // 分块峰值数组中未更新的位置保留的旧值同样低于拐点，不影响之后的窗口最大值
+    bool overKnee = false;
+    for (int32_t i = 0; i < numFrames; i++) {
+        overKnee |= std::fabs(buffer[i]) >= mKneeLevel;
+    }
+    if (overKnee) {
+        return false;
+    }
+    
+    // 按环形缓冲区的回绕点分段，与延迟线交换样本
+    float *delayLine = mDelayLine.data();
+    int32_t remaining = numFrames;
+    float *samples = buffer;
+    while (remaining > 0) {
+        int32_t count = std::min(remaining, lookahead - mPosition);
+        float *delayed = delayLine + mPosition;
+        for (int32_t i = 0; i < count; i++) {
+            float sample = samples[i];
+            samples[i] = delayed[i];
+            delayed[i] = sample;
+        }
+        mPosition = mPosition + count == lookahead ? 0 : mPosition + count;
+        samples += count;
+        remaining -= count;
+    }
+    mBlockPosition = (mBlockPosition + numFrames) % (lookahead + 1);
+    return true;
+}
+
+void Limiter::process(float *buffer, int32_t numFrames) {
+    if (!mConfigured || processIdle(buffer, numFrames)) {
+        return;
+    }
+    
+    const int32_t lookahead = mLookaheadFrames;
+    const int32_t window = lookahead + 1;
+    const float invLookahead = 1.0f / lookahead;
+    const float releaseCoeff = mReleaseCoeff;
+    const float releaseComplement = 1.0f - mReleaseCoeff;
+    float *blockPeaks = mBlockPeaks.data();
+    float *suffixMax = mSuffixMax.data();
+    float *delayLine = mDelayLine.data();
+    float *gainHistory = mGainHistory.data();
+    
+    // 状态放在局部变量中，避免每个样本经由this读写（与缓冲区可能别名，编译器无法保留在寄存器中）
+    int32_t position = mPosition;
+    int32_t blockPosition = mBlockPosition;
+    float prefixMax = mPrefixMax;
+    float releasedGain = mReleasedGain;
+    float gainSum = mGainSum;
+    // 窗口峰值在持续的峰值之间常常不变，此时沿用上次查表的结果
+    float lastWindowPeak = -1.0f;
+    float required = 1.0f;
+    
+    for (int32_t i = 0; i < numFrames; i++) {
+        float sample = buffer[i];
+        float peak = std::fabs(sample);
+        
+        // 窗口[n-lookahead, n]覆盖上一块的 blockPosition+1 到末尾，以及本块的 0 到 blockPosition
+        blockPeaks[blockPosition] = peak;
+        prefixMax = std::max(prefixMax, peak);
+        float windowPeak = std::max(prefixMax, suffixMax[blockPosition + 1]);
+        
+        // 所需增益：立即下降，按释放系数恢复（始终不高于所需增益）
+        if (windowPeak != lastWindowPeak) {
+            lastWindowPeak = windowPeak;
+            required = requiredGain(windowPeak);
+        }
+        // 写成 required*(1-c) + c*releasedGain，递归依赖链上只有一次乘加和一次取最小
+        float released = required * releaseComplement + releaseCoeff * releasedGain;
+        releasedGain = std::min(required, released);
+        
+        // lookahead长度的滑动平均：窗口内的值都不高于延迟样本所需的增益，平均值也不会
+        gainSum += releasedGain - gainHistory[position];
+        gainHistory[position] = releasedGain;
+        float gain = gainSum * invLookahead;
+        
+        float delayed = delayLine[position];
+        delayLine[position] = sample;
+        position = position + 1 == lookahead ? 0 : position + 1;
+        
+        buffer[i] = delayed * gain;
+        
+        // 一块结束：计算其后缀最大值供下一块使用，并重新求和增益窗口消除累积误差
+        if (++blockPosition == window) {
+            float running = 0.0f;
+            for (int32_t j = window - 1; j >= 0; j--) {
+                running = std::max(running, blockPeaks[j]);
+                suffixMax[j] = running;
+            }
+            blockPosition = 0;
+            prefixMax = 0.0f;
+            
+            // 四路部分和，缩短加法依赖链
+            float sums[4] = {0.0f, 0.0f, 0.0f, 0.0f};
+            int32_t j = 0;
+            for (; j + 4 <= lookahead; j += 4) {
+                sums[0] += gainHistory[j];
+                sums[1] += gainHistory[j + 1];
+                sums[2] += gainHistory[j + 2];
+                sums[3] += gainHistory[j + 3];
+            }
+            for (; j < lookahead; j++) {
+                sums[0] += gainHistory[j];
+            }
+            gainSum = (sums[0] + sums[1]) + (sums[2] + sums[3]);
+        }
+    }
+    
+    mPosition = position;
+    mBlockPosition = blockPosition;
+    mPrefixMax = prefixMax;
+    mReleasedGain = releasedGain;
+    mGainSum = gainSum;
+}
@@ -0,0 +1,82 @@
+#ifndef LISTENHELP6_LIMITER_H
+#define LISTENHELP6_LIMITER_H
+
+#include <cstdint>
+#include <vector>
+#include "LevelTable.h"
+
+// 前瞻砖墙限幅器（输出保护）
+// - 输入延迟lookahead帧，最近lookahead+1帧的峰值用分块前缀/后缀最大值（van Herk/Gil-Werman）求得，
+//   每个样本固定两次比较，没有数据相关的分支
+// - 峰值查增益表（软拐点，峰值超过拐点后逐渐压向上限）得到所需增益，再经释放平滑和lookahead长度的滑动平均，
+//   保证延迟后的每个样本乘以增益后都不超过kCeiling，且增益变化平滑无咔嗒声
+// 所有缓冲区按最大前瞻时间在configure中分配，process不分配内存。
+class Limiter {
+public:
+    // 输出上限（约-1dBFS）
+    static constexpr float kCeiling = 0.891f;
+    // 前瞻时间范围（毫秒）
+    static constexpr float kMinLookaheadMs = 0.5f;
+    static constexpr float kMaxLookaheadMs = 5.0f;
+    static constexpr float kDefaultLookaheadMs = 1.5f;
+
+    Limiter();
+
+    // 按采样率分配缓冲区并计算增益表（非实时线程）
+    void configure(int32_t sampleRate);
+
+    // 设置前瞻时间，可在音频线程处理过程中调用：帧数变化时保留延迟线中的样本和增益状态，
+    // 缩短时丢弃最旧的样本，延长时把最旧的一段样本正向再反向重放补足，之后的输出仍不超过kCeiling
+    void setLookahead(float lookaheadMs);
+
+    // 当前前瞻帧数，即限幅器引入的延迟
+    int32_t getLookaheadFrames() const { return mLookaheadFrames; }
+
+    // 清除延迟线和增益状态
+    void reset();
+
+    // 原地处理单声道数据
+    void process(float *buffer, int32_t numFrames);
+
+private:
+    // 没有样本接近拐点且增益已完全恢复时，只做延迟
+    bool processIdle(float *buffer, int32_t numFrames);
+
+    // 把延迟线和增益窗口改为frames帧，并按延迟线中的样本重建滑动窗口峰值
+    void resizeLookahead(int32_t frames);
+
+    // 窗口峰值所需的增益
+    float requiredGain(float peak) const;
+
+    // 增益表覆盖2^-4到2^8（约-24dBFS到+48dBFS），低于拐点时增益为1；超出表范围的峰值直接按上限/峰值计算
+    static const int kTableMinExponent = -4;
+    static const int kTableOctaves = 12;
+    static const int kTableSize = leveltable::tableSize(kTableOctaves);
+
+    bool mConfigured;
+    int32_t mSampleRate;
+    int32_t mMaxLookaheadFrames;
+    int32_t mLookaheadFrames;
+    float mLookaheadMs;
+    float mReleaseCoeff;
+    float mKneeLevel;                     // 低于此幅度时增益表恰好为1
+    float mTableMaxLevel;                 // 增益表覆盖的最大幅度
+    float mGainTable[kTableSize];
+
+    // 延迟线和增益滑动平均窗口共用同一个写入位置
+    std::vector<float> mDelayLine;
+    std::vector<float> mGainHistory;
+    int32_t mPosition;
+
+    // 滑动窗口峰值：按窗口长度分块，窗口最大值 = max(上一块的后缀最大值, 本块的前缀最大值)
+    std::vector<float> mBlockPeaks;       // 本块各帧的幅度
+    std::vector<float> mSuffixMax;        // 上一块的后缀最大值（多一项0作为哨兵）
+    int32_t mBlockPosition;
+    float mPrefixMax;
+
+    // 增益平滑
+    float mReleasedGain;
+    float mGainSum;                       // 每块结束时重新求和，消除累积误差
+};
+
+#endif //LISTENHELP6_LIMITER_H
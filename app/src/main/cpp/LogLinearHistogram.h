@@ -0,0 +1,85 @@
+#ifndef LISTENHELP6_LOGLINEARHISTOGRAM_H
+#define LISTENHELP6_LOGLINEARHISTOGRAM_H
+
+#include <atomic>
+#include <cstdint>
+
+// 对数线性直方图（单写者，读者无锁）
+// 非负整数值按2的幂分组，每组再均分为kSubBuckets个桶：小于kSubBuckets的值逐个计数，
+// 之后每个桶的宽度不超过其下界的1/kSubBuckets，取桶中点时分位数的相对误差不超过1/(2*kSubBuckets)。
+// 超过kMaxValue的值计入最后一个桶（最大值仍单独记录）。
+// - record只在一个线程（音频回调）中调用：计数用relaxed原子量的读取+写入更新，没有原子读改写和内存分配
+// - 其他线程用copyCounts随时读取各桶计数，不阻塞写者；各桶分别读取，副本中可能缺少正在进行的那一次记录
+// 分位数在读取方计算（Java层的CallbackStats使用同样的分桶规则）。
+class LogLinearHistogram {
+public:
+    static const int kSubBucketBits = 5;
+    static const uint32_t kSubBuckets = 1u << kSubBucketBits;
+    static const int kMaxShift = 18;                          // 可分辨的最大值为2^24 - 1
+    static const uint32_t kMaxValue = (kSubBuckets << (kMaxShift + 1)) - 1;
+    static const int kNumBuckets = (kMaxShift + 2) << kSubBucketBits;
+
+    LogLinearHistogram() {
+        reset();
+    }
+
+    // 清零（不可与record并发）
+    void reset() {
+        for (int i = 0; i < kNumBuckets; i++) {
+            mCounts[i].store(0, std::memory_order_relaxed);
+        }
+        mSum.store(0, std::memory_order_relaxed);
+        mMax.store(0, std::memory_order_relaxed);
+    }
+
+    // 写者：记录一个值
+    void record(uint32_t value) {
+        std::atomic<uint32_t> &count = mCounts[bucketIndex(value)];
+        count.store(count.load(std::memory_order_relaxed) + 1, std::memory_order_relaxed);
+        mSum.store(mSum.load(std::memory_order_relaxed) + value, std::memory_order_relaxed);
+        if (value > mMax.load(std::memory_order_relaxed)) {
+            mMax.store(value, std::memory_order_relaxed);
+        }
+    }
+
+    // 读者：复制kNumBuckets个桶的计数
+    void copyCounts(int64_t *counts) const {
+        for (int i = 0; i < kNumBuckets; i++) {
+            counts[i] = mCounts[i].load(std::memory_order_relaxed);
+        }
+    }
+
+    uint64_t getSum() const { return mSum.load(std::memory_order_relaxed); }
+    uint32_t getMax() const { return mMax.load(std::memory_order_relaxed); }
+
+    // 值所在的桶：小于kSubBuckets时为值本身，否则为 (移位数 + 1) * kSubBuckets + 最高kSubBucketBits位之后的尾数
+    static int bucketIndex(uint32_t value) {
+        if (value < kSubBuckets) {
+            return static_cast<int>(value);
+        }
+        if (value > kMaxValue) {
+            value = kMaxValue;
+        }
+        int shift = (31 - __builtin_clz(value)) - kSubBucketBits;
+        return ((shift + 1) << kSubBucketBits) + static_cast<int>((value >> shift) - kSubBuckets);
+    }
+
+    // 桶的下界与宽度
+    static uint32_t bucketLowerBound(int index) {
+        int group = index >> kSubBucketBits;
+        uint32_t offset = static_cast<uint32_t>(index) & (kSubBuckets - 1);
+        return group == 0 ? offset : (kSubBuckets + offset) << (group - 1);
+    }
+
+    static uint32_t bucketWidth(int index) {
+        int group = index >> kSubBucketBits;
+        return group == 0 ? 1u : 1u << (group - 1);
+    }
+
+private:
+    std::atomic<uint32_t> mCounts[kNumBuckets];
+    std::atomic<uint64_t> mSum;
+    std::atomic<uint32_t> mMax;
+};
+
+#endif //LISTENHELP6_LOGLINEARHISTOGRAM_H
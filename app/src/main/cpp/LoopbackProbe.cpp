@@ -0,0 +1,136 @@
+#include "LoopbackProbe.h"
+#include <algorithm>
+#include <cmath>
+#include <cstring>
+
+const int32_t LoopbackProbe::kSequenceOrder;
+const int32_t LoopbackProbe::kSequenceLength;
+const int32_t LoopbackProbe::kMaxDelayMs;
+constexpr float LoopbackProbe::kAmplitude;
+constexpr float LoopbackProbe::kMinConfidence;
+
+LoopbackProbe::LoopbackProbe()
+    : mState(kIdle)
+    , mRecordFrames(0)
+    , mPosition(0) {
+    // 10阶MLS：本原多项式 x^10 + x^7 + 1 的线性反馈移位寄存器
+    mSequence.resize(kSequenceLength);
+    uint32_t lfsr = 1;
+    for (int32_t i = 0; i < kSequenceLength; i++) {
+        mSequence[i] = (lfsr & 1) ? 1.0f : -1.0f;
+        uint32_t feedback = ((lfsr >> 0) ^ (lfsr >> 3)) & 1;
+        lfsr = (lfsr >> 1) | (feedback << (kSequenceOrder - 1));
+    }
+}
+
+void LoopbackProbe::configure(int32_t sampleRate) {
+    mState.store(kIdle, std::memory_order_release);
+    mRecordFrames = static_cast<int32_t>(static_cast<int64_t>(sampleRate) * kMaxDelayMs / 1000) + kSequenceLength;
+    mRecording.assign(mRecordFrames, 0.0f);
+    
+    // 线性（非循环）互相关需要FFT长度不小于录音长度加序列长度
+    int32_t fftSize = 4;
+    while (fftSize < mRecordFrames + kSequenceLength) {
+        fftSize *= 2;
+    }
+    mFft.init(fftSize);
+    int32_t numBins = fftSize / 2 + 1;
+    mFrame.assign(fftSize, 0.0f);
+    mRecordingRe.assign(numBins, 0.0f);
+    mRecordingIm.assign(numBins, 0.0f);
+    mSequenceRe.assign(numBins, 0.0f);
+    mSequenceIm.assign(numBins, 0.0f);
+    
+    // 序列的频谱只需计算一次
+    std::copy(mSequence.begin(), mSequence.end(), mFrame.begin());
+    mFft.forward(mFrame.data(), mSequenceRe.data(), mSequenceIm.data());
+}
+
+bool LoopbackProbe::start() {
+    if (mRecordFrames == 0) {
+        return false;
+    }
+    int expected = kIdle;
+    return mState.compare_exchange_strong(expected, kArmed, std::memory_order_acq_rel);
+}
+
+bool LoopbackProbe::record(const float *input, int32_t numFrames) {
+    int state = mState.load(std::memory_order_acquire);
+    if (state == kArmed) {
+        mPosition = 0;
+        mState.store(kRunning, std::memory_order_relaxed);
+    } else if (state != kRunning) {
+        return false;
+    }
+    
+    int32_t count = std::min(numFrames, mRecordFrames - mPosition);
+    if (count > 0) {
+        memcpy(mRecording.data() + mPosition, input, count * sizeof(float));
+    }
+    return true;
+}
+
+void LoopbackProbe::play(float *output, int32_t numFrames) {
+    for (int32_t i = 0; i < numFrames; i++) {
+        int32_t index = mPosition + i;
+        output[i] = index < kSequenceLength ? kAmplitude * mSequence[index] : 0.0f;
+    }
+    mPosition += numFrames;
+    if (mPosition >= mRecordFrames) {
+        mState.store(kFinished, std::memory_order_release);
+    }
+}
+
+bool LoopbackProbe::collect(Result &result) {
+    if (mState.load(std::memory_order_acquire) != kFinished) {
+        return false;
+    }
+    
+    // 互相关 c[lag] = Σ rec[lag + n] * seq[n]：频域中录音频谱乘以序列频谱的共轭。
+    // 按幅度归一化（PHAT加权），使环境中的低频噪声和嗡嗡声不会压过宽带测试信号
+    const int32_t fftSize = mFft.size();
+    const int32_t numBins = fftSize / 2 + 1;
+    std::fill(mFrame.begin(), mFrame.end(), 0.0f);
+    std::copy(mRecording.begin(), mRecording.end(), mFrame.begin());
+    mFft.forward(mFrame.data(), mRecordingRe.data(), mRecordingIm.data());
+    for (int32_t k = 0; k < numBins; k++) {
+        float re = mRecordingRe[k] * mSequenceRe[k] + mRecordingIm[k] * mSequenceIm[k];
+        float im = mRecordingIm[k] * mSequenceRe[k] - mRecordingRe[k] * mSequenceIm[k];
+        float scale = 1.0f / (std::sqrt(re * re + im * im) + 1e-20f);
+        mRecordingRe[k] = re * scale;
+        mRecordingIm[k] = im * scale;
+    }
+    mFft.inverse(mRecordingRe.data(), mRecordingIm.data(), mFrame.data());
+    
+    // 只在完整包含序列的延迟范围内找峰值
+    const int32_t maxLag = mRecordFrames - kSequenceLength;
+    int32_t peakLag = 0;
+    float peak = 0.0f;
+    double energy = 0.0;
+    for (int32_t lag = 0; lag <= maxLag; lag++) {
+        float magnitude = std::fabs(mFrame[lag]);
+        energy += static_cast<double>(mFrame[lag]) * mFrame[lag];
+        if (magnitude > peak) {
+            peak = magnitude;
+            peakLag = lag;
+        }
+    }
+    float rms = static_cast<float>(std::sqrt(energy / (maxLag + 1)));
+    
+    // 抛物线插值得到小数延迟
+    float delay = static_cast<float>(peakLag);
+    if (peakLag > 0 && peakLag < maxLag) {
+        float left = std::fabs(mFrame[peakLag - 1]);
+        float right = std::fabs(mFrame[peakLag + 1]);
+        float denominator = left - 2.0f * peak + right;
+        if (denominator < 0.0f) {
+            delay += 0.5f * (left - right) / denominator;
+        }
+    }
+    
+    result.confidence = rms > 0.0f ? peak / rms : 0.0f;
+    result.valid = result.confidence >= kMinConfidence;
+    result.delayFrames = delay;
+    mState.store(kIdle, std::memory_order_release);
+    return true;
+}
@@ -0,0 +1,71 @@
+#ifndef LISTENHELP6_LOOPBACKPROBE_H
+#define LISTENHELP6_LOOPBACKPROBE_H
+
+#include <atomic>
+#include <cstdint>
+#include <vector>
+#include "Fft.h"
+
+// 回环延迟测量
+// 用测试信号（10阶最大长度序列MLS，约21ms）替换一次输出，同时录下麦克风信号，
+// 录满kMaxDelayMs后在非实时线程用FFT求录音与序列的互相关，峰值位置即扬声器到麦克风的往返延迟（帧，抛物线插值）。
+// 置信度为互相关峰值与全部延迟上互相关均方根之比（只有噪声时约为4）；没有声学回路（如使用耳机）时置信度低，结果无效。
+// 音频线程部分（record/play）只做拷贝，不分配内存；缓冲区和FFT表在configure中分配。
+class LoopbackProbe {
+public:
+    static const int32_t kSequenceOrder = 10;
+    static const int32_t kSequenceLength = (1 << kSequenceOrder) - 1;
+    static const int32_t kMaxDelayMs = 500;
+    static constexpr float kAmplitude = 0.25f;
+    static constexpr float kMinConfidence = 6.0f;
+
+    struct Result {
+        bool valid;
+        float delayFrames;
+        float confidence;
+    };
+
+    LoopbackProbe();
+
+    // 按采样率分配录音缓冲区和FFT表（非实时线程，不能与测量同时进行）
+    void configure(int32_t sampleRate);
+
+    // 请求开始一次测量，下一个回调开始生效；未配置或正在测量时返回false（非实时线程）
+    bool start();
+
+    // 是否有已请求、正在进行或尚未取走结果的测量
+    bool isBusy() const { return mState.load(std::memory_order_acquire) != kIdle; }
+
+    // 音频线程：在处理之前传入麦克风信号（单声道），返回本回调是否处于测量中
+    bool record(const float *input, int32_t numFrames);
+
+    // 音频线程：record返回true时在处理之后调用，用测试信号替换输出（单声道）
+    void play(float *output, int32_t numFrames);
+
+    // 非实时线程：若有已完成的测量，计算互相关并返回true，之后回到空闲状态
+    bool collect(Result &result);
+
+private:
+    enum State {
+        kIdle,
+        kArmed,         // 已请求，等待音频线程开始
+        kRunning,       // 音频线程正在播放和录音
+        kFinished       // 录音已满，等待collect
+    };
+
+    std::atomic<int> mState;
+    int32_t mRecordFrames;                // 录音长度：最大延迟加序列长度
+    int32_t mPosition;                    // 测量开始后的帧数（仅音频线程）
+    std::vector<float> mSequence;         // ±1的MLS
+    std::vector<float> mRecording;
+
+    // 互相关（仅collect使用）
+    RealFft mFft;
+    std::vector<float> mFrame;
+    std::vector<float> mRecordingRe;
+    std::vector<float> mRecordingIm;
+    std::vector<float> mSequenceRe;
+    std::vector<float> mSequenceIm;
+};
+
+#endif //LISTENHELP6_LOOPBACKPROBE_H
@@ -0,0 +1,178 @@
+#include "MultibandCompressor.h"
+#include "DspKernels.h"
+#include <algorithm>
+#include <cmath>
+#include <cstring>
+
+// 低频、中低频、中高频、高频的分界
+const float MultibandCompressor::kCrossoverFrequencies[kNumCompressorCrossovers] = {
+        500.0f, 1500.0f, 4000.0f
+};
+
+namespace {
+
+// 分频的两个二阶节均使用Butterworth Q值
+const double kCrossoverQ = 0.7071;
+
+// 压缩曲线的软拐点宽度（dB）
+const double kKneeWidthDb = 6.0;
+
+// 加在包络输入上的极小值，静音时包络停在远低于查表下限的位置而不会衰减成非规格化数
+const float kEnvelopeFloor = 1e-9f;
+
+// 静态压缩曲线：阈值以下只有补偿增益，阈值以上按压缩比压缩，拐点附近二次过渡
+double staticGainDb(double levelDb, const CompressorBandSettings &settings) {
+    double ratio = std::max(1.0, static_cast<double>(settings.ratio));
+    double slope = 1.0 / ratio - 1.0;
+    double overshoot = levelDb - settings.thresholdDb;
+    double gainDb;
+    if (2.0 * overshoot < -kKneeWidthDb) {
+        gainDb = 0.0;
+    } else if (2.0 * std::fabs(overshoot) <= kKneeWidthDb) {
+        double x = overshoot + kKneeWidthDb / 2.0;
+        gainDb = slope * x * x / (2.0 * kKneeWidthDb);
+    } else {
+        gainDb = slope * overshoot;
+    }
+    return gainDb + settings.makeupGainDb;
+}
+
+float timeConstantCoeff(float timeMs, int32_t sampleRate) {
+    double samples = std::max(1e-3, static_cast<double>(timeMs)) * 1e-3 * sampleRate;
+    return static_cast<float>(std::exp(-1.0 / std::max(1.0, samples)));
+}
+
+} // namespace
+
+const int32_t MultibandCompressor::kBlockFrames;
+
+void MultibandCompressor::designBand(const CompressorBandSettings &settings, int32_t sampleRate,
+                                     CompressorBandCoefficients &coeffs) {
+    coeffs.attackCoeff = timeConstantCoeff(settings.attackMs, sampleRate);
+    coeffs.releaseCoeff = timeConstantCoeff(settings.releaseMs, sampleRate);
+    
+    for (int i = 0; i < kCompressorGainTableSize; i++) {
+        double level = leveltable::levelAt(i, kCompressorTableMinExponent);
+        double gainDb = staticGainDb(20.0 * std::log10(level), settings);
+        coeffs.gainTable[i] = static_cast<float>(std::pow(10.0, gainDb / 20.0));
+    }
+}
+
+CrossoverCoefficients MultibandCompressor::designCrossover(int crossover, int32_t sampleRate) {
+    CrossoverCoefficients coeffs;
+    if (crossover < 0 || crossover >= kNumCompressorCrossovers || sampleRate <= 0) {
+        coeffs.lowPass[0] = coeffs.lowPass[1] = BiquadCoefficients::identity();
+        coeffs.highPass[0] = coeffs.highPass[1] = BiquadCoefficients::identity();
+        coeffs.allPass = BiquadCoefficients::identity();
+        return coeffs;
+    }
+    
+    double frequency = kCrossoverFrequencies[crossover];
+    coeffs.lowPass[0] = coeffs.lowPass[1] = biquad::lowPass(sampleRate, frequency, kCrossoverQ);
+    coeffs.highPass[0] = coeffs.highPass[1] = biquad::highPass(sampleRate, frequency, kCrossoverQ);
+    coeffs.allPass = biquad::allPass(sampleRate, frequency, kCrossoverQ);
+    return coeffs;
+}
+
+MultibandCompressor::MultibandCompressor() : mKernels(&dsp::kernels()) {
+    reset();
+}
+
+void MultibandCompressor::reset() {
+    memset(mLowPassStates, 0, sizeof(mLowPassStates));
+    memset(mHighPassStates, 0, sizeof(mHighPassStates));
+    memset(mAllPassStates, 0, sizeof(mAllPassStates));
+    for (float &envelope : mEnvelopes) {
+        envelope = 0.0f;
+    }
+    mCurrentBands = 0;
+    mGeneration = 0;
+    mPrimed = false;
+    mFadeFrames = 0;
+    mFadeRemaining = 0;
+}
+
+void MultibandCompressor::process(float *buffer, int32_t numFrames,
+                                  const CrossoverCoefficients *crossovers,
+                                  const CompressorBandCoefficients *bands,
+                                  uint32_t generation, int32_t rampFrames) {
+    if (!mPrimed || (generation != mGeneration && mFadeRemaining == 0)) {
+        // 当前系数变为淡出的旧系数，新系数复制到另一份副本
+        if (mPrimed && rampFrames > 0) {
+            mCurrentBands ^= 1;
+            mFadeFrames = rampFrames;
+            mFadeRemaining = rampFrames;
+        }
+        memcpy(mBands[mCurrentBands], bands, sizeof(mBands[mCurrentBands]));
+        mGeneration = generation;
+        mPrimed = true;
+    }
+    
+    while (numFrames > 0) {
+        int32_t count = std::min(numFrames, kBlockFrames);
+        processChunk(buffer, count, crossovers);
+        buffer += count;
+        numFrames -= count;
+    }
+}
+
+void MultibandCompressor::processChunk(float *buffer, int32_t numFrames,
+                                       const CrossoverCoefficients *crossovers) {
+    // 树形分频：第c个分频点把上一级的高通部分分为频段c和更高的部分
+    const float *source = buffer;
+    for (int c = 0; c < kNumCompressorCrossovers; c++) {
+        float *low = mBandBuffers[c];
+        float *high = mBandBuffers[c + 1];
+        memcpy(high, source, numFrames * sizeof(float));
+        if (low != source) {
+            memcpy(low, source, numFrames * sizeof(float));
+        }
+        mKernels->biquadCascade(low, numFrames, crossovers[c].lowPass, mLowPassStates[c], 2, 0x3);
+        mKernels->biquadCascade(high, numFrames, crossovers[c].highPass, mHighPassStates[c], 2, 0x3);
+        source = high;
+        
+        // 已分出的较低频段补上这一分频点的相位（全通）
+        for (int b = 0; b < c; b++) {
+            biquad::process(mBandBuffers[b], numFrames, crossovers[c].allPass, mAllPassStates[b][c]);
+        }
+    }
+    
+    // 交叉淡化：前fadeCount帧的增益为旧表与新表增益的线性插值，新表权重从1/mFadeFrames增加到1
+    const CompressorBandCoefficients *bands = mBands[mCurrentBands];
+    const CompressorBandCoefficients *fadeBands = mBands[mCurrentBands ^ 1];
+    const int32_t fadeCount = std::min(numFrames, mFadeRemaining);
+    const float fadeStep = fadeCount > 0 ? 1.0f / static_cast<float>(mFadeFrames) : 0.0f;
+    const float fadeWeight = static_cast<float>(mFadeFrames - mFadeRemaining + 1) * fadeStep;
+    
+    // 各频段包络跟随并查表得到增益，求和写回
+    memset(buffer, 0, numFrames * sizeof(float));
+    for (int b = 0; b < kNumCompressorBands; b++) {
+        const float *band = mBandBuffers[b];
+        const float attack = bands[b].attackCoeff;
+        const float release = bands[b].releaseCoeff;
+        const float *table = bands[b].gainTable;
+        const float *fadeTable = fadeBands[b].gainTable;
+        float envelope = mEnvelopes[b];
+        for (int32_t i = 0; i < fadeCount; i++) {
+            float level = std::fabs(band[i]) + kEnvelopeFloor;
+            float coeff = level > envelope ? attack : release;
+            envelope = level + coeff * (envelope - level);
+            float gain = leveltable::lookup(table, kCompressorGainTableSize,
+                                            kCompressorTableMinExponent, envelope);
+            float fadeGain = leveltable::lookup(fadeTable, kCompressorGainTableSize,
+                                                kCompressorTableMinExponent, envelope);
+            float weight = fadeWeight + static_cast<float>(i) * fadeStep;
+            buffer[i] += band[i] * (fadeGain + (gain - fadeGain) * weight);
+        }
+        for (int32_t i = fadeCount; i < numFrames; i++) {
+            float level = std::fabs(band[i]) + kEnvelopeFloor;
+            float coeff = level > envelope ? attack : release;
+            envelope = level + coeff * (envelope - level);
+            float gain = leveltable::lookup(table, kCompressorGainTableSize,
+                                            kCompressorTableMinExponent, envelope);
+            buffer[i] += band[i] * gain;
+        }
+        mEnvelopes[b] = envelope;
+    }
+    mFadeRemaining -= fadeCount;
+}
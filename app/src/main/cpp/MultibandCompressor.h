@@ -0,0 +1,106 @@
+#ifndef LISTENHELP6_MULTIBANDCOMPRESSOR_H
+#define LISTENHELP6_MULTIBANDCOMPRESSOR_H
+
+#include <cstdint>
+#include "Biquad.h"
+#include "LevelTable.h"
+
+struct DspKernels;
+
+// 压缩频段数与分频点数
+static const int kNumCompressorBands = 4;
+static const int kNumCompressorCrossovers = kNumCompressorBands - 1;
+
+// 增益查找表：覆盖-120dBFS到+24dBFS（见LevelTable.h）
+static const int kCompressorTableMinExponent = -20;
+static const int kCompressorGainTableSize = leveltable::tableSize(24);
+
+// 单个频段的用户设置
+struct CompressorBandSettings {
+    float thresholdDb;      // 压缩起始点（dBFS）
+    float ratio;            // 压缩比（1.0为不压缩）
+    float attackMs;         // 启动时间
+    float releaseMs;        // 释放时间
+    float makeupGainDb;     // 补偿增益（对低于阈值的安静声音同样生效）
+
+    static CompressorBandSettings defaults() {
+        CompressorBandSettings s;
+        s.thresholdDb = -40.0f;
+        s.ratio = 2.0f;
+        s.attackMs = 5.0f;
+        s.releaseMs = 50.0f;
+        s.makeupGainDb = 0.0f;
+        return s;
+    }
+};
+
+// 一个Linkwitz-Riley四阶分频点：低通、高通各为两个相同的Butterworth二阶节，
+// 低通与高通之和等于同一频率的二阶全通，用于补偿其他频段的相位
+struct CrossoverCoefficients {
+    BiquadCoefficients lowPass[2];
+    BiquadCoefficients highPass[2];
+    BiquadCoefficients allPass;
+};
+
+// 由UI线程根据设置和采样率预先计算的频段系数，音频线程只查表
+struct CompressorBandCoefficients {
+    float attackCoeff;
+    float releaseCoeff;
+    float gainTable[kCompressorGainTableSize];      // 线性增益
+};
+
+// 多频段宽动态范围压缩（WDRC）
+// 用3个Linkwitz-Riley四阶分频点按树形分成4个频段，较低的频段再经过更高分频点的全通滤波，
+// 使各频段相位一致，所有频段增益相同时输出为输入的全通（幅频平坦）。
+// 每个频段用峰值包络跟随器（启动/释放两个一阶系数）估计电平，
+// 再用包络幅度查增益表（LevelTable），逐样本处理中没有log/pow运算。
+// 频段设置改变时（generation变化）在rampFrames帧内从旧增益表的增益线性交叉淡化到新增益表的增益，
+// 分频滤波器和包络不受影响；淡化期间到达的新设置等本次淡化结束后再生效。
+class MultibandCompressor {
+public:
+    // 分频点（Hz）
+    static const float kCrossoverFrequencies[kNumCompressorCrossovers];
+
+    // 计算单个频段的系数和增益表（非实时线程）
+    static void designBand(const CompressorBandSettings &settings, int32_t sampleRate,
+                           CompressorBandCoefficients &coeffs);
+
+    // 计算分频滤波器系数（非实时线程）
+    static CrossoverCoefficients designCrossover(int crossover, int32_t sampleRate);
+
+    MultibandCompressor();
+
+    // 清除分频滤波器和包络状态，下一块直接使用传入的频段系数（不淡化）
+    void reset();
+
+    // 原地处理单声道数据，不分配内存
+    void process(float *buffer, int32_t numFrames,
+                 const CrossoverCoefficients *crossovers,
+                 const CompressorBandCoefficients *bands,
+                 uint32_t generation, int32_t rampFrames);
+
+private:
+    // 内部按固定大小的块处理，频段缓冲区不随回调帧数变化
+    static const int32_t kBlockFrames = 128;
+
+    void processChunk(float *buffer, int32_t numFrames,
+                      const CrossoverCoefficients *crossovers);
+
+    const DspKernels *mKernels;    // 构造时选定，音频线程不再检测CPU
+
+    // 频段系数的两份副本：mBands[mCurrentBands]为当前生效的，另一份为正在淡出的旧系数
+    CompressorBandCoefficients mBands[2][kNumCompressorBands];
+    int mCurrentBands;
+    uint32_t mGeneration;
+    bool mPrimed;
+    int32_t mFadeFrames;
+    int32_t mFadeRemaining;
+
+    BiquadState mLowPassStates[kNumCompressorCrossovers][2];
+    BiquadState mHighPassStates[kNumCompressorCrossovers][2];
+    BiquadState mAllPassStates[kNumCompressorBands][kNumCompressorCrossovers];
+    float mEnvelopes[kNumCompressorBands];
+    float mBandBuffers[kNumCompressorBands][kBlockFrames];
+};
+
+#endif //LISTENHELP6_MULTIBANDCOMPRESSOR_H
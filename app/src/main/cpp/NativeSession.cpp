@@ -0,0 +1,235 @@
+#include "NativeSession.h"
+#include <android/log.h>
+#include <pthread.h>
+
+#undef LOGD
+#undef LOGE
+#define LOG_TAG "AudioProcJNI"
+#define LOGD(...) __android_log_print(ANDROID_LOG_DEBUG, LOG_TAG, __VA_ARGS__)
+#define LOGE(...) __android_log_print(ANDROID_LOG_ERROR, LOG_TAG, __VA_ARGS__)
+
+static JavaVM *javaVM = nullptr;
+
+// 线程退出时自动从JVM分离（原生线程只附加一次，不再每次回调附加）
+static pthread_key_t jniDetachKey;
+static pthread_once_t jniDetachKeyOnce = PTHREAD_ONCE_INIT;
+
+static void detachCurrentThread(void *) {
+    if (javaVM != nullptr) {
+        javaVM->DetachCurrentThread();
+    }
+}
+
+static void createDetachKey() {
+    pthread_key_create(&jniDetachKey, detachCurrentThread);
+}
+
+// JNI环境获取辅助函数
+static JNIEnv *getJNIEnv() {
+    JNIEnv *env = nullptr;
+    if (javaVM != nullptr) {
+        jint result = javaVM->GetEnv((void**)&env, JNI_VERSION_1_6);
+        if (result == JNI_EDETACHED) {
+            LOGD("线程未附加到JVM，尝试附加");
+            JavaVMAttachArgs args;
+            args.version = JNI_VERSION_1_6;
+            args.name = "NativeSessionCallback";
+            args.group = nullptr;
+    
+            result = javaVM->AttachCurrentThread(&env, &args);
+            if (result != JNI_OK) {
+                LOGE("附加线程到JVM失败: %d", result);
+                return nullptr;
+            }
+            pthread_once(&jniDetachKeyOnce, createDetachKey);
+            pthread_setspecific(jniDetachKey, env);
+            LOGD("线程已成功附加到JVM");
+        } else if (result != JNI_OK) {
+            LOGE("获取JNI环境失败: %d", result);
+            return nullptr;
+        }
+    } else {
+        LOGE("JavaVM为空，无法获取JNI环境");
+    }
+    return env;
+}
+
+void NativeSession::setJavaVM(JavaVM *vm) {
+    javaVM = vm;
+}
+
+NativeSession::NativeSession()
+    : mInputWaveform{nullptr, nullptr}
+    , mOutputWaveform{nullptr, nullptr}
+    , mStreamEvent{nullptr, nullptr}
+    , mWaveformBuffer(nullptr) {
+}
+
+NativeSession::~NativeSession() {
+    if (mInputWaveform.object != nullptr || mOutputWaveform.object != nullptr || mStreamEvent.object != nullptr
+            || mWaveformBuffer != nullptr) {
+        LOGE("NativeSession未调用release就被删除，Java回调的全局引用泄漏");
+    }
+}
+
+void NativeSession::release(JNIEnv *env) {
+    // 先解除C++回调（等待正在进行的回调结束），再停止音频流，最后删除全局引用
+    mProcessor.setWaveformCallback(nullptr, nullptr);
+    mProcessor.setStreamEventCallback(nullptr);
+    mProcessor.setWaveformSharedBuffer(nullptr, 0);
+    mProcessor.cleanup();
+    
+    deleteCallback(env, mInputWaveform);
+    deleteCallback(env, mOutputWaveform);
+    deleteCallback(env, mStreamEvent);
+    if (mWaveformBuffer != nullptr) {
+        env->DeleteGlobalRef(mWaveformBuffer);
+        mWaveformBuffer = nullptr;
+    }
+}
+
+bool NativeSession::setWaveformCallbacks(JNIEnv *env, jobject inputCallback, jobject outputCallback) {
+    JavaCallback input = makeCallback(env, inputCallback, "onWaveformData", "([F)V");
+    JavaCallback output = makeCallback(env, outputCallback, "onWaveformData", "([F)V");
+    
+    // 替换C++回调后旧的回调不会再被调用，此时才能删除旧的全局引用
+    AudioDataCallback inputFunction;
+    AudioDataCallback outputFunction;
+    if (input.object != nullptr) {
+        inputFunction = [input](const float *data, size_t size, bool) { callWaveform(input, data, size); };
+    }
+    if (output.object != nullptr) {
+        outputFunction = [output](const float *data, size_t size, bool) { callWaveform(output, data, size); };
+    }
+    mProcessor.setWaveformCallback(inputFunction, outputFunction);
+    
+    deleteCallback(env, mInputWaveform);
+    deleteCallback(env, mOutputWaveform);
+    mInputWaveform = input;
+    mOutputWaveform = output;
+    return input.object != nullptr || output.object != nullptr;
+}
+
+bool NativeSession::setWaveformBuffer(JNIEnv *env, jobject buffer) {
+    jobject reference = nullptr;
+    void *data = nullptr;
+    size_t size = 0;
+    if (buffer != nullptr) {
+        data = env->GetDirectBufferAddress(buffer);
+        jlong capacity = env->GetDirectBufferCapacity(buffer);
+        if (data == nullptr || capacity <= 0) {
+            LOGE("波形缓冲区不是直接缓冲区");
+            return false;
+        }
+        size = static_cast<size_t>(capacity);
+    }
+    
+    // 先替换处理器中的缓冲区（返回后消费线程不再写旧的缓冲区），再删除旧的全局引用
+    bool attached = mProcessor.setWaveformSharedBuffer(data, size);
+    if (attached && buffer != nullptr) {
+        reference = env->NewGlobalRef(buffer);
+    }
+    if (mWaveformBuffer != nullptr) {
+        env->DeleteGlobalRef(mWaveformBuffer);
+    }
+    mWaveformBuffer = reference;
+    return attached;
+}
+
+bool NativeSession::setStreamEventCallback(JNIEnv *env, jobject callback) {
+    JavaCallback event = makeCallback(env, callback, "onStreamEvent", "(IIJ)V");
+    
+    StreamRecovery::EventListener function;
+    if (event.object != nullptr) {
+        function = [event](int32_t type, int32_t attempts, int64_t elapsedMs) {
+            callStreamEvent(event, type, attempts, elapsedMs);
+        };
+    }
+    mProcessor.setStreamEventCallback(function);
+    
+    deleteCallback(env, mStreamEvent);
+    mStreamEvent = event;
+    return event.object != nullptr;
+}
+
+NativeSession::JavaCallback NativeSession::makeCallback(JNIEnv *env, jobject object,
+                                                        const char *name, const char *signature) {
+    JavaCallback callback = {nullptr, nullptr};
+    if (object == nullptr) {
+        return callback;
+    }
+    
+    jclass callbackClass = env->GetObjectClass(object);
+    if (callbackClass == nullptr) {
+        LOGE("无法获取回调类: %s", name);
+        env->ExceptionClear();
+        return callback;
+    }
+    jmethodID method = env->GetMethodID(callbackClass, name, signature);
+    env->DeleteLocalRef(callbackClass);
+    if (method == nullptr) {
+        LOGE("无法获取回调方法ID: %s%s", name, signature);
+        env->ExceptionClear();
+        return callback;
+    }
+    
+    callback.object = env->NewGlobalRef(object);
+    callback.method = method;
+    return callback;
+}
+
+void NativeSession::deleteCallback(JNIEnv *env, JavaCallback &callback) {
+    if (callback.object != nullptr) {
+        env->DeleteGlobalRef(callback.object);
+    }
+    callback.object = nullptr;
+    callback.method = nullptr;
+}
+
+void NativeSession::callWaveform(const JavaCallback &callback, const float *data, size_t size) {
+    JNIEnv *env = getJNIEnv();
+    if (env == nullptr) {
+        LOGE("无法获取JNI环境，无法发送波形数据");
+        return;
+    }
+    
+    // 创建浮点数组
+    jfloatArray jArray = env->NewFloatArray(size);
+    if (jArray == nullptr) {
+        LOGE("创建浮点数组失败，大小: %zu", size);
+        env->ExceptionClear();
+        return;
+    }
+    
+    // 复制数据并调用Java回调方法
+    env->SetFloatArrayRegion(jArray, 0, size, data);
+    env->CallVoidMethod(callback.object, callback.method, jArray);
+    
+    // 检查是否有异常
+    if (env->ExceptionCheck()) {
+        LOGE("调用Java波形回调时发生异常");
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+    }
+    
+    // 释放局部引用
+    env->DeleteLocalRef(jArray);
+}
+
+void NativeSession::callStreamEvent(const JavaCallback &callback, int32_t event, int32_t attempts, int64_t elapsedMs) {
+    JNIEnv *env = getJNIEnv();
+    if (env == nullptr) {
+        LOGE("无法获取JNI环境，无法发送流事件");
+        return;
+    }
+    
+    env->CallVoidMethod(callback.object, callback.method,
+                        static_cast<jint>(event), static_cast<jint>(attempts), static_cast<jlong>(elapsedMs));
+    
+    // 检查是否有异常
+    if (env->ExceptionCheck()) {
+        LOGE("调用Java流事件回调时发生异常");
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+    }
+}
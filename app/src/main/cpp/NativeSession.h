@@ -0,0 +1,58 @@
+#ifndef LISTENHELP6_NATIVESESSION_H
+#define LISTENHELP6_NATIVESESSION_H
+
+#include <jni.h>
+#include "AAudioProcessor.h"
+
+// 一个AAudioProcessorJNI实例对应的原生会话，Java持有的句柄即NativeSession指针
+// 会话拥有自己的处理器（及其音频、波形、调整、恢复线程）和Java回调的全局引用，
+// 会话之间没有共享的可变状态，可以在任意线程上同时创建和释放多个会话。
+// Java回调在处理器的波形消费线程和恢复线程上调用，线程第一次回调时附加到JVM，线程退出时自动分离；
+// 波形数据也可以通过共享缓冲区传递，此时消费线程只写内存，不调用Java。
+class NativeSession {
+public:
+    // 进程内只有一个JavaVM，在JNI_OnLoad中设置
+    static void setJavaVM(JavaVM *vm);
+
+    // 句柄与会话的转换，句柄为0时返回nullptr
+    static NativeSession *fromHandle(jlong handle) { return reinterpret_cast<NativeSession*>(handle); }
+    jlong toHandle() { return reinterpret_cast<jlong>(this); }
+
+    NativeSession();
+    ~NativeSession();
+
+    // 停止处理器的所有回调和音频流，删除全局引用；之后才能delete（在调用JNI的线程上调用）
+    void release(JNIEnv *env);
+
+    AAudioProcessor &processor() { return mProcessor; }
+
+    // 设置波形回调（对象需有onWaveformData([F)V方法），为null的一侧不回调；返回是否有有效的回调
+    bool setWaveformCallbacks(JNIEnv *env, jobject inputCallback, jobject outputCallback);
+
+    // 设置波形共享缓冲区（直接ByteBuffer，布局见WaveformSharedBuffer），为null时分离；返回是否设置成功
+    // 会话持有缓冲区的全局引用，保证原生写入期间Java不会回收它
+    bool setWaveformBuffer(JNIEnv *env, jobject buffer);
+
+    // 设置流事件回调（对象需有onStreamEvent(IIJ)V方法），为null时清除；返回是否设置成功
+    bool setStreamEventCallback(JNIEnv *env, jobject callback);
+
+private:
+    // Java回调对象的全局引用及其方法ID；回调函数按值捕获，替换时先解除C++回调再删除旧的引用
+    struct JavaCallback {
+        jobject object;
+        jmethodID method;
+    };
+
+    static JavaCallback makeCallback(JNIEnv *env, jobject object, const char *name, const char *signature);
+    static void deleteCallback(JNIEnv *env, JavaCallback &callback);
+    static void callWaveform(const JavaCallback &callback, const float *data, size_t size);
+    static void callStreamEvent(const JavaCallback &callback, int32_t event, int32_t attempts, int64_t elapsedMs);
+
+    AAudioProcessor mProcessor;
+    JavaCallback mInputWaveform;
+    JavaCallback mOutputWaveform;
+    JavaCallback mStreamEvent;
+    jobject mWaveformBuffer;
+};
+
+#endif //LISTENHELP6_NATIVESESSION_H
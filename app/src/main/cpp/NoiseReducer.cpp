@@ -0,0 +1,179 @@
+#include "NoiseReducer.h"
+#include <algorithm>
+#include <cfloat>
+#include <cmath>
+#include <cstring>
+
+namespace {
+
+const double kPi = 3.14159265358979323846;
+
+// 最小值统计的总窗口长度（秒），需长于语音中的连续发声段
+const float kMinimumWindowSeconds = 1.5f;
+
+// 先验信噪比下限，防止增益在噪声段剧烈波动（音乐噪声）
+const float kMinPrioriSnr = 0.003f;
+
+} // namespace
+
+constexpr float NoiseReducer::kPowerSmoothing;
+constexpr float NoiseReducer::kDecisionDirectedAlpha;
+constexpr float NoiseReducer::kMinimumBias;
+constexpr float NoiseReducer::kMaxAttenuationDb;
+
+NoiseReducer::NoiseReducer()
+    : mConfigured(false)
+    , mFifoPosition(kFftSize - kHopSize)
+    , mSubwindowFrames(1)
+    , mSubwindowFrameCount(0)
+    , mSubwindowIndex(0)
+    , mFirstFrame(true)
+    , mStrength(-1.0f)
+    , mGainFloor(1.0f) {
+}
+
+void NoiseReducer::configure(int32_t sampleRate) {
+    mFft.init(kFftSize);
+    
+    // 周期性汉宁窗的平方根：分析与合成各乘一次，50%重叠时窗函数平方和恒为1
+    mWindow.assign(kFftSize, 0.0f);
+    for (int32_t i = 0; i < kFftSize; i++) {
+        double hann = 0.5 * (1.0 - std::cos(2.0 * kPi * i / kFftSize));
+        mWindow[i] = static_cast<float>(std::sqrt(hann));
+    }
+    
+    mInputFifo.assign(kFftSize, 0.0f);
+    mOutputFifo.assign(kHopSize, 0.0f);
+    mOverlapBuffer.assign(kFftSize, 0.0f);
+    mFrame.assign(kFftSize, 0.0f);
+    mSpectrumRe.assign(kNumBins, 0.0f);
+    mSpectrumIm.assign(kNumBins, 0.0f);
+    mPower.assign(kNumBins, 0.0f);
+    mSmoothedPower.assign(kNumBins, 0.0f);
+    mNoisePower.assign(kNumBins, 0.0f);
+    mPreviousCleanPower.assign(kNumBins, 0.0f);
+    mCurrentMinimum.assign(kNumBins, FLT_MAX);
+    mSubwindowMinima.assign(kNumBins * kNumSubwindows, FLT_MAX);
+    
+    float framesPerSecond = static_cast<float>(std::max(sampleRate, 1)) / kHopSize;
+    mSubwindowFrames = std::max(1, static_cast<int32_t>(
+            std::ceil(kMinimumWindowSeconds * framesPerSecond / kNumSubwindows)));
+    
+    mConfigured = true;
+    reset();
+}
+
+void NoiseReducer::reset() {
+    if (!mConfigured) {
+        return;
+    }
+    
+    std::fill(mInputFifo.begin(), mInputFifo.end(), 0.0f);
+    std::fill(mOutputFifo.begin(), mOutputFifo.end(), 0.0f);
+    std::fill(mOverlapBuffer.begin(), mOverlapBuffer.end(), 0.0f);
+    std::fill(mSmoothedPower.begin(), mSmoothedPower.end(), 0.0f);
+    std::fill(mNoisePower.begin(), mNoisePower.end(), 0.0f);
+    std::fill(mPreviousCleanPower.begin(), mPreviousCleanPower.end(), 0.0f);
+    std::fill(mCurrentMinimum.begin(), mCurrentMinimum.end(), FLT_MAX);
+    std::fill(mSubwindowMinima.begin(), mSubwindowMinima.end(), FLT_MAX);
+    mFifoPosition = kFftSize - kHopSize;
+    mSubwindowFrameCount = 0;
+    mSubwindowIndex = 0;
+    mFirstFrame = true;
+}
+
+void NoiseReducer::updateStrength(float strength) {
+    strength = std::max(0.0f, std::min(1.0f, strength));
+    if (strength != mStrength) {
+        mStrength = strength;
+        mGainFloor = std::pow(10.0f, -kMaxAttenuationDb * strength / 20.0f);
+    }
+}
+
+void NoiseReducer::process(float *buffer, int32_t numFrames, float strength) {
+    if (!mConfigured) {
+        return;
+    }
+    updateStrength(strength);
+    
+    // 块适配器：每攒够kHopSize个新样本处理一帧，输出队列中是上一帧完成的kHopSize个样本
+    while (numFrames > 0) {
+        int32_t count = std::min(numFrames, kFftSize - mFifoPosition);
+        memcpy(&mInputFifo[mFifoPosition], buffer, count * sizeof(float));
+        memcpy(buffer, &mOutputFifo[mFifoPosition - (kFftSize - kHopSize)], count * sizeof(float));
+        mFifoPosition += count;
+        buffer += count;
+        numFrames -= count;
+        
+        if (mFifoPosition == kFftSize) {
+            processFrame();
+            mFifoPosition = kFftSize - kHopSize;
+        }
+    }
+}
+
+void NoiseReducer::processFrame() {
+    for (int32_t i = 0; i < kFftSize; i++) {
+        mFrame[i] = mInputFifo[i] * mWindow[i];
+    }
+    mFft.forward(mFrame.data(), mSpectrumRe.data(), mSpectrumIm.data());
+    
+    for (int32_t k = 0; k < kNumBins; k++) {
+        mPower[k] = mSpectrumRe[k] * mSpectrumRe[k] + mSpectrumIm[k] * mSpectrumIm[k];
+    }
+    updateNoiseEstimate();
+    
+    // 判决引导法估计先验信噪比，维纳增益 G = ξ / (1 + ξ)，不低于强度对应的增益下限
+    for (int32_t k = 0; k < kNumBins; k++) {
+        float noise = mNoisePower[k] + FLT_MIN;
+        float posteriorSnr = mPower[k] / noise;
+        float prioriSnr = kDecisionDirectedAlpha * mPreviousCleanPower[k] / noise
+                          + (1.0f - kDecisionDirectedAlpha) * std::max(posteriorSnr - 1.0f, 0.0f);
+        prioriSnr = std::max(prioriSnr, kMinPrioriSnr);
+        float gain = std::max(prioriSnr / (1.0f + prioriSnr), mGainFloor);
+        
+        mPreviousCleanPower[k] = gain * gain * mPower[k];
+        mSpectrumRe[k] *= gain;
+        mSpectrumIm[k] *= gain;
+    }
+    
+    mFft.inverse(mSpectrumRe.data(), mSpectrumIm.data(), mFrame.data());
+    
+    // 合成窗后重叠相加，前kHopSize个样本已完整，移入输出队列
+    for (int32_t i = 0; i < kFftSize; i++) {
+        mOverlapBuffer[i] += mFrame[i] * mWindow[i];
+    }
+    memcpy(mOutputFifo.data(), mOverlapBuffer.data(), kHopSize * sizeof(float));
+    memmove(mOverlapBuffer.data(), mOverlapBuffer.data() + kHopSize, (kFftSize - kHopSize) * sizeof(float));
+    std::fill(mOverlapBuffer.begin() + (kFftSize - kHopSize), mOverlapBuffer.end(), 0.0f);
+    
+    memmove(mInputFifo.data(), mInputFifo.data() + kHopSize, (kFftSize - kHopSize) * sizeof(float));
+}
+
+void NoiseReducer::updateNoiseEstimate() {
+    // 最小值统计：平滑功率谱在最近kNumSubwindows个子窗口内的最小值乘以偏差补偿即为噪声功率
+    for (int32_t k = 0; k < kNumBins; k++) {
+        float smoothed = mFirstFrame ? mPower[k]
+                : kPowerSmoothing * mSmoothedPower[k] + (1.0f - kPowerSmoothing) * mPower[k];
+        mSmoothedPower[k] = smoothed;
+        mCurrentMinimum[k] = std::min(mCurrentMinimum[k], smoothed);
+        
+        float minimum = mCurrentMinimum[k];
+        const float *history = &mSubwindowMinima[k * kNumSubwindows];
+        for (int32_t s = 0; s < kNumSubwindows; s++) {
+            minimum = std::min(minimum, history[s]);
+        }
+        mNoisePower[k] = kMinimumBias * minimum;
+    }
+    mFirstFrame = false;
+    
+    // 子窗口结束：记录其最小值，替换最旧的子窗口
+    if (++mSubwindowFrameCount >= mSubwindowFrames) {
+        mSubwindowFrameCount = 0;
+        for (int32_t k = 0; k < kNumBins; k++) {
+            mSubwindowMinima[k * kNumSubwindows + mSubwindowIndex] = mCurrentMinimum[k];
+            mCurrentMinimum[k] = FLT_MAX;
+        }
+        mSubwindowIndex = (mSubwindowIndex + 1) % kNumSubwindows;
+    }
+}
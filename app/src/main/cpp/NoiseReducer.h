@@ -0,0 +1,81 @@
+#ifndef LISTENHELP6_NOISEREDUCER_H
+#define LISTENHELP6_NOISEREDUCER_H
+
+#include <cstdint>
+#include <vector>
+#include "Fft.h"
+
+// 基于STFT的降噪（谱减 / 维纳增益）
+// - 256点FFT（48kHz下5.3ms）、50%重叠、平方根汉宁窗分析与合成，重叠相加可完全重建
+// - 噪声谱用最小值统计法持续估计（约1.5秒窗口内平滑功率谱的最小值），语音间隙无需检测
+// - 每个频点的增益用判决引导法估计先验信噪比再求维纳增益，strength决定最大衰减量
+// 内部有块适配器，与回调帧数无关；引入kLatencyFrames帧的固定延迟。
+// 所有缓冲区在configure中分配，process/reset不分配内存。
+class NoiseReducer {
+public:
+    static const int32_t kFftSize = 256;
+    static const int32_t kHopSize = kFftSize / 2;
+    static const int32_t kNumBins = kFftSize / 2 + 1;
+    // 输入样本要等到覆盖它的两帧都处理完才能输出，固定延迟为一个FFT长度
+    static const int32_t kLatencyFrames = kFftSize;
+
+    NoiseReducer();
+
+    // 按采样率分配缓冲区并计算最小值统计窗口长度（非实时线程）
+    void configure(int32_t sampleRate);
+
+    // 清除所有状态（包括噪声估计），可在音频线程调用
+    void reset();
+
+    // 原地处理单声道数据，strength为0到1（0为直通，1为最大衰减）
+    void process(float *buffer, int32_t numFrames, float strength);
+
+private:
+    void processFrame();
+    void updateNoiseEstimate();
+    void updateStrength(float strength);
+
+    // 功率谱的时间平滑系数
+    static constexpr float kPowerSmoothing = 0.85f;
+    // 判决引导法的平滑系数
+    static constexpr float kDecisionDirectedAlpha = 0.98f;
+    // 最小值统计的偏差补偿（最小值系统性地低于平均噪声功率）
+    static constexpr float kMinimumBias = 1.5f;
+    // strength为1时的最大衰减（dB）
+    static constexpr float kMaxAttenuationDb = 20.0f;
+    // 最小值统计窗口分为多少个子窗口
+    static const int32_t kNumSubwindows = 8;
+
+    RealFft mFft;
+    bool mConfigured;
+
+    // 块适配器
+    std::vector<float> mWindow;           // 平方根汉宁窗
+    std::vector<float> mInputFifo;        // 最近kFftSize个输入样本
+    std::vector<float> mOutputFifo;       // 待输出的kHopSize个样本
+    std::vector<float> mOverlapBuffer;    // 重叠相加累加区
+    std::vector<float> mFrame;
+    int32_t mFifoPosition;                // 在[kFftSize - kHopSize, kFftSize)之间
+
+    // 频谱
+    std::vector<float> mSpectrumRe;
+    std::vector<float> mSpectrumIm;
+    std::vector<float> mPower;            // 当前帧功率谱
+    std::vector<float> mSmoothedPower;
+    std::vector<float> mNoisePower;
+    std::vector<float> mPreviousCleanPower;
+
+    // 最小值统计
+    std::vector<float> mCurrentMinimum;   // 当前子窗口内的最小值
+    std::vector<float> mSubwindowMinima;  // kNumSubwindows个已完成子窗口的最小值
+    int32_t mSubwindowFrames;             // 每个子窗口的帧数
+    int32_t mSubwindowFrameCount;
+    int32_t mSubwindowIndex;
+    bool mFirstFrame;
+
+    // 强度
+    float mStrength;
+    float mGainFloor;
+};
+
+#endif //LISTENHELP6_NOISEREDUCER_H
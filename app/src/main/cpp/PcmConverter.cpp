@@ -0,0 +1,81 @@
+#include "PcmConverter.h"
+#include <cstring>
+
+PcmConverter::PcmConverter()
+    : mKernels(&dsp::kernels())
+    , mFormat(AAUDIO_FORMAT_PCM_FLOAT)
+    , mBytesPerSample(sizeof(float)) {
+}
+
+bool PcmConverter::setFormat(aaudio_format_t format) {
+    int32_t bytes = bytesPerSample(format);
+    if (bytes == 0) {
+        return false;
+    }
+    mFormat = format;
+    mBytesPerSample = bytes;
+    return true;
+}
+
+void PcmConverter::toFloat(const void *input, float *output, int32_t numSamples) const {
+    switch (mFormat) {
+        case AAUDIO_FORMAT_PCM_I16:
+            mKernels->i16ToFloat(static_cast<const int16_t*>(input), output, numSamples);
+            break;
+        case AAUDIO_FORMAT_PCM_I24_PACKED:
+            mKernels->i24ToFloat(static_cast<const uint8_t*>(input), output, numSamples);
+            break;
+        case AAUDIO_FORMAT_PCM_I32:
+            mKernels->i32ToFloat(static_cast<const int32_t*>(input), output, numSamples);
+            break;
+        default:
+            memcpy(output, input, numSamples * sizeof(float));
+            break;
+    }
+}
+
+void PcmConverter::fromFloat(const float *input, void *output, int32_t numSamples) const {
+    switch (mFormat) {
+        case AAUDIO_FORMAT_PCM_I16:
+            mKernels->floatToI16(input, static_cast<int16_t*>(output), numSamples);
+            break;
+        case AAUDIO_FORMAT_PCM_I24_PACKED:
+            mKernels->floatToI24(input, static_cast<uint8_t*>(output), numSamples);
+            break;
+        case AAUDIO_FORMAT_PCM_I32:
+            mKernels->floatToI32(input, static_cast<int32_t*>(output), numSamples);
+            break;
+        default:
+            memcpy(output, input, numSamples * sizeof(float));
+            break;
+    }
+}
+
+int32_t PcmConverter::bytesPerSample(aaudio_format_t format) {
+    switch (format) {
+        case AAUDIO_FORMAT_PCM_I16:
+            return 2;
+        case AAUDIO_FORMAT_PCM_I24_PACKED:
+            return 3;
+        case AAUDIO_FORMAT_PCM_I32:
+        case AAUDIO_FORMAT_PCM_FLOAT:
+            return 4;
+        default:
+            return 0;
+    }
+}
+
+const char *PcmConverter::formatName(aaudio_format_t format) {
+    switch (format) {
+        case AAUDIO_FORMAT_PCM_I16:
+            return "I16";
+        case AAUDIO_FORMAT_PCM_I24_PACKED:
+            return "I24";
+        case AAUDIO_FORMAT_PCM_I32:
+            return "I32";
+        case AAUDIO_FORMAT_PCM_FLOAT:
+            return "FLOAT";
+        default:
+            return "不支持";
+    }
+}
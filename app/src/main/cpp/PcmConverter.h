@@ -0,0 +1,39 @@
+#ifndef LISTENHELP6_PCMCONVERTER_H
+#define LISTENHELP6_PCMCONVERTER_H
+
+#include <aaudio/AAudio.h>
+#include <cstdint>
+#include "DspKernels.h"
+
+// 设备PCM格式与内部浮点处理链之间的样本转换
+// 处理链始终使用浮点；音频流按设备的原生格式（I16、紧排I24、I32或浮点）打开，避免框架在后台转换，
+// 由这里用DSP内核表中的SIMD实现完成转换。浮点格式不需要转换，调用者应直接读写设备缓冲区。
+// 转换不分配内存，可在音频回调中使用。
+class PcmConverter {
+public:
+    PcmConverter();
+
+    // 设置设备格式（AAUDIO_FORMAT_*），不支持的格式返回false并保持原格式
+    bool setFormat(aaudio_format_t format);
+
+    aaudio_format_t getFormat() const { return mFormat; }
+    bool isFloat() const { return mFormat == AAUDIO_FORMAT_PCM_FLOAT; }
+    int32_t getBytesPerSample() const { return mBytesPerSample; }
+
+    // 转换numSamples个样本（交错多声道按样本计）：设备格式 -> 浮点、浮点 -> 设备格式（限幅到满量程）
+    void toFloat(const void *input, float *output, int32_t numSamples) const;
+    void fromFloat(const float *input, void *output, int32_t numSamples) const;
+
+    // 每个样本的字节数，不支持的格式返回0
+    static int32_t bytesPerSample(aaudio_format_t format);
+
+    // 用于日志的格式名称
+    static const char *formatName(aaudio_format_t format);
+
+private:
+    const DspKernels *mKernels;
+    aaudio_format_t mFormat;
+    int32_t mBytesPerSample;
+};
+
+#endif //LISTENHELP6_PCMCONVERTER_H
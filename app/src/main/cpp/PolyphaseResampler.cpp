@@ -0,0 +1,224 @@
+#include "PolyphaseResampler.h"
+#include <algorithm>
+#include <cmath>
+#include <cstring>
+
+namespace {
+
+const double kPi = 3.14159265358979323846;
+
+// 第一类零阶修正贝塞尔函数（Kaiser窗），幂级数求和
+double besselI0(double x) {
+    double sum = 1.0;
+    double term = 1.0;
+    double halfX = x / 2.0;
+    for (int k = 1; k < 100; k++) {
+        term *= (halfX / k) * (halfX / k);
+        sum += term;
+        if (term < sum * 1e-12) {
+            break;
+        }
+    }
+    return sum;
+}
+
+int32_t greatestCommonDivisor(int32_t a, int32_t b) {
+    while (b != 0) {
+        int32_t t = a % b;
+        a = b;
+        b = t;
+    }
+    return a;
+}
+
+} // namespace
+
+const PolyphaseResampler::Design PolyphaseResampler::kDesigns[kNumQualities] = {
+        {16, 60.0},
+        {32, 80.0},
+        {64, 100.0},
+};
+
+constexpr double PolyphaseResampler::kMaxRatioAdjustment;
+
+PolyphaseResampler::PolyphaseResampler()
+    : mKernels(&dsp::kernels())
+    , mChannelCount(1)
+    , mNumPhases(1)
+    , mNominalStep(1)
+    , mTapsPerPhase(0)
+    , mDelayFrames(0.0)
+    , mStep(1LL << kFractionBits)
+    , mPhase(0)
+    , mFraction(0) {
+}
+
+bool PolyphaseResampler::configure(int32_t inputRate, int32_t outputRate, int32_t channelCount, int quality) {
+    if (inputRate <= 0 || outputRate <= 0 || channelCount <= 0) {
+        return false;
+    }
+    int32_t divisor = greatestCommonDivisor(inputRate, outputRate);
+    int32_t upFactor = outputRate / divisor;
+    int32_t downFactor = inputRate / divisor;
+    if (upFactor > kMaxPhases || downFactor > static_cast<int64_t>(upFactor) * kMaxFramesPerOutput) {
+        return false;
+    }
+    // 相位数取L的整数倍，不少于kMinPhases；标称比例下每个输出前进 P/L*M 个相位
+    const int32_t oversampling = (kMinPhases + upFactor - 1) / upFactor;
+    const int32_t numPhases = upFactor * oversampling;
+
+    const Design &design = kDesigns[std::max(0, std::min(kNumQualities - 1, quality))];
+    const double lowerRate = std::min(inputRate, outputRate);
+
+    // 抽头数按较低的采样率给出：降采样时每个相位要覆盖更多输入样本；取8的倍数便于SIMD内积
+    int32_t taps = static_cast<int32_t>(std::ceil(design.tapsPerPhase * inputRate / lowerRate));
+    taps = (taps + 7) / 8 * 8;
+
+    // Kaiser窗设计公式：过渡带宽 = (A - 7.95) / 14.36 * 原型采样率 / 长度，阻带起点放在较低采样率的奈奎斯特频率上
+    const double prototypeRate = static_cast<double>(numPhases) * inputRate;
+    const int32_t length = numPhases * taps;
+    const double transitionHz = (design.stopbandDb - 7.95) / 14.36 * prototypeRate / length;
+    const double cutoffHz = lowerRate / 2.0 - transitionHz / 2.0;
+    const double beta = 0.1102 * (design.stopbandDb - 8.7);
+
+    const double normalizedCutoff = 2.0 * cutoffHz / prototypeRate;
+    const double center = (length - 1) / 2.0;
+    const double windowNorm = besselI0(beta);
+    std::vector<double> prototype(length);
+    for (int32_t n = 0; n < length; n++) {
+        double t = n - center;
+        double x = kPi * normalizedCutoff * t;
+        double sinc = (t == 0.0) ? 1.0 : std::sin(x) / x;
+        double r = t / center;
+        double window = besselI0(beta * std::sqrt(std::max(0.0, 1.0 - r * r))) / windowNorm;
+        prototype[n] = normalizedCutoff * sinc * window;
+    }
+
+    // 拆成P个相位（外加第P行），倒序存放；每个相位归一化为单位直流增益，避免相位之间的增益差调制出纹波
+    mTable.assign(static_cast<size_t>(numPhases + 1) * taps, 0.0f);
+    for (int32_t phase = 0; phase <= numPhases; phase++) {
+        double sum = 0.0;
+        for (int32_t tap = 0; tap < taps; tap++) {
+            int32_t index = phase + tap * numPhases;
+            sum += index < length ? prototype[index] : 0.0;
+        }
+        float *row = mTable.data() + static_cast<size_t>(phase) * taps;
+        for (int32_t tap = 0; tap < taps; tap++) {
+            int32_t index = phase + tap * numPhases;
+            row[taps - 1 - tap] = index < length ? static_cast<float>(prototype[index] / sum) : 0.0f;
+        }
+    }
+
+    mChannelCount = channelCount;
+    mNumPhases = numPhases;
+    mNominalStep = downFactor * oversampling;
+    mTapsPerPhase = taps;
+    // 第k个输出对应原型采样率上的第kP*M/L-P个样本，再加上原型滤波器的中心延迟
+    mDelayFrames = (numPhases + center) / mNominalStep;
+
+    mAdvance.resize(numPhases);
+    mNextPhase.resize(numPhases);
+    for (int32_t phase = 0; phase < numPhases; phase++) {
+        mAdvance[phase] = (phase + mNominalStep) / numPhases;
+        mNextPhase[phase] = (phase + mNominalStep) % numPhases;
+    }
+    mLinear.assign(static_cast<size_t>(channelCount) * (taps + kBlockFrames), 0.0f);
+    reset();
+    return true;
+}
+
+void PolyphaseResampler::reset() {
+    std::fill(mLinear.begin(), mLinear.end(), 0.0f);
+    mPhase = 0;
+    mFraction = 0;
+    mStep = static_cast<int64_t>(mNominalStep) << kFractionBits;
+}
+
+void PolyphaseResampler::setRatioAdjustment(double adjustment) {
+    adjustment = std::max(-kMaxRatioAdjustment, std::min(kMaxRatioAdjustment, adjustment));
+    mStep = static_cast<int64_t>(std::llround(std::ldexp(mNominalStep * (1.0 + adjustment), kFractionBits)));
+}
+
+int32_t PolyphaseResampler::inputFramesNeeded(int32_t outputFrames) const {
+    int64_t end = position() + static_cast<int64_t>(outputFrames) * mStep;
+    return static_cast<int32_t>((end >> kFractionBits) / mNumPhases);
+}
+
+int32_t PolyphaseResampler::outputFramesAvailable(int32_t inputFrames) const {
+    // 满足 (位置 + n * 步长) / P <= inputFrames 的最大n；限制输入帧数避免定点运算溢出
+    int64_t frames = std::min(std::max(0, inputFrames), 1 << 20);
+    int64_t limit = ((frames + 1) * mNumPhases << kFractionBits) - position() - 1;
+    return static_cast<int32_t>(limit / mStep);
+}
+
+void PolyphaseResampler::process(const float *input, float *output, int32_t outputFrames) {
+    // 按块处理，每块的输入不超过线性缓冲区的容量
+    while (outputFrames > 0) {
+        int32_t frames = std::min(outputFrames, outputFramesAvailable(kBlockFrames));
+        int32_t consumed = inputFramesNeeded(frames);
+        processBlock(input, output, frames);
+        input += static_cast<size_t>(consumed) * mChannelCount;
+        output += static_cast<size_t>(frames) * mChannelCount;
+        outputFrames -= frames;
+    }
+}
+
+void PolyphaseResampler::processBlock(const float *input, float *output, int32_t outputFrames) {
+    const int32_t taps = mTapsPerPhase;
+    const size_t stride = static_cast<size_t>(taps) + kBlockFrames;
+    const int32_t inputFrames = inputFramesNeeded(outputFrames);
+
+    // 本块的输入按声道拆开，接在历史之后
+    for (int32_t ch = 0; ch < mChannelCount; ch++) {
+        float *linear = mLinear.data() + ch * stride + taps;
+        for (int32_t frame = 0; frame < inputFrames; frame++) {
+            linear[frame] = input[frame * mChannelCount + ch];
+        }
+    }
+
+    // 第一个输出的窗口为[0, taps)，之后每个输出按相位前进0到若干帧
+    int32_t start = 0;
+    int32_t phase = mPhase;
+    if (mStep == (static_cast<int64_t>(mNominalStep) << kFractionBits) && mFraction == 0) {
+        // 标称比例：相位和前进帧数查表
+        for (int32_t frame = 0; frame < outputFrames; frame++) {
+            const float *coeffs = mTable.data() + static_cast<size_t>(phase) * taps;
+            for (int32_t ch = 0; ch < mChannelCount; ch++) {
+                *output++ = mKernels->dotProduct(coeffs, mLinear.data() + ch * stride + start, taps);
+            }
+            start += mAdvance[phase];
+            phase = mNextPhase[phase];
+        }
+    } else {
+        // 微调后的比例：定点累加位置，在相邻两个相位的内积之间线性插值
+        const int32_t stepPhases = static_cast<int32_t>(mStep >> kFractionBits);
+        const uint32_t stepFraction = static_cast<uint32_t>(mStep);
+        const float fractionScale = 1.0f / 4294967296.0f;
+        uint32_t fraction = mFraction;
+        for (int32_t frame = 0; frame < outputFrames; frame++) {
+            const float *coeffs = mTable.data() + static_cast<size_t>(phase) * taps;
+            const float weight = static_cast<float>(fraction) * fractionScale;
+            for (int32_t ch = 0; ch < mChannelCount; ch++) {
+                const float *window = mLinear.data() + ch * stride + start;
+                float y0 = mKernels->dotProduct(coeffs, window, taps);
+                float y1 = mKernels->dotProduct(coeffs + taps, window, taps);
+                *output++ = y0 + weight * (y1 - y0);
+            }
+            uint32_t previous = fraction;
+            fraction += stepFraction;
+            phase += stepPhases + (fraction < previous ? 1 : 0);
+            while (phase >= mNumPhases) {
+                phase -= mNumPhases;
+                start++;
+            }
+        }
+        mFraction = fraction;
+    }
+    mPhase = phase;
+
+    // 最近taps个输入移到前面，作为下一块的历史
+    for (int32_t ch = 0; ch < mChannelCount; ch++) {
+        float *linear = mLinear.data() + ch * stride;
+        memmove(linear, linear + inputFrames, taps * sizeof(float));
+    }
+}
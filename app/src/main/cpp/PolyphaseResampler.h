@@ -0,0 +1,105 @@
+#ifndef LISTENHELP6_POLYPHASERESAMPLER_H
+#define LISTENHELP6_POLYPHASERESAMPLER_H
+
+#include <cstdint>
+#include <vector>
+#include "DspKernels.h"
+
+// 有理比多相重采样器（交错多声道）
+// - 输出/输入采样率约分为L/M：原型滤波器工作在L倍输入采样率上，拆成L个相位，每个相位tapsPerPhase个系数，
+//   每个输出样本只计算一个相位与最近tapsPerPhase个输入的内积
+// - 原型为Kaiser窗sinc：阻带从两个采样率中较低者的奈奎斯特频率开始，保证混叠/镜像衰减达到质量等级的指标，
+//   过渡带宽由抽头数和阻带衰减决定；每个相位单独归一化为单位直流增益
+// - 相位数P取L的整数倍且不少于kMinPhases：标称比例下只用到其中每隔P/L个的相位，
+//   其余相位供比例微调时插值
+// - 系数表在configure中按质量等级预先计算（按历史窗口的顺序倒序存放，内积直接用DSP内核）；
+//   输入按块拆成各声道的线性缓冲区，接在上一块留下的tapsPerPhase个历史样本之后，
+//   每个输出的窗口起点和下一个相位查表前进，没有与数据相关的分支；process不分配内存
+// - 比例微调（时钟漂移补偿）：位置改为定点累加（相位 + 32位小数），输出在相邻两个相位的内积之间线性插值
+// 输入帧按需消耗：输出第n帧之后要消耗的输入帧数由位置累加器精确给出，调用者据此读取输入。
+class PolyphaseResampler {
+public:
+    // 质量等级：每相位抽头数（按两者中较低的采样率计）与阻带衰减
+    enum Quality {
+        kQualityLow = 0,                  // 16抽头、60dB
+        kQualityMedium = 1,               // 32抽头、80dB
+        kQualityHigh = 2                  // 64抽头、100dB
+    };
+    static const int kNumQualities = 3;
+    static const int kDefaultQuality = kQualityMedium;
+
+    // 约分后的L上限：标准采样率（8k-96k）之间的任意组合都在范围内（最大为11025->48000的640）
+    static const int32_t kMaxPhases = 1024;
+
+    // 比例微调时用于插值的最少相位数：线性插值相邻相位的系数误差约-100dB
+    static const int32_t kMinPhases = 256;
+
+    // 比例微调的上限（相对值），远大于两个独立晶振之间的实际偏差
+    static constexpr double kMaxRatioAdjustment = 0.01;
+
+    PolyphaseResampler();
+
+    // 计算系数表并分配历史缓冲区（非实时线程），采样率比超出范围时返回false
+    bool configure(int32_t inputRate, int32_t outputRate, int32_t channelCount, int quality);
+
+    // 清除历史和位置，比例回到标称值
+    void reset();
+
+    // 微调输入/输出比例：每个输出消耗的输入帧数乘以(1 + adjustment)，正值表示更快地消耗输入
+    // （输入设备的时钟比输出快时使用）；限制在±kMaxRatioAdjustment之内，在下一次process时生效
+    void setRatioAdjustment(double adjustment);
+
+    // 生成outputFrames帧需要消耗的输入帧数
+    int32_t inputFramesNeeded(int32_t outputFrames) const;
+
+    // 已有inputFrames帧输入时最多能生成的输出帧数
+    int32_t outputFramesAvailable(int32_t inputFrames) const;
+
+    // 生成outputFrames帧到output，恰好消耗inputFramesNeeded(outputFrames)帧input（均为交错格式）
+    void process(const float *input, float *output, int32_t outputFrames);
+
+    // 滤波器群延迟（输出采样率的帧数）
+    double getDelayFrames() const { return mDelayFrames; }
+
+    int32_t getTapsPerPhase() const { return mTapsPerPhase; }
+    int32_t getNumPhases() const { return mNumPhases; }
+
+private:
+    // 质量等级对应的设计参数
+    struct Design {
+        int32_t tapsPerPhase;
+        double stopbandDb;
+    };
+    static const Design kDesigns[kNumQualities];
+
+    // 每块最多拆分的输入帧数（须不小于每个输出消耗的输入帧数M/L，留出比例微调的余量）
+    static const int32_t kBlockFrames = 256;
+    static const int32_t kMaxFramesPerOutput = kBlockFrames - 8;
+
+    // 位置的小数部分位数（单位为1/2^32个相位）
+    static const int kFractionBits = 32;
+
+    // 生成outputFrames帧，所需输入不超过kBlockFrames帧
+    void processBlock(const float *input, float *output, int32_t outputFrames);
+
+    // 当前位置（定点，相位 << kFractionBits | 小数）
+    int64_t position() const { return (static_cast<int64_t>(mPhase) << kFractionBits) | mFraction; }
+
+    const DspKernels *mKernels;
+    int32_t mChannelCount;
+    int32_t mNumPhases;                   // P：L的整数倍
+    int32_t mNominalStep;                 // 标称比例下每个输出前进的相位数（P * M / L）
+    int32_t mTapsPerPhase;
+    double mDelayFrames;
+
+    std::vector<float> mTable;            // [相位][抽头]共P+1行，抽头倒序（与历史窗口从旧到新的顺序对应）；
+                                          // 第P行是第0行右移一个输入帧，供最后一个相位插值
+    std::vector<int32_t> mAdvance;        // 标称比例下各相位输出之后消耗的输入帧数
+    std::vector<int32_t> mNextPhase;      // 标称比例下各相位的下一个相位
+    std::vector<float> mLinear;           // 每个声道taps+kBlockFrames：最近taps个已消耗的输入，之后是本块的输入
+    int64_t mStep;                        // 每个输出前进的位置（定点）
+    int32_t mPhase;                       // 当前输出对应的相位（0到P-1）
+    uint32_t mFraction;                   // 相位的小数部分，为0时不需要插值
+};
+
+#endif //LISTENHELP6_POLYPHASERESAMPLER_H
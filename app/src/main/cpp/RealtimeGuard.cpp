@@ -0,0 +1,113 @@
+#include "RealtimeGuard.h"
+
+#ifdef LISTENHELP_RT_ALLOC_CHECK
+
+#include <android/log.h>
+#include <atomic>
+#include <cstdlib>
+#include <new>
+
+namespace {
+
+thread_local int sRealtimeDepth = 0;
+std::atomic<int64_t> sRealtimeAllocations(0);
+std::atomic<bool> sAbortOnAllocation(true);
+
+void checkRealtimeAllocation(size_t size) {
+    if (sRealtimeDepth <= 0) {
+        return;
+    }
+    sRealtimeAllocations.fetch_add(1, std::memory_order_relaxed);
+    if (sAbortOnAllocation.load(std::memory_order_relaxed)) {
+        // 避免递归：先退出作用域再记录日志
+        sRealtimeDepth = 0;
+        __android_log_print(ANDROID_LOG_ERROR, "RealtimeGuard",
+                            "实时音频线程上发生堆分配: %zu 字节", size);
+        abort();
+    }
+}
+
+void *allocateOrThrow(size_t size) {
+    checkRealtimeAllocation(size);
+    void *ptr = malloc(size == 0 ? 1 : size);
+    if (ptr == nullptr) {
+        throw std::bad_alloc();
+    }
+    return ptr;
+}
+
+} // namespace
+
+void *operator new(size_t size) {
+    return allocateOrThrow(size);
+}
+
+void *operator new[](size_t size) {
+    return allocateOrThrow(size);
+}
+
+void *operator new(size_t size, const std::nothrow_t&) noexcept {
+    checkRealtimeAllocation(size);
+    return malloc(size == 0 ? 1 : size);
+}
+
+void *operator new[](size_t size, const std::nothrow_t&) noexcept {
+    checkRealtimeAllocation(size);
+    return malloc(size == 0 ? 1 : size);
+}
+
+void operator delete(void *ptr) noexcept {
+    free(ptr);
+}
+
+void operator delete[](void *ptr) noexcept {
+    free(ptr);
+}
+
+void operator delete(void *ptr, size_t) noexcept {
+    free(ptr);
+}
+
+void operator delete[](void *ptr, size_t) noexcept {
+    free(ptr);
+}
+
+namespace rtguard {
+
+void enterRealtimeScope() {
+    sRealtimeDepth++;
+}
+
+void exitRealtimeScope() {
+    if (sRealtimeDepth > 0) {
+        sRealtimeDepth--;
+    }
+}
+
+int64_t getRealtimeAllocationCount() {
+    return sRealtimeAllocations.load(std::memory_order_relaxed);
+}
+
+void setAbortOnRealtimeAllocation(bool abortOnAllocation) {
+    sAbortOnAllocation.store(abortOnAllocation, std::memory_order_relaxed);
+}
+
+} // namespace rtguard
+
+#else
+
+namespace rtguard {
+
+void enterRealtimeScope() {}
+
+void exitRealtimeScope() {}
+
+int64_t getRealtimeAllocationCount() {
+    return 0;
+}
+
+void setAbortOnRealtimeAllocation(bool) {}
+
+} // namespace rtguard
+
+#endif
@@ -0,0 +1,34 @@
+#ifndef LISTENHELP6_REALTIMEGUARD_H
+#define LISTENHELP6_REALTIMEGUARD_H
+
+#include <cstdint>
+
+// 实时音频线程的内存分配检测钩子
+// 调试构建（定义了 LISTENHELP_RT_ALLOC_CHECK）时替换全局 operator new/delete，
+// 在实时作用域内发生的任何堆分配都会被计数，并默认直接中止进程，
+// 使音频路径上的分配在开发阶段立即暴露。发布构建中所有函数均为空操作。
+namespace rtguard {
+
+// 进入/退出实时作用域（仅影响当前线程）
+void enterRealtimeScope();
+void exitRealtimeScope();
+
+// 实时作用域内检测到的分配次数
+int64_t getRealtimeAllocationCount();
+
+// 检测到分配时是否中止进程（默认中止）
+void setAbortOnRealtimeAllocation(bool abortOnAllocation);
+
+// RAII辅助类，在回调入口处使用
+class ScopedRealtime {
+public:
+    ScopedRealtime() { enterRealtimeScope(); }
+    ~ScopedRealtime() { exitRealtimeScope(); }
+
+    ScopedRealtime(const ScopedRealtime&) = delete;
+    ScopedRealtime& operator=(const ScopedRealtime&) = delete;
+};
+
+} // namespace rtguard
+
+#endif //LISTENHELP6_REALTIMEGUARD_H
@@ -0,0 +1,73 @@
+#include "ResamplingInputSource.h"
+#include <algorithm>
+#include <cstring>
+
+ResamplingInputSource::ResamplingInputSource()
+    : mSource(nullptr)
+    , mChannelCount(1)
+    , mMaxFramesPerRead(0)
+    , mPendingFrames(0) {
+}
+
+bool ResamplingInputSource::configure(AudioInputSource *source, int32_t channelCount, int32_t inputRate,
+                                      int32_t outputRate, int quality, int32_t maxFramesPerRead) {
+    if (!mResampler.configure(inputRate, outputRate, channelCount, quality)) {
+        return false;
+    }
+    mSource = source;
+    mChannelCount = channelCount;
+    mMaxFramesPerRead = std::max(1, maxFramesPerRead);
+
+    // 一次读取最多需要的输入帧数（按比例微调的上限计），加上上次剩下的不足一个输出帧的输入
+    mResampler.reset();
+    mResampler.setRatioAdjustment(PolyphaseResampler::kMaxRatioAdjustment);
+    int32_t maxPendingFrames = mResampler.inputFramesNeeded(mMaxFramesPerRead) + mResampler.inputFramesNeeded(1) + 1;
+    mResampler.reset();
+    mPending.assign(static_cast<size_t>(maxPendingFrames) * channelCount, 0.0f);
+    mPendingFrames = 0;
+    return true;
+}
+
+void ResamplingInputSource::reset() {
+    mResampler.reset();
+    mPendingFrames = 0;
+}
+
+int32_t ResamplingInputSource::readInput(float *buffer, int32_t numFrames) {
+    if (mSource == nullptr) {
+        return -1;
+    }
+    numFrames = std::min(numFrames, mMaxFramesPerRead);
+
+    int32_t needed = mResampler.inputFramesNeeded(numFrames);
+    if (needed > mPendingFrames) {
+        int32_t framesRead = mSource->readInput(mPending.data() + static_cast<size_t>(mPendingFrames) * mChannelCount,
+                                                needed - mPendingFrames);
+        if (framesRead < 0) {
+            return framesRead;
+        }
+        mPendingFrames += framesRead;
+    }
+
+    // 输入不够时只生成能生成的部分，多余的输入留到下次
+    int32_t frames = std::min(numFrames, mResampler.outputFramesAvailable(mPendingFrames));
+    int32_t consumed = mResampler.inputFramesNeeded(frames);
+    mResampler.process(mPending.data(), buffer, frames);
+    mPendingFrames -= consumed;
+    if (mPendingFrames > 0) {
+        memmove(mPending.data(), mPending.data() + static_cast<size_t>(consumed) * mChannelCount,
+                static_cast<size_t>(mPendingFrames) * mChannelCount * sizeof(float));
+    }
+    return frames;
+}
+
+int32_t ResamplingInputSource::availableInputFrames() {
+    if (mSource == nullptr) {
+        return -1;
+    }
+    int32_t available = mSource->availableInputFrames();
+    if (available < 0) {
+        return available;
+    }
+    return mResampler.outputFramesAvailable(available + mPendingFrames);
+}
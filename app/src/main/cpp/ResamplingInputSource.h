@@ -0,0 +1,44 @@
+#ifndef LISTENHELP6_RESAMPLINGINPUTSOURCE_H
+#define LISTENHELP6_RESAMPLINGINPUTSOURCE_H
+
+#include <cstdint>
+#include <vector>
+#include "FullDuplexPump.h"
+#include "PolyphaseResampler.h"
+
+// 把输入源从输入设备的采样率转换到输出采样率的输入源（装饰器）
+// 采样率相同时也可以使用：比例微调用于补偿两个设备之间的时钟漂移（见ClockDriftController）。
+// 全双工数据泵看到的帧数、水位都是输出采样率的帧，欠载/过载的判断不需要知道重采样的存在。
+// 读取时按重采样器给出的精确帧数从下层输入源读取；下层读到的帧不够生成全部请求的帧时，
+// 剩余的输入留在暂存区中下次使用，不会丢失样本。缓冲区在configure中分配，读取不分配内存。
+class ResamplingInputSource : public AudioInputSource {
+public:
+    ResamplingInputSource();
+
+    // 配置（非实时线程）：下层输入源、声道数、输入/输出采样率、质量等级、每次最多读取的输出帧数
+    // 采样率比不受支持时返回false
+    bool configure(AudioInputSource *source, int32_t channelCount, int32_t inputRate, int32_t outputRate,
+                   int quality, int32_t maxFramesPerRead);
+
+    // 清除暂存的输入和重采样器状态（启动前调用），比例回到标称值
+    void reset();
+
+    // 微调重采样比例（见PolyphaseResampler::setRatioAdjustment），在音频回调中调用
+    void setRatioAdjustment(double adjustment) { mResampler.setRatioAdjustment(adjustment); }
+
+    int32_t readInput(float *buffer, int32_t numFrames) override;
+    int32_t availableInputFrames() override;
+
+    // 重采样引入的延迟（输出采样率的帧数）
+    double getDelayFrames() const { return mResampler.getDelayFrames(); }
+
+private:
+    AudioInputSource *mSource;
+    PolyphaseResampler mResampler;
+    int32_t mChannelCount;
+    int32_t mMaxFramesPerRead;
+    std::vector<float> mPending;          // 已从下层读出、尚未被重采样器消耗的输入（交错）
+    int32_t mPendingFrames;
+};
+
+#endif //LISTENHELP6_RESAMPLINGINPUTSOURCE_H
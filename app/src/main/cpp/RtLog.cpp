@@ -0,0 +1,247 @@
+#include "RtLog.h"
+#include <android/log.h>
+#include <ctime>
+#include <pthread.h>
+
+const int RtLog::kMaxArgs;
+const int32_t RtLog::kCapacity;
+const int32_t RtLog::kFlushIntervalMs;
+const int32_t RtLog::kRateWindowMs;
+const int32_t RtLog::kMaxRecordsPerWindow;
+
+namespace {
+
+int64_t steadyNanos() {
+    return std::chrono::duration_cast<std::chrono::nanoseconds>(
+            std::chrono::steady_clock::now().time_since_epoch()).count();
+}
+
+char priorityLetter(int priority) {
+    switch (priority) {
+        case ANDROID_LOG_VERBOSE: return 'V';
+        case ANDROID_LOG_DEBUG: return 'D';
+        case ANDROID_LOG_INFO: return 'I';
+        case ANDROID_LOG_WARN: return 'W';
+        case ANDROID_LOG_ERROR: return 'E';
+        default: return 'F';
+    }
+}
+
+} // namespace
+
+RtLog::RtLog(const char *tag)
+    : mTag(tag)
+    , mSlots(new Slot[kCapacity])
+    , mMask(kCapacity - 1)
+    , mEnqueuePosition(0)
+    , mDequeuePosition(0)
+    , mReportedDropped(0)
+    , mFile(nullptr)
+    , mRunning(false)
+    , mDroppedCount(0)
+    , mSuppressedCount(0)
+    , mWrittenCount(0) {
+    static_assert((kCapacity & (kCapacity - 1)) == 0, "kCapacity必须是2的幂");
+    for (int32_t i = 0; i < kCapacity; i++) {
+        mSlots[i].sequence.store(static_cast<uint32_t>(i), std::memory_order_relaxed);
+    }
+}
+
+RtLog::~RtLog() {
+    stop();
+    setOutputFile(std::string());
+}
+
+void RtLog::start() {
+    std::lock_guard<std::mutex> lock(mMutex);
+    if (mRunning) {
+        return;
+    }
+    mRunning = true;
+    mThread = std::thread(&RtLog::threadLoop, this);
+}
+
+void RtLog::stop() {
+    {
+        std::lock_guard<std::mutex> lock(mMutex);
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+    }
+    mCondition.notify_all();
+    if (mThread.joinable()) {
+        mThread.join();
+    }
+    // 写出线程已退出，由当前线程写出剩余的记录和未结束的限速窗口中被抑制的条数
+    flush();
+    const int64_t now = steadyNanos();
+    for (auto &entry : mRateStates) {
+        reportSuppressed(entry.second, now);
+    }
+}
+
+bool RtLog::log(const Event &event, int64_t arg0, int64_t arg1, int64_t arg2, int64_t arg3) {
+    // 抢占一个可写的槽：序号等于位置时可写，小于位置说明队列已满
+    uint32_t position = mEnqueuePosition.load(std::memory_order_relaxed);
+    Slot *slot;
+    while (true) {
+        slot = &mSlots[position & mMask];
+        uint32_t sequence = slot->sequence.load(std::memory_order_acquire);
+        int32_t difference = static_cast<int32_t>(sequence - position);
+        if (difference == 0) {
+            if (mEnqueuePosition.compare_exchange_weak(position, position + 1, std::memory_order_relaxed)) {
+                break;
+            }
+        } else if (difference < 0) {
+            mDroppedCount.fetch_add(1, std::memory_order_relaxed);
+            return false;
+        } else {
+            position = mEnqueuePosition.load(std::memory_order_relaxed);
+        }
+    }
+
+    Record &record = slot->record;
+    record.event = &event;
+    record.timeNanos = steadyNanos();
+    record.args[0] = arg0;
+    record.args[1] = arg1;
+    record.args[2] = arg2;
+    record.args[3] = arg3;
+    slot->sequence.store(position + 1, std::memory_order_release);
+    return true;
+}
+
+bool RtLog::setOutputFile(const std::string &path) {
+    FILE *file = nullptr;
+    if (!path.empty()) {
+        file = fopen(path.c_str(), "a");
+        if (file == nullptr) {
+            __android_log_print(ANDROID_LOG_ERROR, mTag, "无法打开日志文件: %s", path.c_str());
+            return false;
+        }
+    }
+    std::lock_guard<std::mutex> lock(mFileMutex);
+    if (mFile != nullptr) {
+        fclose(mFile);
+    }
+    mFile = file;
+    return true;
+}
+
+void RtLog::threadLoop() {
+    pthread_setname_np(pthread_self(), "RtLogWriter");
+
+    std::unique_lock<std::mutex> lock(mMutex);
+    while (mRunning) {
+        mCondition.wait_for(lock, std::chrono::milliseconds(kFlushIntervalMs), [this] { return !mRunning; });
+        lock.unlock();
+        flush();
+        lock.lock();
+    }
+}
+
+bool RtLog::pop(Record &record) {
+    Slot &slot = mSlots[mDequeuePosition & mMask];
+    uint32_t sequence = slot.sequence.load(std::memory_order_acquire);
+    if (sequence != mDequeuePosition + 1) {
+        return false;
+    }
+    record = slot.record;
+    // 槽在绕回一圈之后重新可写
+    slot.sequence.store(mDequeuePosition + mMask + 1, std::memory_order_release);
+    mDequeuePosition++;
+    return true;
+}
+
+void RtLog::flush() {
+    const int64_t now = steadyNanos();
+    Record record;
+    while (pop(record)) {
+        write(record, now);
+    }
+
+    // 限速窗口结束的事件：汇总写出被抑制的条数
+    for (auto &entry : mRateStates) {
+        RateState &state = entry.second;
+        if (now - state.windowStartNanos >= kRateWindowMs * 1000000LL) {
+            reportSuppressed(state, now);
+            state.windowStartNanos = now;
+            state.written = 0;
+        }
+    }
+
+    int64_t dropped = mDroppedCount.load(std::memory_order_relaxed);
+    if (dropped != mReportedDropped) {
+        char message[96];
+        snprintf(message, sizeof(message), "实时日志队列已满，丢弃 %lld 条",
+                 static_cast<long long>(dropped - mReportedDropped));
+        writeLine(ANDROID_LOG_WARN, message, now, now);
+        mReportedDropped = dropped;
+    }
+}
+
+void RtLog::write(const Record &record, int64_t nowNanos) {
+    RateState initial = {};
+    initial.windowStartNanos = record.timeNanos;
+    RateState &state = mRateStates.insert(std::make_pair(record.event, initial)).first->second;
+    if (record.timeNanos - state.windowStartNanos >= kRateWindowMs * 1000000LL) {
+        reportSuppressed(state, nowNanos);
+        state.windowStartNanos = record.timeNanos;
+        state.written = 0;
+    }
+    if (state.written >= kMaxRecordsPerWindow) {
+        state.suppressed++;
+        state.lastSuppressed = record;
+        mSuppressedCount.fetch_add(1, std::memory_order_relaxed);
+        return;
+    }
+    state.written++;
+
+    char message[256];
+    record.event->format(message, sizeof(message), record.args);
+    writeLine(record.event->priority, message, record.timeNanos, nowNanos);
+}
+
+void RtLog::writeLine(int priority, const char *message, int64_t timeNanos, int64_t nowNanos) {
+    // logcat的时间戳是写出时间，记录时间早于写出时间时注明
+    int64_t delayMs = (nowNanos - timeNanos) / 1000000;
+    if (delayMs > 0) {
+        __android_log_print(priority, mTag, "%s（%lld ms前）", message, static_cast<long long>(delayMs));
+    } else {
+        __android_log_print(priority, mTag, "%s", message);
+    }
+    mWrittenCount.fetch_add(1, std::memory_order_relaxed);
+
+    std::lock_guard<std::mutex> lock(mFileMutex);
+    if (mFile == nullptr) {
+        return;
+    }
+    // 文件中写记录发生时的系统时间
+    struct timespec wallTime;
+    clock_gettime(CLOCK_REALTIME, &wallTime);
+    int64_t wallNanos = wallTime.tv_sec * 1000000000LL + wallTime.tv_nsec - (nowNanos - timeNanos);
+    time_t seconds = static_cast<time_t>(wallNanos / 1000000000LL);
+    struct tm local;
+    localtime_r(&seconds, &local);
+    char stamp[32];
+    strftime(stamp, sizeof(stamp), "%m-%d %H:%M:%S", &local);
+    fprintf(mFile, "%s.%03d %c %s: %s\n", stamp, static_cast<int>(wallNanos / 1000000 % 1000),
+            priorityLetter(priority), mTag, message);
+    fflush(mFile);
+}
+
+void RtLog::reportSuppressed(RateState &state, int64_t nowNanos) {
+    if (state.suppressed == 0) {
+        return;
+    }
+    const Record &record = state.lastSuppressed;
+    char message[256];
+    int length = record.event->format(message, sizeof(message), record.args);
+    if (length >= 0 && static_cast<size_t>(length) < sizeof(message)) {
+        snprintf(message + length, sizeof(message) - length, " [%d ms内另有 %d 条同类日志未写出]",
+                 kRateWindowMs, state.suppressed);
+    }
+    writeLine(record.event->priority, message, record.timeNanos, nowNanos);
+    state.suppressed = 0;
+}
@@ -0,0 +1,107 @@
+#ifndef LISTENHELP6_RTLOG_H
+#define LISTENHELP6_RTLOG_H
+
+#include <atomic>
+#include <chrono>
+#include <condition_variable>
+#include <cstdint>
+#include <cstdio>
+#include <map>
+#include <memory>
+#include <mutex>
+#include <string>
+#include <thread>
+
+// 实时安全的日志（音频回调路径上代替__android_log_print）
+// - 每条日志是定长的二进制记录：事件（静态的格式化规则）、时间戳和最多kMaxArgs个整数参数，
+//   写入无锁的多生产者环形队列（数据回调和错误回调可能在不同线程），不加锁、不分配内存、不做系统调用；
+//   队列满时丢弃并计数
+// - 写出线程每kFlushIntervalMs取出记录，调用事件的格式化函数后写到logcat，设置了日志文件时同时追加到文件；
+//   每种事件每kRateWindowMs最多写出kMaxRecordsPerWindow条，超出的计为抑制，窗口结束时汇总写出一条
+// 事件定义为静态常量，记录中只保存其指针，格式化（包括AAudio_convertResultToText等）都在写出线程上完成。
+class RtLog {
+public:
+    static const int kMaxArgs = 4;
+    static const int32_t kCapacity = 256;             // 队列容量（条）
+    static const int32_t kFlushIntervalMs = 50;
+    static const int32_t kRateWindowMs = 1000;
+    static const int32_t kMaxRecordsPerWindow = 10;
+
+    // 格式化函数：把参数写成消息文本，返回值同snprintf
+    typedef int (*FormatFunction)(char *buffer, size_t size, const int64_t *args);
+
+    // 日志事件：优先级（ANDROID_LOG_*）与格式化函数
+    struct Event {
+        int priority;
+        FormatFunction format;
+    };
+
+    explicit RtLog(const char *tag);
+    ~RtLog();
+
+    // 启动/停止写出线程；停止时写出队列中剩余的记录
+    void start();
+    void stop();
+
+    // 任意线程（包括实时线程）：记录一条日志，队列满时丢弃并返回false
+    bool log(const Event &event, int64_t arg0 = 0, int64_t arg1 = 0, int64_t arg2 = 0, int64_t arg3 = 0);
+
+    // 设置日志文件（追加写入），为空时只写logcat；返回是否成功打开
+    bool setOutputFile(const std::string &path);
+
+    // 统计（可在任意线程读取）：因队列满丢弃的条数、因限速未写出的条数、已写出的条数
+    int64_t getDroppedCount() const { return mDroppedCount.load(std::memory_order_relaxed); }
+    int64_t getSuppressedCount() const { return mSuppressedCount.load(std::memory_order_relaxed); }
+    int64_t getWrittenCount() const { return mWrittenCount.load(std::memory_order_relaxed); }
+
+private:
+    struct Record {
+        const Event *event;
+        int64_t timeNanos;                // steady_clock
+        int64_t args[kMaxArgs];
+    };
+
+    // 队列的槽：序号表示槽的状态（Vyukov有界队列），等于写入位置时可写，等于写入位置+1时可读
+    struct Slot {
+        std::atomic<uint32_t> sequence;
+        Record record;
+    };
+
+    // 每种事件的限速状态（仅写出线程访问）
+    struct RateState {
+        int64_t windowStartNanos;
+        int32_t written;
+        int32_t suppressed;
+        Record lastSuppressed;            // 汇总时按最后一条被抑制的记录写出消息
+    };
+
+    void threadLoop();
+    bool pop(Record &record);
+    void flush();
+    void write(const Record &record, int64_t nowNanos);
+    void writeLine(int priority, const char *message, int64_t timeNanos, int64_t nowNanos);
+    void reportSuppressed(RateState &state, int64_t nowNanos);
+
+    const char *mTag;
+    std::unique_ptr<Slot[]> mSlots;
+    uint32_t mMask;
+    std::atomic<uint32_t> mEnqueuePosition;
+    uint32_t mDequeuePosition;            // 仅写出线程访问（stop之后由调用stop的线程访问）
+
+    std::map<const Event*, RateState> mRateStates;
+    int64_t mReportedDropped;             // 上次报告时的丢弃数
+
+    std::mutex mFileMutex;
+    FILE *mFile;                          // 由mFileMutex保护
+
+    std::mutex mMutex;
+    std::condition_variable mCondition;
+    bool mRunning;                        // 由mMutex保护
+    std::thread mThread;
+
+    std::atomic<int64_t> mDroppedCount;
+    std::atomic<int64_t> mSuppressedCount;
+    std::atomic<int64_t> mWrittenCount;
+};
+
+#endif //LISTENHELP6_RTLOG_H
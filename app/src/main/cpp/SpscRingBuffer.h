@@ -0,0 +1,136 @@
+#ifndef LISTENHELP6_SPSCRINGBUFFER_H
+#define LISTENHELP6_SPSCRINGBUFFER_H
+
+#include <algorithm>
+#include <atomic>
+#include <cstdint>
+#include <cstring>
+#include <memory>
+
+// 单生产者/单消费者无锁环形缓冲区
+// 容量在init()中一次性分配（非实时线程），之后read/write只做memcpy和原子读写，
+// 可以安全地在音频回调中使用。T必须是可平凡拷贝的类型。
+template <typename T>
+class SpscRingBuffer {
+public:
+    SpscRingBuffer()
+        : mCapacity(0)
+        , mMask(0)
+        , mWriteCounter(0)
+        , mReadCounter(0) {
+    }
+
+    // 分配缓冲区，容量向上取整到2的幂（不可在音频线程调用）
+    bool init(int32_t capacity) {
+        if (capacity <= 0) {
+            return false;
+        }
+        uint32_t size = 1;
+        while (size < static_cast<uint32_t>(capacity)) {
+            size <<= 1;
+        }
+        mBuffer.reset(new T[size]);
+        mCapacity = size;
+        mMask = size - 1;
+        mWriteCounter.store(0, std::memory_order_relaxed);
+        mReadCounter.store(0, std::memory_order_relaxed);
+        return true;
+    }
+
+    // 释放缓冲区（不可与读写并发）
+    void release() {
+        mBuffer.reset();
+        mCapacity = 0;
+        mMask = 0;
+        mWriteCounter.store(0, std::memory_order_relaxed);
+        mReadCounter.store(0, std::memory_order_relaxed);
+    }
+
+    int32_t capacity() const {
+        return static_cast<int32_t>(mCapacity);
+    }
+
+    // 生产者：可写入的元素数
+    int32_t availableToWrite() const {
+        return static_cast<int32_t>(mCapacity - size());
+    }
+
+    // 消费者：可读取的元素数
+    int32_t availableToRead() const {
+        return static_cast<int32_t>(size());
+    }
+
+    // 生产者：写入最多count个元素，返回实际写入数
+    int32_t write(const T *data, int32_t count) {
+        uint32_t writeCounter = mWriteCounter.load(std::memory_order_relaxed);
+        uint32_t readCounter = mReadCounter.load(std::memory_order_acquire);
+        int32_t toWrite = std::min(count, static_cast<int32_t>(mCapacity - (writeCounter - readCounter)));
+        if (toWrite <= 0) {
+            return 0;
+        }
+        copyIn(writeCounter & mMask, data, toWrite);
+        mWriteCounter.store(writeCounter + toWrite, std::memory_order_release);
+        return toWrite;
+    }
+
+    // 消费者：读取最多count个元素，返回实际读取数
+    int32_t read(T *data, int32_t count) {
+        uint32_t readCounter = mReadCounter.load(std::memory_order_relaxed);
+        uint32_t writeCounter = mWriteCounter.load(std::memory_order_acquire);
+        int32_t toRead = std::min(count, static_cast<int32_t>(writeCounter - readCounter));
+        if (toRead <= 0) {
+            return 0;
+        }
+        copyOut(readCounter & mMask, data, toRead);
+        mReadCounter.store(readCounter + toRead, std::memory_order_release);
+        return toRead;
+    }
+
+    // 消费者：丢弃最多count个元素，返回实际丢弃数
+    int32_t skip(int32_t count) {
+        uint32_t readCounter = mReadCounter.load(std::memory_order_relaxed);
+        uint32_t writeCounter = mWriteCounter.load(std::memory_order_acquire);
+        int32_t toSkip = std::min(count, static_cast<int32_t>(writeCounter - readCounter));
+        if (toSkip <= 0) {
+            return 0;
+        }
+        mReadCounter.store(readCounter + toSkip, std::memory_order_release);
+        return toSkip;
+    }
+
+private:
+    uint32_t size() const {
+        return mWriteCounter.load(std::memory_order_acquire) -
+               mReadCounter.load(std::memory_order_acquire);
+    }
+
+    void copyIn(uint32_t index, const T *data, int32_t count) {
+        int32_t firstPart = std::min(count, static_cast<int32_t>(mCapacity - index));
+        memcpy(&mBuffer[index], data, firstPart * sizeof(T));
+        if (count > firstPart) {
+            memcpy(&mBuffer[0], data + firstPart, (count - firstPart) * sizeof(T));
+        }
+    }
+
+    void copyOut(uint32_t index, T *data, int32_t count) const {
+        int32_t firstPart = std::min(count, static_cast<int32_t>(mCapacity - index));
+        memcpy(data, &mBuffer[index], firstPart * sizeof(T));
+        if (count > firstPart) {
+            memcpy(data + firstPart, &mBuffer[0], (count - firstPart) * sizeof(T));
+        }
+    }
+
+    std::unique_ptr<T[]> mBuffer;
+    uint32_t mCapacity;
+    uint32_t mMask;
+
+    // 计数器单调递增并自然回绕，分别由生产者和消费者独占写入，用填充隔开避免伪共享
+    // （C++14下堆分配不保证alignas超对齐，因此用填充而不是alignas）
+    static const size_t kCacheLineSize = 64;
+    char mPadding0[kCacheLineSize];
+    std::atomic<uint32_t> mWriteCounter;
+    char mPadding1[kCacheLineSize - sizeof(std::atomic<uint32_t>)];
+    std::atomic<uint32_t> mReadCounter;
+};
+
+#endif //LISTENHELP6_SPSCRINGBUFFER_H
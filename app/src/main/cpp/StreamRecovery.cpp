@@ -0,0 +1,146 @@
+#include "StreamRecovery.h"
+#include <algorithm>
+#include <pthread.h>
+
+const int32_t StreamRecovery::kMaxAttempts;
+const int32_t StreamRecovery::kRetryDelayMs;
+const int32_t StreamRecovery::kTimeoutMs;
+
+StreamRecovery::StreamRecovery()
+    : mRunning(false)
+    , mPending(false)
+    , mRequestCount(0)
+    , mRecoveryCount(0)
+    , mFailureCount(0)
+    , mLastRecoveryMs(0)
+    , mMaxRecoveryMs(0) {
+}
+
+StreamRecovery::~StreamRecovery() {
+    stop();
+}
+
+void StreamRecovery::start(CloseFunction closeStreams, OpenFunction openStreams) {
+    std::lock_guard<std::mutex> lock(mMutex);
+    if (mRunning) {
+        return;
+    }
+    mCloseStreams = closeStreams;
+    mOpenStreams = openStreams;
+    mPending = false;
+    mRunning = true;
+    mThread = std::thread(&StreamRecovery::threadLoop, this);
+}
+
+void StreamRecovery::stop() {
+    {
+        std::lock_guard<std::mutex> lock(mMutex);
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+    }
+    mCondition.notify_all();
+    if (mThread.joinable()) {
+        mThread.join();
+    }
+}
+
+void StreamRecovery::requestRecovery() {
+    mRequestCount.fetch_add(1, std::memory_order_relaxed);
+    {
+        std::lock_guard<std::mutex> lock(mMutex);
+        if (!mPending) {
+            mPending = true;
+            mRequestTime = std::chrono::steady_clock::now();
+        }
+    }
+    mCondition.notify_all();
+}
+
+void StreamRecovery::setListener(EventListener listener) {
+    // 等待正在进行的通知结束
+    std::lock_guard<std::mutex> lock(mListenerMutex);
+    mListener = listener;
+}
+
+void StreamRecovery::threadLoop() {
+    pthread_setname_np(pthread_self(), "StreamRecovery");
+    
+    std::unique_lock<std::mutex> lock(mMutex);
+    while (true) {
+        mCondition.wait(lock, [this] { return !mRunning || mPending; });
+        if (!mRunning) {
+            break;
+        }
+        mPending = false;
+        std::chrono::steady_clock::time_point requestTime = mRequestTime;
+        lock.unlock();
+        recover(requestTime);
+        lock.lock();
+    }
+}
+
+void StreamRecovery::recover(std::chrono::steady_clock::time_point requestTime) {
+    if (!mCloseStreams()) {
+        return;
+    }
+    
+    // 旧的流关闭后不会再有回调，此前由它们发出的请求（如输入输出流同时断开）已经在处理了
+    {
+        std::lock_guard<std::mutex> lock(mMutex);
+        mPending = false;
+    }
+    
+    auto elapsedMs = [requestTime]() {
+        return static_cast<int64_t>(std::chrono::duration_cast<std::chrono::milliseconds>(
+                std::chrono::steady_clock::now() - requestTime).count());
+    };
+    notify(kEventRecovering, 0, elapsedMs());
+    
+    OpenResult result = kOpenFailed;
+    bool stopped = false;
+    int32_t attempts = 0;
+    while (attempts < kMaxAttempts) {
+        if (attempts > 0) {
+            // 等待设备路由稳定后再重试；超时或工作线程停止时不再尝试
+            int32_t delayMs = kRetryDelayMs << (attempts - 1);
+            if (elapsedMs() + delayMs > kTimeoutMs) {
+                break;
+            }
+            std::unique_lock<std::mutex> lock(mMutex);
+            if (mCondition.wait_for(lock, std::chrono::milliseconds(delayMs), [this] { return !mRunning; })) {
+                stopped = true;
+                break;
+            }
+        }
+        result = mOpenStreams(attempts);
+        attempts++;
+        if (result != kOpenFailed) {
+            break;
+        }
+    }
+    
+    int64_t totalMs = elapsedMs();
+    if (result == kOpenSucceeded) {
+        int32_t ms = static_cast<int32_t>(std::min<int64_t>(totalMs, INT32_MAX));
+        mRecoveryCount.fetch_add(1, std::memory_order_relaxed);
+        mLastRecoveryMs.store(ms, std::memory_order_relaxed);
+        mMaxRecoveryMs.store(std::max(ms, mMaxRecoveryMs.load(std::memory_order_relaxed)),
+                             std::memory_order_relaxed);
+        notify(kEventRecovered, attempts, totalMs);
+    } else if (result == kOpenAborted || stopped) {
+        // 用户的停止或重新设置已经决定了流的状态，不能报告为处理已停止
+        notify(kEventAborted, attempts, totalMs);
+    } else {
+        mFailureCount.fetch_add(1, std::memory_order_relaxed);
+        notify(kEventFailed, attempts, totalMs);
+    }
+}
+
+void StreamRecovery::notify(int32_t event, int32_t attempts, int64_t elapsedMs) {
+    std::lock_guard<std::mutex> lock(mListenerMutex);
+    if (mListener) {
+        mListener(event, attempts, elapsedMs);
+    }
+}
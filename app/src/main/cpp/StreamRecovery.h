@@ -0,0 +1,93 @@
+#ifndef LISTENHELP6_STREAMRECOVERY_H
+#define LISTENHELP6_STREAMRECOVERY_H
+
+#include <atomic>
+#include <chrono>
+#include <condition_variable>
+#include <cstdint>
+#include <functional>
+#include <mutex>
+#include <thread>
+
+// 音频流断开后的自动恢复（只含线程和重试策略，流的关闭/打开由调用者提供）
+// - 错误回调线程调用requestRecovery只设置标志并唤醒工作线程，从不在回调线程上关闭或打开流
+// - 工作线程先关闭旧的流，丢弃此前（由旧的流）发出的请求，再尝试重新打开：
+//   第一次立即尝试原设备，之后按kRetryDelayMs起倍增的间隔重试（打开函数可据此改用默认设备），
+//   最多kMaxAttempts次，超过kTimeoutMs不再开始新的尝试
+// - 每次恢复的开始、成功、失败或中止通过监听器通知，并记录次数和耗时；中止不计为失败
+class StreamRecovery {
+public:
+    static const int32_t kMaxAttempts = 5;
+    static const int32_t kRetryDelayMs = 50;
+    static const int32_t kTimeoutMs = 2000;
+
+    // 通知监听器的事件
+    enum Event {
+        kEventRecovering = 0,             // 检测到断开，旧的流已关闭，开始重新打开
+        kEventRecovered = 1,              // 已重新打开并开始运行
+        kEventFailed = 2,                 // 所有尝试均失败或超时，处理已停止
+        kEventAborted = 3                 // 恢复被中止（用户停止或重新设置了流，或工作线程停止），流的状态由中止者决定
+    };
+
+    // 打开函数的结果
+    enum OpenResult {
+        kOpenSucceeded,
+        kOpenFailed,                      // 可以重试
+        kOpenAborted                      // 期间用户停止或重新设置了流，不再恢复
+    };
+
+    // 关闭旧的流：返回false表示当前没有在运行的流需要恢复（请求被忽略）
+    typedef std::function<bool()> CloseFunction;
+    // 打开并启动新的流，attempt从0开始
+    typedef std::function<OpenResult(int32_t attempt)> OpenFunction;
+    // 事件监听器（在工作线程上调用）：事件、已尝试次数、从断开到现在的毫秒数
+    typedef std::function<void(int32_t event, int32_t attempts, int64_t elapsedMs)> EventListener;
+
+    StreamRecovery();
+    ~StreamRecovery();
+
+    // 启动工作线程
+    void start(CloseFunction closeStreams, OpenFunction openStreams);
+
+    // 停止工作线程：中止等待中的重试，正在进行的关闭/打开会先完成
+    void stop();
+
+    // 请求一次恢复，可在任意线程（包括AAudio错误回调线程）调用；恢复开始前的多次请求合并为一次
+    void requestRecovery();
+
+    // 设置事件监听器，返回后旧的监听器不会再被调用
+    void setListener(EventListener listener);
+
+    // 统计（可在任意线程读取）
+    int32_t getRequestCount() const { return mRequestCount.load(std::memory_order_relaxed); }
+    int32_t getRecoveryCount() const { return mRecoveryCount.load(std::memory_order_relaxed); }
+    int32_t getFailureCount() const { return mFailureCount.load(std::memory_order_relaxed); }
+    int32_t getLastRecoveryMs() const { return mLastRecoveryMs.load(std::memory_order_relaxed); }
+    int32_t getMaxRecoveryMs() const { return mMaxRecoveryMs.load(std::memory_order_relaxed); }
+
+private:
+    void threadLoop();
+    void recover(std::chrono::steady_clock::time_point requestTime);
+    void notify(int32_t event, int32_t attempts, int64_t elapsedMs);
+
+    CloseFunction mCloseStreams;
+    OpenFunction mOpenStreams;
+
+    std::mutex mMutex;
+    std::condition_variable mCondition;
+    bool mRunning;                        // 由mMutex保护
+    bool mPending;                        // 由mMutex保护
+    std::chrono::steady_clock::time_point mRequestTime;   // 合并的请求中第一个的时间，由mMutex保护
+    std::thread mThread;
+
+    std::mutex mListenerMutex;
+    EventListener mListener;
+
+    std::atomic<int32_t> mRequestCount;
+    std::atomic<int32_t> mRecoveryCount;
+    std::atomic<int32_t> mFailureCount;
+    std::atomic<int32_t> mLastRecoveryMs;
+    std::atomic<int32_t> mMaxRecoveryMs;
+};
+
+#endif //LISTENHELP6_STREAMRECOVERY_H
@@ -0,0 +1,61 @@
+#ifndef LISTENHELP6_TRIPLEBUFFER_H
+#define LISTENHELP6_TRIPLEBUFFER_H
+
+#include <atomic>
+#include <cstdint>
+
+// 无锁三缓冲，用于把完整的参数集从非实时线程传递给音频线程
+// 写入端填充 writeBuffer() 后调用 publish()；读取端在每个处理块开始时调用 acquire()，
+// 总能拿到最近一次发布的完整快照，不会读到写了一半的数据，双方都不会阻塞。
+// 只支持单写入者，多个写入线程需要在外部串行化（该串行化不涉及音频线程）。
+template <typename T>
+class TripleBuffer {
+public:
+    TripleBuffer()
+        : mMiddle(1)
+        , mWriteIndex(0)
+        , mReadIndex(2) {
+    }
+
+    // 用同一个值初始化三个缓冲区（仅在没有并发访问时调用）
+    void reset(const T &value) {
+        for (T &buffer : mBuffers) {
+            buffer = value;
+        }
+        mMiddle.store(1, std::memory_order_relaxed);
+        mWriteIndex = 0;
+        mReadIndex = 2;
+    }
+
+    // 写入端：获取可写缓冲区
+    T &writeBuffer() {
+        return mBuffers[mWriteIndex];
+    }
+
+    // 写入端：发布当前可写缓冲区，与中间缓冲区交换并置位新数据标记
+    void publish() {
+        uint8_t previous = mMiddle.exchange(
+                static_cast<uint8_t>(mWriteIndex | kDirtyBit), std::memory_order_acq_rel);
+        mWriteIndex = previous & kIndexMask;
+    }
+
+    // 读取端：如有新数据则与中间缓冲区交换，返回最新快照（wait-free）
+    const T &acquire() {
+        if (mMiddle.load(std::memory_order_relaxed) & kDirtyBit) {
+            uint8_t previous = mMiddle.exchange(mReadIndex, std::memory_order_acq_rel);
+            mReadIndex = previous & kIndexMask;
+        }
+        return mBuffers[mReadIndex];
+    }
+
+private:
+    static const uint8_t kDirtyBit = 0x4;
+    static const uint8_t kIndexMask = 0x3;
+
+    T mBuffers[3];
+    std::atomic<uint8_t> mMiddle;   // 中间缓冲区索引 | 新数据标记
+    uint8_t mWriteIndex;            // 仅写入端访问
+    uint8_t mReadIndex;             // 仅读取端访问
+};
+
+#endif //LISTENHELP6_TRIPLEBUFFER_H
@@ -0,0 +1,57 @@
+#include "WaveformDecimator.h"
+#include <algorithm>
+#include <cmath>
+
+WaveformDecimator::WaveformDecimator()
+    : mKernels(&dsp::kernels())
+    , mFramesPerBin(1)
+    , mFramesInBin(0)
+    , mMin(0.0f)
+    , mMax(0.0f)
+    , mSumSquares(0.0f) {
+}
+
+bool WaveformDecimator::configure(int32_t framesPerBin, int32_t capacityBins) {
+    if (framesPerBin <= 0 || !mRing.init(capacityBins)) {
+        return false;
+    }
+    mFramesPerBin = framesPerBin;
+    mFramesInBin = 0;
+    return true;
+}
+
+int32_t WaveformDecimator::process(const float *data, int32_t numFrames) {
+    int32_t dropped = 0;
+    while (numFrames > 0) {
+        int32_t frames = std::min(numFrames, mFramesPerBin - mFramesInBin);
+        accumulate(data, frames);
+        data += frames;
+        numFrames -= frames;
+
+        if (mFramesInBin == mFramesPerBin) {
+            WaveformBin bin = {mMin, mMax, std::sqrt(mSumSquares / mFramesPerBin)};
+            if (mRing.write(&bin, 1) == 0) {
+                dropped += mFramesPerBin;
+            }
+            mFramesInBin = 0;
+        }
+    }
+    return dropped;
+}
+
+void WaveformDecimator::accumulate(const float *data, int32_t numFrames) {
+    if (numFrames <= 0) {
+        return;
+    }
+    float minValue = mFramesInBin == 0 ? data[0] : mMin;
+    float maxValue = mFramesInBin == 0 ? data[0] : mMax;
+    for (int32_t i = 0; i < numFrames; i++) {
+        minValue = data[i] < minValue ? data[i] : minValue;
+        maxValue = data[i] > maxValue ? data[i] : maxValue;
+    }
+    float sumSquares = mKernels->dotProduct(data, data, numFrames);
+    mSumSquares = mFramesInBin == 0 ? sumSquares : mSumSquares + sumSquares;
+    mMin = minValue;
+    mMax = maxValue;
+    mFramesInBin += numFrames;
+}
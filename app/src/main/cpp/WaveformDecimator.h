@@ -0,0 +1,48 @@
+#ifndef LISTENHELP6_WAVEFORMDECIMATOR_H
+#define LISTENHELP6_WAVEFORMDECIMATOR_H
+
+#include <cstdint>
+#include "DspKernels.h"
+#include "SpscRingBuffer.h"
+
+// 波形显示用的一个桶：这段时间内样本的最小值、最大值和均方根
+struct WaveformBin {
+    float min;
+    float max;
+    float rms;
+};
+
+// 波形抽取：音频线程把单声道样本按固定帧数归并为最小/最大/均方根桶，
+// 桶跨回调累积（回调大小与桶大小无关），每满一个桶写入环形缓冲区，
+// 消费线程按显示频率取走所有已完成的桶。相比逐点抽样不会漏掉峰值，传给Java的数据量也只有原来的几十分之一。
+// process在音频线程调用，不分配内存；缓冲区满时丢弃新的桶并计入返回值。
+class WaveformDecimator {
+public:
+    WaveformDecimator();
+
+    // 配置每个桶的帧数和环形缓冲区容量（桶数），分配缓冲区并清除未完成的桶（非实时线程，不可与process并发）
+    bool configure(int32_t framesPerBin, int32_t capacityBins);
+
+    // 音频线程：累积numFrames个样本，返回因缓冲区已满而丢弃的帧数
+    int32_t process(const float *data, int32_t numFrames);
+
+    // 消费线程：已完成的桶数、读取最多maxBins个桶、跳过较旧的桶
+    int32_t availableBins() const { return mRing.availableToRead(); }
+    int32_t readBins(WaveformBin *bins, int32_t maxBins) { return mRing.read(bins, maxBins); }
+    void skipBins(int32_t count) { mRing.skip(count); }
+
+    int32_t getFramesPerBin() const { return mFramesPerBin; }
+
+private:
+    void accumulate(const float *data, int32_t numFrames);
+
+    const DspKernels *mKernels;
+    int32_t mFramesPerBin;
+    int32_t mFramesInBin;                 // 当前桶已累积的帧数
+    float mMin;
+    float mMax;
+    float mSumSquares;
+    SpscRingBuffer<WaveformBin> mRing;
+};
+
+#endif //LISTENHELP6_WAVEFORMDECIMATOR_H
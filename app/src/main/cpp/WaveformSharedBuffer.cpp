@@ -0,0 +1,71 @@
+#include "WaveformSharedBuffer.h"
+#include <algorithm>
+#include <cstring>
+
+// 头部按int32原子变量访问，需与Java的32位字布局一致
+static_assert(sizeof(std::atomic<int32_t>) == sizeof(int32_t), "atomic<int32_t>与int32_t大小不同");
+
+WaveformSharedBuffer::WaveformSharedBuffer()
+    : mHeader(nullptr)
+    , mRings(nullptr)
+    , mCapacity(0) {
+}
+
+bool WaveformSharedBuffer::attach(void *data, size_t size) {
+    mHeader = nullptr;
+    mRings = nullptr;
+    mCapacity = 0;
+    if (data == nullptr || size < kHeaderWords * sizeof(int32_t)
+            || reinterpret_cast<uintptr_t>(data) % alignof(int32_t) != 0) {
+        return false;
+    }
+
+    std::atomic<int32_t> *header = reinterpret_cast<std::atomic<int32_t>*>(data);
+    int32_t capacity = header[kCapacityWord].load(std::memory_order_relaxed);
+    if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+        return false;
+    }
+    size_t required = kHeaderWords * sizeof(int32_t)
+            + static_cast<size_t>(capacity) * kNumChannels * kBinStride * sizeof(float);
+    if (size < required) {
+        return false;
+    }
+
+    mHeader = header;
+    mRings = reinterpret_cast<float*>(header + kHeaderWords);
+    mCapacity = capacity;
+    return true;
+}
+
+void WaveformSharedBuffer::publish(int channel, const float *bins, int32_t count) {
+    if (mHeader == nullptr || channel < 0 || channel >= kNumChannels || count <= 0) {
+        return;
+    }
+
+    std::atomic<int32_t> &sequence = mHeader[kSequenceWord];
+    std::atomic<int32_t> &written = mHeader[kWrittenWord + channel];
+    // 累计桶数按无符号回绕，容量为2的幂，回绕后位置仍然连续
+    uint32_t total = static_cast<uint32_t>(written.load(std::memory_order_relaxed));
+    uint32_t mask = static_cast<uint32_t>(mCapacity) - 1;
+    int32_t skipped = std::max(0, count - mCapacity);
+    uint32_t position = total + static_cast<uint32_t>(skipped);
+    float *ring = mRings + static_cast<size_t>(channel) * mCapacity * kBinStride;
+
+    // 序号变为奇数后才写数据：release栅栏保证读取端看到新数据时也能看到奇数序号
+    int32_t begin = sequence.load(std::memory_order_relaxed);
+    sequence.store(begin + 1, std::memory_order_relaxed);
+    std::atomic_thread_fence(std::memory_order_release);
+
+    for (int32_t i = skipped; i < count; ) {
+        // 一次复制到环形区末尾为止
+        uint32_t index = position & mask;
+        int32_t run = std::min(count - i, static_cast<int32_t>(mCapacity - index));
+        std::memcpy(ring + index * kBinStride, bins + static_cast<size_t>(i) * kBinStride,
+                    static_cast<size_t>(run) * kBinStride * sizeof(float));
+        position += static_cast<uint32_t>(run);
+        i += run;
+    }
+    written.store(static_cast<int32_t>(total + static_cast<uint32_t>(count)), std::memory_order_relaxed);
+
+    sequence.store(begin + 2, std::memory_order_release);
+}
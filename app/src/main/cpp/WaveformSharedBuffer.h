@@ -0,0 +1,43 @@
+#ifndef LISTENHELP6_WAVEFORMSHAREDBUFFER_H
+#define LISTENHELP6_WAVEFORMSHAREDBUFFER_H
+
+#include <atomic>
+#include <cstddef>
+#include <cstdint>
+
+// 与Java共享的波形缓冲区（Java分配的直接ByteBuffer，本机字节序），写入端在原生波形消费线程，
+// 读取端在UI线程按vsync轮询，两边都不分配内存，也没有从原生线程到Java的JNI调用。
+// 布局（32位字）：
+//   [0] 序号：写入期间为奇数（seqlock），读取端在读数据前后各读一次，不一致或为奇数则重读
+//   [1] 每个通道的容量（桶，2的幂，由Java设置）
+//   [2] 输入通道累计写入的桶数（回绕）  [3] 输出通道累计写入的桶数
+//   之后依次为输入、输出两个环形区，每个桶为最小值、最大值、均方根三个float，第n个桶位于 n & (容量-1)
+// 累计桶数保存在缓冲区里而不是写入端，重新附加同一个缓冲区时读取端的位置仍然有效。
+// 布局与WaveformSharedBuffer.java一致。
+class WaveformSharedBuffer {
+public:
+    static const int kChannelInput = 0;
+    static const int kChannelOutput = 1;
+    static const int kNumChannels = 2;
+    static const int kBinStride = 3;
+    static const int kSequenceWord = 0;
+    static const int kCapacityWord = 1;
+    static const int kWrittenWord = 2;                  // 加通道号
+    static const int kHeaderWords = 4;
+
+    WaveformSharedBuffer();
+
+    // 附加到size字节的缓冲区（data为nullptr时分离），检查容量和大小，不合法时返回false并保持分离
+    bool attach(void *data, size_t size);
+    bool isAttached() const { return mHeader != nullptr; }
+
+    // 写入一个通道的count个桶（bins为交错的最小值、最大值、均方根），超过容量时只保留最新的部分
+    void publish(int channel, const float *bins, int32_t count);
+
+private:
+    std::atomic<int32_t> *mHeader;
+    float *mRings;
+    int32_t mCapacity;
+};
+
+#endif //LISTENHELP6_WAVEFORMSHAREDBUFFER_H
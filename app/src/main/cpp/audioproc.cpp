@@ -1,133 +1,17 @@
 #include <jni.h>
 #include <string>
+#include <vector>
 #include <android/log.h>
-#include "AAudioProcessor.h"
+#include "NativeSession.h"
 
 #define LOG_TAG "AudioProcJNI"
 #define LOGD(...) __android_log_print(ANDROID_LOG_DEBUG, LOG_TAG, __VA_ARGS__)
 #define LOGE(...) __android_log_print(ANDROID_LOG_ERROR, LOG_TAG, __VA_ARGS__)
 
-// 存储AAudioProcessor的指针
-static AAudioProcessor *audioProcessor = nullptr;
-
-// 全局引用，用于保存Java回调
-static JavaVM *javaVM = nullptr;
-static jobject inputWaveformCallbackObj = nullptr;
-static jobject outputWaveformCallbackObj = nullptr;
-static jmethodID inputWaveformMethodId = nullptr;
-static jmethodID outputWaveformMethodId = nullptr;
-
-// JNI环境获取辅助函数
-static JNIEnv *getJNIEnv() {
-    JNIEnv *env = nullptr;
-    if (javaVM != nullptr) {
-        jint result = javaVM->GetEnv((void**)&env, JNI_VERSION_1_6);
-        if (result == JNI_EDETACHED) {
-            LOGD("线程未附加到JVM，尝试附加");
-            JavaVMAttachArgs args;
-            args.version = JNI_VERSION_1_6;
-            args.name = "NativeWaveformCallback";
-            args.group = nullptr;
-            
-            result = javaVM->AttachCurrentThread(&env, &args);
-            if (result != JNI_OK) {
-                LOGE("附加线程到JVM失败: %d", result);
-                return nullptr;
-            }
-            LOGD("线程已成功附加到JVM");
-        } else if (result != JNI_OK) {
-            LOGE("获取JNI环境失败: %d", result);
-            return nullptr;
-        }
-    } else {
-        LOGE("JavaVM为空，无法获取JNI环境");
-    }
-    return env;
-}
-
-// 波形数据回调函数
-static void onInputWaveformData(const float* data, size_t size, bool isInput) {
-    JNIEnv *env = getJNIEnv();
-    if (env == nullptr) {
-        LOGE("无法获取JNI环境，无法发送波形数据");
-        return;
-    }
-    
-    if (inputWaveformCallbackObj == nullptr) {
-        LOGE("输入波形回调对象为空");
-        return;
-    }
-    
-    if (inputWaveformMethodId == nullptr) {
-        LOGE("输入波形回调方法ID为空");
-        return;
-    }
-
-    // 创建浮点数组
-    jfloatArray jArray = env->NewFloatArray(size);
-    if (jArray == nullptr) {
-        LOGE("创建浮点数组失败，大小: %zu", size);
-        return;
-    }
-
-    // 复制数据
-    env->SetFloatArrayRegion(jArray, 0, size, data);
-
-    // 调用Java回调方法
-    LOGD("调用Java输入波形回调方法，数据大小: %zu", size);
-    env->CallVoidMethod(inputWaveformCallbackObj, inputWaveformMethodId, jArray);
-    
-    // 检查是否有异常
-    if (env->ExceptionCheck()) {
-        LOGE("调用Java输入波形回调时发生异常");
-        env->ExceptionDescribe();
-        env->ExceptionClear();
-    }
-
-    // 释放局部引用
-    env->DeleteLocalRef(jArray);
-}
-
-static void onOutputWaveformData(const float* data, size_t size, bool isInput) {
-    JNIEnv *env = getJNIEnv();
-    if (env == nullptr) {
-        LOGE("无法获取JNI环境，无法发送波形数据");
-        return;
-    }
-    
-    if (outputWaveformCallbackObj == nullptr) {
-        LOGE("输出波形回调对象为空");
-        return;
-    }
-    
-    if (outputWaveformMethodId == nullptr) {
-        LOGE("输出波形回调方法ID为空");
-        return;
-    }
-
-    // 创建浮点数组
-    jfloatArray jArray = env->NewFloatArray(size);
-    if (jArray == nullptr) {
-        LOGE("创建浮点数组失败，大小: %zu", size);
-        return;
-    }
-
-    // 复制数据
-    env->SetFloatArrayRegion(jArray, 0, size, data);
-
-    // 调用Java回调方法
-    LOGD("调用Java输出波形回调方法，数据大小: %zu", size);
-    env->CallVoidMethod(outputWaveformCallbackObj, outputWaveformMethodId, jArray);
-    
-    // 检查是否有异常
-    if (env->ExceptionCheck()) {
-        LOGE("调用Java输出波形回调时发生异常");
-        env->ExceptionDescribe();
-        env->ExceptionClear();
-    }
-
-    // 释放局部引用
-    env->DeleteLocalRef(jArray);
+// 句柄为NativeSession指针（见NativeSession.h），每个AAudioProcessorJNI实例各自拥有处理器和回调
+static AAudioProcessor *getProcessor(jlong handle) {
+    NativeSession *session = NativeSession::fromHandle(handle);
+    return session != nullptr ? &session->processor() : nullptr;
 }
 
 extern "C" {
@@ -135,54 +19,30 @@ extern "C" {
 // 设置Java VM
 JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved) {
     LOGD("JNI_OnLoad被调用，设置JavaVM指针");
-    javaVM = vm;
+    NativeSession::setJavaVM(vm);
     return JNI_VERSION_1_6;
 }
 
-// 创建AAudioProcessor实例
+// 创建原生会话（含AAudioProcessor实例），可同时存在多个
 JNIEXPORT jlong JNICALL
 Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeCreateProcessor(JNIEnv *env, jobject thiz) {
-    if (audioProcessor != nullptr) {
-        LOGD("已存在AAudioProcessor实例，先删除");
-        delete audioProcessor;
-    }
-    
-    audioProcessor = new AAudioProcessor();
-    LOGD("创建AAudioProcessor实例: %p", audioProcessor);
-    return reinterpret_cast<jlong>(audioProcessor);
+    NativeSession *session = new NativeSession();
+    LOGD("创建原生会话: %p", session);
+    return session->toHandle();
 }
 
-// 释放AAudioProcessor实例
+// 释放原生会话：只影响这个句柄的处理器和回调
 JNIEXPORT void JNICALL
 Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeReleaseProcessor(JNIEnv *env, jobject thiz, jlong handle) {
-    AAudioProcessor *processor = reinterpret_cast<AAudioProcessor*>(handle);
-    if (processor != nullptr) {
-        processor->cleanup();
-        delete processor;
-        LOGD("释放AAudioProcessor实例: %p", processor);
-    } else {
-        LOGE("尝试释放空的AAudioProcessor实例");
-    }
-    
-    if (processor == audioProcessor) {
-        audioProcessor = nullptr;
-    }
-    
-    // 清理全局引用
-    if (inputWaveformCallbackObj != nullptr) {
-        env->DeleteGlobalRef(inputWaveformCallbackObj);
-        inputWaveformCallbackObj = nullptr;
-        LOGD("删除输入波形回调全局引用");
-    }
-    if (outputWaveformCallbackObj != nullptr) {
-        env->DeleteGlobalRef(outputWaveformCallbackObj);
-        outputWaveformCallbackObj = nullptr;
-        LOGD("删除输出波形回调全局引用");
+    NativeSession *session = NativeSession::fromHandle(handle);
+    if (session == nullptr) {
+        LOGE("尝试释放空的原生会话");
+        return;
     }
     
-    // 重置方法ID
-    inputWaveformMethodId = nullptr;
-    outputWaveformMethodId = nullptr;
+    LOGD("释放原生会话: %p", session);
+    session->release(env);
+    delete session;
 }
 
 // 设置音频流
@@ -191,7 +51,7 @@ Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetupStreams(
         JNIEnv *env, jobject thiz, jlong handle,
         jint sample_rate, jint channel_count, jint format,
         jint input_device_id, jint output_device_id) {
-    AAudioProcessor *processor = reinterpret_cast<AAudioProcessor*>(handle);
+    AAudioProcessor *processor = getProcessor(handle);
     if (processor == nullptr) {
         LOGE("AAudioProcessor实例为null");
         return JNI_FALSE;
@@ -206,7 +66,7 @@ Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetupStreams(
 // 开始音频处理
 JNIEXPORT jboolean JNICALL
 Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeStart(JNIEnv *env, jobject thiz, jlong handle) {
-    AAudioProcessor *processor = reinterpret_cast<AAudioProcessor*>(handle);
+    AAudioProcessor *processor = getProcessor(handle);
     if (processor == nullptr) {
         LOGE("AAudioProcessor实例为null");
         return JNI_FALSE;
@@ -220,7 +80,7 @@ Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeStart(JNIEnv *env, j
 // 停止音频处理
 JNIEXPORT void JNICALL
 Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeStop(JNIEnv *env, jobject thiz, jlong handle) {
-    AAudioProcessor *processor = reinterpret_cast<AAudioProcessor*>(handle);
+    AAudioProcessor *processor = getProcessor(handle);
     if (processor == nullptr) {
         LOGE("AAudioProcessor实例为null");
         return;
@@ -234,7 +94,7 @@ Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeStop(JNIEnv *env, jo
 JNIEXPORT void JNICALL
 Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetInputVolume(
         JNIEnv *env, jobject thiz, jlong handle, jint volume) {
-    AAudioProcessor *processor = reinterpret_cast<AAudioProcessor*>(handle);
+    AAudioProcessor *processor = getProcessor(handle);
     if (processor == nullptr) {
         LOGE("AAudioProcessor实例为null");
         return;
@@ -247,7 +107,7 @@ Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetInputVolume(
 JNIEXPORT void JNICALL
 Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetOutputVolume(
         JNIEnv *env, jobject thiz, jlong handle, jint volume) {
-    AAudioProcessor *processor = reinterpret_cast<AAudioProcessor*>(handle);
+    AAudioProcessor *processor = getProcessor(handle);
     if (processor == nullptr) {
         LOGE("AAudioProcessor实例为null");
         return;
@@ -260,7 +120,7 @@ Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetOutputVolume(
 JNIEXPORT void JNICALL
 Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetAmplificationFactor(
         JNIEnv *env, jobject thiz, jlong handle, jfloat factor) {
-    AAudioProcessor *processor = reinterpret_cast<AAudioProcessor*>(handle);
+    AAudioProcessor *processor = getProcessor(handle);
     if (processor == nullptr) {
         LOGE("AAudioProcessor实例为null");
         return;
@@ -269,24 +129,101 @@ Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetAmplificationFact
     processor->setAmplificationFactor(factor);
 }
 
+// 设置参数平滑时间
+JNIEXPORT void JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetParameterRampTime(
+        JNIEnv *env, jobject thiz, jlong handle, jfloat rampMs) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return;
+    }
+    
+    processor->setParameterRampTime(rampMs);
+}
+
 // 设置降噪
 JNIEXPORT void JNICALL
 Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetNoiseReduction(
+        JNIEnv *env, jobject thiz, jlong handle, jboolean enabled, jfloat strength) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return;
+    }
+    
+    processor->setNoiseReduction(enabled, strength);
+}
+
+// 启用/禁用声反馈消除
+JNIEXPORT void JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetFeedbackCancellation(
         JNIEnv *env, jobject thiz, jlong handle, jboolean enabled) {
-    AAudioProcessor *processor = reinterpret_cast<AAudioProcessor*>(handle);
+    AAudioProcessor *processor = getProcessor(handle);
     if (processor == nullptr) {
         LOGE("AAudioProcessor实例为null");
         return;
     }
     
-    processor->setNoiseReduction(enabled);
+    processor->setFeedbackCancellation(enabled);
+}
+
+// 获取声反馈指标
+JNIEXPORT jfloatArray JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeGetFeedbackMetrics(
+        JNIEnv *env, jobject thiz, jlong handle) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return nullptr;
+    }
+    
+    float metrics[AAudioProcessor::kNumFeedbackMetrics];
+    processor->getFeedbackMetrics(metrics);
+    jfloatArray result = env->NewFloatArray(AAudioProcessor::kNumFeedbackMetrics);
+    if (result != nullptr) {
+        env->SetFloatArrayRegion(result, 0, AAudioProcessor::kNumFeedbackMetrics, metrics);
+    }
+    return result;
+}
+
+// 启用/禁用啸叫抑制
+JNIEXPORT void JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetHowlSuppression(
+        JNIEnv *env, jobject thiz, jlong handle, jboolean enabled) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return;
+    }
+    
+    processor->setHowlSuppression(enabled);
+}
+
+// 获取啸叫抑制状态
+JNIEXPORT jfloatArray JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeGetHowlState(
+        JNIEnv *env, jobject thiz, jlong handle) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return nullptr;
+    }
+    
+    float state[AAudioProcessor::kNumHowlState];
+    processor->getHowlState(state);
+    jfloatArray result = env->NewFloatArray(AAudioProcessor::kNumHowlState);
+    if (result != nullptr) {
+        env->SetFloatArrayRegion(result, 0, AAudioProcessor::kNumHowlState, state);
+    }
+    return result;
 }
 
 // 设置均衡器频段
 JNIEXPORT void JNICALL
 Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetEqualizerBand(
         JNIEnv *env, jobject thiz, jlong handle, jint band, jint gain) {
-    AAudioProcessor *processor = reinterpret_cast<AAudioProcessor*>(handle);
+    AAudioProcessor *processor = getProcessor(handle);
     if (processor == nullptr) {
         LOGE("AAudioProcessor实例为null");
         return;
@@ -295,78 +232,269 @@ Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetEqualizerBand(
     processor->setEqualizerBand(band, gain);
 }
 
+// 启用/禁用多频段压缩
+JNIEXPORT void JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetCompressorEnabled(
+        JNIEnv *env, jobject thiz, jlong handle, jboolean enabled) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return;
+    }
+    
+    processor->setCompressorEnabled(enabled);
+}
+
+// 设置多频段压缩频段
+JNIEXPORT void JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetCompressorBand(
+        JNIEnv *env, jobject thiz, jlong handle, jint band, jfloat thresholdDb, jfloat ratio,
+        jfloat attackMs, jfloat releaseMs, jfloat makeupGainDb) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return;
+    }
+    
+    processor->setCompressorBand(band, thresholdDb, ratio, attackMs, releaseMs, makeupGainDb);
+}
+
+// 设置输出限幅器前瞻时间
+JNIEXPORT void JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetLimiterLookahead(
+        JNIEnv *env, jobject thiz, jlong handle, jfloat lookaheadMs) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return;
+    }
+    
+    processor->setLimiterLookahead(lookaheadMs);
+}
+
+// 设置输入重采样质量
+JNIEXPORT void JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetResamplerQuality(
+        JNIEnv *env, jobject thiz, jlong handle, jint quality) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return;
+    }
+    
+    processor->setResamplerQuality(quality);
+}
+
+// 启用/禁用时钟漂移补偿
+JNIEXPORT void JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetDriftCompensationEnabled(
+        JNIEnv *env, jobject thiz, jlong handle, jboolean enabled) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return;
+    }
+    
+    processor->setDriftCompensationEnabled(enabled);
+}
+
 // 设置波形数据回调
 JNIEXPORT void JNICALL
 Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetWaveformCallback(
         JNIEnv *env, jobject thiz, jlong handle,
         jobject inputCallback, jobject outputCallback) {
-    AAudioProcessor *processor = reinterpret_cast<AAudioProcessor*>(handle);
-    if (processor == nullptr) {
+    NativeSession *session = NativeSession::fromHandle(handle);
+    if (session == nullptr) {
         LOGE("AAudioProcessor实例为null");
         return;
     }
+    
+    if (session->setWaveformCallbacks(env, inputCallback, outputCallback)) {
+        LOGD("设置波形回调成功");
+    } else {
+        LOGD("没有有效的波形回调，已清除");
+    }
+}
 
-    // 清理旧的全局引用
-    if (inputWaveformCallbackObj != nullptr) {
-        env->DeleteGlobalRef(inputWaveformCallbackObj);
-        inputWaveformCallbackObj = nullptr;
-    }
-    if (outputWaveformCallbackObj != nullptr) {
-        env->DeleteGlobalRef(outputWaveformCallbackObj);
-        outputWaveformCallbackObj = nullptr;
-    }
-
-    // 保存新的回调对象和方法
-    if (inputCallback != nullptr) {
-        inputWaveformCallbackObj = env->NewGlobalRef(inputCallback);
-        jclass callbackClass = env->GetObjectClass(inputCallback);
-        if (callbackClass != nullptr) {
-            inputWaveformMethodId = env->GetMethodID(callbackClass, "onWaveformData", "([F)V");
-            if (inputWaveformMethodId == nullptr) {
-                LOGE("无法获取输入波形回调方法ID");
-                env->ExceptionClear();
-            } else {
-                LOGD("成功获取输入波形回调方法ID");
-            }
-            env->DeleteLocalRef(callbackClass);
-        } else {
-            LOGE("无法获取输入波形回调类");
-            env->ExceptionClear();
-        }
+// 设置波形共享缓冲区，buffer为null时分离
+JNIEXPORT jboolean JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetWaveformBuffer(
+        JNIEnv *env, jobject thiz, jlong handle, jobject buffer) {
+    NativeSession *session = NativeSession::fromHandle(handle);
+    if (session == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return JNI_FALSE;
+    }
+    
+    return session->setWaveformBuffer(env, buffer) ? JNI_TRUE : JNI_FALSE;
+}
+
+// 设置流事件回调
+JNIEXPORT void JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetStreamEventCallback(
+        JNIEnv *env, jobject thiz, jlong handle, jobject callback) {
+    NativeSession *session = NativeSession::fromHandle(handle);
+    if (session == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return;
+    }
+    
+    if (session->setStreamEventCallback(env, callback)) {
+        LOGD("设置流事件回调成功");
     } else {
-        LOGD("未提供输入波形回调");
-    }
-
-    if (outputCallback != nullptr) {
-        outputWaveformCallbackObj = env->NewGlobalRef(outputCallback);
-        jclass callbackClass = env->GetObjectClass(outputCallback);
-        if (callbackClass != nullptr) {
-            outputWaveformMethodId = env->GetMethodID(callbackClass, "onWaveformData", "([F)V");
-            if (outputWaveformMethodId == nullptr) {
-                LOGE("无法获取输出波形回调方法ID");
-                env->ExceptionClear();
-            } else {
-                LOGD("成功获取输出波形回调方法ID");
-            }
-            env->DeleteLocalRef(callbackClass);
-        } else {
-            LOGE("无法获取输出波形回调类");
-            env->ExceptionClear();
+        LOGD("清除流事件回调");
+    }
+}
+
+// 获取断开恢复统计
+JNIEXPORT jintArray JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeGetRecoveryStats(
+        JNIEnv *env, jobject thiz, jlong handle) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return nullptr;
+    }
+    
+    jint stats[AAudioProcessor::kNumRecoveryStats];
+    processor->getRecoveryStats(stats);
+    jintArray result = env->NewIntArray(AAudioProcessor::kNumRecoveryStats);
+    if (result != nullptr) {
+        env->SetIntArrayRegion(result, 0, AAudioProcessor::kNumRecoveryStats, stats);
+    }
+    return result;
+}
+
+// 获取回调性能统计
+JNIEXPORT jlongArray JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeGetStats(
+        JNIEnv *env, jobject thiz, jlong handle) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return nullptr;
+    }
+    
+    // 两个直方图共一万多字节，放在堆上
+    std::vector<jlong> stats(AAudioProcessor::kNumStats);
+    processor->getStats(stats.data());
+    jlongArray result = env->NewLongArray(AAudioProcessor::kNumStats);
+    if (result != nullptr) {
+        env->SetLongArrayRegion(result, 0, AAudioProcessor::kNumStats, stats.data());
+    }
+    return result;
+}
+
+// 设置实时日志文件，path为null时只写logcat
+JNIEXPORT jboolean JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetRealtimeLogFile(
+        JNIEnv *env, jobject thiz, jlong handle, jstring path) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return JNI_FALSE;
+    }
+    
+    std::string filePath;
+    if (path != nullptr) {
+        const char *chars = env->GetStringUTFChars(path, nullptr);
+        if (chars == nullptr) {
+            return JNI_FALSE;
         }
-    } else {
-        LOGD("未提供输出波形回调");
+        filePath = chars;
+        env->ReleaseStringUTFChars(path, chars);
     }
+    return processor->setRealtimeLogFile(filePath) ? JNI_TRUE : JNI_FALSE;
+}
 
-    // 设置C++回调
-    bool haveValidCallbacks = (inputWaveformCallbackObj != nullptr && inputWaveformMethodId != nullptr) ||
-                            (outputWaveformCallbackObj != nullptr && outputWaveformMethodId != nullptr);
+// 获取实际使用的采样率
+JNIEXPORT jint JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeGetSampleRate(
+        JNIEnv *env, jobject thiz, jlong handle) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return 0;
+    }
     
-    if (haveValidCallbacks) {
-        processor->setWaveformCallback(onInputWaveformData, onOutputWaveformData);
-        LOGD("设置波形回调成功");
-    } else {
-        LOGE("没有有效的回调对象或方法ID，不设置波形回调");
+    return static_cast<jint>(processor->getSampleRate());
+}
+
+// 获取波形数据丢帧数
+JNIEXPORT jlong JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeGetWaveformDroppedFrames(
+        JNIEnv *env, jobject thiz, jlong handle) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return 0;
+    }
+    
+    return static_cast<jlong>(processor->getWaveformDroppedFrames());
+}
+
+// 设置输出缓冲区的起始大小（突发数）
+JNIEXPORT void JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeSetInitialBufferBursts(
+        JNIEnv *env, jobject thiz, jlong handle, jint bursts) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return;
+    }
+    
+    processor->setInitialBufferBursts(bursts);
+}
+
+// 获取输出缓冲区调整状态
+JNIEXPORT jintArray JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeGetLatencyState(
+        JNIEnv *env, jobject thiz, jlong handle) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return nullptr;
+    }
+    
+    jint state[AAudioProcessor::kNumLatencyState];
+    processor->getLatencyState(state);
+    jintArray result = env->NewIntArray(AAudioProcessor::kNumLatencyState);
+    if (result != nullptr) {
+        env->SetIntArrayRegion(result, 0, AAudioProcessor::kNumLatencyState, state);
+    }
+    return result;
+}
+
+// 开始回环延迟测量
+JNIEXPORT jboolean JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeStartLoopbackMeasurement(
+        JNIEnv *env, jobject thiz, jlong handle) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return JNI_FALSE;
+    }
+    
+    return processor->startLoopbackMeasurement() ? JNI_TRUE : JNI_FALSE;
+}
+
+// 获取延迟报告
+JNIEXPORT jfloatArray JNICALL
+Java_com_example_listenhelp6_audio_AAudioProcessorJNI_nativeGetLatencyReport(
+        JNIEnv *env, jobject thiz, jlong handle) {
+    AAudioProcessor *processor = getProcessor(handle);
+    if (processor == nullptr) {
+        LOGE("AAudioProcessor实例为null");
+        return nullptr;
+    }
+    
+    float report[AAudioProcessor::kNumLatencyReport];
+    processor->getLatencyReport(report);
+    jfloatArray result = env->NewFloatArray(AAudioProcessor::kNumLatencyReport);
+    if (result != nullptr) {
+        env->SetFloatArrayRegion(result, 0, AAudioProcessor::kNumLatencyReport, report);
     }
+    return result;
 }
 
 } // extern "C" 
\ No newline at end of file
@@ -34,7 +34,8 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.example.listenhelp6.audio.AAudioManager;
-import com.example.listenhelp6.audio.WaveformCallback;
+import com.example.listenhelp6.audio.WaveformFrameScheduler;
+import com.example.listenhelp6.audio.WaveformSharedBuffer;
 import com.example.listenhelp6.audio.WaveformView;
 import com.example.listenhelp6.service.AudioProcessingService;
 
@@ -94,6 +95,8 @@ public class MainActivity extends AppCompatActivity {
     // 波形显示组件
     private WaveformView inputWaveformView;
     private WaveformView outputWaveformView;
+    private WaveformSharedBuffer waveformBuffer;
+    private WaveformFrameScheduler waveformScheduler;
 
     private final Handler waveformHandler = new Handler(Looper.getMainLooper());
     private final Runnable waveformUpdater = new Runnable() {
@@ -146,8 +149,8 @@ public class MainActivity extends AppCompatActivity {
         // 初始化音频管理器
         audioManager = new AAudioManager(this);
         
-        // 设置波形回调
-        setupWaveformCallbacks();
+        // 设置波形共享缓冲区
+        setupWaveformBuffer();
         
         // 初始化均衡器预设
         setupEqualizerPresets();
@@ -477,33 +480,16 @@ public class MainActivity extends AppCompatActivity {
         });
     }
     
-    private void setupWaveformCallbacks() {
-        // 创建输入波形回调
-        WaveformCallback inputCallback = new WaveformCallback() {
-            @Override
-            public void onWaveformData(float[] data) {
-                runOnUiThread(() -> {
-                    if (inputWaveformView != null) {
-                        inputWaveformView.updateWaveform(data);
-                    }
-                });
-            }
-        };
-        
-        // 创建输出波形回调
-        WaveformCallback outputCallback = new WaveformCallback() {
-            @Override
-            public void onWaveformData(float[] data) {
-                runOnUiThread(() -> {
-                    if (outputWaveformView != null) {
-                        outputWaveformView.updateWaveform(data);
-                    }
-                });
-            }
-        };
-        
-        // 设置回调
-        audioManager.setWaveformCallback(inputCallback, outputCallback);
+    private void setupWaveformBuffer() {
+        // 原生层把波形桶写入共享缓冲区，音频运行期间由调度器每个vsync让两个视图各读一次自己的通道，
+        // 不经过回调和runOnUiThread
+        waveformBuffer = new WaveformSharedBuffer();
+        if (!audioManager.setWaveformBuffer(waveformBuffer)) {
+            Log.e(TAG, "设置波形共享缓冲区失败");
+        }
+        waveformScheduler = new WaveformFrameScheduler();
+        waveformScheduler.addView(inputWaveformView);
+        waveformScheduler.addView(outputWaveformView);
     }
 
     private void setupAudioDevices() {
@@ -587,14 +573,19 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
         
-        // 清空当前波形
+        // 清空当前波形，丢弃上次运行留在共享缓冲区中的桶后开始读取
         inputWaveformView.clearWaveform();
         outputWaveformView.clearWaveform();
+        waveformBuffer.skipPending();
+        inputWaveformView.setSharedBuffer(waveformBuffer, WaveformSharedBuffer.CHANNEL_INPUT);
+        outputWaveformView.setSharedBuffer(waveformBuffer, WaveformSharedBuffer.CHANNEL_OUTPUT);
+        waveformScheduler.start();
         
         // 启动AAudio处理
         boolean success = audioManager.startAudio();
         if (!success) {
             Log.e(TAG, "启动音频处理失败");
+            waveformScheduler.stop();
             
             // 更新按钮状态
             isAudioRunning = false;
@@ -616,6 +607,11 @@ public class MainActivity extends AppCompatActivity {
         if (audioManager != null) {
             audioManager.stopAudio();
         }
+        
+        // 停止轮询波形
+        waveformScheduler.stop();
+        inputWaveformView.setSharedBuffer(null, WaveformSharedBuffer.CHANNEL_INPUT);
+        outputWaveformView.setSharedBuffer(null, WaveformSharedBuffer.CHANNEL_OUTPUT);
 
         // 通知服务音频已停止处理
         if (isServiceBound && audioProcessingService != null) {
@@ -720,6 +716,10 @@ public class MainActivity extends AppCompatActivity {
             isAudioRunning = false;
         }
         
+        if (waveformScheduler != null) {
+            waveformScheduler.stop();
+        }
+        
         if (audioManager != null) {
             audioManager.release();
         }
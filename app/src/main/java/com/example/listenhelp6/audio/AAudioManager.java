@@ -1,6 +1,7 @@
 package com.example.listenhelp6.audio;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.media.AudioDeviceInfo;
 import android.media.AudioManager;
 import android.util.Log;
@@ -13,19 +14,23 @@ import java.util.List;
  */
 public class AAudioManager {
     private static final String TAG = "AAudioManager";
-    private static final int SAMPLE_RATE = 44100;
+    private static final int SAMPLE_RATE = AAudioProcessorJNI.SAMPLE_RATE_UNSPECIFIED; // 使用设备的原生采样率
     private static final int CHANNEL_COUNT = 1; // 单声道
-    private static final int FORMAT = 2; // AAUDIO_FORMAT_PCM_FLOAT
+    private static final int FORMAT = AAudioProcessorJNI.FORMAT_UNSPECIFIED; // 使用设备的原生格式，避免框架转换
 
     private final Context context;
     private final AudioManager audioManager;
     private final AAudioProcessorJNI audioProcessor;
     
-    private boolean isRunning = false;
+    private volatile boolean isRunning = false; // 恢复失败时由原生恢复线程清除
     private int inputVolume = 80; // 默认输入音量(0-100)
     private int outputVolume = 80; // 默认输出音量(0-100)
     private float amplificationFactor = 1.0f; // 默认放大倍数
+    private float parameterRampTimeMs = 20.0f; // 参数平滑时间（毫秒，0-200）
+    private boolean feedbackCancellationEnabled = false; // 声反馈消除默认关闭
+    private boolean howlSuppressionEnabled = false; // 啸叫抑制默认关闭
     private boolean noiseReductionEnabled = false; // 降噪默认关闭
+    private float noiseReductionStrength = 0.5f; // 降噪强度（0.0-1.0）
     
     private AudioDeviceInfo selectedInputDevice;
     private AudioDeviceInfo selectedOutputDevice;
@@ -34,13 +39,39 @@ public class AAudioManager {
     private WaveformCallback inputWaveformCallback;
     private WaveformCallback outputWaveformCallback;
     
+    // 音频流事件回调（设备断开后的自动恢复）
+    private volatile StreamEventCallback streamEventCallback;
+    
     // 均衡器设置
     private static final int EQ_BAND_COUNT = 8;
     private final short[] equalizerBandLevels = new short[EQ_BAND_COUNT];
     
+    // 多频段压缩（WDRC）设置
+    public static final int COMPRESSOR_BAND_COUNT = 4;
+    private boolean compressorEnabled = false;
+    private final float[] compressorThresholdsDb = new float[COMPRESSOR_BAND_COUNT];
+    private final float[] compressorRatios = new float[COMPRESSOR_BAND_COUNT];
+    private final float[] compressorAttackMs = new float[COMPRESSOR_BAND_COUNT];
+    private final float[] compressorReleaseMs = new float[COMPRESSOR_BAND_COUNT];
+    private final float[] compressorMakeupGainsDb = new float[COMPRESSOR_BAND_COUNT];
+    
+    // 输出限幅器前瞻时间（毫秒，0.5-5.0）
+    private float limiterLookaheadMs = 1.5f;
+    
+    // 输入与输出设备采样率不同时的重采样质量
+    private int resamplerQuality = AAudioProcessorJNI.RESAMPLER_QUALITY_MEDIUM;
+    
+    // 输入与输出设备之间的时钟漂移补偿（长时间运行时保持延迟不变）
+    private boolean driftCompensationEnabled = true;
+    
     // 锁屏处理
     private boolean wasRunningBeforeLock = false;
     
+    // 每个输出设备上次验证过的缓冲区大小（突发数），下次启动时从该大小开始调整
+    // 单独的文件，不受界面设置保存时clear()的影响
+    private static final String LATENCY_PREFS_NAME = "ListenHelpLatency";
+    private static final String KEY_BUFFER_BURSTS_PREFIX = "buffer_bursts_";
+    
     public AAudioManager(Context context) {
         this.context = context;
         this.audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
@@ -50,6 +81,60 @@ public class AAudioManager {
         for (int i = 0; i < EQ_BAND_COUNT; i++) {
             equalizerBandLevels[i] = 0;
         }
+        
+        // 压缩默认值与原生层一致：-40dBFS、2:1、5ms/50ms、无补偿增益
+        for (int i = 0; i < COMPRESSOR_BAND_COUNT; i++) {
+            compressorThresholdsDb[i] = -40.0f;
+            compressorRatios[i] = 2.0f;
+            compressorAttackMs[i] = 5.0f;
+            compressorReleaseMs[i] = 50.0f;
+            compressorMakeupGainsDb[i] = 0.0f;
+        }
+        
+        // 耳机插拔等导致流断开时，原生层在后台线程上自动重新打开流，所有设置保持不变
+        audioProcessor.setStreamEventCallback(this::onStreamEvent);
+    }
+    
+    /**
+     * 设置音频流事件回调（在原生恢复线程上调用，不在主线程上）
+     * @param callback 流事件回调，事件类型见AAudioProcessorJNI.STREAM_EVENT_*
+     */
+    public void setStreamEventCallback(StreamEventCallback callback) {
+        this.streamEventCallback = callback;
+    }
+    
+    /**
+     * 获取断开恢复统计：断开次数、恢复/失败次数、恢复耗时（下标见AAudioProcessorJNI.RECOVERY_STAT_*）
+     */
+    public int[] getRecoveryStats() {
+        return audioProcessor.getRecoveryStats();
+    }
+    
+    private void onStreamEvent(int event, int attempts, long elapsedMs) {
+        switch (event) {
+            case AAudioProcessorJNI.STREAM_EVENT_RECOVERING:
+                Log.w(TAG, "音频流断开，正在恢复");
+                break;
+            case AAudioProcessorJNI.STREAM_EVENT_RECOVERED:
+                Log.d(TAG, "音频流已恢复，耗时 " + elapsedMs + " ms，尝试 " + attempts + " 次");
+                break;
+            case AAudioProcessorJNI.STREAM_EVENT_FAILED:
+                // 原生层已关闭流，之后可以再次调用startAudio
+                isRunning = false;
+                Log.e(TAG, "音频流恢复失败，处理已停止（尝试 " + attempts + " 次，" + elapsedMs + " ms）");
+                break;
+            case AAudioProcessorJNI.STREAM_EVENT_ABORTED:
+                // 用户的停止或重新启动已经决定了流的状态，isRunning保持不变
+                Log.d(TAG, "音频流恢复被用户操作中止");
+                break;
+            default:
+                break;
+        }
+        
+        StreamEventCallback callback = streamEventCallback;
+        if (callback != null) {
+            callback.onStreamEvent(event, attempts, elapsedMs);
+        }
     }
     
     /**
@@ -63,6 +148,14 @@ public class AAudioManager {
         audioProcessor.setWaveformCallback(inputCallback, outputCallback);
     }
     
+    /**
+     * 设置波形共享缓冲区，为null时分离
+     * @return 是否设置成功
+     */
+    public boolean setWaveformBuffer(WaveformSharedBuffer buffer) {
+        return audioProcessor.setWaveformBuffer(buffer);
+    }
+    
     /**
      * 获取可用的音频输入设备
      */
@@ -148,13 +241,86 @@ public class AAudioManager {
         }
     }
     
+    /**
+     * 设置参数平滑时间（越长调节越柔和，越短响应越快）
+     */
+    public void setParameterRampTime(float rampMs) {
+        this.parameterRampTimeMs = Math.max(0.0f, Math.min(200.0f, rampMs));
+        if (isRunning) {
+            audioProcessor.setParameterRampTime(parameterRampTimeMs);
+        }
+    }
+    
+    /**
+     * 获取参数平滑时间（毫秒）
+     */
+    public float getParameterRampTime() {
+        return parameterRampTimeMs;
+    }
+    
     /**
      * 设置降噪
      */
     public void setNoiseReduction(boolean enabled) {
+        setNoiseReduction(enabled, noiseReductionStrength);
+    }
+    
+    /**
+     * 设置是否启用声反馈消除（使用内置扬声器且放大倍数较高时建议开启）
+     */
+    public void setFeedbackCancellation(boolean enabled) {
+        this.feedbackCancellationEnabled = enabled;
+        if (isRunning) {
+            audioProcessor.setFeedbackCancellation(enabled);
+        }
+    }
+    
+    /**
+     * 获取声反馈消除状态
+     */
+    public boolean isFeedbackCancellationEnabled() {
+        return feedbackCancellationEnabled;
+    }
+    
+    /**
+     * 获取声反馈指标（下标见AAudioProcessorJNI.FEEDBACK_METRIC_*）
+     */
+    public float[] getFeedbackMetrics() {
+        return audioProcessor.getFeedbackMetrics();
+    }
+    
+    /**
+     * 设置是否启用啸叫检测与自动陷波（计算量小，适合性能较弱的设备）
+     */
+    public void setHowlSuppression(boolean enabled) {
+        this.howlSuppressionEnabled = enabled;
+        if (isRunning) {
+            audioProcessor.setHowlSuppression(enabled);
+        }
+    }
+    
+    /**
+     * 获取啸叫抑制状态
+     */
+    public boolean isHowlSuppressionEnabled() {
+        return howlSuppressionEnabled;
+    }
+    
+    /**
+     * 获取啸叫抑制状态：判定次数和各陷波器频率（下标见AAudioProcessorJNI.HOWL_STATE_*）
+     */
+    public float[] getHowlState() {
+        return audioProcessor.getHowlState();
+    }
+    
+    /**
+     * 设置降噪及其强度（0.0-1.0）
+     */
+    public void setNoiseReduction(boolean enabled, float strength) {
         this.noiseReductionEnabled = enabled;
+        this.noiseReductionStrength = Math.max(0.0f, Math.min(1.0f, strength));
         if (isRunning) {
-            audioProcessor.setNoiseReduction(enabled);
+            audioProcessor.setNoiseReduction(enabled, noiseReductionStrength);
         }
     }
     
@@ -177,6 +343,85 @@ public class AAudioManager {
         return equalizerBandLevels.clone();
     }
     
+    /**
+     * 设置是否启用多频段压缩
+     */
+    public void setCompressorEnabled(boolean enabled) {
+        this.compressorEnabled = enabled;
+        if (isRunning) {
+            audioProcessor.setCompressorEnabled(enabled);
+        }
+    }
+    
+    /**
+     * 设置多频段压缩的频段参数（听力验配用）
+     */
+    public void setCompressorBand(int band, float thresholdDb, float ratio,
+                                  float attackMs, float releaseMs, float makeupGainDb) {
+        if (band >= 0 && band < COMPRESSOR_BAND_COUNT) {
+            compressorThresholdsDb[band] = thresholdDb;
+            compressorRatios[band] = ratio;
+            compressorAttackMs[band] = attackMs;
+            compressorReleaseMs[band] = releaseMs;
+            compressorMakeupGainsDb[band] = makeupGainDb;
+            if (isRunning) {
+                audioProcessor.setCompressorBand(band, thresholdDb, ratio, attackMs, releaseMs, makeupGainDb);
+            }
+        }
+    }
+    
+    /**
+     * 获取多频段压缩状态
+     */
+    public boolean isCompressorEnabled() {
+        return compressorEnabled;
+    }
+    
+    /**
+     * 设置输出限幅器的前瞻时间（越长限幅越平滑，但延迟越大）
+     */
+    public void setLimiterLookahead(float lookaheadMs) {
+        this.limiterLookaheadMs = lookaheadMs;
+        if (isRunning) {
+            audioProcessor.setLimiterLookahead(lookaheadMs);
+        }
+    }
+    
+    /**
+     * 获取输出限幅器的前瞻时间（毫秒）
+     */
+    public float getLimiterLookahead() {
+        return limiterLookaheadMs;
+    }
+    
+    /**
+     * 设置输入重采样质量（AAudioProcessorJNI.RESAMPLER_QUALITY_*），下次打开音频流时生效
+     */
+    public void setResamplerQuality(int quality) {
+        this.resamplerQuality = quality;
+    }
+    
+    /**
+     * 获取输入重采样质量
+     */
+    public int getResamplerQuality() {
+        return resamplerQuality;
+    }
+    
+    /**
+     * 启用/禁用时钟漂移补偿，下次打开音频流时生效
+     */
+    public void setDriftCompensationEnabled(boolean enabled) {
+        this.driftCompensationEnabled = enabled;
+    }
+    
+    /**
+     * 时钟漂移补偿是否启用
+     */
+    public boolean isDriftCompensationEnabled() {
+        return driftCompensationEnabled;
+    }
+    
     /**
      * 开始音频处理
      */
@@ -190,7 +435,9 @@ public class AAudioManager {
             int inputDeviceId = selectedInputDevice != null ? selectedInputDevice.getId() : 0;
             int outputDeviceId = selectedOutputDevice != null ? selectedOutputDevice.getId() : 0;
             
-            // 设置流
+            // 设置流（重采样质量和漂移补偿在打开流时使用）
+            audioProcessor.setResamplerQuality(resamplerQuality);
+            audioProcessor.setDriftCompensationEnabled(driftCompensationEnabled);
             boolean success = audioProcessor.setupStreams(
                     SAMPLE_RATE, CHANNEL_COUNT, FORMAT, inputDeviceId, outputDeviceId);
             
@@ -198,6 +445,18 @@ public class AAudioManager {
                 Log.e(TAG, "设置音频流失败");
                 return false;
             }
+            Log.d(TAG, "音频流采样率: " + audioProcessor.getSampleRate() + " Hz");
+            int[] latencyState = audioProcessor.getLatencyState();
+            Log.d(TAG, "音频流格式: 输入 " + latencyState[AAudioProcessorJNI.LATENCY_STATE_INPUT_FORMAT]
+                    + ", 输出 " + latencyState[AAudioProcessorJNI.LATENCY_STATE_OUTPUT_FORMAT]);
+            
+            // 从上次对同一输出设备保存的缓冲区大小开始
+            int savedBursts = getLatencyPreferences().getInt(
+                    KEY_BUFFER_BURSTS_PREFIX + latencyState[AAudioProcessorJNI.LATENCY_STATE_OUTPUT_DEVICE_ID], 0);
+            if (savedBursts > 0) {
+                audioProcessor.setInitialBufferBursts(savedBursts);
+                Log.d(TAG, "输出缓冲区从保存的 " + savedBursts + " 个突发开始");
+            }
             
             // 设置波形回调
             if (inputWaveformCallback != null || outputWaveformCallback != null) {
@@ -205,16 +464,27 @@ public class AAudioManager {
             }
             
             // 应用设置
+            audioProcessor.setParameterRampTime(parameterRampTimeMs);
             audioProcessor.setInputVolume(inputVolume);
             audioProcessor.setOutputVolume(outputVolume);
             audioProcessor.setAmplificationFactor(amplificationFactor);
-            audioProcessor.setNoiseReduction(noiseReductionEnabled);
+            audioProcessor.setFeedbackCancellation(feedbackCancellationEnabled);
+            audioProcessor.setHowlSuppression(howlSuppressionEnabled);
+            audioProcessor.setNoiseReduction(noiseReductionEnabled, noiseReductionStrength);
             
             // 应用均衡器设置
             for (int i = 0; i < EQ_BAND_COUNT; i++) {
                 audioProcessor.setEqualizerBand(i, equalizerBandLevels[i]);
             }
             
+            // 应用多频段压缩设置
+            for (int i = 0; i < COMPRESSOR_BAND_COUNT; i++) {
+                audioProcessor.setCompressorBand(i, compressorThresholdsDb[i], compressorRatios[i],
+                        compressorAttackMs[i], compressorReleaseMs[i], compressorMakeupGainsDb[i]);
+            }
+            audioProcessor.setCompressorEnabled(compressorEnabled);
+            audioProcessor.setLimiterLookahead(limiterLookaheadMs);
+            
             // 启动处理
             success = audioProcessor.start();
             if (success) {
@@ -241,7 +511,68 @@ public class AAudioManager {
         
         audioProcessor.stop();
         isRunning = false;
-        Log.d(TAG, "音频处理已停止");
+        saveLatencySettings();
+        Log.d(TAG, "音频处理已停止，" + getCallbackStats());
+    }
+    
+    /**
+     * 获取输出缓冲区调整状态（下标见AAudioProcessorJNI.LATENCY_STATE_*）
+     */
+    public int[] getLatencyState() {
+        return audioProcessor.getLatencyState();
+    }
+    
+    /**
+     * 获取回调性能统计（自本次startAudio起）：负载与耗时的分位数、xrun次数
+     */
+    public CallbackStats getCallbackStats() {
+        return new CallbackStats(audioProcessor.getStats());
+    }
+    
+    /**
+     * 开始一次回环延迟测量（扬声器播放约21ms的测试信号），约0.5秒后通过getLatencyReport()取得结果。
+     * 测量很快，切换输入/输出设备后可重新测量
+     * @return 音频未运行或已有测量正在进行时返回false
+     */
+    public boolean measureLoopbackLatency() {
+        if (!isRunning) {
+            Log.e(TAG, "音频未运行，无法测量回环延迟");
+            return false;
+        }
+        return audioProcessor.startLoopbackMeasurement();
+    }
+    
+    /**
+     * 获取延迟报告：时间戳估计的输入/输出延迟、处理延迟、回环测量结果（下标见AAudioProcessorJNI.LATENCY_REPORT_*）
+     */
+    public float[] getLatencyReport() {
+        return audioProcessor.getLatencyReport();
+    }
+    
+    private SharedPreferences getLatencyPreferences() {
+        return context.getSharedPreferences(LATENCY_PREFS_NAME, Context.MODE_PRIVATE);
+    }
+    
+    /**
+     * 记录并保存本次会话最终的输出缓冲区大小
+     */
+    private void saveLatencySettings() {
+        int[] state = audioProcessor.getLatencyState();
+        int burstFrames = state[AAudioProcessorJNI.LATENCY_STATE_BURST_FRAMES];
+        int knownGoodFrames = state[AAudioProcessorJNI.LATENCY_STATE_KNOWN_GOOD_FRAMES];
+        int sampleRate = state[AAudioProcessorJNI.LATENCY_STATE_SAMPLE_RATE];
+        if (burstFrames <= 0 || knownGoodFrames <= 0 || sampleRate <= 0) {
+            return;
+        }
+        
+        int deviceId = state[AAudioProcessorJNI.LATENCY_STATE_OUTPUT_DEVICE_ID];
+        int bursts = Math.max(1, knownGoodFrames / burstFrames);
+        getLatencyPreferences().edit()
+                .putInt(KEY_BUFFER_BURSTS_PREFIX + deviceId, bursts)
+                .apply();
+        Log.d(TAG, String.format("输出设备%d: 缓冲区 %d 帧（%d 个突发，%.1f ms），欠载 %d 次，已保存",
+                deviceId, knownGoodFrames, bursts, knownGoodFrames * 1000.0f / sampleRate,
+                state[AAudioProcessorJNI.LATENCY_STATE_OUTPUT_XRUNS]));
     }
     
     /**
@@ -312,6 +643,27 @@ public class AAudioManager {
         return noiseReductionEnabled;
     }
     
+    /**
+     * 获取降噪强度
+     */
+    public float getNoiseReductionStrength() {
+        return noiseReductionStrength;
+    }
+    
+    /**
+     * 获取实际使用的采样率（Hz），音频流未打开时为0
+     */
+    public int getSampleRate() {
+        return audioProcessor.getSampleRate();
+    }
+    
+    /**
+     * 获取波形数据丢帧数
+     */
+    public long getWaveformDroppedFrames() {
+        return audioProcessor.getWaveformDroppedFrames();
+    }
+    
     /**
      * 获取运行状态
      */
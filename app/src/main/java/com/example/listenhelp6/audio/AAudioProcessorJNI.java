@@ -2,6 +2,9 @@ package com.example.listenhelp6.audio;
 
 import android.util.Log;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * AAudio处理器的JNI包装类，用于调用原生AAudio API
  */
@@ -17,18 +20,119 @@ public class AAudioProcessorJNI {
         }
     }
     
-    // 本地方法句柄
+    // setupStreams()的采样率参数：不指定时使用输出设备的原生采样率（实际值见getSampleRate()）
+    public static final int SAMPLE_RATE_UNSPECIFIED = 0;
+    
+    // setupStreams()的格式参数（与AAUDIO_FORMAT_*相同）：不指定时输入、输出流各自使用设备的原生格式，
+    // 处理链始终为浮点，整数格式由原生层转换（实际格式见getLatencyState()）
+    public static final int FORMAT_UNSPECIFIED = 0;
+    public static final int FORMAT_PCM_I16 = 1;
+    public static final int FORMAT_PCM_FLOAT = 2;
+    public static final int FORMAT_PCM_I24_PACKED = 3;  // 每样本3字节，需要Android 12及以上
+    public static final int FORMAT_PCM_I32 = 4;         // 需要Android 12及以上
+    
+    // setResamplerQuality()的质量等级：输入与输出设备的采样率不同时，输入经多相重采样器转换到输出采样率
+    public static final int RESAMPLER_QUALITY_LOW = 0;       // 阻带衰减60dB，计算量和延迟最小
+    public static final int RESAMPLER_QUALITY_MEDIUM = 1;    // 阻带衰减80dB（默认）
+    public static final int RESAMPLER_QUALITY_HIGH = 2;      // 阻带衰减100dB，通带最宽
+    
+    // getFeedbackMetrics()返回数组中各项的下标（均为dB）
+    public static final int FEEDBACK_METRIC_PATH_GAIN_DB = 0;       // 估计的扬声器到麦克风路径峰值增益
+    public static final int FEEDBACK_METRIC_ERLE_DB = 1;            // 反馈消除量
+    public static final int FEEDBACK_METRIC_FORWARD_GAIN_DB = 2;    // 当前前向增益（输入音量×放大×输出音量）
+    public static final int FEEDBACK_METRIC_STABLE_MARGIN_DB = 3;   // 稳定增益余量，接近0时有啸叫风险
+    public static final int FEEDBACK_METRIC_COUNT = 4;
+    
+    // getHowlState()返回数组中各项的下标
+    public static final int HOWL_STATE_DETECTIONS = 0;              // 累计判定的啸叫次数
+    public static final int HOWL_STATE_NOTCH_FREQUENCIES = 1;       // 起始下标，之后HOWL_MAX_NOTCHES项为各陷波器中心频率（Hz，未使用为0）
+    public static final int HOWL_MAX_NOTCHES = 4;
+    public static final int HOWL_STATE_COUNT = HOWL_STATE_NOTCH_FREQUENCIES + HOWL_MAX_NOTCHES;
+    
+    // getLatencyState()返回数组中各项的下标
+    public static final int LATENCY_STATE_BUFFER_FRAMES = 0;        // 当前输出缓冲区大小（帧）
+    public static final int LATENCY_STATE_KNOWN_GOOD_FRAMES = 1;    // 已验证不欠载的大小（帧），用于持久化
+    public static final int LATENCY_STATE_BURST_FRAMES = 2;         // 突发大小（帧）
+    public static final int LATENCY_STATE_CAPACITY_FRAMES = 3;      // 缓冲区容量（帧）
+    public static final int LATENCY_STATE_OUTPUT_XRUNS = 4;         // 输出欠载次数
+    public static final int LATENCY_STATE_INPUT_XRUNS = 5;          // 输入溢出次数
+    public static final int LATENCY_STATE_OUTPUT_DEVICE_ID = 6;     // 实际使用的输出设备ID
+    public static final int LATENCY_STATE_SAMPLE_RATE = 7;
+    public static final int LATENCY_STATE_INPUT_FORMAT = 8;         // 输入流的实际格式（FORMAT_*）
+    public static final int LATENCY_STATE_OUTPUT_FORMAT = 9;        // 输出流的实际格式（FORMAT_*）
+    public static final int LATENCY_STATE_COUNT = 10;
+    
+    // getLatencyReport()返回数组中各项的下标（毫秒，不可用时为-1）
+    public static final int LATENCY_REPORT_INPUT_MS = 0;                // 由输入流时间戳估计的输入延迟
+    public static final int LATENCY_REPORT_OUTPUT_MS = 1;               // 由输出流时间戳估计的输出延迟
+    public static final int LATENCY_REPORT_PROCESSING_MS = 2;           // 处理链引入的固定延迟
+    public static final int LATENCY_REPORT_ESTIMATED_TOTAL_MS = 3;      // 估计的麦克风到耳朵总延迟
+    public static final int LATENCY_REPORT_LOOPBACK_MS = 4;             // 回环测量的往返延迟
+    public static final int LATENCY_REPORT_LOOPBACK_CONFIDENCE = 5;     // 回环测量的置信度（无单位）
+    public static final int LATENCY_REPORT_MEASURED_TOTAL_MS = 6;       // 回环测量加处理延迟
+    public static final int LATENCY_REPORT_LOOPBACK_PENDING = 7;        // 是否有回环测量正在进行（0/1）
+    public static final int LATENCY_REPORT_CLOCK_DRIFT_PPM = 8;         // 输入相对输出设备的时钟偏差估计（ppm，未启用漂移补偿时为0）
+    public static final int LATENCY_REPORT_COUNT = 9;
+    
+    // StreamEventCallback的事件类型（设备断开后由原生层自动恢复）
+    public static final int STREAM_EVENT_RECOVERING = 0;    // 检测到断开，正在重新打开音频流
+    public static final int STREAM_EVENT_RECOVERED = 1;     // 已恢复处理
+    public static final int STREAM_EVENT_FAILED = 2;        // 恢复失败，处理已停止
+    public static final int STREAM_EVENT_ABORTED = 3;       // 恢复期间用户停止或重新启动了处理，恢复被放弃（处理状态不变）
+    
+    // 波形回调的数据：每个桶依次为最小值、最大值、均方根，每个发送间隔（约16ms）约32个桶
+    public static final int WAVEFORM_BIN_MIN = 0;
+    public static final int WAVEFORM_BIN_MAX = 1;
+    public static final int WAVEFORM_BIN_RMS = 2;
+    public static final int WAVEFORM_BIN_STRIDE = 3;
+    
+    // getRecoveryStats()返回数组中各项的下标
+    public static final int RECOVERY_STAT_DISCONNECTS = 0;  // 断开通知次数
+    public static final int RECOVERY_STAT_RECOVERIES = 1;   // 成功恢复次数
+    public static final int RECOVERY_STAT_FAILURES = 2;     // 恢复失败次数
+    public static final int RECOVERY_STAT_LAST_MS = 3;      // 最近一次恢复耗时（毫秒）
+    public static final int RECOVERY_STAT_MAX_MS = 4;       // 最长一次恢复耗时（毫秒）
+    public static final int RECOVERY_STAT_COUNT = 5;
+    
+    // getStats()返回数组中各项的下标（start时清零，用CallbackStats解析）
+    public static final int STATS_CALLBACKS = 0;            // 输出回调次数
+    public static final int STATS_FRAMES = 1;               // 回调处理的总帧数
+    public static final int STATS_MIN_FRAMES = 2;           // 单次回调的最少帧数
+    public static final int STATS_MAX_FRAMES = 3;           // 单次回调的最多帧数
+    public static final int STATS_LATE_CALLBACKS = 4;       // 耗时超过缓冲区时长（负载超过100%）的次数
+    public static final int STATS_WALL_TIME_SUM_US = 5;     // 回调耗时总和（微秒）
+    public static final int STATS_WALL_TIME_MAX_US = 6;     // 最长回调耗时（微秒）
+    public static final int STATS_LOAD_SUM = 7;             // 负载总和（0.01%）
+    public static final int STATS_LOAD_MAX = 8;             // 最高负载（0.01%）
+    public static final int STATS_OUTPUT_XRUNS = 9;         // 当前输出流的欠载次数
+    public static final int STATS_INPUT_XRUNS = 10;         // 当前输入流的溢出次数
+    public static final int STATS_INPUT_UNDERRUNS = 11;     // 输出回调读不到足够输入的次数
+    public static final int STATS_INPUT_OVERRUNS = 12;      // 输入积压过多被丢弃的次数
+    public static final int STATS_LOG_DROPPED = 13;         // 实时日志因队列满丢弃的条数（自创建起累计）
+    public static final int STATS_LOG_SUPPRESSED = 14;      // 实时日志因限速省略的条数（自创建起累计）
+    public static final int STATS_WAVEFORM_DROPPED = 15;    // 波形环形缓冲区满时丢弃的帧数（打开流时清零）
+    public static final int STATS_HISTOGRAM_BUCKETS = 640;  // 每个直方图的桶数
+    public static final int STATS_WALL_TIME_HISTOGRAM = 16; // 耗时（微秒）直方图的起始下标
+    public static final int STATS_LOAD_HISTOGRAM = STATS_WALL_TIME_HISTOGRAM + STATS_HISTOGRAM_BUCKETS; // 负载（0.01%）直方图的起始下标
+    public static final int STATS_COUNT = STATS_LOAD_HISTOGRAM + STATS_HISTOGRAM_BUCKETS;
+    
+    // 本地方法句柄，由this的锁保护。每次本地调用前用acquireHandle()取得句柄并登记，调用结束后releaseHandle()；
+    // release()先把句柄置0（之后的调用直接返回），等已开始的调用全部结束后再删除原生会话
     private long nativeHandle;
+    private int activeCalls;
     
     // 波形回调
     private WaveformCallback inputWaveformCallback;
     private WaveformCallback outputWaveformCallback;
     
     public AAudioProcessorJNI() {
-        nativeHandle = nativeCreateProcessor();
-        if (nativeHandle == 0) {
+        long handle = nativeCreateProcessor();
+        if (handle == 0) {
             throw new RuntimeException("无法创建AAudioProcessor实例");
         }
+        synchronized (this) {
+            nativeHandle = handle;
+        }
     }
     
     /**
@@ -40,14 +144,72 @@ public class AAudioProcessorJNI {
         this.inputWaveformCallback = inputCallback;
         this.outputWaveformCallback = outputCallback;
         
-        nativeSetWaveformCallback(nativeHandle, 
-                inputCallback != null ? new WaveformCallbackWrapper(inputCallback) : null,
-                outputCallback != null ? new WaveformCallbackWrapper(outputCallback) : null);
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetWaveformCallback(handle,
+                        inputCallback != null ? new WaveformCallbackWrapper(inputCallback) : null,
+                        outputCallback != null ? new WaveformCallbackWrapper(outputCallback) : null);
+            } finally {
+                releaseHandle();
+            }
+        }
+    }
+    
+    /**
+     * 设置与原生层共享的波形缓冲区，原生层把新的波形桶写入其中，由UI线程轮询读取（不经过回调）
+     * @param buffer 共享缓冲区，为null时分离
+     * @return 是否设置成功
+     */
+    public boolean setWaveformBuffer(WaveformSharedBuffer buffer) {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                return nativeSetWaveformBuffer(handle, buffer != null ? buffer.getBuffer() : null);
+            } finally {
+                releaseHandle();
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 设置音频流事件回调（设备断开、恢复成功、失败或被中止时在原生恢复线程上调用）
+     * @param callback 流事件回调，为null时清除
+     */
+    public void setStreamEventCallback(StreamEventCallback callback) {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetStreamEventCallback(handle, callback);
+            } finally {
+                releaseHandle();
+            }
+        }
+    }
+    
+    /**
+     * 获取断开恢复统计
+     * @return 长度为RECOVERY_STAT_COUNT的数组，下标见RECOVERY_STAT_*常量
+     */
+    public int[] getRecoveryStats() {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                int[] stats = nativeGetRecoveryStats(handle);
+                if (stats != null) {
+                    return stats;
+                }
+            } finally {
+                releaseHandle();
+            }
+        }
+        return new int[RECOVERY_STAT_COUNT];
     }
     
     /**
      * 设置音频流参数
-     * @param sampleRate 采样率
+     * @param sampleRate 采样率，SAMPLE_RATE_UNSPECIFIED表示使用设备的原生采样率
      * @param channelCount 声道数
      * @param format 音频格式（参考AAudio格式常量）
      * @param inputDeviceId 输入设备ID
@@ -56,12 +218,17 @@ public class AAudioProcessorJNI {
      */
     public boolean setupStreams(int sampleRate, int channelCount, int format, 
                                int inputDeviceId, int outputDeviceId) {
-        if (nativeHandle == 0) {
+        long handle = acquireHandle();
+        if (handle == 0) {
             Log.e(TAG, "原生对象已释放");
             return false;
         }
-        return nativeSetupStreams(nativeHandle, sampleRate, channelCount, format, 
-                                 inputDeviceId, outputDeviceId);
+        try {
+            return nativeSetupStreams(handle, sampleRate, channelCount, format,
+                                     inputDeviceId, outputDeviceId);
+        } finally {
+            releaseHandle();
+        }
     }
     
     /**
@@ -69,19 +236,29 @@ public class AAudioProcessorJNI {
      * @return 是否成功开始
      */
     public boolean start() {
-        if (nativeHandle == 0) {
+        long handle = acquireHandle();
+        if (handle == 0) {
             Log.e(TAG, "原生对象已释放");
             return false;
         }
-        return nativeStart(nativeHandle);
+        try {
+            return nativeStart(handle);
+        } finally {
+            releaseHandle();
+        }
     }
     
     /**
      * 停止音频处理
      */
     public void stop() {
-        if (nativeHandle != 0) {
-            nativeStop(nativeHandle);
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeStop(handle);
+            } finally {
+                releaseHandle();
+            }
         }
     }
     
@@ -90,8 +267,13 @@ public class AAudioProcessorJNI {
      * @param volume 音量值（0-100）
      */
     public void setInputVolume(int volume) {
-        if (nativeHandle != 0) {
-            nativeSetInputVolume(nativeHandle, volume);
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetInputVolume(handle, volume);
+            } finally {
+                releaseHandle();
+            }
         }
     }
     
@@ -100,8 +282,13 @@ public class AAudioProcessorJNI {
      * @param volume 音量值（0-100）
      */
     public void setOutputVolume(int volume) {
-        if (nativeHandle != 0) {
-            nativeSetOutputVolume(nativeHandle, volume);
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetOutputVolume(handle, volume);
+            } finally {
+                releaseHandle();
+            }
         }
     }
     
@@ -110,18 +297,112 @@ public class AAudioProcessorJNI {
      * @param factor 放大倍数（0.1-10.0）
      */
     public void setAmplificationFactor(float factor) {
-        if (nativeHandle != 0) {
-            nativeSetAmplificationFactor(nativeHandle, factor);
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetAmplificationFactor(handle, factor);
+            } finally {
+                releaseHandle();
+            }
+        }
+    }
+    
+    /**
+     * 设置参数平滑时间：音量和放大倍数在此时间内渐变，均衡器和压缩设置在此时间内交叉淡化
+     * @param rampMs 平滑时间（0至200毫秒，0为立即生效）
+     */
+    public void setParameterRampTime(float rampMs) {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetParameterRampTime(handle, rampMs);
+            } finally {
+                releaseHandle();
+            }
+        }
+    }
+    
+    /**
+     * 设置是否启用声反馈消除
+     * @param enabled 是否启用
+     */
+    public void setFeedbackCancellation(boolean enabled) {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetFeedbackCancellation(handle, enabled);
+            } finally {
+                releaseHandle();
+            }
         }
     }
     
+    /**
+     * 获取声反馈指标
+     * @return 长度为FEEDBACK_METRIC_COUNT的数组，下标见FEEDBACK_METRIC_*常量
+     */
+    public float[] getFeedbackMetrics() {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                float[] metrics = nativeGetFeedbackMetrics(handle);
+                if (metrics != null) {
+                    return metrics;
+                }
+            } finally {
+                releaseHandle();
+            }
+        }
+        return new float[FEEDBACK_METRIC_COUNT];
+    }
+    
+    /**
+     * 设置是否启用啸叫检测与自动陷波
+     * @param enabled 是否启用
+     */
+    public void setHowlSuppression(boolean enabled) {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetHowlSuppression(handle, enabled);
+            } finally {
+                releaseHandle();
+            }
+        }
+    }
+    
+    /**
+     * 获取啸叫抑制状态
+     * @return 长度为HOWL_STATE_COUNT的数组，下标见HOWL_STATE_*常量
+     */
+    public float[] getHowlState() {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                float[] state = nativeGetHowlState(handle);
+                if (state != null) {
+                    return state;
+                }
+            } finally {
+                releaseHandle();
+            }
+        }
+        return new float[HOWL_STATE_COUNT];
+    }
+    
     /**
      * 设置是否启用降噪
      * @param enabled 是否启用
+     * @param strength 降噪强度（0.0-1.0，0为不衰减，1为最大衰减20dB）
      */
-    public void setNoiseReduction(boolean enabled) {
-        if (nativeHandle != 0) {
-            nativeSetNoiseReduction(nativeHandle, enabled);
+    public void setNoiseReduction(boolean enabled, float strength) {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetNoiseReduction(handle, enabled, strength);
+            } finally {
+                releaseHandle();
+            }
         }
     }
     
@@ -131,18 +412,279 @@ public class AAudioProcessorJNI {
      * @param gain 增益值（-15至15）
      */
     public void setEqualizerBand(int band, int gain) {
-        if (nativeHandle != 0) {
-            nativeSetEqualizerBand(nativeHandle, band, gain);
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetEqualizerBand(handle, band, gain);
+            } finally {
+                releaseHandle();
+            }
+        }
+    }
+    
+    /**
+     * 设置是否启用多频段压缩（WDRC）
+     * @param enabled 是否启用
+     */
+    public void setCompressorEnabled(boolean enabled) {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetCompressorEnabled(handle, enabled);
+            } finally {
+                releaseHandle();
+            }
+        }
+    }
+    
+    /**
+     * 设置多频段压缩的频段参数
+     * @param band 频段索引（0-3，分频点为500Hz、1.5kHz、4kHz）
+     * @param thresholdDb 压缩阈值（-100至0 dBFS）
+     * @param ratio 压缩比（1.0至20.0）
+     * @param attackMs 启动时间（毫秒）
+     * @param releaseMs 释放时间（毫秒）
+     * @param makeupGainDb 补偿增益（0至40 dB）
+     */
+    public void setCompressorBand(int band, float thresholdDb, float ratio,
+                                  float attackMs, float releaseMs, float makeupGainDb) {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetCompressorBand(handle, band, thresholdDb, ratio, attackMs, releaseMs, makeupGainDb);
+            } finally {
+                releaseHandle();
+            }
+        }
+    }
+    
+    /**
+     * 设置输出限幅器的前瞻时间
+     * @param lookaheadMs 前瞻时间（0.5至5.0毫秒），即限幅器引入的延迟
+     */
+    public void setLimiterLookahead(float lookaheadMs) {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetLimiterLookahead(handle, lookaheadMs);
+            } finally {
+                releaseHandle();
+            }
+        }
+    }
+    
+    /**
+     * 设置输入重采样质量，在下次setupStreams时生效
+     * @param quality RESAMPLER_QUALITY_LOW/MEDIUM/HIGH
+     */
+    public void setResamplerQuality(int quality) {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetResamplerQuality(handle, quality);
+            } finally {
+                releaseHandle();
+            }
         }
     }
     
     /**
-     * 释放资源
+     * 启用/禁用输入与输出设备之间的时钟漂移补偿（默认启用），在下次setupStreams时生效。
+     * 启用时输入经重采样器以±1000ppm以内的比例微调，使全双工缓冲的水位和延迟长时间保持不变
+     */
+    public void setDriftCompensationEnabled(boolean enabled) {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetDriftCompensationEnabled(handle, enabled);
+            } finally {
+                releaseHandle();
+            }
+        }
+    }
+    
+    /**
+     * 获取实际使用的采样率（由setupStreams协商，断开恢复到其他设备后可能改变）
+     * @return 采样率（Hz），音频流未打开时为0
+     */
+    public int getSampleRate() {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                return nativeGetSampleRate(handle);
+            } finally {
+                releaseHandle();
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * 获取波形数据丢帧数
+     * @return 因波形环形缓冲区已满而丢弃的帧数
+     */
+    public long getWaveformDroppedFrames() {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                return nativeGetWaveformDroppedFrames(handle);
+            } finally {
+                releaseHandle();
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * 设置输出缓冲区的起始大小，在setupStreams之后、start之前调用
+     * @param bursts 突发数（通常为上次会话对同一设备保存的值）
+     */
+    public void setInitialBufferBursts(int bursts) {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                nativeSetInitialBufferBursts(handle, bursts);
+            } finally {
+                releaseHandle();
+            }
+        }
+    }
+    
+    /**
+     * 获取输出缓冲区调整状态
+     * @return 长度为LATENCY_STATE_COUNT的数组，下标见LATENCY_STATE_*常量
+     */
+    public int[] getLatencyState() {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                int[] state = nativeGetLatencyState(handle);
+                if (state != null) {
+                    return state;
+                }
+            } finally {
+                releaseHandle();
+            }
+        }
+        return new int[LATENCY_STATE_COUNT];
+    }
+    
+    /**
+     * 获取回调性能统计：回调耗时、负载（耗时占缓冲区时长的比例）及其直方图、xrun次数。
+     * 音频线程只写入原子计数，读取不会阻塞回调
+     * @return 长度为STATS_COUNT的数组，下标见STATS_*常量
+     */
+    public long[] getStats() {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                long[] stats = nativeGetStats(handle);
+                if (stats != null) {
+                    return stats;
+                }
+            } finally {
+                releaseHandle();
+            }
+        }
+        return new long[STATS_COUNT];
+    }
+    
+    /**
+     * 音频回调路径上的日志（由原生层的写出线程按限速写到logcat）同时追加到文件，用于现场排查
+     * @param path 文件的绝对路径，为null时只写logcat
+     * @return 文件是否成功打开
+     */
+    public boolean setRealtimeLogFile(String path) {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                return nativeSetRealtimeLogFile(handle, path);
+            } finally {
+                releaseHandle();
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 开始一次回环延迟测量：播放约21ms的测试信号并录音，约0.5秒后结果出现在getLatencyReport()中。
+     * 需要扬声器的声音能被麦克风采集到，使用耳机时测量结果无效。
+     * @return 音频未运行或已有测量正在进行时返回false
+     */
+    public boolean startLoopbackMeasurement() {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                return nativeStartLoopbackMeasurement(handle);
+            } finally {
+                releaseHandle();
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 获取延迟报告
+     * @return 长度为LATENCY_REPORT_COUNT的数组，下标见LATENCY_REPORT_*常量
+     */
+    public float[] getLatencyReport() {
+        long handle = acquireHandle();
+        if (handle != 0) {
+            try {
+                float[] report = nativeGetLatencyReport(handle);
+                if (report != null) {
+                    return report;
+                }
+            } finally {
+                releaseHandle();
+            }
+        }
+        float[] report = new float[LATENCY_REPORT_COUNT];
+        Arrays.fill(report, -1.0f);
+        return report;
+    }
+    
+    /**
+     * 释放资源（只释放本实例的原生会话，不影响其他实例；重复调用无效果）。
+     * 可以与其他方法在不同线程上同时调用：等其他线程上已开始的调用结束后才删除原生会话，之后的调用不做任何事。
+     * 删除时会等待原生回调线程退出，不能在波形或流事件回调中调用
      */
     public void release() {
-        if (nativeHandle != 0) {
-            nativeReleaseProcessor(nativeHandle);
+        long handle;
+        boolean interrupted = false;
+        synchronized (this) {
+            handle = nativeHandle;
             nativeHandle = 0;
+            while (activeCalls > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        // 不持有锁：原生回调线程在退出前可能还会调用本实例的方法
+        if (handle != 0) {
+            nativeReleaseProcessor(handle);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // 取得句柄并登记一次本地调用，返回0（已释放）时不需要releaseHandle()
+    private synchronized long acquireHandle() {
+        if (nativeHandle != 0) {
+            activeCalls++;
+        }
+        return nativeHandle;
+    }
+    
+    // 本地调用结束
+    private synchronized void releaseHandle() {
+        activeCalls--;
+        if (activeCalls == 0) {
+            notifyAll();
         }
     }
     
@@ -182,8 +724,30 @@ public class AAudioProcessorJNI {
     private native void nativeSetInputVolume(long handle, int volume);
     private native void nativeSetOutputVolume(long handle, int volume);
     private native void nativeSetAmplificationFactor(long handle, float factor);
-    private native void nativeSetNoiseReduction(long handle, boolean enabled);
+    private native void nativeSetParameterRampTime(long handle, float rampMs);
+    private native void nativeSetFeedbackCancellation(long handle, boolean enabled);
+    private native float[] nativeGetFeedbackMetrics(long handle);
+    private native void nativeSetHowlSuppression(long handle, boolean enabled);
+    private native float[] nativeGetHowlState(long handle);
+    private native void nativeSetNoiseReduction(long handle, boolean enabled, float strength);
     private native void nativeSetEqualizerBand(long handle, int band, int gain);
+    private native void nativeSetCompressorEnabled(long handle, boolean enabled);
+    private native void nativeSetCompressorBand(long handle, int band, float thresholdDb, float ratio,
+                                                float attackMs, float releaseMs, float makeupGainDb);
+    private native void nativeSetLimiterLookahead(long handle, float lookaheadMs);
+    private native void nativeSetResamplerQuality(long handle, int quality);
+    private native void nativeSetDriftCompensationEnabled(long handle, boolean enabled);
     private native void nativeSetWaveformCallback(long handle, WaveformCallbackWrapper inputCallback, 
                                                 WaveformCallbackWrapper outputCallback);
+    private native boolean nativeSetWaveformBuffer(long handle, ByteBuffer buffer);
+    private native int nativeGetSampleRate(long handle);
+    private native long nativeGetWaveformDroppedFrames(long handle);
+    private native void nativeSetStreamEventCallback(long handle, StreamEventCallback callback);
+    private native int[] nativeGetRecoveryStats(long handle);
+    private native long[] nativeGetStats(long handle);
+    private native boolean nativeSetRealtimeLogFile(long handle, String path);
+    private native void nativeSetInitialBufferBursts(long handle, int bursts);
+    private native int[] nativeGetLatencyState(long handle);
+    private native boolean nativeStartLoopbackMeasurement(long handle);
+    private native float[] nativeGetLatencyReport(long handle);
 } 
\ No newline at end of file
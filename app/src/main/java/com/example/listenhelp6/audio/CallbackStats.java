@@ -0,0 +1,199 @@
+package com.example.listenhelp6.audio;
+
+import java.util.Locale;
+
+/**
+ * 回调性能统计的快照（解析AAudioProcessorJNI.getStats()返回的数组）
+ * 耗时（微秒）和负载（0.01%）在原生层记录为对数线性直方图：小于32的值逐个计数，
+ * 之后每个2的幂区间均分为32个桶，分位数取所在桶的中点，相对误差不超过1/64。
+ * 分桶规则与原生层的LogLinearHistogram相同。
+ */
+public class CallbackStats {
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] stats;
+    private final long[] wallTimeCounts;
+    private final long[] loadCounts;
+
+    public CallbackStats(long[] stats) {
+        if (stats == null || stats.length < AAudioProcessorJNI.STATS_COUNT) {
+            stats = new long[AAudioProcessorJNI.STATS_COUNT];
+        }
+        this.stats = stats;
+        // 两个直方图分别从各自的下标开始，复制出来便于计算
+        wallTimeCounts = new long[AAudioProcessorJNI.STATS_HISTOGRAM_BUCKETS];
+        loadCounts = new long[AAudioProcessorJNI.STATS_HISTOGRAM_BUCKETS];
+        System.arraycopy(stats, AAudioProcessorJNI.STATS_WALL_TIME_HISTOGRAM,
+                wallTimeCounts, 0, wallTimeCounts.length);
+        System.arraycopy(stats, AAudioProcessorJNI.STATS_LOAD_HISTOGRAM,
+                loadCounts, 0, loadCounts.length);
+    }
+
+    public long getCallbackCount() {
+        return stats[AAudioProcessorJNI.STATS_CALLBACKS];
+    }
+
+    public long getFrameCount() {
+        return stats[AAudioProcessorJNI.STATS_FRAMES];
+    }
+
+    public int getMinFrames() {
+        return (int) stats[AAudioProcessorJNI.STATS_MIN_FRAMES];
+    }
+
+    public int getMaxFrames() {
+        return (int) stats[AAudioProcessorJNI.STATS_MAX_FRAMES];
+    }
+
+    /**
+     * 耗时超过缓冲区时长（负载超过100%）的回调次数
+     */
+    public long getLateCallbackCount() {
+        return stats[AAudioProcessorJNI.STATS_LATE_CALLBACKS];
+    }
+
+    /**
+     * 输入与输出流的xrun总次数
+     */
+    public long getXRunCount() {
+        return stats[AAudioProcessorJNI.STATS_OUTPUT_XRUNS] + stats[AAudioProcessorJNI.STATS_INPUT_XRUNS];
+    }
+
+    public long getOutputXRunCount() {
+        return stats[AAudioProcessorJNI.STATS_OUTPUT_XRUNS];
+    }
+
+    public long getInputXRunCount() {
+        return stats[AAudioProcessorJNI.STATS_INPUT_XRUNS];
+    }
+
+    public long getInputUnderrunCount() {
+        return stats[AAudioProcessorJNI.STATS_INPUT_UNDERRUNS];
+    }
+
+    public long getInputOverrunCount() {
+        return stats[AAudioProcessorJNI.STATS_INPUT_OVERRUNS];
+    }
+
+    /**
+     * 音频回调路径上的日志因队列满丢弃的条数
+     */
+    public long getLogDroppedCount() {
+        return stats[AAudioProcessorJNI.STATS_LOG_DROPPED];
+    }
+
+    /**
+     * 音频回调路径上的日志因限速未写出的条数
+     */
+    public long getLogSuppressedCount() {
+        return stats[AAudioProcessorJNI.STATS_LOG_SUPPRESSED];
+    }
+
+    /**
+     * 波形消费线程跟不上、环形缓冲区满时丢弃的帧数
+     */
+    public long getWaveformDroppedFrames() {
+        return stats[AAudioProcessorJNI.STATS_WAVEFORM_DROPPED];
+    }
+
+    /**
+     * 平均回调耗时（微秒），没有回调时为0
+     */
+    public double getMeanWallTimeUs() {
+        long count = getCallbackCount();
+        return count > 0 ? (double) stats[AAudioProcessorJNI.STATS_WALL_TIME_SUM_US] / count : 0.0;
+    }
+
+    public long getMaxWallTimeUs() {
+        return stats[AAudioProcessorJNI.STATS_WALL_TIME_MAX_US];
+    }
+
+    /**
+     * 回调耗时的分位数（微秒）
+     * @param quantile 0.0-1.0，例如0.99
+     */
+    public double getWallTimePercentileUs(double quantile) {
+        return percentile(wallTimeCounts, quantile, getMaxWallTimeUs());
+    }
+
+    /**
+     * 平均负载（耗时占缓冲区时长的百分比）
+     */
+    public double getMeanLoadPercent() {
+        long count = getCallbackCount();
+        return count > 0 ? stats[AAudioProcessorJNI.STATS_LOAD_SUM] / 100.0 / count : 0.0;
+    }
+
+    public double getMaxLoadPercent() {
+        return stats[AAudioProcessorJNI.STATS_LOAD_MAX] / 100.0;
+    }
+
+    /**
+     * 负载的分位数（百分比）
+     * @param quantile 0.0-1.0，例如0.99
+     */
+    public double getLoadPercentile(double quantile) {
+        return percentile(loadCounts, quantile, stats[AAudioProcessorJNI.STATS_LOAD_MAX]) / 100.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "回调 %d 次（%d-%d 帧），负载 平均 %.1f%% p99 %.1f%% 最高 %.1f%%，"
+                        + "耗时 p50 %.0f us p99 %.0f us，超时 %d 次，xrun %d 次",
+                getCallbackCount(), getMinFrames(), getMaxFrames(),
+                getMeanLoadPercent(), getLoadPercentile(0.99), getMaxLoadPercent(),
+                getWallTimePercentileUs(0.5), getWallTimePercentileUs(0.99),
+                getLateCallbackCount(), getXRunCount());
+    }
+
+    /**
+     * 按排名找到分位数所在的桶，返回桶的中点（不超过记录到的最大值）；没有数据时为0
+     */
+    static double percentile(long[] counts, double quantile, long max) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1.0, Math.max(0.0, quantile)) * total));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                double midpoint = bucketLowerBound(i) + (bucketWidth(i) - 1) / 2.0;
+                return Math.min(midpoint, (double) max);
+            }
+        }
+        return (double) max;
+    }
+
+    /**
+     * 值所在的桶（与原生层LogLinearHistogram::bucketIndex相同，超出范围的值计入最后一个桶）
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        int last = AAudioProcessorJNI.STATS_HISTOGRAM_BUCKETS - 1;
+        if (value >= bucketLowerBound(last) + bucketWidth(last)) {
+            return last;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >> shift) - SUB_BUCKETS);
+    }
+
+    static long bucketLowerBound(int index) {
+        int group = index >> SUB_BUCKET_BITS;
+        long offset = index & (SUB_BUCKETS - 1);
+        return group == 0 ? offset : (SUB_BUCKETS + offset) << (group - 1);
+    }
+
+    static long bucketWidth(int index) {
+        int group = index >> SUB_BUCKET_BITS;
+        return group == 0 ? 1 : 1L << (group - 1);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.listenhelp6.audio;
+
+/**
+ * 音频流事件回调接口（设备断开后的自动恢复）
+ */
+public interface StreamEventCallback {
+    /**
+     * 流事件发生时调用（在原生恢复线程上调用，不在主线程上）
+     * @param event 事件类型，见AAudioProcessorJNI.STREAM_EVENT_*
+     * @param attempts 已尝试重新打开的次数
+     * @param elapsedMs 从检测到断开到现在的毫秒数
+     */
+    void onStreamEvent(int event, int attempts, long elapsedMs);
+}
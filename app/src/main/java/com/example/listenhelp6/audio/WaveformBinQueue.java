@@ -0,0 +1,92 @@
+package com.example.listenhelp6.audio;
+
+/**
+ * 波形桶的累积区：任意线程上的生产者（例如WaveformCallback）追加桶，UI线程每帧取走一次全部新桶。
+ * 容量固定，两帧之间积压超过容量时覆盖最旧的桶（显示只需要最新的历史），占用不随生产频率增长。
+ * offer只在两次取走之间的第一次返回true，生产者据此每帧最多请求一次重绘，
+ * 而不是每个音频块都向主线程投递一条消息；同一帧内的多次推送合并为一次绘制。
+ */
+public class WaveformBinQueue {
+    private static final int STRIDE = AAudioProcessorJNI.WAVEFORM_BIN_STRIDE;
+
+    private final float[] bins;
+    private final int capacity;
+    private int head = 0;      // 下一个桶写入的位置
+    private int size = 0;      // 尚未取走的桶数
+    private long overwrittenCount = 0;
+    private boolean frameRequested = false;
+
+    /**
+     * @param capacityBins 最多保留的桶数
+     */
+    public WaveformBinQueue(int capacityBins) {
+        if (capacityBins <= 0) {
+            throw new IllegalArgumentException("容量必须大于0: " + capacityBins);
+        }
+        capacity = capacityBins;
+        bins = new float[capacityBins * STRIDE];
+    }
+
+    public int getCapacityBins() {
+        return capacity;
+    }
+
+    /**
+     * 追加桶（任意线程）
+     * @param data 按最小值、最大值、均方根交错存放
+     * @param binCount 桶数，超过容量时只保留最新的部分
+     * @return 是否需要请求一帧（自上次取走以来的第一次追加）
+     */
+    public synchronized boolean offer(float[] data, int binCount) {
+        int first = Math.max(0, binCount - capacity);
+        for (int bin = first; bin < binCount; bin++) {
+            System.arraycopy(data, bin * STRIDE, bins, head * STRIDE, STRIDE);
+            head = (head + 1) % capacity;
+        }
+        int added = binCount - first;
+        int overwritten = Math.max(0, size + added - capacity) + first;
+        overwrittenCount += overwritten;
+        size = Math.min(size + added, capacity);
+
+        if (frameRequested || added == 0) {
+            return false;
+        }
+        frameRequested = true;
+        return true;
+    }
+
+    /**
+     * 取走所有新桶（UI线程），按从旧到新的顺序写入dest；dest放不下时只取最新的部分
+     * @return 取到的桶数
+     */
+    public synchronized int drain(float[] dest) {
+        int count = Math.min(size, dest.length / STRIDE);
+        int start = (head - count + capacity) % capacity;
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(bins, ((start + i) % capacity) * STRIDE, dest, i * STRIDE, STRIDE);
+        }
+        overwrittenCount += size - count;
+        size = 0;
+        frameRequested = false;
+        return count;
+    }
+
+    /**
+     * 尚未取走的桶数
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 因积压超过容量（或取走时dest放不下）而未显示的桶数
+     */
+    public synchronized long getOverwrittenCount() {
+        return overwrittenCount;
+    }
+
+    public synchronized void clear() {
+        size = 0;
+        frameRequested = false;
+    }
+}
@@ -5,8 +5,9 @@ package com.example.listenhelp6.audio;
  */
 public interface WaveformCallback {
     /**
-     * 当有新的波形数据可用时调用
-     * @param data 波形数据数组
+     * 当有新的波形数据可用时调用（在原生波形线程上，约每16ms一次）
+     * @param data 自上次回调以来的波形桶，每个桶依次为最小值、最大值、均方根
+     *             （AAudioProcessorJNI.WAVEFORM_BIN_*，长度为WAVEFORM_BIN_STRIDE的整数倍）
      */
     void onWaveformData(float[] data);
 } 
\ No newline at end of file
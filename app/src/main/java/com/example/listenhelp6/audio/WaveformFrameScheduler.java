@@ -0,0 +1,62 @@
+package com.example.listenhelp6.audio;
+
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按vsync驱动波形视图：运行期间每帧回调一次，让每个视图取走自上一帧以来的全部新桶
+ * （共享缓冲区和WaveformBinQueue），只有取到新数据的视图才重绘。
+ * 生产者的频率（每个音频块或每个消费周期）与主线程的工作量无关，主线程每帧只处理一次。
+ * 只能在UI线程上创建和调用。
+ */
+public class WaveformFrameScheduler implements Choreographer.FrameCallback {
+    private final Choreographer choreographer;
+    private final List<WaveformView> views = new ArrayList<>();
+    private boolean running = false;
+
+    public WaveformFrameScheduler() {
+        choreographer = Choreographer.getInstance();
+    }
+
+    public void addView(WaveformView view) {
+        views.add(view);
+    }
+
+    /**
+     * 开始每帧读取新数据
+     */
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        choreographer.postFrameCallback(this);
+    }
+
+    /**
+     * 停止每帧回调（之后通过updateWaveform推送的数据仍会在下一次绘制时显示）
+     */
+    public void stop() {
+        running = false;
+        choreographer.removeFrameCallback(this);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        for (WaveformView view : views) {
+            if (view.pollNewData()) {
+                view.invalidate();
+            }
+        }
+        choreographer.postFrameCallback(this);
+    }
+}
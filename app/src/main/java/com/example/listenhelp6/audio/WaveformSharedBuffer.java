@@ -0,0 +1,135 @@
+package com.example.listenhelp6.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 与原生层共享的波形缓冲区（直接ByteBuffer，本机字节序），替代逐块的波形回调：
+ * 原生波形消费线程把新的桶写入缓冲区，UI线程在每个vsync调用readNewBins取走上次以来的新桶，
+ * 两边都不分配内存，原生线程也不调用Java。
+ * 布局（32位字）：[0]序号（写入期间为奇数） [1]每个通道的容量（桶，2的幂） [2]输入通道累计桶数 [3]输出通道累计桶数，
+ * 之后依次为输入、输出两个环形区，每个桶为最小值、最大值、均方根三个float（见AAudioProcessorJNI.WAVEFORM_BIN_*）。
+ * 读取采用seqlock：读数据前后各读一次序号，序号为奇数或前后不同说明读到了写了一半的数据，丢弃后重读。
+ * 与原生层WaveformSharedBuffer的布局一致。每个实例只能有一个读取线程。
+ */
+public class WaveformSharedBuffer {
+    public static final int CHANNEL_INPUT = 0;
+    public static final int CHANNEL_OUTPUT = 1;
+    public static final int DEFAULT_CAPACITY_BINS = 1024;
+
+    static final int NUM_CHANNELS = 2;
+    static final int SEQUENCE_OFFSET = 0;
+    static final int CAPACITY_OFFSET = 4;
+    static final int WRITTEN_OFFSET = 8;   // 加通道号×4
+    static final int HEADER_BYTES = 16;
+    static final int BIN_BYTES = AAudioProcessorJNI.WAVEFORM_BIN_STRIDE * 4;
+    static final int MAX_READ_ATTEMPTS = 4; // 一次读取最多重试的次数，仍失败时留到下一帧
+
+    private static final int STRIDE = AAudioProcessorJNI.WAVEFORM_BIN_STRIDE;
+
+    // Android 13以下没有VarHandle的栅栏方法，用volatile写后读代替（ART与HotSpot都编译为完整的内存屏障）
+    private static volatile int fence;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final int[] cursors = new int[NUM_CHANNELS]; // 每个通道已读到的累计桶数
+    private long tornReadCount = 0;
+
+    public WaveformSharedBuffer() {
+        this(DEFAULT_CAPACITY_BINS);
+    }
+
+    /**
+     * @param capacityBins 每个通道的容量（桶），必须是2的幂
+     */
+    public WaveformSharedBuffer(int capacityBins) {
+        if (capacityBins <= 0 || Integer.bitCount(capacityBins) != 1) {
+            throw new IllegalArgumentException("容量必须是2的幂: " + capacityBins);
+        }
+        capacity = capacityBins;
+        buffer = ByteBuffer.allocateDirect(sizeInBytes(capacityBins)).order(ByteOrder.nativeOrder());
+        buffer.putInt(CAPACITY_OFFSET, capacityBins);
+    }
+
+    static int sizeInBytes(int capacityBins) {
+        return HEADER_BYTES + capacityBins * NUM_CHANNELS * BIN_BYTES;
+    }
+
+    /**
+     * 交给原生层写入的缓冲区
+     */
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getCapacityBins() {
+        return capacity;
+    }
+
+    /**
+     * 因读到写了一半的数据而重读的次数
+     */
+    public long getTornReadCount() {
+        return tornReadCount;
+    }
+
+    /**
+     * 读取一个通道自上次读取以来的新桶（积压超过容量或dest放不下时只取最新的部分）
+     * @param channel CHANNEL_INPUT或CHANNEL_OUTPUT
+     * @param dest 按最小值、最大值、均方根交错存放，从下标0开始写入
+     * @return 读到的桶数，没有新数据或本次未能读到完整数据时为0
+     */
+    public int readNewBins(int channel, float[] dest) {
+        int maxBins = Math.min(capacity, dest.length / STRIDE);
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            int begin = buffer.getInt(SEQUENCE_OFFSET);
+            fullFence();
+            if ((begin & 1) != 0) {
+                tornReadCount++;
+                continue;
+            }
+
+            int written = buffer.getInt(WRITTEN_OFFSET + channel * 4);
+            // 累计桶数按无符号回绕，差值仍然正确；超出容量（读取端落后太多）时从最新的容量个桶开始
+            long pending = Integer.toUnsignedLong(written - cursors[channel]);
+            int count = (int) Math.min(pending, maxBins);
+            copyBins(channel, written - count, count, dest);
+
+            fullFence();
+            if (buffer.getInt(SEQUENCE_OFFSET) != begin) {
+                tornReadCount++;
+                continue;
+            }
+            cursors[channel] = written;
+            return count;
+        }
+        return 0;
+    }
+
+    /**
+     * 丢弃所有通道中尚未读取的桶（例如重新开始显示时）
+     */
+    public void skipPending() {
+        for (int channel = 0; channel < NUM_CHANNELS; channel++) {
+            cursors[channel] = buffer.getInt(WRITTEN_OFFSET + channel * 4);
+        }
+    }
+
+    /**
+     * 把环形区中从累计位置first开始的count个桶复制到dest（不检查序号，由readNewBins负责）
+     */
+    void copyBins(int channel, int first, int count, float[] dest) {
+        int ringOffset = HEADER_BYTES + channel * capacity * BIN_BYTES;
+        for (int i = 0; i < count; i++) {
+            int offset = ringOffset + ((first + i) & (capacity - 1)) * BIN_BYTES;
+            for (int k = 0; k < STRIDE; k++) {
+                dest[i * STRIDE + k] = buffer.getFloat(offset + k * 4);
+            }
+        }
+    }
+
+    static void fullFence() {
+        fence = 0;
+        int ignored = fence;
+    }
+}
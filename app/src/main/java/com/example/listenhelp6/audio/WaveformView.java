@@ -13,26 +13,39 @@ import java.util.Arrays;
 
 /**
  * 音频波形显示视图
+ * 原生层把音频归并为最小/最大/均方根桶后传入（见WaveformCallback），视图保存最近HISTORY_BINS个桶，
+ * 每个桶画成一列：浅色为峰值包络（最小到最大），深色为均方根，新数据从右侧进入。
+ * 数据来源可以是updateWaveform（任意线程推送，先进入WaveformBinQueue，每帧最多请求一次重绘），
+ * 也可以是setSharedBuffer设置的共享缓冲区。两者都在pollNewData中每帧取走一次（由WaveformFrameScheduler按vsync调用，
+ * 绘制时也会调用），不分配内存，积压的多次推送合并到同一帧。
  */
 public class WaveformView extends View {
     
     private static final String TAG = "WaveformView";
-    private static final int DEFAULT_SAMPLES_COUNT = 128;
-    private static final int HISTORY_SIZE = 50; // 历史数据帧数量
+    private static final int HISTORY_BINS = 1024; // 显示的桶数（约0.5秒）
+    private static final int STRIDE = AAudioProcessorJNI.WAVEFORM_BIN_STRIDE;
     private static final int DEFAULT_COLOR = Color.parseColor("#1E88E5");
     private static final int DEFAULT_BACKGROUND_COLOR = Color.parseColor("#EEEEEE");
+    private static final int PEAK_ALPHA = 0x80; // 峰值包络相对均方根的透明度
     
-    private Paint waveformPaint;
+    private Paint peakPaint;
+    private Paint rmsPaint;
     private Paint bgPaint;
     private Paint textPaint;  // 文字绘制画笔
+    private Paint linePaint;  // 中心线
     private Path waveformPath;
     private RectF drawRect;
     
-    private float[] samples;
-    private float[] displaySamples;
-    private float[][] historyBuffer; // 历史数据缓冲区
-    private int historyIndex = 0; // 当前历史缓冲区位置
-    private boolean historyBufferFull = false; // 历史缓冲区是否已填满
+    // 历史桶（环形，按最小值、最大值、均方根交错存放）
+    private float[] history;
+    private int historyIndex = 0; // 下一个桶写入的位置
+    private int historyCount = 0; // 已有的桶数
+    
+    // 新数据来源：updateWaveform推送的桶、共享缓冲区（为null时不读取），以及取数据用的暂存区
+    private final WaveformBinQueue pendingBins = new WaveformBinQueue(HISTORY_BINS);
+    private WaveformSharedBuffer sharedBuffer;
+    private int sharedChannel;
+    private float[] pollScratch;
     
     private boolean isMirrored = true; // 是否显示镜像波形（上下对称）
     private boolean hasReceivedData = false; // 标记是否已收到真实数据
@@ -53,10 +66,14 @@ public class WaveformView extends View {
     }
     
     private void init() {
-        waveformPaint = new Paint();
-        waveformPaint.setColor(DEFAULT_COLOR);
-        waveformPaint.setStyle(Paint.Style.FILL);
-        waveformPaint.setAntiAlias(true);
+        peakPaint = new Paint();
+        peakPaint.setStyle(Paint.Style.FILL);
+        peakPaint.setAntiAlias(true);
+        
+        rmsPaint = new Paint();
+        rmsPaint.setStyle(Paint.Style.FILL);
+        rmsPaint.setAntiAlias(true);
+        setWaveformColor(DEFAULT_COLOR);
         
         bgPaint = new Paint();
         bgPaint.setColor(DEFAULT_BACKGROUND_COLOR);
@@ -68,88 +85,89 @@ public class WaveformView extends View {
         textPaint.setTextAlign(Paint.Align.CENTER);
         textPaint.setAntiAlias(true);
         
+        linePaint = new Paint();
+        linePaint.setColor(Color.WHITE);
+        linePaint.setStrokeWidth(1);
+        
         waveformPath = new Path();
         drawRect = new RectF();
         
-        samples = new float[DEFAULT_SAMPLES_COUNT];
-        displaySamples = new float[DEFAULT_SAMPLES_COUNT];
-        
-        // 初始化历史缓冲区
-        historyBuffer = new float[HISTORY_SIZE][DEFAULT_SAMPLES_COUNT];
-        
-        // 初始化为一个正弦波，使初始波形可见
-        for (int i = 0; i < DEFAULT_SAMPLES_COUNT; i++) {
-            float phase = (float)i / DEFAULT_SAMPLES_COUNT * 4 * (float)Math.PI;
-            samples[i] = 0.3f * (float)Math.sin(phase);
-            displaySamples[i] = samples[i];
-        }
-        
-        // 初始化历史缓冲区
-        for (int i = 0; i < HISTORY_SIZE; i++) {
-            for (int j = 0; j < DEFAULT_SAMPLES_COUNT; j++) {
-                float phase = (float)j / DEFAULT_SAMPLES_COUNT * 4 * (float)Math.PI;
-                historyBuffer[i][j] = 0.3f * (float)Math.sin(phase);
-            }
-        }
+        history = new float[HISTORY_BINS * STRIDE];
+        pollScratch = new float[HISTORY_BINS * STRIDE];
     }
     
     /**
-     * 更新波形样本数据
-     * @param data 音频样本数据（范围[-1,1]）
+     * 添加波形桶（可在任意线程调用）：桶先进入累积区，同一帧内的多次调用只请求一次重绘
+     * @param data 每个桶依次为最小值、最大值、均方根（范围[-1,1]，见AAudioProcessorJNI.WAVEFORM_BIN_*）
      */
     public void updateWaveform(float[] data) {
-        if (data == null || data.length == 0) {
+        if (data == null || data.length < STRIDE) {
             return;
         }
         
-        hasReceivedData = true;
-        
-        // 将输入数据重采样到我们的样本数
-        int inputLength = data.length;
-        for (int i = 0; i < DEFAULT_SAMPLES_COUNT; i++) {
-            int inputIndex = (int) ((float) i / DEFAULT_SAMPLES_COUNT * inputLength);
-            if (inputIndex < inputLength) {
-                // 平滑过渡系数
-                samples[i] = 0.3f * samples[i] + 0.7f * Math.abs(data[inputIndex]);
-            }
+        if (pendingBins.offer(data, data.length / STRIDE)) {
+            postInvalidateOnAnimation();
         }
-        
-        // 添加到历史缓冲区
-        addToHistory(samples);
-        
-        // 立即重绘
-        postInvalidateOnAnimation();
     }
 
     /**
-     * 添加数据到历史缓冲区
+     * 设置共享缓冲区，之后每次pollNewData读取其中一个通道的新桶
+     * @param buffer 共享缓冲区，为null时停止读取
+     * @param channel WaveformSharedBuffer.CHANNEL_INPUT或CHANNEL_OUTPUT
      */
-    private void addToHistory(float[] newData) {
-        // 将新数据复制到历史缓冲区当前位置
-        System.arraycopy(newData, 0, historyBuffer[historyIndex], 0, DEFAULT_SAMPLES_COUNT);
-        
-        // 更新历史缓冲区索引
-        historyIndex = (historyIndex + 1) % HISTORY_SIZE;
-        
-        // 检查是否已填满历史缓冲区
-        if (historyIndex == 0) {
-            historyBufferFull = true;
+    public void setSharedBuffer(WaveformSharedBuffer buffer, int channel) {
+        sharedBuffer = buffer;
+        sharedChannel = channel;
+    }
+    
+    /**
+     * 取走自上次以来的全部新桶并加入历史（UI线程，每帧一次）
+     * @return 是否有新数据（需要重绘）
+     */
+    public boolean pollNewData() {
+        int bins = addBins(pendingBins.drain(pollScratch));
+        if (sharedBuffer != null) {
+            bins += addBins(sharedBuffer.readNewBins(sharedChannel, pollScratch));
         }
+        if (bins > 0) {
+            hasReceivedData = true;
+        }
+        return bins > 0;
+    }
+    
+    /**
+     * 把暂存区中的前count个桶加入历史
+     */
+    private int addBins(int count) {
+        for (int bin = 0; bin < count; bin++) {
+            addBin(pollScratch[bin * STRIDE + AAudioProcessorJNI.WAVEFORM_BIN_MIN],
+                    pollScratch[bin * STRIDE + AAudioProcessorJNI.WAVEFORM_BIN_MAX],
+                    pollScratch[bin * STRIDE + AAudioProcessorJNI.WAVEFORM_BIN_RMS]);
+        }
+        return count;
+    }
+
+    /**
+     * 添加一个桶到历史缓冲区
+     */
+    private void addBin(float min, float max, float rms) {
+        int offset = historyIndex * STRIDE;
+        history[offset + AAudioProcessorJNI.WAVEFORM_BIN_MIN] = min;
+        history[offset + AAudioProcessorJNI.WAVEFORM_BIN_MAX] = max;
+        history[offset + AAudioProcessorJNI.WAVEFORM_BIN_RMS] = rms;
+        historyIndex = (historyIndex + 1) % HISTORY_BINS;
+        historyCount = Math.min(historyCount + 1, HISTORY_BINS);
     }
 
     /**
      * 添加随机数据，用于测试显示效果
      */
     public void addRandomSample() {
-        // 创建一组新的随机样本
-        float[] randomSamples = new float[DEFAULT_SAMPLES_COUNT];
-        for (int i = 0; i < DEFAULT_SAMPLES_COUNT; i++) {
-            randomSamples[i] = (float) (Math.random() * 0.7);
+        for (int i = 0; i < 32; i++) {
+            float peak = (float) (Math.random() * 0.7);
+            addBin(-peak, peak, peak * 0.5f);
         }
         
-        // 添加到历史缓冲区
-        addToHistory(randomSamples);
-        
         postInvalidateOnAnimation();
     }
     
@@ -157,7 +175,9 @@ public class WaveformView extends View {
      * 设置波形颜色
      */
     public void setWaveformColor(int color) {
-        waveformPaint.setColor(color);
+        rmsPaint.setColor(color);
+        peakPaint.setColor(color);
+        peakPaint.setAlpha(PEAK_ALPHA);
         invalidate();
     }
     
@@ -173,18 +193,10 @@ public class WaveformView extends View {
      * 清除波形数据
      */
     public void clearWaveform() {
-        for (int i = 0; i < DEFAULT_SAMPLES_COUNT; i++) {
-            samples[i] = 0;
-            displaySamples[i] = 0;
-        }
-        
-        // 清空历史缓冲区
-        for (int i = 0; i < HISTORY_SIZE; i++) {
-            Arrays.fill(historyBuffer[i], 0);
-        }
-        
+        Arrays.fill(history, 0);
+        pendingBins.clear();
         historyIndex = 0;
-        historyBufferFull = false;
+        historyCount = 0;
         hasReceivedData = false;  // 重置数据接收标志
         invalidate();
     }
@@ -199,6 +211,9 @@ public class WaveformView extends View {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
         
+        // 由updateWaveform请求的重绘在这里取走累积的桶
+        pollNewData();
+        
         final int width = getWidth();
         final int height = getHeight();
         
@@ -213,77 +228,79 @@ public class WaveformView extends View {
         
         float centerY = height / 2f;
         
-        // 从历史缓冲区中准备显示数据
-        int availableFrames = historyBufferFull ? HISTORY_SIZE : historyIndex;
-        
         // 找出最大振幅用于缩放
         float maxAmplitude = 0.0001f; // 避免除以零
-        for (int frame = 0; frame < availableFrames; frame++) {
-            int bufferIndex = (historyIndex - frame - 1 + HISTORY_SIZE) % HISTORY_SIZE;
-            for (float sample : historyBuffer[bufferIndex]) {
-                if (Math.abs(sample) > maxAmplitude) {
-                    maxAmplitude = Math.abs(sample);
-                }
-            }
+        for (int i = 0; i < historyCount; i++) {
+            int offset = binOffset(i);
+            maxAmplitude = Math.max(maxAmplitude, Math.max(
+                    Math.abs(history[offset + AAudioProcessorJNI.WAVEFORM_BIN_MIN]),
+                    Math.abs(history[offset + AAudioProcessorJNI.WAVEFORM_BIN_MAX])));
         }
         // 确保最小振幅，以便在低音量或静音时仍能看到波形
         maxAmplitude = Math.max(maxAmplitude, 0.05f);
+        float scale = (height / 2f - 4) / maxAmplitude;
         
-        // 绘制历史数据波形
-        float frameWidth = width / (float)HISTORY_SIZE;
+        // 峰值包络：上沿为最大值，下沿为最小值（镜像模式下为上下对称的绝对峰值）
+        drawEnvelope(canvas, width, centerY, scale, peakPaint, false);
+        // 均方根始终上下对称
+        drawEnvelope(canvas, width, centerY, scale, rmsPaint, true);
         
-        for (int frame = 0; frame < availableFrames; frame++) {
-            int bufferIndex = (historyIndex - frame - 1 + HISTORY_SIZE) % HISTORY_SIZE;
-            float[] frameData = historyBuffer[bufferIndex];
-            
-            // 创建波形路径
-            waveformPath.reset();
-            
-            float startX = width - (frame + 1) * frameWidth;
-            float endX = width - frame * frameWidth;
-            
-            waveformPath.moveTo(startX, centerY);
-            
-            int samplePoints = 20; // 每帧绘制的采样点数
-            for (int i = 0; i <= samplePoints; i++) {
-                float sampleIndex = (float)i / samplePoints * (DEFAULT_SAMPLES_COUNT - 1);
-                int idx = (int)sampleIndex;
-                float sample = frameData[idx] / maxAmplitude;
-                
-                float x = startX + (endX - startX) * ((float)i / samplePoints);
-                float amplitude = sample * (height / 2 - 4);
-                
-                if (isMirrored) {
-                    waveformPath.lineTo(x, centerY - amplitude);
-                } else {
-                    waveformPath.lineTo(x, centerY - amplitude);
-                }
-            }
-            
-            if (isMirrored) {
-                // 绘制镜像波形（下半部分）
-                for (int i = samplePoints; i >= 0; i--) {
-                    float sampleIndex = (float)i / samplePoints * (DEFAULT_SAMPLES_COUNT - 1);
-                    int idx = (int)sampleIndex;
-                    float sample = frameData[idx] / maxAmplitude;
-                    
-                    float x = startX + (endX - startX) * ((float)i / samplePoints);
-                    float amplitude = sample * (height / 2 - 4);
-                    
-                    waveformPath.lineTo(x, centerY + amplitude);
-                }
+        // 绘制中心线
+        canvas.drawLine(0, centerY, width, centerY, linePaint);
+    }
+    
+    /**
+     * 第i个桶（0为最旧）在历史缓冲区中的偏移
+     */
+    private int binOffset(int i) {
+        int index = (historyIndex - historyCount + i + HISTORY_BINS) % HISTORY_BINS;
+        return index * STRIDE;
+    }
+    
+    /**
+     * 绘制一条包络：沿上沿从左到右，再沿下沿从右到左，闭合后填充；最新的桶在最右侧
+     */
+    private void drawEnvelope(Canvas canvas, int width, float centerY, float scale, Paint paint, boolean rms) {
+        if (historyCount == 0) {
+            return;
+        }
+        float binWidth = width / (float) HISTORY_BINS;
+        float startX = width - historyCount * binWidth;
+        
+        waveformPath.reset();
+        for (int i = 0; i < historyCount; i++) {
+            float x = startX + (i + 0.5f) * binWidth;
+            float y = centerY - upper(binOffset(i), rms) * scale;
+            if (i == 0) {
+                waveformPath.moveTo(x, y);
             } else {
-                waveformPath.lineTo(endX, centerY);
+                waveformPath.lineTo(x, y);
             }
-            
-            waveformPath.close();
-            canvas.drawPath(waveformPath, waveformPaint);
         }
-        
-        // 绘制中心线
-        Paint linePaint = new Paint();
-        linePaint.setColor(Color.WHITE);
-        linePaint.setStrokeWidth(1);
-        canvas.drawLine(0, centerY, width, centerY, linePaint);
+        for (int i = historyCount - 1; i >= 0; i--) {
+            float x = startX + (i + 0.5f) * binWidth;
+            waveformPath.lineTo(x, centerY - lower(binOffset(i), rms) * scale);
+        }
+        waveformPath.close();
+        canvas.drawPath(waveformPath, paint);
+    }
+    
+    private float upper(int offset, boolean rms) {
+        if (rms) {
+            return history[offset + AAudioProcessorJNI.WAVEFORM_BIN_RMS];
+        }
+        float max = history[offset + AAudioProcessorJNI.WAVEFORM_BIN_MAX];
+        if (isMirrored) {
+            return Math.max(Math.abs(max), Math.abs(history[offset + AAudioProcessorJNI.WAVEFORM_BIN_MIN]));
+        }
+        // 保证包络至少包含中心线，静音段也画成一条线
+        return Math.max(max, 0f);
+    }
+    
+    private float lower(int offset, boolean rms) {
+        if (rms || isMirrored) {
+            return -upper(offset, rms);
+        }
+        return Math.min(history[offset + AAudioProcessorJNI.WAVEFORM_BIN_MIN], 0f);
     }
-} 
\ No newline at end of file
+}
@@ -10,7 +10,9 @@ import android.content.Intent;
 import android.content.pm.ServiceInfo;
 import android.os.Binder;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.PowerManager;
 import android.util.Log;
 
@@ -19,6 +21,10 @@ import androidx.core.app.NotificationCompat;
 import com.example.listenhelp6.MainActivity;
 import com.example.listenhelp6.R;
 import com.example.listenhelp6.audio.AAudioManager;
+import com.example.listenhelp6.audio.AAudioProcessorJNI;
+import com.example.listenhelp6.audio.CallbackStats;
+
+import java.util.Locale;
 
 public class AudioProcessingService extends Service {
     private static final String TAG = "AudioProcessingService";
@@ -27,6 +33,9 @@ public class AudioProcessingService extends Service {
     private static final String CHANNEL_ID = "listen_help_channel";
     private static final int NOTIFICATION_ID = 1001;
     
+    // 处理中每隔一段时间在通知中刷新回调负载和xrun统计
+    private static final long STATS_REFRESH_INTERVAL_MS = 5000;
+    
     // 服务状态
     private boolean isRunning = false;
     
@@ -39,6 +48,20 @@ public class AudioProcessingService extends Service {
     // 电源锁定，防止CPU休眠
     private PowerManager.WakeLock wakeLock;
     
+    // 流事件在原生恢复线程上到达，转到主线程更新通知
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
+    private final Runnable statsRefresher = new Runnable() {
+        @Override
+        public void run() {
+            if (!isRunning || audioManager == null) {
+                return;
+            }
+            updateNotification(formatStatus(audioManager.getCallbackStats()));
+            mainHandler.postDelayed(this, STATS_REFRESH_INTERVAL_MS);
+        }
+    };
+    
     public class LocalBinder extends Binder {
         public AudioProcessingService getService() {
             return AudioProcessingService.this;
@@ -69,7 +92,7 @@ public class AudioProcessingService extends Service {
         createNotificationChannel();
         
         // 创建通知
-        Notification notification = createNotification();
+        Notification notification = createNotification("正在运行中...");
         
         // 启动前台服务
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
@@ -96,6 +119,10 @@ public class AudioProcessingService extends Service {
         
         // 停止音频处理
         stopAudioProcessing();
+        mainHandler.removeCallbacks(statsRefresher);
+        if (audioManager != null) {
+            audioManager.setStreamEventCallback(null);
+        }
         
         // 停止前台服务
         stopForeground(true);
@@ -120,7 +147,7 @@ public class AudioProcessingService extends Service {
     /**
      * 构建前台服务通知
      */
-    private Notification createNotification() {
+    private Notification createNotification(String contentText) {
         Intent notificationIntent = new Intent(this, MainActivity.class);
         PendingIntent pendingIntent = PendingIntent.getActivity(
                 this, 0, notificationIntent,
@@ -128,10 +155,11 @@ public class AudioProcessingService extends Service {
 
         NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
                 .setContentTitle("音频处理服务")
-                .setContentText("正在运行中...")
+                .setContentText(contentText)
                 .setSmallIcon(R.drawable.ic_notification)
                 .setContentIntent(pendingIntent)
                 .setPriority(NotificationCompat.PRIORITY_LOW)
+                .setOnlyAlertOnce(true)
                 .setOngoing(true);
 
         return builder.build();
@@ -142,6 +170,41 @@ public class AudioProcessingService extends Service {
      */
     public void setAudioManager(AAudioManager audioManager) {
         this.audioManager = audioManager;
+        if (audioManager != null) {
+            audioManager.setStreamEventCallback((event, attempts, elapsedMs) ->
+                    mainHandler.post(() -> onStreamEvent(event)));
+        }
+    }
+    
+    /**
+     * 耳机插拔等导致音频流断开时，由原生层自动恢复，通知栏显示恢复进度
+     */
+    private void onStreamEvent(int event) {
+        if (!isRunning) {
+            return;
+        }
+        switch (event) {
+            case AAudioProcessorJNI.STREAM_EVENT_RECOVERING:
+                mainHandler.removeCallbacks(statsRefresher);
+                updateNotification("音频设备已变化，正在恢复...");
+                break;
+            case AAudioProcessorJNI.STREAM_EVENT_RECOVERED:
+                updateNotification("听力辅助正在处理音频");
+                scheduleStatsRefresh();
+                break;
+            case AAudioProcessorJNI.STREAM_EVENT_FAILED:
+                isRunning = false;
+                mainHandler.removeCallbacks(statsRefresher);
+                updateNotification("音频设备已断开，处理已停止");
+                break;
+            case AAudioProcessorJNI.STREAM_EVENT_ABORTED:
+                // 恢复期间用户重新启动了处理（停止时isRunning已为false，上面已返回）
+                updateNotification("听力辅助正在处理音频");
+                scheduleStatsRefresh();
+                break;
+            default:
+                break;
+        }
     }
     
     /**
@@ -153,6 +216,7 @@ public class AudioProcessingService extends Service {
             // 如果音频处理已在MainActivity中启动，则无需在此处重新启动
             isRunning = true;
             updateNotification("听力辅助正在处理音频");
+            scheduleStatsRefresh();
         }
     }
     
@@ -164,17 +228,34 @@ public class AudioProcessingService extends Service {
             // 假设audioManager.stop()是停止音频处理的方法
             // 如果音频处理已在MainActivity中停止，则无需在此处重新停止
             isRunning = false;
+            mainHandler.removeCallbacks(statsRefresher);
             updateNotification("听力辅助待机中");
         }
     }
     
+    private void scheduleStatsRefresh() {
+        mainHandler.removeCallbacks(statsRefresher);
+        mainHandler.postDelayed(statsRefresher, STATS_REFRESH_INTERVAL_MS);
+    }
+    
+    /**
+     * 通知中的运行状态：CPU负载（耗时占缓冲区时长）的平均值和p99，以及xrun次数
+     */
+    private static String formatStatus(CallbackStats stats) {
+        if (stats.getCallbackCount() == 0) {
+            return "听力辅助正在处理音频";
+        }
+        return String.format(Locale.getDefault(), "正在处理 · 负载 %.0f%%（p99 %.0f%%）· xrun %d",
+                stats.getMeanLoadPercent(), stats.getLoadPercentile(0.99), stats.getXRunCount());
+    }
+    
     /**
      * 更新通知内容
      */
     private void updateNotification(String contentText) {
         NotificationManager notificationManager = 
                 (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-        notificationManager.notify(NOTIFICATION_ID, createNotification());
+        notificationManager.notify(NOTIFICATION_ID, createNotification(contentText));
     }
 
     private void acquireWakeLock() {
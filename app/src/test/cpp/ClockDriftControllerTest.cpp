@@ -0,0 +1,197 @@
+#include "HostTest.h"
+
+#include "ClockDriftController.h"
+#include "FullDuplexPump.h"
+#include "PolyphaseResampler.h"
+#include "ResamplingInputSource.h"
+
+#include <algorithm>
+#include <cmath>
+#include <cstdint>
+#include <functional>
+#include <random>
+#include <vector>
+
+// 时钟漂移补偿的长时间仿真：输入、输出设备各按自己的时钟产生突发（带到达抖动），
+// 数据泵从重采样输入源拉取，漂移控制器按读取后的水位微调比例，与AAudioProcessor::processAudioData中的用法相同
+// （数据泵的目标水位为一个输入突发，过载阈值再加两个突发，设定点为允许范围的中点）。
+// 仿真时间为数小时：启动过渡之后水位始终在允许范围内，没有欠载、过载或设备缓冲区溢出，
+// 比例微调的平均值等于两个时钟的实际偏差；不补偿时同样的偏差在半小时内就会反复造成过载或欠载
+namespace {
+
+const double kSettleSeconds = 120.0;
+// 设备缓冲区容量（输入采样率的帧），写满后最旧的帧被覆盖
+const size_t kDeviceCapacityFrames = 8192;
+
+typedef std::function<double(double seconds)> DriftFunction;
+
+struct Scenario {
+    const char *name;
+    int32_t inputRate;
+    int32_t outputRate;
+    int32_t inputBurst;         // 输入设备的突发大小（输入采样率的帧）
+    int32_t outputBurst;        // 每次输出回调的帧数
+    DriftFunction drift;        // 输入时钟相对输出时钟的偏差（随时间变化）
+    double jitterMs;            // 突发到达和回调时刻的随机推迟
+};
+
+// 输入设备的缓冲区：按输入时钟成批写入，数据泵非阻塞地读取
+class SimulatedInputDevice : public AudioInputSource {
+public:
+    explicit SimulatedInputDevice(int32_t sampleRate)
+        : mBuffer(kDeviceCapacityFrames), mHead(0), mCount(0), mOverflows(0),
+          mPhase(0.0), mPhaseIncrement(2.0 * M_PI * 997.0 / sampleRate) {
+    }
+
+    void write(int32_t frames) {
+        for (int32_t i = 0; i < frames; i++) {
+            if (mCount == mBuffer.size()) {
+                mHead = (mHead + 1) % mBuffer.size();
+                mCount--;
+                mOverflows++;
+            }
+            mBuffer[(mHead + mCount) % mBuffer.size()] = static_cast<float>(0.5 * std::sin(mPhase));
+            mPhase = std::fmod(mPhase + mPhaseIncrement, 2.0 * M_PI);
+            mCount++;
+        }
+    }
+
+    int32_t readInput(float *buffer, int32_t numFrames) override {
+        int32_t frames = static_cast<int32_t>(std::min<size_t>(numFrames, mCount));
+        for (int32_t i = 0; i < frames; i++) {
+            buffer[i] = mBuffer[mHead];
+            mHead = (mHead + 1) % mBuffer.size();
+        }
+        mCount -= frames;
+        return frames;
+    }
+
+    int32_t availableInputFrames() override { return static_cast<int32_t>(mCount); }
+
+    int64_t getOverflowCount() const { return mOverflows; }
+
+private:
+    std::vector<float> mBuffer;
+    size_t mHead;
+    size_t mCount;
+    int64_t mOverflows;
+    double mPhase;
+    double mPhaseIncrement;
+};
+
+struct DriftResult {
+    int64_t xruns;              // 启动过渡之后数据泵的欠载和过载次数，加上设备缓冲区溢出次数
+    int32_t minFill;            // 启动过渡之后的水位范围（只统计已知的水位）
+    int32_t maxFill;
+    int32_t maxAllowedFill;
+    double lastHourAdjustmentPpm;   // 最后一小时比例微调的平均值
+    double lastHourDriftPpm;        // 同一时间段实际偏差的平均值
+    double finalDriftEstimatePpm;
+};
+
+DriftResult simulate(const Scenario &scenario, double hours, bool compensate) {
+    std::mt19937 rng(42);
+    std::uniform_real_distribution<double> uniform(0.0, 1.0);
+    const double jitter = scenario.jitterMs * 1e-3;
+
+    SimulatedInputDevice device(scenario.inputRate);
+    ResamplingInputSource resampling;
+    CHECK(resampling.configure(&device, 1, scenario.inputRate, scenario.outputRate,
+                               PolyphaseResampler::kQualityLow, scenario.outputBurst));
+    FullDuplexPump pump;
+    const int32_t inputBurst = static_cast<int32_t>(
+            static_cast<int64_t>(scenario.inputBurst) * scenario.outputRate / scenario.inputRate);
+    pump.configure(1, inputBurst, inputBurst * 2);
+    ClockDriftController controller;
+    controller.configure(scenario.outputRate, pump.getMaxFillFrames() / 2);
+    pump.reset();
+    resampling.reset();
+    controller.reset();
+
+    DriftResult result = {0, INT32_MAX, -1, pump.getMaxFillFrames(), 0.0, 0.0, 0.0};
+    std::vector<float> buffer(scenario.outputBurst);
+    const double endSeconds = hours * 3600.0;
+    const double lastHourStart = endSeconds - 3600.0;
+    int64_t settledXruns = -1;
+    double adjustmentSum = 0.0;
+    double driftSum = 0.0;
+    int64_t lastHourCallbacks = 0;
+    // 输入突发按输入时钟产生，到达时刻有随机推迟（不改变顺序）
+    double nextBurst = scenario.inputBurst / (scenario.inputRate * (1.0 + scenario.drift(0.0)));
+    double arrival = nextBurst + uniform(rng) * jitter;
+    for (int64_t callback = 0;; callback++) {
+        const double now = static_cast<double>(callback) * scenario.outputBurst / scenario.outputRate +
+                           uniform(rng) * jitter;
+        if (now > endSeconds) {
+            break;
+        }
+        while (arrival <= now) {
+            device.write(scenario.inputBurst);
+            const double burstTime = nextBurst;
+            nextBurst = burstTime + scenario.inputBurst / (scenario.inputRate * (1.0 + scenario.drift(burstTime)));
+            arrival = std::max(arrival, nextBurst + uniform(rng) * jitter);
+        }
+
+        pump.pull(resampling, buffer.data(), scenario.outputBurst);
+        const int32_t fill = pump.getFillFrames();
+        const double adjustment = compensate ? controller.update(fill, scenario.outputBurst) : 0.0;
+        resampling.setRatioAdjustment(adjustment);
+
+        if (now < kSettleSeconds) {
+            continue;
+        }
+        if (settledXruns < 0) {
+            settledXruns = pump.getUnderrunCount() + pump.getOverrunCount() + device.getOverflowCount();
+        }
+        if (fill >= 0) {
+            result.minFill = std::min(result.minFill, fill);
+            result.maxFill = std::max(result.maxFill, fill);
+        }
+        if (now >= lastHourStart) {
+            adjustmentSum += adjustment;
+            driftSum += scenario.drift(now);
+            lastHourCallbacks++;
+        }
+    }
+    result.xruns = pump.getUnderrunCount() + pump.getOverrunCount() + device.getOverflowCount() - settledXruns;
+    result.lastHourAdjustmentPpm = adjustmentSum / lastHourCallbacks * 1e6;
+    result.lastHourDriftPpm = driftSum / lastHourCallbacks * 1e6;
+    result.finalDriftEstimatePpm = controller.getDriftPpm();
+    return result;
+}
+
+const Scenario kScenarios[] = {
+        {"48k +450ppm", 48000, 48000, 96, 192, [](double) { return 450e-6; }, 0.5},
+        {"48k -450ppm", 48000, 48000, 96, 96, [](double) { return -450e-6; }, 0.5},
+        // 温度变化：偏差以30分钟为周期在70到230ppm之间变化
+        {"48k 温度漂移", 48000, 48000, 192, 96,
+         [](double t) { return 150e-6 + 80e-6 * std::sin(2.0 * M_PI * t / 1800.0); }, 1.0},
+        {"44.1k +200ppm -> 48k", 44100, 48000, 441, 192, [](double) { return 200e-6; }, 1.0},
+};
+
+} // namespace
+
+HOST_TEST(ClockDriftController, multiHourDrift_fillBoundedWithoutXruns) {
+    const double hours = 2.0;
+    for (const Scenario &scenario : kScenarios) {
+        DriftResult result = simulate(scenario, hours, true);
+        printf("    %-22s %.0f 小时：水位 %d..%d（上限 %d），xrun %lld，最后一小时平均微调 %+.1f ppm（实际 %+.1f），"
+               "漂移估计 %+.1f ppm\n", scenario.name, hours, result.minFill, result.maxFill, result.maxAllowedFill,
+               static_cast<long long>(result.xruns), result.lastHourAdjustmentPpm, result.lastHourDriftPpm,
+               result.finalDriftEstimatePpm);
+        CHECK_EQ(result.xruns, 0);
+        CHECK_GT(result.minFill, 0);
+        CHECK_LT(result.maxFill, result.maxAllowedFill);
+        // 水位有界即消耗速率的长期平均等于输入速率
+        CHECK_NEAR(result.lastHourAdjustmentPpm, result.lastHourDriftPpm, 5.0);
+    }
+}
+
+HOST_TEST(ClockDriftController, withoutCompensation_driftCausesXruns) {
+    // 对照：同样的时钟偏差不做补偿，数据泵的水位单向移动，反复过载或欠载
+    for (int s = 0; s < 2; s++) {
+        DriftResult result = simulate(kScenarios[s], 0.5, false);
+        printf("    %-22s 不补偿：xrun %lld\n", kScenarios[s].name, static_cast<long long>(result.xruns));
+        CHECK_GT(result.xruns, 10);
+    }
+}
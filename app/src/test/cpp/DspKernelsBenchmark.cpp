@@ -0,0 +1,120 @@
+#include "HostBenchmark.h"
+
+#include "DspKernels.h"
+#include "Equalizer.h"
+
+#include <cstdio>
+#include <cstring>
+#include <random>
+#include <vector>
+
+// 每个可在本机运行的内核表（dsp::availableKernels）按processBlock的块大小（192帧单声道）测量，
+// 打印每样本耗时和相对标量实现的加速比
+namespace {
+
+const int32_t kBlockFrames = 192;
+const int kMaxKernels = 8;
+
+struct KernelBuffers {
+    std::vector<float> input;
+    std::vector<float> work;
+    std::vector<float> from;
+    std::vector<int16_t> i16;
+    std::vector<uint8_t> i24;
+    std::vector<int32_t> i32;
+    BiquadCoefficients coeffs[kNumEqualizerBands];
+    BiquadState states[kNumEqualizerBands];
+
+    KernelBuffers()
+            : input(kBlockFrames), work(kBlockFrames), from(kBlockFrames),
+              i16(kBlockFrames), i24(kBlockFrames * 3), i32(kBlockFrames), states() {
+        std::mt19937 rng(1);
+        std::uniform_real_distribution<float> distribution(-0.5f, 0.5f);
+        for (int32_t i = 0; i < kBlockFrames; i++) {
+            input[i] = distribution(rng);
+            from[i] = distribution(rng);
+        }
+        work = input;
+        const float gains[kNumEqualizerBands] = {6, -3, 12, 15, -15, 9, 4, -8};
+        for (int band = 0; band < kNumEqualizerBands; band++) {
+            coeffs[band] = Equalizer::designBand(band, 48000, gains[band]);
+        }
+    }
+};
+
+// 对一个内核表运行一次被测操作；原地处理的操作使用增益1或恒定权重，使数据在重复运行中不衰减成非规格化数
+typedef void (*KernelOperation)(const DspKernels &kernels, KernelBuffers &buffers);
+
+struct KernelCase {
+    const char *name;
+    KernelOperation operation;
+};
+
+const KernelCase kCases[] = {
+        {"applyGain", [](const DspKernels &k, KernelBuffers &b) {
+            k.applyGain(b.work.data(), kBlockFrames, 1.0f);
+        }},
+        {"applyGainRamp", [](const DspKernels &k, KernelBuffers &b) {
+            k.applyGainRamp(b.work.data(), kBlockFrames, 1.0f, 0.0f);
+        }},
+        {"crossfade", [](const DspKernels &k, KernelBuffers &b) {
+            k.crossfade(b.work.data(), b.from.data(), kBlockFrames, 0.5f, 0.0f);
+        }},
+        {"biquadCascade(8)", [](const DspKernels &k, KernelBuffers &b) {
+            // 均衡器有增益时重复处理同一块会发散，每次从原始输入复制（各实现都包含这次复制）
+            memcpy(b.work.data(), b.input.data(), kBlockFrames * sizeof(float));
+            k.biquadCascade(b.work.data(), kBlockFrames, b.coeffs, b.states, kNumEqualizerBands, 0xFF);
+        }},
+        {"floatToI16", [](const DspKernels &k, KernelBuffers &b) {
+            k.floatToI16(b.input.data(), b.i16.data(), kBlockFrames);
+        }},
+        {"i16ToFloat", [](const DspKernels &k, KernelBuffers &b) {
+            k.i16ToFloat(b.i16.data(), b.work.data(), kBlockFrames);
+        }},
+        {"floatToI24", [](const DspKernels &k, KernelBuffers &b) {
+            k.floatToI24(b.input.data(), b.i24.data(), kBlockFrames);
+        }},
+        {"i24ToFloat", [](const DspKernels &k, KernelBuffers &b) {
+            k.i24ToFloat(b.i24.data(), b.work.data(), kBlockFrames);
+        }},
+        {"floatToI32", [](const DspKernels &k, KernelBuffers &b) {
+            k.floatToI32(b.input.data(), b.i32.data(), kBlockFrames);
+        }},
+        {"i32ToFloat", [](const DspKernels &k, KernelBuffers &b) {
+            k.i32ToFloat(b.i32.data(), b.work.data(), kBlockFrames);
+        }},
+        {"dotProduct", [](const DspKernels &k, KernelBuffers &b) {
+            hostbenchmark::keep(k.dotProduct(b.input.data(), b.from.data(), kBlockFrames));
+        }},
+};
+
+} // namespace
+
+HOST_BENCHMARK(DspKernels) {
+    const DspKernels *kernels[kMaxKernels];
+    int count = dsp::availableKernels(kernels, kMaxKernels);
+    printf("%-18s", "");
+    for (int k = 0; k < count; k++) {
+        printf("%16s", kernels[k]->name);
+    }
+    printf("\n");
+
+    KernelBuffers buffers;
+    for (const KernelCase &kernelCase : kCases) {
+        printf("%-18s", kernelCase.name);
+        double scalarNs = 0.0;
+        for (int k = 0; k < count; k++) {
+            const DspKernels &table = *kernels[k];
+            double ns = hostbenchmark::measureNs([&] { kernelCase.operation(table, buffers); });
+            if (k == 0) {
+                scalarNs = ns;
+                printf("%16.3f", ns / kBlockFrames);
+            } else {
+                printf("%9.3f(x%4.1f)", ns / kBlockFrames, scalarNs / ns);
+            }
+        }
+        printf("\n");
+        hostbenchmark::keep(buffers.work[0]);
+    }
+    printf("（每样本耗时，单位ns；已选择：%s，括号内为相对%s的加速比）\n", dsp::kernels().name, kernels[0]->name);
+}
@@ -0,0 +1,205 @@
+#include "HostTest.h"
+
+#include "DspKernels.h"
+#include "Equalizer.h"
+
+#include <algorithm>
+#include <cmath>
+#include <cstdint>
+#include <cstring>
+#include <random>
+#include <vector>
+
+// 每个可在本机运行的SIMD内核表（dsp::availableKernels）与标量参考实现对比：
+// 各种长度（覆盖向量主循环和尾部）和未对齐的起始地址，只允许浮点舍入误差，整数转换必须逐位相同
+namespace {
+
+const int32_t kLengths[] = {0, 1, 3, 4, 5, 7, 8, 9, 15, 16, 17, 31, 33, 191, 192, 193, 1027};
+const int32_t kMaxLength = 1027;
+const int32_t kMaxOffset = 3;
+const int kMaxKernels = 8;
+
+std::vector<float> randomSignal(std::mt19937 &rng, int32_t length, float amplitude) {
+    std::uniform_real_distribution<float> distribution(-amplitude, amplitude);
+    std::vector<float> signal(length);
+    for (float &sample : signal) {
+        sample = distribution(rng);
+    }
+    return signal;
+}
+
+// 转换的输入：包括超出范围的值、边界值和刚好在舍入点两侧的值
+std::vector<float> conversionInput(std::mt19937 &rng) {
+    std::vector<float> input = randomSignal(rng, kMaxLength + kMaxOffset, 1.2f);
+    const float special[] = {1.0f, -1.0f, 0.0f, -0.0f, 1e6f, -1e6f, 0.5f / 32768, -0.5f / 32768,
+                             1.5f / 32768, 32767.0f / 32768, -32768.0f / 32768, 1.0f - 1e-7f};
+    for (size_t i = 0; i < sizeof(special) / sizeof(special[0]); i++) {
+        input[i * 7] = special[i];
+    }
+    return input;
+}
+
+double maxAbsDifference(const float *a, const float *b, int32_t length) {
+    double difference = 0.0;
+    for (int32_t i = 0; i < length; i++) {
+        difference = std::max(difference, std::fabs(static_cast<double>(a[i]) - b[i]));
+    }
+    return difference;
+}
+
+int availableSimdKernels(const DspKernels **kernels) {
+    return dsp::availableKernels(kernels, kMaxKernels);
+}
+
+// 对每个SIMD内核表、每种长度和起始偏移运行check(kernels, offset, length)
+template <typename Check>
+void forEachKernelAndLength(Check check) {
+    const DspKernels *kernels[kMaxKernels];
+    int count = availableSimdKernels(kernels);
+    for (int k = 0; k < count; k++) {
+        for (int32_t length : kLengths) {
+            for (int32_t offset = 0; offset <= kMaxOffset; offset++) {
+                check(*kernels[k], offset, length);
+            }
+        }
+    }
+}
+
+} // namespace
+
+HOST_TEST(DspKernels, availableKernels_startsWithScalarAndIncludesSelected) {
+    const DspKernels *kernels[kMaxKernels];
+    int count = availableSimdKernels(kernels);
+    CHECK_GE(count, 1);
+    CHECK(kernels[0] == &dsp::scalarKernels());
+    bool selectedListed = false;
+    for (int k = 0; k < count; k++) {
+        printf("    %s%s\n", kernels[k]->name, kernels[k] == &dsp::kernels() ? "（已选择）" : "");
+        selectedListed = selectedListed || kernels[k] == &dsp::kernels();
+    }
+    CHECK(selectedListed);
+#if defined(__x86_64__) || defined(__aarch64__)
+    // 这两种架构上总有SIMD实现（x86_64至少有SSE，aarch64总有NEON）
+    CHECK_GE(count, 2);
+    CHECK(&dsp::kernels() != &dsp::scalarKernels());
+#endif
+}
+
+HOST_TEST(DspKernels, gainAndCrossfade_matchScalar) {
+    std::mt19937 rng(1);
+    const std::vector<float> input = randomSignal(rng, kMaxLength + kMaxOffset, 1.5f);
+    const std::vector<float> from = randomSignal(rng, kMaxLength + kMaxOffset, 1.5f);
+    const DspKernels &scalar = dsp::scalarKernels();
+    forEachKernelAndLength([&](const DspKernels &kernels, int32_t offset, int32_t length) {
+        std::vector<float> expected(input);
+        std::vector<float> actual(input);
+        scalar.applyGain(expected.data() + offset, length, 0.7f);
+        kernels.applyGain(actual.data() + offset, length, 0.7f);
+        CHECK_EQ(maxAbsDifference(expected.data(), actual.data(), kMaxLength + kMaxOffset), 0.0);
+
+        expected = input;
+        actual = input;
+        scalar.applyGainRamp(expected.data() + offset, length, 0.25f, 1.0f / 1027);
+        kernels.applyGainRamp(actual.data() + offset, length, 0.25f, 1.0f / 1027);
+        CHECK_LE(maxAbsDifference(expected.data(), actual.data(), kMaxLength + kMaxOffset), 1e-6);
+
+        expected = input;
+        actual = input;
+        scalar.crossfade(expected.data() + offset, from.data() + offset, length, 0.1f, 0.9f / 1027);
+        kernels.crossfade(actual.data() + offset, from.data() + offset, length, 0.1f, 0.9f / 1027);
+        CHECK_LE(maxAbsDifference(expected.data(), actual.data(), kMaxLength + kMaxOffset), 1e-6);
+    });
+}
+
+HOST_TEST(DspKernels, biquadCascade_matchesScalarAcrossBlockSplits) {
+    // 8个均衡器频段（其中一个跳过），按长度不一的块连续处理，状态跨块延续
+    std::mt19937 rng(3);
+    const std::vector<float> input = randomSignal(rng, kMaxLength, 0.3f);
+    const float gains[kNumEqualizerBands] = {6, -3, 12, 15, -15, 9, 4, -8};
+    BiquadCoefficients coeffs[kNumEqualizerBands];
+    for (int band = 0; band < kNumEqualizerBands; band++) {
+        coeffs[band] = Equalizer::designBand(band, 48000, gains[band]);
+    }
+    const uint32_t activeMask = 0xFF & ~(1u << 5);
+
+    const DspKernels *kernels[kMaxKernels];
+    int count = availableSimdKernels(kernels);
+    for (int k = 0; k < count; k++) {
+        std::vector<float> expected(input);
+        std::vector<float> actual(input);
+        BiquadState expectedStates[kNumEqualizerBands] = {};
+        BiquadState actualStates[kNumEqualizerBands] = {};
+        for (int32_t offset = 0; offset < kMaxLength;) {
+            int32_t length = std::min(kMaxLength - offset, 1 + offset % 97);
+            dsp::scalarKernels().biquadCascade(expected.data() + offset, length, coeffs, expectedStates,
+                                               kNumEqualizerBands, activeMask);
+            kernels[k]->biquadCascade(actual.data() + offset, length, coeffs, actualStates,
+                                      kNumEqualizerBands, activeMask);
+            offset += length;
+        }
+        CHECK_LE(maxAbsDifference(expected.data(), actual.data(), kMaxLength), 1e-4);
+        for (int band = 0; band < kNumEqualizerBands; band++) {
+            CHECK_LE(std::fabs(expectedStates[band].z1 - actualStates[band].z1), 1e-4);
+            CHECK_LE(std::fabs(expectedStates[band].z2 - actualStates[band].z2), 1e-4);
+        }
+        // 跳过的频段状态清零
+        CHECK_EQ(actualStates[5].z1, 0.0f);
+        CHECK_EQ(actualStates[5].z2, 0.0f);
+    }
+}
+
+HOST_TEST(DspKernels, integerConversions_matchScalarBitExactly) {
+    std::mt19937 rng(4);
+    const std::vector<float> input = conversionInput(rng);
+    const DspKernels &scalar = dsp::scalarKernels();
+    forEachKernelAndLength([&](const DspKernels &kernels, int32_t offset, int32_t length) {
+        const float *source = input.data() + offset;
+
+        std::vector<int16_t> expected16(length + 1, 0x5A5A);
+        std::vector<int16_t> actual16(length + 1, 0x5A5A);
+        scalar.floatToI16(source, expected16.data(), length);
+        kernels.floatToI16(source, actual16.data(), length);
+        CHECK(expected16 == actual16);
+
+        std::vector<uint8_t> expected24(length * 3 + 1, 0x5A);
+        std::vector<uint8_t> actual24(length * 3 + 1, 0x5A);
+        scalar.floatToI24(source, expected24.data(), length);
+        kernels.floatToI24(source, actual24.data(), length);
+        CHECK(expected24 == actual24);
+
+        std::vector<int32_t> expected32(length + 1, 0x5A5A5A5A);
+        std::vector<int32_t> actual32(length + 1, 0x5A5A5A5A);
+        scalar.floatToI32(source, expected32.data(), length);
+        kernels.floatToI32(source, actual32.data(), length);
+        CHECK(expected32 == actual32);
+
+        // 反方向：由标量结果转回浮点
+        std::vector<float> expectedFloat(length + 1, 7.0f);
+        std::vector<float> actualFloat(length + 1, 7.0f);
+        scalar.i16ToFloat(expected16.data(), expectedFloat.data(), length);
+        kernels.i16ToFloat(expected16.data(), actualFloat.data(), length);
+        CHECK(memcmp(expectedFloat.data(), actualFloat.data(), actualFloat.size() * sizeof(float)) == 0);
+        scalar.i24ToFloat(expected24.data(), expectedFloat.data(), length);
+        kernels.i24ToFloat(expected24.data(), actualFloat.data(), length);
+        CHECK(memcmp(expectedFloat.data(), actualFloat.data(), actualFloat.size() * sizeof(float)) == 0);
+        scalar.i32ToFloat(expected32.data(), expectedFloat.data(), length);
+        kernels.i32ToFloat(expected32.data(), actualFloat.data(), length);
+        CHECK(memcmp(expectedFloat.data(), actualFloat.data(), actualFloat.size() * sizeof(float)) == 0);
+    });
+}
+
+HOST_TEST(DspKernels, dotProduct_matchesScalarWithinRounding) {
+    std::mt19937 rng(5);
+    const std::vector<float> a = randomSignal(rng, kMaxLength + kMaxOffset, 1.0f);
+    const std::vector<float> b = randomSignal(rng, kMaxLength + kMaxOffset, 1.0f);
+    forEachKernelAndLength([&](const DspKernels &kernels, int32_t offset, int32_t length) {
+        // 求和顺序不同，误差相对于各项绝对值之和
+        double magnitude = 0.0;
+        for (int32_t i = 0; i < length; i++) {
+            magnitude += std::fabs(static_cast<double>(a[offset + i]) * b[offset + i]);
+        }
+        float expected = dsp::scalarKernels().dotProduct(a.data() + offset, b.data() + offset, length);
+        float actual = kernels.dotProduct(a.data() + offset, b.data() + offset, length);
+        CHECK_LE(std::fabs(static_cast<double>(expected) - actual), 1e-6 * (magnitude + 1.0));
+    });
+}
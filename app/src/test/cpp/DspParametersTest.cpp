@@ -0,0 +1,266 @@
+#include "HostTest.h"
+#include "FakeAAudio.h"
+
+#include "AAudioProcessor.h"
+#include "DspParameters.h"
+#include "TripleBuffer.h"
+
+#include <algorithm>
+#include <atomic>
+#include <chrono>
+#include <cstdint>
+#include <mutex>
+#include <thread>
+#include <vector>
+
+#include <sys/resource.h>
+
+// 参数从多个设置线程经TripleBuffer发布给音频线程：读取端（模拟的回调）不能读到写了一半的参数集，
+// 也不能因为设置线程持有写入锁而等待。与AAudioProcessor相同，设置线程在写入锁下修改完整状态后整体发布
+namespace {
+
+typedef std::chrono::steady_clock Clock;
+
+const int kSetterThreads = 4;
+const int kUpdatesPerSetter = 20000;
+
+// 把参数集的每个字段都写成由value决定的值
+void fillParameters(DspParameters &params, uint32_t value) {
+    const float v = static_cast<float>(value);
+    params.inputVolume = v;
+    params.outputVolume = v;
+    params.amplification = v;
+    params.rampTimeMs = v;
+    params.rampFrames = static_cast<int32_t>(value);
+    params.noiseReductionStrength = v;
+    for (int band = 0; band < kNumEqualizerBands; band++) {
+        params.equalizerGainsDb[band] = v;
+        params.equalizerCoeffs[band].b0 = v;
+        params.equalizerCoeffs[band].a2 = v;
+    }
+    params.equalizerActiveMask = value;
+    params.equalizerGeneration = value;
+    for (int band = 0; band < kNumCompressorBands; band++) {
+        params.compressorSettings[band].thresholdDb = v;
+    }
+    params.compressorGeneration = value;
+    params.limiterLookaheadMs = v;
+}
+
+// 参数集的所有字段是否来自同一次发布
+bool isConsistent(const DspParameters &params) {
+    const uint32_t value = params.equalizerGeneration;
+    const float v = static_cast<float>(value);
+    bool consistent = params.inputVolume == v && params.outputVolume == v && params.amplification == v &&
+                      params.rampTimeMs == v && params.rampFrames == static_cast<int32_t>(value) &&
+                      params.noiseReductionStrength == v && params.equalizerActiveMask == value &&
+                      params.compressorGeneration == value && params.limiterLookaheadMs == v;
+    for (int band = 0; band < kNumEqualizerBands; band++) {
+        consistent = consistent && params.equalizerGainsDb[band] == v &&
+                     params.equalizerCoeffs[band].b0 == v && params.equalizerCoeffs[band].a2 == v;
+    }
+    for (int band = 0; band < kNumCompressorBands; band++) {
+        consistent = consistent && params.compressorSettings[band].thresholdDb == v;
+    }
+    return consistent;
+}
+
+double elapsedUs(Clock::time_point start) {
+    return std::chrono::duration<double, std::micro>(Clock::now() - start).count();
+}
+
+// 当前线程主动让出CPU（等待锁、睡眠等）的累计次数；被抢占不计在内，因此与机器负载无关。
+// 不支持按线程统计的系统上返回-1
+long voluntaryContextSwitches() {
+#ifdef RUSAGE_THREAD
+    struct rusage usage;
+    if (getrusage(RUSAGE_THREAD, &usage) == 0) {
+        return usage.ru_nvcsw;
+    }
+#endif
+    return -1;
+}
+
+} // namespace
+
+HOST_TEST(DspParameters, concurrentSetters_noTornReads) {
+    TripleBuffer<DspParameters> buffer;
+    DspParameters initial;
+    fillParameters(initial, 0);
+    buffer.reset(initial);
+
+    std::mutex writeMutex;
+    DspParameters state = initial;
+    uint32_t nextValue = 0;                 // 由writeMutex保护
+    std::atomic<int> finishedSetters(0);
+
+    std::vector<std::thread> setters;
+    for (int t = 0; t < kSetterThreads; t++) {
+        setters.emplace_back([&] {
+            for (int i = 0; i < kUpdatesPerSetter; i++) {
+                {
+                    std::lock_guard<std::mutex> lock(writeMutex);
+                    fillParameters(state, ++nextValue);
+                    buffer.writeBuffer() = state;
+                    buffer.publish();
+                }
+                if (i % 64 == 0) {
+                    std::this_thread::yield();
+                }
+            }
+            finishedSetters++;
+        });
+    }
+
+    // 模拟的音频回调：每次取一个快照并检查
+    int64_t reads = 0;
+    int64_t tornReads = 0;
+    int64_t backwards = 0;
+    uint32_t lastValue = 0;
+    bool finalPass = false;
+    while (!finalPass) {
+        // 写入端全部结束后再读一次，应拿到最后发布的值
+        finalPass = finishedSetters.load() == kSetterThreads;
+        const DspParameters &params = buffer.acquire();
+        reads++;
+        if (!isConsistent(params)) {
+            tornReads++;
+        }
+        if (params.equalizerGeneration < lastValue) {
+            backwards++;
+        }
+        lastValue = params.equalizerGeneration;
+        if (reads % 16 == 0) {
+            std::this_thread::yield();
+        }
+    }
+    for (std::thread &setter : setters) {
+        setter.join();
+    }
+
+    CHECK_EQ(tornReads, 0);
+    CHECK_EQ(backwards, 0);
+    CHECK_EQ(lastValue, static_cast<uint32_t>(kSetterThreads * kUpdatesPerSetter));
+    CHECK_GT(reads, 1);
+}
+
+HOST_TEST(DspParameters, setterStalledMidWrite_callbackDoesNotWait) {
+    // 设置线程在写入锁内、写到一半时停住kStallMs，回调在此期间仍按原来的节奏拿到完整的旧快照
+    const int kStallMs = 50;
+    TripleBuffer<DspParameters> buffer;
+    DspParameters initial;
+    fillParameters(initial, 1);
+    buffer.reset(initial);
+
+    std::mutex writeMutex;
+    DspParameters state = initial;
+    std::atomic<bool> stalled(false);
+    std::thread setter([&] {
+        std::lock_guard<std::mutex> lock(writeMutex);
+        DspParameters &pending = buffer.writeBuffer();
+        pending = state;
+        pending.inputVolume = 2.0f;
+        pending.equalizerGainsDb[0] = 2.0f;
+        stalled = true;
+        std::this_thread::sleep_for(std::chrono::milliseconds(kStallMs));
+        fillParameters(state, 2);
+        pending = state;
+        buffer.publish();
+    });
+    while (!stalled.load()) {
+        std::this_thread::yield();
+    }
+
+    double worstUs = 0.0;
+    int64_t tornReads = 0;
+    int64_t oldSnapshots = 0;
+    uint32_t lastValue = 1;
+    Clock::time_point end = Clock::now() + std::chrono::milliseconds(kStallMs * 2);
+    while (Clock::now() < end) {
+        Clock::time_point start = Clock::now();
+        const DspParameters &params = buffer.acquire();
+        bool consistent = isConsistent(params);
+        worstUs = std::max(worstUs, elapsedUs(start));
+        tornReads += consistent ? 0 : 1;
+        oldSnapshots += params.equalizerGeneration == 1 ? 1 : 0;
+        lastValue = params.equalizerGeneration;
+        std::this_thread::sleep_for(std::chrono::microseconds(500));
+    }
+    setter.join();
+
+    printf("    写入端停住%dms期间：最长一次取参数 %.1f us，旧快照 %lld 次\n",
+           kStallMs, worstUs, static_cast<long long>(oldSnapshots));
+    CHECK_EQ(tornReads, 0);
+    CHECK_GT(oldSnapshots, 0);
+    CHECK_EQ(lastValue, 2);
+    // 远小于写入端持有锁的时间：回调没有等待写入锁
+    CHECK_LT(worstUs, kStallMs * 1000.0 / 10);
+}
+
+HOST_TEST(DspParameters, processorSettersDuringCallbacks_callbackNeverBlocks) {
+    // 多个线程通过AAudioProcessor的公开接口不断修改参数（包括在UI线程上计算系数的均衡器和压缩器），
+    // 同时在测试线程上运行数据回调：回调从不主动让出CPU（即没有等待设置线程持有的锁）。
+    // 回调耗时只打印不检查：单核机器上设置线程抢占回调线程时，耗时包括被抢占的时间
+    fakeaaudio::reset();
+    AAudioProcessor processor;
+    processor.setNoiseReduction(true, 0.5f);
+    processor.setCompressorEnabled(true);
+    CHECK(processor.setupStreams(48000, 1, AAUDIO_FORMAT_PCM_FLOAT, 0, 0));
+    CHECK(processor.start());
+
+    std::atomic<bool> running(true);
+    std::atomic<int64_t> updates(0);
+    std::vector<std::thread> setters;
+    for (int t = 0; t < kSetterThreads; t++) {
+        setters.emplace_back([&, t] {
+            int i = 0;
+            while (running.load()) {
+                switch ((t + i) % 4) {
+                    case 0:
+                        processor.setInputVolume(i % 100);
+                        break;
+                    case 1:
+                        processor.setEqualizerBand(i % 8, i % 31 - 15);
+                        break;
+                    case 2:
+                        processor.setCompressorBand(i % 4, -50.0f + i % 30, 1.0f + i % 5, 5.0f, 80.0f, 3.0f);
+                        break;
+                    default:
+                        processor.setAmplificationFactor(1.0f + i % 20);
+                        break;
+                }
+                updates++;
+                i++;
+                if (i % 16 == 0) {
+                    std::this_thread::yield();
+                }
+            }
+        });
+    }
+
+    const double burstUs = fakeaaudio::kFramesPerBurst * 1e6 / 48000;
+    AAudioStream *stream = fakeaaudio::getOutputStream();
+    std::vector<float> audioData(fakeaaudio::kFramesPerBurst);
+    double worstUs = 0.0;
+    long blockingCallbacks = 0;
+    for (int callback = 0; callback < 2000; callback++) {
+        fakeaaudio::advanceInput(fakeaaudio::kFramesPerBurst);
+        long switchesBefore = voluntaryContextSwitches();
+        Clock::time_point start = Clock::now();
+        AAudioProcessor::dataCallback(stream, &processor, audioData.data(), fakeaaudio::kFramesPerBurst);
+        worstUs = std::max(worstUs, elapsedUs(start));
+        blockingCallbacks += voluntaryContextSwitches() != switchesBefore ? 1 : 0;
+        // 与真实的音频线程一样在回调之间睡眠，被唤醒时可能恰好打断持有写入锁的设置线程
+        std::this_thread::sleep_for(std::chrono::microseconds(100));
+    }
+    running = false;
+    for (std::thread &setter : setters) {
+        setter.join();
+    }
+    processor.cleanup();
+
+    printf("    %lld 次参数修改期间：最长一次回调 %.1f us（突发 %.0f us），主动让出CPU的回调 %ld 次\n",
+           static_cast<long long>(updates.load()), worstUs, burstUs, blockingCallbacks);
+    CHECK_GT(updates.load(), 100);
+    CHECK_EQ(blockingCallbacks, 0);
+}
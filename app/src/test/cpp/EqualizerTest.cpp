@@ -0,0 +1,195 @@
+#include "HostTest.h"
+
+#include "Biquad.h"
+#include "Equalizer.h"
+
+#include <algorithm>
+#include <cmath>
+#include <cstdint>
+#include <random>
+#include <vector>
+
+// 均衡器各频段在8个中心频率处的响应：按设计用biquad::magnitudeDb计算，
+// 再用Equalizer::process处理正弦信号实测，二者都应与滑块值一致（峰值滤波器为全增益，搁架滤波器为一半增益）
+namespace {
+
+const int32_t kSampleRates[] = {44100, 48000};
+const int kSliderValues[] = {-15, -9, -3, 3, 9, 15};
+const int32_t kBlockFrames = 192;
+
+bool isShelf(int band) {
+    return band == 0 || band == kNumEqualizerBands - 1;
+}
+
+// 中心频率处应有的增益：搁架滤波器在转折频率处为一半
+double expectedCentreGainDb(int band, int gainDb) {
+    return isShelf(band) ? gainDb * 0.5 : gainDb;
+}
+
+// 用Equalizer按块处理正弦信号，跳过起始瞬态后返回输出与输入的有效值之比（dB）
+double measureGainDb(const BiquadCoefficients *coeffs, uint32_t activeMask, int32_t sampleRate, double frequency) {
+    Equalizer equalizer;
+    const int32_t settleFrames = sampleRate / 4;
+    const int32_t measureFrames = sampleRate / 2;
+    std::vector<float> block(kBlockFrames);
+    double inputEnergy = 0.0;
+    double outputEnergy = 0.0;
+    for (int32_t start = 0; start < settleFrames + measureFrames; start += kBlockFrames) {
+        for (int32_t i = 0; i < kBlockFrames; i++) {
+            block[i] = static_cast<float>(0.1 * std::sin(2.0 * M_PI * frequency * (start + i) / sampleRate));
+        }
+        std::vector<float> input(block);
+        equalizer.process(block.data(), kBlockFrames, coeffs, activeMask, 1, 0);
+        if (start >= settleFrames) {
+            for (int32_t i = 0; i < kBlockFrames; i++) {
+                inputEnergy += static_cast<double>(input[i]) * input[i];
+                outputEnergy += static_cast<double>(block[i]) * block[i];
+            }
+        }
+    }
+    return 10.0 * std::log10(outputEnergy / inputEnergy);
+}
+
+} // namespace
+
+HOST_TEST(Equalizer, bandFrequencies_areHearingTestFrequencies) {
+    const float expected[kNumEqualizerBands] = {250.0f, 500.0f, 1000.0f, 2000.0f, 3000.0f, 4000.0f, 6000.0f, 8000.0f};
+    for (int band = 0; band < kNumEqualizerBands; band++) {
+        CHECK_EQ(Equalizer::kBandFrequencies[band], expected[band]);
+    }
+}
+
+HOST_TEST(Equalizer, designBand_centreResponseMatchesSlider) {
+    for (int32_t sampleRate : kSampleRates) {
+        for (int band = 0; band < kNumEqualizerBands; band++) {
+            const double frequency = Equalizer::kBandFrequencies[band];
+            for (int gain : kSliderValues) {
+                BiquadCoefficients coeffs = Equalizer::designBand(band, sampleRate, static_cast<float>(gain));
+                CHECK_NEAR(biquad::magnitudeDb(coeffs, sampleRate, frequency), expectedCentreGainDb(band, gain), 0.01);
+            }
+        }
+    }
+}
+
+HOST_TEST(Equalizer, shelves_reachSliderValueOutsideTheirCorner) {
+    for (int32_t sampleRate : kSampleRates) {
+        for (int gain : kSliderValues) {
+            BiquadCoefficients low = Equalizer::designBand(0, sampleRate, static_cast<float>(gain));
+            BiquadCoefficients high = Equalizer::designBand(kNumEqualizerBands - 1, sampleRate, static_cast<float>(gain));
+            CHECK_NEAR(biquad::magnitudeDb(low, sampleRate, 20.0), gain, 0.1);
+            CHECK_NEAR(biquad::magnitudeDb(low, sampleRate, 8000.0), 0.0, 0.1);
+            CHECK_NEAR(biquad::magnitudeDb(high, sampleRate, 20000.0), gain, 0.5);
+            CHECK_NEAR(biquad::magnitudeDb(high, sampleRate, 250.0), 0.0, 0.1);
+        }
+    }
+}
+
+HOST_TEST(Equalizer, zeroGain_isIdentity) {
+    for (int band = 0; band < kNumEqualizerBands; band++) {
+        BiquadCoefficients coeffs = Equalizer::designBand(band, 48000, 0.0f);
+        CHECK_EQ(coeffs.b0, 1.0f);
+        CHECK_EQ(coeffs.b1, 0.0f);
+        CHECK_EQ(coeffs.b2, 0.0f);
+        CHECK_EQ(coeffs.a1, 0.0f);
+        CHECK_EQ(coeffs.a2, 0.0f);
+    }
+}
+
+HOST_TEST(Equalizer, singleBand_measuredToneGainMatchesSlider) {
+    // 每次只启用一个频段，在其中心频率处用正弦信号实测
+    BiquadCoefficients coeffs[kNumEqualizerBands];
+    for (int32_t sampleRate : kSampleRates) {
+        for (int band = 0; band < kNumEqualizerBands; band++) {
+            for (int gain : {-15, 6, 15}) {
+                for (int other = 0; other < kNumEqualizerBands; other++) {
+                    coeffs[other] = BiquadCoefficients::identity();
+                }
+                coeffs[band] = Equalizer::designBand(band, sampleRate, static_cast<float>(gain));
+                double measured = measureGainDb(coeffs, 1u << band, sampleRate, Equalizer::kBandFrequencies[band]);
+                CHECK_NEAR(measured, expectedCentreGainDb(band, gain), 0.05);
+            }
+        }
+    }
+}
+
+HOST_TEST(Equalizer, fullCascade_measuredResponseMatchesMagnitudeDb) {
+    // 8个频段同时启用（其中一个为0dB而被跳过），每个中心频率处的实测响应等于各段设计响应之和
+    const int gains[kNumEqualizerBands] = {6, -3, 12, 0, -15, 9, 4, -8};
+    for (int32_t sampleRate : kSampleRates) {
+        BiquadCoefficients coeffs[kNumEqualizerBands];
+        uint32_t activeMask = 0;
+        for (int band = 0; band < kNumEqualizerBands; band++) {
+            coeffs[band] = Equalizer::designBand(band, sampleRate, static_cast<float>(gains[band]));
+            if (gains[band] != 0) {
+                activeMask |= 1u << band;
+            }
+        }
+        for (int band = 0; band < kNumEqualizerBands; band++) {
+            const double frequency = Equalizer::kBandFrequencies[band];
+            double designed = 0.0;
+            for (int stage = 0; stage < kNumEqualizerBands; stage++) {
+                designed += biquad::magnitudeDb(coeffs[stage], sampleRate, frequency);
+            }
+            CHECK_NEAR(measureGainDb(coeffs, activeMask, sampleRate, frequency), designed, 0.05);
+        }
+    }
+}
+
+HOST_TEST(Equalizer, coefficientChangesMidFade_stepBounded) {
+    // 1kHz正弦经过均衡器，滑块在随机时刻（多数在上一次淡化途中）改为随机值，块长不一使淡化在块中间结束。
+    // 相邻样本差不超过稳态正弦的最大斜率（按所有用到的系数组中1kHz处的最大增益计算）再留一些余量；
+    // 不淡化（rampFrames为0）时系数跳变产生的咔嗒声则明显超出
+    const int32_t sampleRate = 48000;
+    const double frequency = 1000.0;
+    const double amplitude = 0.05;
+    for (int32_t rampFrames : {960, 0}) {
+        std::mt19937 rng(11);
+        std::uniform_int_distribution<int32_t> blockFrames(1, 300);
+        std::uniform_int_distribution<int> gain(-15, 15);
+        std::uniform_real_distribution<float> chance(0.0f, 1.0f);
+        Equalizer equalizer;
+        BiquadCoefficients coeffs[kNumEqualizerBands];
+        for (int band = 0; band < kNumEqualizerBands; band++) {
+            coeffs[band] = BiquadCoefficients::identity();
+        }
+        uint32_t activeMask = 0;
+        uint32_t generation = 0;
+        double maxGainDb = 0.0;
+        std::vector<float> output;
+        int64_t frame = 0;
+        for (int block = 0; block < 1500; block++) {
+            if (block > 20 && chance(rng) < 0.2f) {
+                activeMask = 0;
+                double gainDb = 0.0;
+                for (int band = 0; band < kNumEqualizerBands; band++) {
+                    coeffs[band] = Equalizer::designBand(band, sampleRate, static_cast<float>(gain(rng)));
+                    activeMask |= 1u << band;
+                    gainDb += biquad::magnitudeDb(coeffs[band], sampleRate, frequency);
+                }
+                maxGainDb = std::max(maxGainDb, gainDb);
+                generation++;
+            }
+            std::vector<float> buffer(blockFrames(rng));
+            for (float &sample : buffer) {
+                sample = static_cast<float>(amplitude * std::sin(2.0 * M_PI * frequency * frame++ / sampleRate));
+            }
+            equalizer.process(buffer.data(), static_cast<int32_t>(buffer.size()), coeffs, activeMask, generation,
+                              rampFrames);
+            output.insert(output.end(), buffer.begin(), buffer.end());
+        }
+        double step = 0.0;
+        for (size_t n = 1; n < output.size(); n++) {
+            step = std::max(step, std::fabs(static_cast<double>(output[n]) - output[n - 1]));
+        }
+        const double steadyStep = amplitude * std::pow(10.0, maxGainDb / 20.0) *
+                                  2.0 * std::sin(M_PI * frequency / sampleRate);
+        printf("    rampFrames %d：%u 次改变，最大相邻样本差为稳态正弦的 %.2f 倍\n",
+               rampFrames, generation, step / steadyStep);
+        CHECK_GT(generation, 200u);
+        if (rampFrames > 0) {
+            CHECK_LE(step, steadyStep * 1.5);
+        } else {
+            CHECK_GT(step, steadyStep * 4.0);
+        }
+    }
+}
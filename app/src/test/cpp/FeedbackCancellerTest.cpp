@@ -0,0 +1,193 @@
+#include "HostTest.h"
+#include "FakeAAudio.h"
+
+#include "AAudioProcessor.h"
+#include "FeedbackCanceller.h"
+#include "Limiter.h"
+
+#include <algorithm>
+#include <cmath>
+#include <complex>
+#include <cstdint>
+#include <random>
+#include <vector>
+
+// 闭环仿真：扬声器输出经合成的声反馈路径（固定延迟 + 指数衰减的随机冲激响应，峰值增益-10dB）回到麦克风，
+// 与外部声音相加后经过声反馈消除、放大和限幅再送往扬声器，与AAudioProcessor的处理顺序相同。
+// 放大倍数在前10秒内从0dB渐变到目标值，最后5秒输出功率明显高于“外部声音×放大倍数”即视为啸叫（不稳定）。
+// 没有声反馈消除时，环路增益超过0dB（放大超过10dB）即不稳定；消除器应能在此之上再提供至少24dB的余量
+namespace {
+
+const int32_t kSampleRate = 48000;
+const int32_t kCallbackFrames = 96;
+// 声学路径：输出写入到被麦克风采集的延迟，以及冲激响应长度
+const int32_t kPathDelayFrames = 300;
+const int32_t kPathTaps = 400;
+const double kPathPeakGainDb = -10.0;
+const int32_t kSimulationSeconds = 20;
+const int32_t kRampSeconds = 10;
+const int32_t kMeasureSeconds = 5;
+// 输出比预期高出这么多即视为不稳定
+const double kUnstableExcessDb = 3.0;
+const int32_t kHistorySize = 1 << 16;
+
+double peakGainDb(const std::vector<float> &path) {
+    const int32_t fftSize = 4096;
+    double peak = 0.0;
+    for (int32_t bin = 0; bin < fftSize / 2; bin++) {
+        std::complex<double> response = 0.0;
+        for (int32_t tap = 0; tap < kPathTaps; tap++) {
+            response += static_cast<double>(path[tap]) *
+                        std::polar(1.0, -2.0 * M_PI * bin * (tap + kPathDelayFrames) / fftSize);
+        }
+        peak = std::max(peak, std::abs(response));
+    }
+    return 20.0 * std::log10(peak);
+}
+
+std::vector<float> feedbackPath() {
+    std::mt19937 rng(7);
+    std::normal_distribution<float> gaussian(0.0f, 1.0f);
+    std::vector<float> path(kPathTaps);
+    for (int32_t tap = 0; tap < kPathTaps; tap++) {
+        path[tap] = gaussian(rng) * std::exp(-tap / 60.0f);
+    }
+    const float scale = static_cast<float>(std::pow(10.0, (kPathPeakGainDb - peakGainDb(path)) / 20.0));
+    for (float &tap : path) {
+        tap *= scale;
+    }
+    return path;
+}
+
+struct LoopResult {
+    double excessDb;            // 最后kMeasureSeconds秒输出功率相对“外部声音×放大倍数”的比值
+    float pathGainDb;
+    float erleDb;
+};
+
+LoopResult simulateLoop(const std::vector<float> &path, double gainDb, bool cancel) {
+    FeedbackCanceller canceller;
+    CHECK(canceller.configure(kCallbackFrames, kCallbackFrames));
+    Limiter limiter;
+    limiter.configure(kSampleRate);
+
+    // 外部声音：一阶自回归的有色噪声，电平随放大倍数降低，使期望输出电平不变
+    std::mt19937 rng(1);
+    std::normal_distribution<float> gaussian(0.0f, 1.0f);
+    const double targetGain = std::pow(10.0, gainDb / 20.0);
+    const float pole = 0.9f;
+    const float innovation = static_cast<float>(0.02 / targetGain * std::sqrt(1.0 - pole * pole));
+    float source = 0.0f;
+
+    std::vector<float> speakerHistory(kHistorySize, 0.0f);
+    std::vector<float> buffer(kCallbackFrames);
+    const int32_t totalCallbacks = kSimulationSeconds * kSampleRate / kCallbackFrames;
+    const int32_t rampCallbacks = kRampSeconds * kSampleRate / kCallbackFrames;
+    const int32_t measureStart = totalCallbacks - kMeasureSeconds * kSampleRate / kCallbackFrames;
+    double outputEnergy = 0.0;
+    double expectedEnergy = 0.0;
+    int64_t frame = 0;
+    for (int32_t callback = 0; callback < totalCallbacks; callback++) {
+        // 麦克风 = 外部声音 + 扬声器输出经反馈路径
+        for (int32_t i = 0; i < kCallbackFrames; i++) {
+            source = pole * source + innovation * gaussian(rng);
+            double feedback = 0.0;
+            for (int32_t tap = 0; tap < kPathTaps; tap++) {
+                feedback += path[tap] * speakerHistory[(frame + i - kPathDelayFrames - tap) & (kHistorySize - 1)];
+            }
+            buffer[i] = source + static_cast<float>(feedback);
+            if (callback >= measureStart) {
+                expectedEnergy += source * source * targetGain * targetGain;
+            }
+        }
+
+        if (cancel) {
+            canceller.process(buffer.data(), kCallbackFrames);
+        }
+        const double ramp = std::min(1.0, static_cast<double>(callback) / rampCallbacks);
+        const float gain = static_cast<float>(std::pow(10.0, gainDb * ramp / 20.0));
+        for (float &sample : buffer) {
+            sample *= gain;
+        }
+        limiter.process(buffer.data(), kCallbackFrames);
+        // 参考信号即送往扬声器的信号
+        if (cancel) {
+            canceller.pushReference(buffer.data(), kCallbackFrames);
+        }
+
+        for (int32_t i = 0; i < kCallbackFrames; i++) {
+            speakerHistory[(frame + i) & (kHistorySize - 1)] = buffer[i];
+            if (callback >= measureStart) {
+                outputEnergy += static_cast<double>(buffer[i]) * buffer[i];
+            }
+        }
+        frame += kCallbackFrames;
+    }
+    return {10.0 * std::log10(outputEnergy / expectedEnergy), canceller.getPathGainDb(), canceller.getErleDb()};
+}
+
+// 以4dB为步长提高放大倍数，返回最后一个稳定的值
+double maxStableGainDb(const std::vector<float> &path, bool cancel) {
+    double stable = -1.0;
+    for (double gainDb = 0.0; gainDb <= 72.0; gainDb += 4.0) {
+        LoopResult result = simulateLoop(path, gainDb, cancel);
+        if (result.excessDb >= kUnstableExcessDb) {
+            break;
+        }
+        stable = gainDb;
+    }
+    return stable;
+}
+
+} // namespace
+
+HOST_TEST(FeedbackCanceller, withoutCanceller_unstableOnceLoopGainExceedsUnity) {
+    const std::vector<float> path = feedbackPath();
+    CHECK_NEAR(peakGainDb(path), kPathPeakGainDb, 0.01);
+    CHECK_LT(simulateLoop(path, 6.0, false).excessDb, kUnstableExcessDb);
+    CHECK_GE(simulateLoop(path, 14.0, false).excessDb, kUnstableExcessDb);
+}
+
+HOST_TEST(FeedbackCanceller, closedLoop_addsStableGain) {
+    const std::vector<float> path = feedbackPath();
+    const double withoutDb = maxStableGainDb(path, false);
+    const double withDb = maxStableGainDb(path, true);
+    printf("    最大稳定放大倍数：无消除 %.0f dB，有消除 %.0f dB（增加 %.0f dB）\n",
+           withoutDb, withDb, withDb - withoutDb);
+    CHECK_GE(withDb - withoutDb, 24.0);
+}
+
+HOST_TEST(FeedbackCanceller, closedLoop_estimatesPathAndCancelsFeedback) {
+    // 放大倍数远高于无消除时的极限：路径增益估计接近真实值，回声损耗增强足够大
+    const std::vector<float> path = feedbackPath();
+    LoopResult result = simulateLoop(path, 36.0, true);
+    printf("    36 dB：输出超出 %.1f dB，路径增益估计 %.1f dB，ERLE %.1f dB\n",
+           result.excessDb, result.pathGainDb, result.erleDb);
+    CHECK_LT(result.excessDb, 1.0);
+    CHECK_NEAR(result.pathGainDb, kPathPeakGainDb, 2.0);
+    CHECK_GE(result.erleDb, 12.0);
+}
+
+HOST_TEST(FeedbackCanceller, bulkDelayShorterThanCallback_rejected) {
+    // 回调比整体延迟长时，块内最后的参考样本还没有写入：拒绝配置，不对照缓冲区中的旧数据自适应
+    FeedbackCanceller canceller;
+    CHECK(!canceller.configure(kCallbackFrames - 1, kCallbackFrames));
+    CHECK(!canceller.configure(kCallbackFrames, 0));
+    std::vector<float> buffer(kCallbackFrames, 0.5f);
+    canceller.process(buffer.data(), kCallbackFrames);
+    CHECK_EQ(buffer.back(), 0.5f);
+    CHECK(canceller.configure(kCallbackFrames, kCallbackFrames));
+    CHECK(canceller.configure(kCallbackFrames * 2, kCallbackFrames));
+}
+
+HOST_TEST(FeedbackCanceller, processorOutputCallback_pinnedToOneBurst) {
+    // AAudioProcessor以一个突发作为整体延迟，输出流的回调帧数必须固定为一个突发
+    fakeaaudio::reset();
+    AAudioProcessor processor;
+    CHECK(processor.setupStreams(48000, 1, AAUDIO_FORMAT_PCM_FLOAT, 0, 0));
+    AAudioStream *stream = fakeaaudio::getOutputStream();
+    CHECK_EQ(AAudioStream_getFramesPerDataCallback(stream), AAudioStream_getFramesPerBurst(stream));
+    CHECK_EQ(fakeaaudio::getOpenStreamCount(), 2);
+    processor.cleanup();
+    CHECK_EQ(fakeaaudio::getOpenStreamCount(), 0);
+}
@@ -0,0 +1,280 @@
+#include "HostTest.h"
+
+#include "FullDuplexPump.h"
+
+#include <algorithm>
+#include <cstdint>
+#include <vector>
+
+// FullDuplexPump的状态转换：模拟的输入流与输出回调成对运行，输入的第n帧各声道的值都是n，
+// 由此检查启动时丢弃了哪些积压、积累水位后从哪一帧开始输出、欠载和过载时丢弃或补零了多少
+namespace {
+
+const int32_t kFrames = 96;
+const int32_t kTargetFill = 96;
+const int32_t kMaxExcess = 192;
+const int32_t kDrainCallbacks = 10;       // 与FullDuplexPump::kDrainCallbacks相同
+
+class SimulatedInput : public AudioInputSource {
+public:
+    explicit SimulatedInput(int32_t channelCount)
+        : mChannelCount(channelCount) {
+    }
+
+    int32_t readInput(float *buffer, int32_t numFrames) override {
+        if (mError != 0) {
+            return mError;
+        }
+        int32_t frames = static_cast<int32_t>(std::min<int64_t>(mWritten - mRead, numFrames));
+        for (int32_t frame = 0; frame < frames; frame++) {
+            for (int32_t ch = 0; ch < mChannelCount; ch++) {
+                buffer[frame * mChannelCount + ch] = static_cast<float>(mRead + frame);
+            }
+        }
+        mRead += frames;
+        return frames;
+    }
+
+    int32_t availableInputFrames() override {
+        return mFillKnown ? static_cast<int32_t>(mWritten - mRead) : -1;
+    }
+
+    // 输入设备采集了frames帧
+    void capture(int32_t frames) { mWritten += frames; }
+
+    int64_t getWritten() const { return mWritten; }
+    int64_t getRead() const { return mRead; }
+    int32_t getBacklog() const { return static_cast<int32_t>(mWritten - mRead); }
+    void setFillKnown(bool known) { mFillKnown = known; }
+    void setError(int32_t error) { mError = error; }
+
+private:
+    const int32_t mChannelCount;
+    int64_t mWritten = 0;
+    int64_t mRead = 0;
+    bool mFillKnown = true;
+    int32_t mError = 0;
+};
+
+// 一个输出回调：输入先采集captureFrames帧，再拉取kFrames帧
+struct Callback {
+    int32_t result;
+    bool silent;
+    float first;        // 第一帧的值（静音时为0）
+    float last;         // 最后一帧的值
+    bool contiguous;    // 各帧依次加1且各声道相同
+};
+
+Callback runCallback(FullDuplexPump &pump, SimulatedInput &input, std::vector<float> &buffer,
+                     int32_t channelCount, int32_t captureFrames = kFrames) {
+    input.capture(captureFrames);
+    std::fill(buffer.begin(), buffer.end(), -1.0f);
+    Callback callback;
+    callback.result = pump.pull(input, buffer.data(), kFrames);
+    callback.silent = std::all_of(buffer.begin(), buffer.begin() + kFrames * channelCount,
+                                  [](float v) { return v == 0.0f; });
+    callback.first = buffer[0];
+    callback.last = buffer[(kFrames - 1) * channelCount];
+    callback.contiguous = true;
+    for (int32_t frame = 0; frame < kFrames; frame++) {
+        for (int32_t ch = 0; ch < channelCount; ch++) {
+            callback.contiguous = callback.contiguous &&
+                                  buffer[frame * channelCount + ch] == callback.first + frame;
+        }
+    }
+    return callback;
+}
+
+// 从启动运行到进入正常运行，返回静音的回调数
+int32_t runUntilRunning(FullDuplexPump &pump, SimulatedInput &input, std::vector<float> &buffer,
+                        int32_t channelCount) {
+    int32_t silentCallbacks = 0;
+    for (int32_t i = 0; i < 100; i++) {
+        Callback callback = runCallback(pump, input, buffer, channelCount);
+        if (callback.result == kFrames) {
+            return silentCallbacks;
+        }
+        silentCallbacks++;
+    }
+    return silentCallbacks;
+}
+
+} // namespace
+
+HOST_TEST(FullDuplexPump, startup_drainsBacklogThenPrimesToTarget) {
+    SimulatedInput input(1);
+    FullDuplexPump pump;
+    pump.configure(1, kTargetFill, kMaxExcess);
+    std::vector<float> buffer(kFrames);
+
+    // 启动前输入已积压5000帧（例如输入流先启动）
+    input.capture(5000);
+
+    // 清空阶段：kDrainCallbacks个回调都输出静音，每次把积压读空
+    for (int32_t i = 0; i < kDrainCallbacks; i++) {
+        Callback callback = runCallback(pump, input, buffer, 1);
+        CHECK_EQ(callback.result, 0);
+        CHECK(callback.silent);
+        CHECK_EQ(input.getBacklog(), 0);
+        CHECK_EQ(pump.getFillFrames(), -1);
+    }
+
+    // 积累阶段：水位达到一个回调加目标水位之前继续静音，不读取输入
+    const int64_t drainedUpTo = input.getRead();
+    Callback priming = runCallback(pump, input, buffer, 1);
+    CHECK_EQ(priming.result, 0);
+    CHECK(priming.silent);
+    CHECK_EQ(input.getRead(), drainedUpTo);
+
+    // 第二个积累回调后水位达到kFrames + kTargetFill，开始输出清空之后采集的第一帧
+    Callback running = runCallback(pump, input, buffer, 1);
+    CHECK_EQ(running.result, kFrames);
+    CHECK(running.contiguous);
+    CHECK_EQ(running.first, drainedUpTo);
+    // 开始运行的这次回调水位不连续，不报告
+    CHECK_EQ(pump.getFillFrames(), -1);
+
+    // 之后每个回调输出连续的数据，水位保持在目标值
+    float expected = running.last + 1;
+    for (int32_t i = 0; i < 1000; i++) {
+        Callback callback = runCallback(pump, input, buffer, 1);
+        CHECK_EQ(callback.result, kFrames);
+        CHECK_EQ(callback.first, expected);
+        CHECK(callback.contiguous);
+        CHECK_EQ(pump.getFillFrames(), kTargetFill);
+        expected = callback.last + 1;
+    }
+    CHECK_EQ(pump.getUnderrunCount(), 0);
+    CHECK_EQ(pump.getOverrunCount(), 0);
+}
+
+HOST_TEST(FullDuplexPump, inputStall_underrunReprimesWithoutLosingData) {
+    SimulatedInput input(1);
+    FullDuplexPump pump;
+    pump.configure(1, kTargetFill, kMaxExcess);
+    std::vector<float> buffer(kFrames);
+    runUntilRunning(pump, input, buffer, 1);
+    Callback last = runCallback(pump, input, buffer, 1);
+
+    // 输入停顿：水位（目标值）还够一个回调，之后不足一个回调时欠载
+    Callback fromBacklog = runCallback(pump, input, buffer, 1, 0);
+    CHECK_EQ(fromBacklog.result, kFrames);
+    CHECK_EQ(fromBacklog.first, last.last + 1);
+    CHECK_EQ(pump.getFillFrames(), 0);
+    Callback underrun = runCallback(pump, input, buffer, 1, 0);
+    CHECK_EQ(underrun.result, 0);
+    CHECK(underrun.silent);
+    CHECK_EQ(pump.getUnderrunCount(), 1);
+    CHECK_EQ(pump.getFillFrames(), -1);
+
+    // 输入恢复后重新积累水位（只计一次欠载），再从停顿前的下一帧继续，没有丢弃数据
+    int32_t silent = runUntilRunning(pump, input, buffer, 1);
+    CHECK_GE(silent, 1);
+    CHECK_EQ(buffer[0], fromBacklog.last + 1);
+    Callback resumed = runCallback(pump, input, buffer, 1);
+    CHECK_EQ(resumed.first, fromBacklog.last + 1 + kFrames);
+    CHECK_EQ(pump.getFillFrames(), kTargetFill);
+    CHECK_EQ(pump.getUnderrunCount(), 1);
+    CHECK_EQ(pump.getOverrunCount(), 0);
+}
+
+HOST_TEST(FullDuplexPump, inputBurst_overrunDropsBacklogToTarget) {
+    SimulatedInput input(1);
+    FullDuplexPump pump;
+    pump.configure(1, kTargetFill, kMaxExcess);
+    std::vector<float> buffer(kFrames);
+    runUntilRunning(pump, input, buffer, 1);
+    Callback before = runCallback(pump, input, buffer, 1);
+
+    // 积压恰好达到允许的上限时不丢弃
+    Callback atLimit = runCallback(pump, input, buffer, 1, kFrames + kMaxExcess);
+    CHECK_EQ(atLimit.first, before.last + 1);
+    CHECK_EQ(pump.getFillFrames(), kTargetFill + kMaxExcess);
+    CHECK_EQ(pump.getOverrunCount(), 0);
+
+    // 再多一帧即过载：丢弃最旧的多余部分，读取后回到目标水位，输出最新的数据
+    const int64_t written = input.getWritten() + kFrames + 1;
+    Callback overrun = runCallback(pump, input, buffer, 1, kFrames + 1);
+    CHECK_EQ(overrun.result, kFrames);
+    CHECK(overrun.contiguous);
+    CHECK_EQ(pump.getOverrunCount(), 1);
+    CHECK_EQ(overrun.first, written - kTargetFill - kFrames);
+    CHECK_EQ(input.getBacklog(), kTargetFill);
+    CHECK_EQ(pump.getFillFrames(), -1);
+
+    // 下一个回调水位连续，恢复报告
+    Callback after = runCallback(pump, input, buffer, 1);
+    CHECK_EQ(after.first, overrun.last + 1);
+    CHECK_EQ(pump.getFillFrames(), kTargetFill);
+    CHECK_EQ(pump.getUnderrunCount(), 0);
+}
+
+HOST_TEST(FullDuplexPump, stereoInput_silenceAndDataCoverAllChannels) {
+    SimulatedInput input(2);
+    FullDuplexPump pump;
+    pump.configure(2, kTargetFill, kMaxExcess);
+    std::vector<float> buffer(kFrames * 2);
+    input.capture(1000);
+    Callback draining = runCallback(pump, input, buffer, 2);
+    CHECK(draining.silent);
+    runUntilRunning(pump, input, buffer, 2);
+    Callback running = runCallback(pump, input, buffer, 2);
+    CHECK_EQ(running.result, kFrames);
+    CHECK(running.contiguous);
+    Callback lowInput = runCallback(pump, input, buffer, 2, kFrames / 2);
+    CHECK_EQ(lowInput.result, kFrames);
+    CHECK(lowInput.contiguous);
+    Callback underrun = runCallback(pump, input, buffer, 2, 0);
+    CHECK_EQ(underrun.result, 0);
+    CHECK(underrun.silent);
+}
+
+HOST_TEST(FullDuplexPump, unknownFill_startsImmediatelyAndCountsShortReads) {
+    // 水位未知（availableInputFrames返回负值）时：清空阶段一直读到没有数据，之后直接运行，
+    // 读到的帧不足时补零并计为欠载
+    SimulatedInput input(1);
+    input.setFillKnown(false);
+    FullDuplexPump pump;
+    pump.configure(1, kTargetFill, kMaxExcess);
+    std::vector<float> buffer(kFrames);
+    input.capture(5000);
+    for (int32_t i = 0; i < kDrainCallbacks; i++) {
+        Callback callback = runCallback(pump, input, buffer, 1);
+        CHECK(callback.silent);
+        CHECK_EQ(input.getBacklog(), 0);
+    }
+    Callback running = runCallback(pump, input, buffer, 1);
+    CHECK_EQ(running.result, kFrames);
+    CHECK(running.contiguous);
+    CHECK_EQ(pump.getFillFrames(), -1);
+
+    Callback shortRead = runCallback(pump, input, buffer, 1, kFrames / 4);
+    CHECK_EQ(shortRead.result, kFrames / 4);
+    CHECK_EQ(buffer[kFrames / 4 - 1], running.last + kFrames / 4);
+    CHECK_EQ(buffer[kFrames / 4], 0.0f);
+    CHECK_EQ(buffer[kFrames - 1], 0.0f);
+    CHECK_EQ(pump.getUnderrunCount(), 1);
+}
+
+HOST_TEST(FullDuplexPump, readError_isReturnedWithSilence) {
+    SimulatedInput input(1);
+    FullDuplexPump pump;
+    pump.configure(1, kTargetFill, kMaxExcess);
+    std::vector<float> buffer(kFrames);
+    runUntilRunning(pump, input, buffer, 1);
+
+    input.setError(-899);
+    Callback failed = runCallback(pump, input, buffer, 1);
+    CHECK_EQ(failed.result, -899);
+    CHECK(failed.silent);
+    CHECK_EQ(pump.getFillFrames(), -1);
+
+    // 错误消失后继续运行，reset回到清空状态并清零统计
+    input.setError(0);
+    Callback recovered = runCallback(pump, input, buffer, 1);
+    CHECK_EQ(recovered.result, kFrames);
+    pump.reset();
+    CHECK_EQ(runCallback(pump, input, buffer, 1).result, 0);
+    CHECK_EQ(pump.getUnderrunCount(), 0);
+    CHECK_EQ(pump.getOverrunCount(), 0);
+}
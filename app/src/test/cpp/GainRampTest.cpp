@@ -0,0 +1,105 @@
+#include "HostTest.h"
+
+#include "DspKernels.h"
+#include "GainRamp.h"
+
+#include <algorithm>
+#include <cmath>
+#include <cstdint>
+#include <random>
+#include <vector>
+
+// 增益渐变的连续性：输入为直流1时输出即增益轨迹。目标在渐变途中改变、块长不一使渐变在块中间结束，
+// 相邻样本的增益差都不超过（目标范围 / rampFrames），渐变结束后精确等于目标
+namespace {
+
+const int32_t kRampFrames = 960;
+const float kMinTarget = 0.1f;
+const float kMaxTarget = 50.0f;
+
+struct Trajectory {
+    std::vector<float> gains;
+    std::vector<float> targets;         // 每个样本所在块的目标
+};
+
+// 随机块长（1到300帧）、每块以probability的概率换一个随机目标
+Trajectory runRandomTargets(const DspKernels &kernels, uint32_t seed, int32_t blocks, float probability,
+                            int32_t rampFrames) {
+    std::mt19937 rng(seed);
+    std::uniform_int_distribution<int32_t> blockFrames(1, 300);
+    std::uniform_real_distribution<float> target(kMinTarget, kMaxTarget);
+    std::uniform_real_distribution<float> chance(0.0f, 1.0f);
+    GainRamp ramp;
+    Trajectory trajectory;
+    float current = 1.0f;
+    for (int32_t block = 0; block < blocks; block++) {
+        if (chance(rng) < probability) {
+            current = target(rng);
+        }
+        std::vector<float> buffer(blockFrames(rng), 1.0f);
+        ramp.process(&kernels, buffer.data(), static_cast<int32_t>(buffer.size()), current, rampFrames);
+        trajectory.gains.insert(trajectory.gains.end(), buffer.begin(), buffer.end());
+        trajectory.targets.insert(trajectory.targets.end(), buffer.size(), current);
+    }
+    return trajectory;
+}
+
+double maxStep(const std::vector<float> &signal) {
+    double step = 0.0;
+    for (size_t n = 1; n < signal.size(); n++) {
+        step = std::max(step, std::fabs(static_cast<double>(signal[n]) - signal[n - 1]));
+    }
+    return step;
+}
+
+} // namespace
+
+HOST_TEST(GainRamp, targetsChangedMidRamp_stepBounded) {
+    // 平均约每3块换一次目标，大多数改变发生在上一次渐变途中
+    const double bound = (kMaxTarget - kMinTarget) / kRampFrames;
+    const DspKernels *kernels[8];
+    int count = dsp::availableKernels(kernels, 8);
+    for (int k = 0; k < count; k++) {
+        Trajectory trajectory = runRandomTargets(*kernels[k], 1, 2000, 0.3f, kRampFrames);
+        double step = maxStep(trajectory.gains);
+        printf("    %s：最大相邻增益差 %.4f（上限 %.4f）\n", kernels[k]->name, step, bound);
+        CHECK_LE(step, bound * 1.001);
+        CHECK_GT(step, bound * 0.1);
+    }
+}
+
+HOST_TEST(GainRamp, rampEndsMidBlock_settlesExactlyOnTarget) {
+    GainRamp ramp;
+    const DspKernels &kernels = dsp::kernels();
+    // 100帧的块，渐变在第10块中间（第960帧）结束
+    std::vector<float> gains;
+    for (int block = 0; block < 12; block++) {
+        std::vector<float> buffer(100, 1.0f);
+        ramp.process(&kernels, buffer.data(), 100, block == 0 ? 1.0f : 4.0f, kRampFrames);
+        gains.insert(gains.end(), buffer.begin(), buffer.end());
+    }
+    // 第一块直接使用目标（未渐变），之后从1线性增长到4
+    CHECK_EQ(gains[99], 1.0f);
+    CHECK_NEAR(gains[100 + kRampFrames / 2 - 1], 2.5f, 1e-4);
+    CHECK_LT(gains[100 + kRampFrames - 2], 4.0f);
+    for (size_t n = 100 + kRampFrames - 1; n < gains.size(); n++) {
+        CHECK_EQ(gains[n], 4.0f);
+    }
+    CHECK_EQ(ramp.getGain(), 4.0f);
+    CHECK_LE(maxStep(gains), 3.0 / kRampFrames * 1.001);
+}
+
+HOST_TEST(GainRamp, everyBlockNewTarget_followsTargetsWithoutJumps) {
+    // 拖动滑块：每块都有新目标，增益连续且不超出目标范围
+    Trajectory trajectory = runRandomTargets(dsp::kernels(), 2, 1000, 1.0f, kRampFrames);
+    CHECK_LE(maxStep(trajectory.gains), (kMaxTarget - kMinTarget) / kRampFrames * 1.001);
+    CHECK_GE(*std::min_element(trajectory.gains.begin(), trajectory.gains.end()), kMinTarget * 0.999f);
+    CHECK_LE(*std::max_element(trajectory.gains.begin(), trajectory.gains.end()), kMaxTarget * 1.001f);
+}
+
+HOST_TEST(GainRamp, zeroRampFrames_jumpsImmediately) {
+    Trajectory trajectory = runRandomTargets(dsp::kernels(), 3, 200, 0.5f, 0);
+    for (size_t n = 0; n < trajectory.gains.size(); n++) {
+        CHECK_EQ(trajectory.gains[n], trajectory.targets[n]);
+    }
+}
@@ -0,0 +1,66 @@
+#ifndef LISTENHELP6_HOSTBENCHMARK_H
+#define LISTENHELP6_HOSTBENCHMARK_H
+
+#include <chrono>
+#include <cstdint>
+
+// 主机上运行的性能测量的最小框架（与HostTest.h相同的注册方式）
+// HOST_BENCHMARK(name) 定义一个测量，自行打印结果；measureNs重复运行一段代码并返回单次耗时。
+// 结果只在同一台机器上互相比较才有意义，因此不作为CTest测试运行
+namespace hostbenchmark {
+
+typedef void (*BenchmarkFunction)();
+
+// 注册一个测量（静态初始化期间调用）
+struct Registrar {
+    Registrar(const char *name, BenchmarkFunction function);
+};
+
+// 防止编译器把结果未被使用的计算优化掉
+void keep(float value);
+
+// 每纳秒的时钟周期数，用于把measureNs的结果换算为周期数：x86上为时间戳计数器（TSC）的频率，
+// 第一次调用时对照steady_clock校准；其他架构没有可在用户态读取的周期计数器，返回0
+double cyclesPerNs();
+
+// 先校准循环次数使每轮约kRoundMs，再运行kRounds轮，返回最快一轮中每次调用的平均纳秒数
+template <typename Body>
+double measureNs(Body body) {
+    typedef std::chrono::steady_clock Clock;
+    const double kRoundMs = 20.0;
+    const int kRounds = 5;
+    int64_t iterations = 1;
+    for (;;) {
+        Clock::time_point start = Clock::now();
+        for (int64_t i = 0; i < iterations; i++) {
+            body();
+        }
+        double ms = std::chrono::duration<double, std::milli>(Clock::now() - start).count();
+        if (ms >= kRoundMs / 4) {
+            iterations = static_cast<int64_t>(iterations * kRoundMs / ms) + 1;
+            break;
+        }
+        iterations *= 4;
+    }
+    double bestNs = 0.0;
+    for (int round = 0; round < kRounds; round++) {
+        Clock::time_point start = Clock::now();
+        for (int64_t i = 0; i < iterations; i++) {
+            body();
+        }
+        double ns = std::chrono::duration<double, std::nano>(Clock::now() - start).count() / iterations;
+        if (round == 0 || ns < bestNs) {
+            bestNs = ns;
+        }
+    }
+    return bestNs;
+}
+
+} // namespace hostbenchmark
+
+#define HOST_BENCHMARK(name) \
+    static void benchmark_##name(); \
+    static hostbenchmark::Registrar benchmark_##name##_registrar(#name, benchmark_##name); \
+    static void benchmark_##name()
+
+#endif //LISTENHELP6_HOSTBENCHMARK_H
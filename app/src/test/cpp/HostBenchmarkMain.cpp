@@ -0,0 +1,75 @@
+#include "HostBenchmark.h"
+
+#include <cstdio>
+#include <cstring>
+#include <thread>
+#include <vector>
+
+#if defined(__x86_64__) || defined(__i386__)
+#include <x86intrin.h>
+#endif
+
+namespace hostbenchmark {
+
+namespace {
+
+struct Benchmark {
+    const char *name;
+    BenchmarkFunction function;
+};
+
+std::vector<Benchmark> &registry() {
+    static std::vector<Benchmark> benchmarks;
+    return benchmarks;
+}
+
+volatile float sSink = 0.0f;
+
+} // namespace
+
+Registrar::Registrar(const char *name, BenchmarkFunction function) {
+    registry().push_back({name, function});
+}
+
+void keep(float value) {
+    sSink = value;
+}
+
+double cyclesPerNs() {
+#if defined(__x86_64__) || defined(__i386__)
+    static const double sCyclesPerNs = [] {
+        typedef std::chrono::steady_clock Clock;
+        Clock::time_point start = Clock::now();
+        uint64_t startCycles = __rdtsc();
+        std::this_thread::sleep_for(std::chrono::milliseconds(50));
+        uint64_t cycles = __rdtsc() - startCycles;
+        return cycles / std::chrono::duration<double, std::nano>(Clock::now() - start).count();
+    }();
+    return sCyclesPerNs;
+#else
+    return 0.0;
+#endif
+}
+
+} // namespace hostbenchmark
+
+// 用法：audio_host_benchmarks [过滤]，过滤为测量名称的前缀，省略时运行全部测量
+int main(int argc, char **argv) {
+    const char *filter = argc > 1 ? argv[1] : "";
+    int run = 0;
+    for (const hostbenchmark::Benchmark &benchmark : hostbenchmark::registry()) {
+        if (strncmp(benchmark.name, filter, strlen(filter)) != 0) {
+            continue;
+        }
+        printf("[ BENCH ] %s\n", benchmark.name);
+        fflush(stdout);
+        benchmark.function();
+        fflush(stdout);
+        run++;
+    }
+    if (run == 0) {
+        fprintf(stderr, "没有匹配 \"%s\" 的测量\n", filter);
+        return 1;
+    }
+    return 0;
+}
@@ -0,0 +1,67 @@
+#ifndef LISTENHELP6_HOSTTEST_H
+#define LISTENHELP6_HOSTTEST_H
+
+#include <cmath>
+#include <cstdio>
+
+// 主机（x86_64/aarch64 Linux、macOS）上运行的原生单元测试的最小框架
+// HOST_TEST(Suite, name) 定义一个测试，CHECK系列宏失败时记录文件、行号和实际值并继续执行，
+// 测试结束后只要有一个检查失败该测试即失败。运行方式见本目录的CMakeLists.txt
+namespace hosttest {
+
+typedef void (*TestFunction)();
+
+// 注册一个测试（静态初始化期间调用）
+struct Registrar {
+    Registrar(const char *suite, const char *name, TestFunction function);
+};
+
+// 记录一次失败的检查
+void reportFailure(const char *file, int line, const char *message);
+
+} // namespace hosttest
+
+#define HOST_TEST(suite, name) \
+    static void suite##_##name(); \
+    static hosttest::Registrar suite##_##name##_registrar(#suite, #name, suite##_##name); \
+    static void suite##_##name()
+
+#define CHECK(condition) \
+    do { \
+        if (!(condition)) { \
+            hosttest::reportFailure(__FILE__, __LINE__, #condition); \
+        } \
+    } while (0)
+
+// 比较两个数值，失败时打印两边的实际值
+#define HOST_TEST_COMPARE(a, op, b) \
+    do { \
+        const double hostTestA = static_cast<double>(a); \
+        const double hostTestB = static_cast<double>(b); \
+        if (!(hostTestA op hostTestB)) { \
+            char hostTestMessage[256]; \
+            snprintf(hostTestMessage, sizeof(hostTestMessage), "%s %s %s (%g vs %g)", \
+                     #a, #op, #b, hostTestA, hostTestB); \
+            hosttest::reportFailure(__FILE__, __LINE__, hostTestMessage); \
+        } \
+    } while (0)
+
+#define CHECK_EQ(a, b) HOST_TEST_COMPARE(a, ==, b)
+#define CHECK_LT(a, b) HOST_TEST_COMPARE(a, <, b)
+#define CHECK_LE(a, b) HOST_TEST_COMPARE(a, <=, b)
+#define CHECK_GT(a, b) HOST_TEST_COMPARE(a, >, b)
+#define CHECK_GE(a, b) HOST_TEST_COMPARE(a, >=, b)
+
+#define CHECK_NEAR(actual, expected, tolerance) \
+    do { \
+        const double hostTestActual = static_cast<double>(actual); \
+        const double hostTestExpected = static_cast<double>(expected); \
+        if (!(std::fabs(hostTestActual - hostTestExpected) <= (tolerance))) { \
+            char hostTestMessage[256]; \
+            snprintf(hostTestMessage, sizeof(hostTestMessage), "%s 约等于 %s (%g vs %g, 允许误差 %g)", \
+                     #actual, #expected, hostTestActual, hostTestExpected, static_cast<double>(tolerance)); \
+            hosttest::reportFailure(__FILE__, __LINE__, hostTestMessage); \
+        } \
+    } while (0)
+
+#endif //LISTENHELP6_HOSTTEST_H
@@ -0,0 +1,66 @@
+#include "HostTest.h"
+
+#include <cstring>
+#include <string>
+#include <vector>
+
+namespace hosttest {
+
+namespace {
+
+struct TestCase {
+    const char *suite;
+    const char *name;
+    TestFunction function;
+};
+
+std::vector<TestCase> &registry() {
+    static std::vector<TestCase> tests;
+    return tests;
+}
+
+int sFailures = 0;
+
+} // namespace
+
+Registrar::Registrar(const char *suite, const char *name, TestFunction function) {
+    registry().push_back({suite, name, function});
+}
+
+void reportFailure(const char *file, int line, const char *message) {
+    sFailures++;
+    fprintf(stderr, "%s:%d: 检查失败: %s\n", file, line, message);
+}
+
+} // namespace hosttest
+
+// 用法：audio_host_tests [过滤]，过滤为"Suite"或"Suite.name"的前缀，省略时运行全部测试
+int main(int argc, char **argv) {
+    const char *filter = argc > 1 ? argv[1] : "";
+    int run = 0;
+    int failed = 0;
+    for (const hosttest::TestCase &test : hosttest::registry()) {
+        std::string fullName = std::string(test.suite) + "." + test.name;
+        if (fullName.compare(0, strlen(filter), filter) != 0) {
+            continue;
+        }
+        printf("[ RUN  ] %s\n", fullName.c_str());
+        fflush(stdout);
+        int failuresBefore = hosttest::sFailures;
+        test.function();
+        run++;
+        if (hosttest::sFailures != failuresBefore) {
+            failed++;
+            printf("[ FAIL ] %s\n", fullName.c_str());
+        } else {
+            printf("[  OK  ] %s\n", fullName.c_str());
+        }
+        fflush(stdout);
+    }
+    printf("%d 个测试，%d 个失败\n", run, failed);
+    if (run == 0) {
+        fprintf(stderr, "没有匹配 \"%s\" 的测试\n", filter);
+        return 1;
+    }
+    return failed == 0 ? 0 : 1;
+}
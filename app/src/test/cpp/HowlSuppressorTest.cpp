@@ -0,0 +1,195 @@
+#include "HostTest.h"
+
+#include "HowlSuppressor.h"
+
+#include <algorithm>
+#include <cmath>
+#include <cstdint>
+#include <functional>
+#include <random>
+#include <vector>
+
+// 合成的啸叫音（指数增长后饱和的正弦叠加噪声）经过HowlSuppressor：
+// 检测到啸叫、陷波放在啸叫频率上并压低该频率；语音类谐波信号和噪声不触发；啸叫消失后陷波按保持时间释放
+namespace {
+
+const int32_t kSampleRate = 48000;
+const int32_t kCallbackFrames = 96;
+// 分析帧的频点间隔约47Hz，插值后的陷波频率应在此范围内
+const float kFrequencyTolerance = 10.0f;
+
+typedef std::function<float(int64_t frame)> Generator;
+
+struct RunResult {
+    double firstDetectionMs;            // 未检测到时为-1
+    double toneAttenuationDb;           // 最后0.5秒内toneFrequency处的输入与输出幅度之比
+};
+
+// 把generator的输出按回调大小送入suppressor，frame从startFrame开始
+RunResult run(HowlSuppressor &suppressor, const Generator &generator, double seconds,
+              double toneFrequency, int64_t startFrame = 0) {
+    RunResult result = {-1.0, 0.0};
+    const int32_t initialDetections = suppressor.getDetectionCount();
+    const int64_t totalFrames = static_cast<int64_t>(seconds * kSampleRate);
+    const int64_t measureStart = totalFrames - kSampleRate / 2;
+    std::vector<float> buffer(kCallbackFrames);
+    std::vector<float> input(kCallbackFrames);
+    double inCos = 0.0, inSin = 0.0, outCos = 0.0, outSin = 0.0;
+    for (int64_t frame = 0; frame < totalFrames; frame += kCallbackFrames) {
+        for (int32_t i = 0; i < kCallbackFrames; i++) {
+            buffer[i] = generator(startFrame + frame + i);
+        }
+        input = buffer;
+        suppressor.process(buffer.data(), kCallbackFrames);
+        if (result.firstDetectionMs < 0.0 && suppressor.getDetectionCount() > initialDetections) {
+            result.firstDetectionMs = frame * 1000.0 / kSampleRate;
+        }
+        if (frame >= measureStart) {
+            for (int32_t i = 0; i < kCallbackFrames; i++) {
+                const double phase = 2.0 * M_PI * toneFrequency * (startFrame + frame + i) / kSampleRate;
+                inCos += input[i] * std::cos(phase);
+                inSin += input[i] * std::sin(phase);
+                outCos += buffer[i] * std::cos(phase);
+                outSin += buffer[i] * std::sin(phase);
+            }
+        }
+    }
+    result.toneAttenuationDb = 10.0 * std::log10((inCos * inCos + inSin * inSin + 1e-30) /
+                                                 (outCos * outCos + outSin * outSin + 1e-30));
+    return result;
+}
+
+// 离frequency最近的陷波频率与它之差，没有陷波时返回很大的值
+float notchDistance(const HowlSuppressor &suppressor, float frequency) {
+    float distance = 1e9f;
+    for (int notch = 0; notch < HowlSuppressor::kMaxNotches; notch++) {
+        float notchFrequency = suppressor.getNotchFrequency(notch);
+        if (notchFrequency > 0.0f) {
+            distance = std::min(distance, std::fabs(notchFrequency - frequency));
+        }
+    }
+    return distance;
+}
+
+int activeNotches(const HowlSuppressor &suppressor) {
+    int count = 0;
+    for (int notch = 0; notch < HowlSuppressor::kMaxNotches; notch++) {
+        count += suppressor.getNotchFrequency(notch) > 0.0f ? 1 : 0;
+    }
+    return count;
+}
+
+// 从0.005（约-46dBFS）开始每秒增长约70dB，到amplitude后饱和，与环路增益略大于1时的啸叫相似
+double growingAmplitude(int64_t frame, double amplitude) {
+    return std::min(amplitude, 0.005 * std::exp(8.0 * frame / kSampleRate));
+}
+
+} // namespace
+
+HOST_TEST(HowlSuppressor, growingHowl_detectedAndNotched) {
+    std::mt19937 rng(3);
+    std::normal_distribution<float> gaussian(0.0f, 1.0f);
+    const double frequency = 2017.0;
+    Generator howl = [&](int64_t frame) {
+        return static_cast<float>(growingAmplitude(frame, 0.5) * std::sin(2.0 * M_PI * frequency * frame / kSampleRate) +
+                                  0.01 * gaussian(rng));
+    };
+    HowlSuppressor suppressor;
+    suppressor.configure(kSampleRate);
+    RunResult result = run(suppressor, howl, 2.0, frequency);
+    printf("    %.0f Hz：%.0f ms 时检测到，陷波 %.1f Hz，衰减 %.1f dB\n", frequency,
+           result.firstDetectionMs, suppressor.getNotchFrequency(0), result.toneAttenuationDb);
+    CHECK_GE(suppressor.getDetectionCount(), 1);
+    CHECK_GE(result.firstDetectionMs, 0.0);
+    CHECK_LT(result.firstDetectionMs, 800.0);
+    CHECK_EQ(activeNotches(suppressor), 1);
+    CHECK_LE(notchDistance(suppressor, static_cast<float>(frequency)), kFrequencyTolerance);
+    CHECK_GE(result.toneAttenuationDb, 18.0);
+}
+
+HOST_TEST(HowlSuppressor, twoHowls_eachGetANotch) {
+    std::mt19937 rng(4);
+    std::normal_distribution<float> gaussian(0.0f, 1.0f);
+    Generator howls = [&](int64_t frame) {
+        const double amplitude = growingAmplitude(frame, 0.3);
+        return static_cast<float>(amplitude * std::sin(2.0 * M_PI * 1250.0 * frame / kSampleRate) +
+                                  amplitude * std::sin(2.0 * M_PI * 3330.0 * frame / kSampleRate) +
+                                  0.01 * gaussian(rng));
+    };
+    HowlSuppressor suppressor;
+    suppressor.configure(kSampleRate);
+    RunResult result = run(suppressor, howls, 2.0, 3330.0);
+    printf("    陷波 [%.1f %.1f %.1f %.1f] Hz\n", suppressor.getNotchFrequency(0), suppressor.getNotchFrequency(1),
+           suppressor.getNotchFrequency(2), suppressor.getNotchFrequency(3));
+    CHECK_EQ(activeNotches(suppressor), 2);
+    CHECK_LE(notchDistance(suppressor, 1250.0f), kFrequencyTolerance);
+    CHECK_LE(notchDistance(suppressor, 3330.0f), kFrequencyTolerance);
+    CHECK_GE(result.toneAttenuationDb, 18.0);
+}
+
+HOST_TEST(HowlSuppressor, vowelAndNoise_notDetected) {
+    std::mt19937 rng(5);
+    std::normal_distribution<float> gaussian(0.0f, 1.0f);
+    // 持续的元音：150Hz基频带颤音，20个谐波按-6dB/倍频程衰减
+    double phase = 0.0;
+    Generator vowel = [&](int64_t frame) {
+        const double t = static_cast<double>(frame) / kSampleRate;
+        phase += 2.0 * M_PI * 150.0 * (1.0 + 0.01 * std::sin(2.0 * M_PI * 5.0 * t)) / kSampleRate;
+        double sample = 0.0;
+        for (int harmonic = 1; harmonic <= 20; harmonic++) {
+            sample += 0.3 / harmonic * std::sin(harmonic * phase);
+        }
+        return static_cast<float>(sample + 0.005 * gaussian(rng));
+    };
+    Generator noise = [&](int64_t) { return 0.3f * gaussian(rng); };
+    for (const Generator &generator : {vowel, noise}) {
+        HowlSuppressor suppressor;
+        suppressor.configure(kSampleRate);
+        run(suppressor, generator, 3.0, 1000.0);
+        CHECK_EQ(suppressor.getDetectionCount(), 0);
+        CHECK_EQ(activeNotches(suppressor), 0);
+    }
+}
+
+HOST_TEST(HowlSuppressor, howlStops_notchHeldThenReleased) {
+    std::mt19937 rng(6);
+    std::normal_distribution<float> gaussian(0.0f, 1.0f);
+    const double frequency = 2500.0;
+    Generator howl = [&](int64_t frame) {
+        return static_cast<float>(0.3 * std::sin(2.0 * M_PI * frequency * frame / kSampleRate) + 0.01 * gaussian(rng));
+    };
+    Generator quiet = [&](int64_t) { return 0.01f * gaussian(rng); };
+    // 啸叫停止后用于测量陷波深度的弱正弦（低于检测电平）
+    Generator probe = [&](int64_t frame) {
+        return static_cast<float>(0.01 * std::sin(2.0 * M_PI * frequency * frame / kSampleRate));
+    };
+
+    HowlSuppressor suppressor;
+    suppressor.configure(kSampleRate);
+    int64_t frame = 0;
+    RunResult howling = run(suppressor, howl, 1.0, frequency, frame);
+    frame += kSampleRate;
+    // 持续的啸叫在同一频率上再次判定只加深陷波，不占用新的陷波器
+    const int32_t detections = suppressor.getDetectionCount();
+    CHECK_GE(detections, 1);
+    CHECK_EQ(activeNotches(suppressor), 1);
+    CHECK_LE(notchDistance(suppressor, static_cast<float>(frequency)), kFrequencyTolerance);
+    CHECK_GE(howling.toneAttenuationDb, 15.0);
+
+    // 保持时间（3秒）内陷波仍在
+    run(suppressor, quiet, 2.0, frequency, frame);
+    frame += 2 * kSampleRate;
+    RunResult held = run(suppressor, probe, 0.5, frequency, frame);
+    frame += kSampleRate / 2;
+    CHECK_LE(notchDistance(suppressor, static_cast<float>(frequency)), kFrequencyTolerance);
+    CHECK_GE(held.toneAttenuationDb, 15.0);
+
+    // 之后深度按12dB/s回到0并释放，不再衰减该频率
+    run(suppressor, quiet, 5.0, frequency, frame);
+    frame += 5 * kSampleRate;
+    RunResult released = run(suppressor, probe, 0.5, frequency, frame);
+    printf("    保持期间衰减 %.1f dB，释放后 %.2f dB\n", held.toneAttenuationDb, released.toneAttenuationDb);
+    CHECK_EQ(activeNotches(suppressor), 0);
+    CHECK_NEAR(released.toneAttenuationDb, 0.0, 0.1);
+    CHECK_EQ(suppressor.getDetectionCount(), detections);
+}
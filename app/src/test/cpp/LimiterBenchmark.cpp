@@ -0,0 +1,71 @@
+#include "HostBenchmark.h"
+
+#include "DspKernels.h"
+#include "Limiter.h"
+
+#include <algorithm>
+#include <cmath>
+#include <cstdio>
+#include <random>
+#include <vector>
+
+// 前瞻限幅器（之后乘以输出音量）与它替换的逐样本log10f软限幅（超过±1的部分对数压缩，之后乘以输出音量）对比，
+// 按processBlock的块大小（192帧单声道）测量。安静信号走限幅器的空闲路径，响亮信号每个样本都需要限幅
+namespace {
+
+const int32_t kSampleRate = 48000;
+const int32_t kBlockFrames = 192;
+const int32_t kSignalBlocks = 64;
+
+// 原来processAudioData最后一步的软限幅
+void logSoftClip(float *buffer, int32_t numFrames, float outputVolume) {
+    for (int32_t i = 0; i < numFrames; i++) {
+        if (buffer[i] > 1.0f) {
+            buffer[i] = 1.0f + log10f(1.0f + buffer[i]) * 0.5f;
+        } else if (buffer[i] < -1.0f) {
+            buffer[i] = -1.0f - log10f(1.0f - buffer[i]) * 0.5f;
+        }
+        buffer[i] *= outputVolume;
+    }
+}
+
+std::vector<float> noise(float amplitude) {
+    std::mt19937 rng(1);
+    std::uniform_real_distribution<float> uniform(-amplitude, amplitude);
+    std::vector<float> signal(kBlockFrames * kSignalBlocks);
+    for (float &sample : signal) {
+        sample = uniform(rng);
+    }
+    return signal;
+}
+
+} // namespace
+
+HOST_BENCHMARK(Limiter) {
+    printf("%-22s%16s%16s\n", "", "log10f软限幅", "Limiter");
+    for (float amplitude : {0.3f, 4.0f}) {
+        const std::vector<float> source = noise(amplitude);
+        std::vector<float> work(kBlockFrames);
+        int32_t block = 0;
+        // 每次从源信号中取下一块，使限幅器看到连续变化的输入
+        double softClipNs = hostbenchmark::measureNs([&] {
+            const float *input = source.data() + (block++ % kSignalBlocks) * kBlockFrames;
+            std::copy(input, input + kBlockFrames, work.begin());
+            logSoftClip(work.data(), kBlockFrames, 0.8f);
+            hostbenchmark::keep(work[0]);
+        });
+        Limiter limiter;
+        limiter.configure(kSampleRate);
+        const DspKernels &kernels = dsp::kernels();
+        double limiterNs = hostbenchmark::measureNs([&] {
+            const float *input = source.data() + (block++ % kSignalBlocks) * kBlockFrames;
+            std::copy(input, input + kBlockFrames, work.begin());
+            limiter.process(work.data(), kBlockFrames);
+            kernels.applyGain(work.data(), kBlockFrames, 0.8f);
+            hostbenchmark::keep(work[0]);
+        });
+        printf("峰值 %4.1f %-12s%16.3f%16.3f（x%.1f）\n", amplitude, amplitude < 1.0f ? "（空闲）" : "（限幅）",
+               softClipNs / kBlockFrames, limiterNs / kBlockFrames, softClipNs / limiterNs);
+    }
+    printf("（每样本耗时，单位ns，包括复制输入；括号内为限幅器相对软限幅的加速比）\n");
+}
@@ -0,0 +1,130 @@
+#include "HostTest.h"
+
+#include "Limiter.h"
+
+#include <algorithm>
+#include <cmath>
+#include <cstdint>
+#include <random>
+#include <vector>
+
+// 前瞻限幅器：任意输入下输出不超过kCeiling，延迟等于前瞻帧数；
+// 处理过程中改变前瞻时间（processBlock每次回调都会传入当前参数）不能清空延迟线或让增益跳回1
+namespace {
+
+const int32_t kSampleRate = 48000;
+const int32_t kBlockFrames = 192;
+
+// 带随机幅度突发的白噪声，峰值从远低于拐点到约+26dBFS
+std::vector<float> burstyNoise(uint32_t seed, int32_t frames) {
+    std::mt19937 rng(seed);
+    std::uniform_real_distribution<float> uniform(-1.0f, 1.0f);
+    std::uniform_real_distribution<float> amplitude(0.0f, 20.0f);
+    std::vector<float> signal(frames);
+    float level = 0.1f;
+    for (int32_t n = 0; n < frames; n++) {
+        if (n % 300 == 0) {
+            level = amplitude(rng) < 10.0f ? 0.05f : amplitude(rng);
+        }
+        signal[n] = level * uniform(rng);
+    }
+    return signal;
+}
+
+float maxMagnitude(const std::vector<float> &signal, int32_t start) {
+    float peak = 0.0f;
+    for (size_t n = start; n < signal.size(); n++) {
+        peak = std::max(peak, std::fabs(signal[n]));
+    }
+    return peak;
+}
+
+// 幅度低于threshold的最长连续样本数
+int32_t longestQuietRun(const std::vector<float> &signal, int32_t start, float threshold) {
+    int32_t longest = 0;
+    int32_t run = 0;
+    for (size_t n = start; n < signal.size(); n++) {
+        run = std::fabs(signal[n]) < threshold ? run + 1 : 0;
+        longest = std::max(longest, run);
+    }
+    return longest;
+}
+
+} // namespace
+
+HOST_TEST(Limiter, loudInput_neverExceedsCeiling) {
+    for (float lookaheadMs : {Limiter::kMinLookaheadMs, Limiter::kDefaultLookaheadMs, Limiter::kMaxLookaheadMs}) {
+        Limiter limiter;
+        limiter.configure(kSampleRate);
+        limiter.setLookahead(lookaheadMs);
+        std::vector<float> signal = burstyNoise(1, kSampleRate * 2);
+        for (int32_t start = 0; start < static_cast<int32_t>(signal.size()); start += kBlockFrames) {
+            limiter.process(signal.data() + start, kBlockFrames);
+        }
+        CHECK_LE(maxMagnitude(signal, 0), Limiter::kCeiling);
+    }
+}
+
+HOST_TEST(Limiter, quietImpulse_delayedByLookaheadFrames) {
+    for (float lookaheadMs : {Limiter::kMinLookaheadMs, Limiter::kDefaultLookaheadMs, Limiter::kMaxLookaheadMs}) {
+        Limiter limiter;
+        limiter.configure(kSampleRate);
+        limiter.setLookahead(lookaheadMs);
+        const int32_t lookahead = limiter.getLookaheadFrames();
+        CHECK_EQ(lookahead, static_cast<int32_t>(lookaheadMs * 0.001f * kSampleRate + 0.5f));
+        std::vector<float> signal(kBlockFrames * 2, 0.0f);
+        signal[0] = 0.1f;
+        limiter.process(signal.data(), kBlockFrames);
+        limiter.process(signal.data() + kBlockFrames, kBlockFrames);
+        CHECK_EQ(signal[lookahead], 0.1f);
+        CHECK_EQ(maxMagnitude(signal, 0), 0.1f);
+    }
+}
+
+HOST_TEST(Limiter, lookaheadChangedWhileLimiting_noDropoutAndCeilingHeld) {
+    // 持续被限幅的1kHz正弦，每隔几个块改变前瞻时间（延长和缩短都有）
+    Limiter limiter;
+    limiter.configure(kSampleRate);
+    const float lookaheads[] = {0.5f, 5.0f, 1.5f, 3.2f, 0.7f, 4.1f};
+    std::vector<float> signal(kSampleRate);
+    for (int32_t n = 0; n < kSampleRate; n++) {
+        signal[n] = static_cast<float>(3.0 * std::sin(2.0 * M_PI * 1000.0 * n / kSampleRate));
+    }
+    int changes = 0;
+    for (int32_t start = 0, block = 0; start < kSampleRate; start += kBlockFrames, block++) {
+        if (block % 5 == 4) {
+            limiter.setLookahead(lookaheads[changes++ % 6]);
+        }
+        limiter.process(signal.data() + start, kBlockFrames);
+    }
+    CHECK_GT(changes, 40);
+
+    // 跳过第一块（延迟线初始为0）之后，正弦只在过零点附近单个样本幅度很小
+    const int32_t settle = kBlockFrames;
+    CHECK_LE(maxMagnitude(signal, settle), Limiter::kCeiling);
+    CHECK_LE(longestQuietRun(signal, settle, 0.02f), 2);
+    // 增益没有被重置为1：限幅后的正弦幅度保持在上限附近
+    CHECK_GE(maxMagnitude(signal, kSampleRate - kBlockFrames), Limiter::kCeiling * 0.8f);
+}
+
+HOST_TEST(Limiter, randomLookaheadChanges_neverExceedCeiling) {
+    // 峰值刚进入延迟线时延长前瞻，是已有增益最可能不够的情况；随机块长和随机时刻覆盖各种位置
+    Limiter limiter;
+    limiter.configure(kSampleRate);
+    std::mt19937 rng(2);
+    std::uniform_int_distribution<int32_t> blockFrames(1, 300);
+    std::uniform_real_distribution<float> lookaheadMs(Limiter::kMinLookaheadMs, Limiter::kMaxLookaheadMs);
+    std::vector<float> signal = burstyNoise(3, kSampleRate * 4);
+    int changes = 0;
+    for (int32_t start = 0; start < static_cast<int32_t>(signal.size());) {
+        int32_t frames = std::min(static_cast<int32_t>(signal.size()) - start, blockFrames(rng));
+        if (frames % 3 == 0) {
+            limiter.setLookahead(lookaheadMs(rng));
+            changes++;
+        }
+        limiter.process(signal.data() + start, frames);
+        start += frames;
+    }
+    CHECK_GT(changes, 100);
+    CHECK_LE(maxMagnitude(signal, 0), Limiter::kCeiling);
+}
@@ -0,0 +1,93 @@
+#include "HostTest.h"
+
+#include "LogLinearHistogram.h"
+
+#include <cstdint>
+#include <vector>
+
+// 对数线性直方图的分桶规则。Java层的CallbackStats用自己的一份实现从桶计数计算分位数，
+// 两边必须逐桶一致：固定的“值 -> 桶 -> 桶下界”向量与CallbackStatsTest.bucketVectors_matchNative相同，
+// 修改分桶规则时两处一起更新
+namespace {
+
+struct BucketVector {
+    uint32_t value;
+    int index;
+    uint32_t lowerBound;
+};
+
+const BucketVector kBucketVectors[] = {
+        {0, 0, 0},
+        {1, 1, 1},
+        {31, 31, 31},
+        {32, 32, 32},
+        {33, 33, 33},
+        {63, 63, 63},
+        {64, 64, 64},
+        {65, 64, 64},
+        {66, 65, 66},
+        {100, 82, 100},
+        {127, 95, 126},
+        {128, 96, 128},
+        {1000, 190, 992},
+        {4800, 261, 4736},
+        {65535, 383, 64512},
+        {65536, 384, 65536},
+        {16777215, 639, 16515072},
+        {16777216, 639, 16515072},          // 超出范围的值计入最后一个桶
+        {4294967295u, 639, 16515072},
+};
+
+} // namespace
+
+HOST_TEST(LogLinearHistogram, fixedVectors_bucketIndexAndLowerBound) {
+    for (const BucketVector &vector : kBucketVectors) {
+        CHECK_EQ(LogLinearHistogram::bucketIndex(vector.value), vector.index);
+        CHECK_EQ(LogLinearHistogram::bucketLowerBound(vector.index), vector.lowerBound);
+    }
+    CHECK_EQ(LogLinearHistogram::kNumBuckets, 640);
+}
+
+HOST_TEST(LogLinearHistogram, buckets_coverValuesContiguously) {
+    for (int i = 1; i < LogLinearHistogram::kNumBuckets; i++) {
+        CHECK_EQ(LogLinearHistogram::bucketLowerBound(i - 1) + LogLinearHistogram::bucketWidth(i - 1),
+                 LogLinearHistogram::bucketLowerBound(i));
+    }
+    const int last = LogLinearHistogram::kNumBuckets - 1;
+    CHECK_EQ(LogLinearHistogram::bucketLowerBound(last) + LogLinearHistogram::bucketWidth(last) - 1,
+             LogLinearHistogram::kMaxValue);
+    // 范围内的每个值都落在自己的桶内
+    int64_t misplaced = 0;
+    for (uint32_t value = 0; value <= LogLinearHistogram::kMaxValue; value++) {
+        const int index = LogLinearHistogram::bucketIndex(value);
+        const uint32_t lowerBound = LogLinearHistogram::bucketLowerBound(index);
+        misplaced += value < lowerBound || value - lowerBound >= LogLinearHistogram::bucketWidth(index);
+    }
+    CHECK_EQ(misplaced, 0);
+}
+
+HOST_TEST(LogLinearHistogram, record_countsSumAndMax) {
+    LogLinearHistogram histogram;
+    std::vector<int64_t> counts(LogLinearHistogram::kNumBuckets);
+    for (const BucketVector &vector : kBucketVectors) {
+        histogram.record(vector.value);
+    }
+    histogram.copyCounts(counts.data());
+    CHECK_EQ(counts[64], 2);
+    CHECK_EQ(counts[639], 3);
+    int64_t total = 0;
+    uint64_t sum = 0;
+    for (int i = 0; i < LogLinearHistogram::kNumBuckets; i++) {
+        total += counts[i];
+    }
+    for (const BucketVector &vector : kBucketVectors) {
+        sum += vector.value;
+    }
+    CHECK_EQ(total, static_cast<int64_t>(sizeof(kBucketVectors) / sizeof(kBucketVectors[0])));
+    CHECK_EQ(histogram.getSum(), sum);
+    CHECK_EQ(histogram.getMax(), 4294967295u);
+    histogram.reset();
+    histogram.copyCounts(counts.data());
+    CHECK_EQ(counts[64], 0);
+    CHECK_EQ(histogram.getMax(), 0u);
+}
@@ -0,0 +1,128 @@
+#include "HostTest.h"
+
+#include "LoopbackProbe.h"
+
+#include <cmath>
+#include <cstdint>
+#include <random>
+#include <vector>
+
+// 回环延迟测量：按AAudioProcessor::processAudioData的顺序在每个回调中调用record（处理之前的麦克风信号）
+// 和play（处理之后替换输出），扬声器输出经模拟的声学路径（整数或小数延迟、增益）回到麦克风，再加上白噪声。
+// 测量之外的回调输出节目信号（噪声），同样经过路径进入麦克风。测得的延迟与真实值相差不到半帧；
+// 只有噪声（没有声学回路，如使用耳机）时结果无效
+namespace {
+
+const int32_t kSampleRate = 48000;
+const int32_t kSincHalfTaps = 16;
+
+struct Scenario {
+    double delayFrames;         // 扬声器到麦克风的往返延迟
+    float pathGain;             // 0表示没有声学回路
+    float noiseRms;             // 麦克风上的白噪声
+    int32_t blockFrames;        // 每次回调的帧数
+};
+
+// 扬声器输出的历史，按小数延迟读取（Hann窗sinc插值，整数延迟时即原样本）
+class DelayLine {
+public:
+    void write(const float *output, int32_t numFrames) {
+        mHistory.insert(mHistory.end(), output, output + numFrames);
+    }
+
+    // 时刻frame - delay的扬声器输出
+    float read(int64_t frame, double delay) const {
+        const double position = frame - delay;
+        const int64_t base = static_cast<int64_t>(std::floor(position));
+        const double fraction = position - base;
+        double sum = 0.0;
+        for (int32_t k = -kSincHalfTaps + 1; k <= kSincHalfTaps; k++) {
+            const int64_t index = base + k;
+            if (index < 0 || index >= static_cast<int64_t>(mHistory.size())) {
+                continue;
+            }
+            const double x = k - fraction;
+            const double sinc = std::fabs(x) < 1e-12 ? 1.0 : std::sin(M_PI * x) / (M_PI * x);
+            const double window = 0.5 + 0.5 * std::cos(M_PI * x / kSincHalfTaps);
+            sum += mHistory[index] * sinc * window;
+        }
+        return static_cast<float>(sum);
+    }
+
+private:
+    std::vector<float> mHistory;
+};
+
+// 运行到测量完成，返回collect的结果
+LoopbackProbe::Result measure(const Scenario &scenario) {
+    LoopbackProbe probe;
+    probe.configure(kSampleRate);
+    CHECK(probe.start());
+    std::mt19937 rng(7);
+    std::normal_distribution<float> gaussian(0.0f, 1.0f);
+    DelayLine speaker;
+    std::vector<float> buffer(scenario.blockFrames);
+    LoopbackProbe::Result result = {false, -1.0f, 0.0f};
+    int64_t frame = 0;
+    for (int32_t callback = 0; callback < 10000; callback++) {
+        // 麦克风：本回调之前写出的扬声器信号经路径延迟（延迟不小于一个回调，不会用到本回调的输出）
+        for (int32_t i = 0; i < scenario.blockFrames; i++) {
+            buffer[i] = scenario.pathGain * speaker.read(frame + i, scenario.delayFrames) +
+                        scenario.noiseRms * gaussian(rng);
+        }
+        const bool probing = probe.record(buffer.data(), scenario.blockFrames);
+        // 处理结果（节目信号），测量期间被测试信号替换
+        for (int32_t i = 0; i < scenario.blockFrames; i++) {
+            buffer[i] = 0.1f * gaussian(rng);
+        }
+        if (probing) {
+            probe.play(buffer.data(), scenario.blockFrames);
+        }
+        speaker.write(buffer.data(), scenario.blockFrames);
+        frame += scenario.blockFrames;
+        if (probe.collect(result)) {
+            break;
+        }
+    }
+    CHECK(!probe.isBusy());
+    return result;
+}
+
+void checkMeasured(const char *name, const Scenario &scenario) {
+    LoopbackProbe::Result result = measure(scenario);
+    printf("    %s：真实 %.2f 帧，测得 %.2f 帧，置信度 %.1f\n", name, scenario.delayFrames, result.delayFrames,
+           result.confidence);
+    CHECK(result.valid);
+    CHECK_LT(std::fabs(result.delayFrames - scenario.delayFrames), 0.5);
+}
+
+} // namespace
+
+HOST_TEST(LoopbackProbe, integerDelay_measuredWithinHalfFrame) {
+    checkMeasured("10 ms", {480.0, 0.3f, 0.001f, 192});
+    checkMeasured("450 ms", {21600.0, 0.3f, 0.001f, 192});
+}
+
+HOST_TEST(LoopbackProbe, fractionalDelay_measuredWithinHalfFrame) {
+    for (double delay : {1790.3, 1790.5, 1790.8}) {
+        checkMeasured("小数延迟", {delay, 0.3f, 0.001f, 96});
+    }
+}
+
+HOST_TEST(LoopbackProbe, blockNotBurstAligned_measuredWithinHalfFrame) {
+    // 333帧的回调：测试信号和录音跨越回调边界
+    checkMeasured("333帧回调", {225.6, 0.3f, 0.001f, 333});
+}
+
+HOST_TEST(LoopbackProbe, noiseAt20DbBelowProbe_stillValid) {
+    // 噪声比麦克风收到的测试信号低20 dB
+    const float pathGain = 0.3f;
+    checkMeasured("-20 dB噪声", {900.4, pathGain, pathGain * LoopbackProbe::kAmplitude * 0.1f, 192});
+}
+
+HOST_TEST(LoopbackProbe, noAcousticPath_invalid) {
+    LoopbackProbe::Result result = measure({900.0, 0.0f, 0.01f, 192});
+    printf("    只有噪声：置信度 %.1f\n", result.confidence);
+    CHECK(!result.valid);
+    CHECK_LT(result.confidence, LoopbackProbe::kMinConfidence);
+}
@@ -0,0 +1,154 @@
+#include "HostTest.h"
+
+#include "NoiseReducer.h"
+
+#include <algorithm>
+#include <cmath>
+#include <cstdint>
+#include <random>
+#include <vector>
+
+// 合成的类语音信号（带音节包络和停顿的谐波）叠加平稳的有色噪声，经NoiseReducer处理后
+// 与延迟kLatencyFrames帧的干净信号比较，测量输出信噪比相对输入的提升。
+// 按长度不一的块处理，与回调帧数无关
+namespace {
+
+const int32_t kSampleRate = 48000;
+const int32_t kSignalFrames = kSampleRate * 8;
+// 跳过噪声估计收敛的时间（最小值统计窗口约1.5秒）
+const int32_t kSettleFrames = kSampleRate * 3;
+const int32_t kBlockSizes[] = {192, 96, 441, 240};
+
+// 基频缓慢变化的谐波，每秒3个音节，每2秒中有0.7秒停顿
+std::vector<float> speechLikeSignal() {
+    std::vector<float> speech(kSignalFrames);
+    double phase = 0.0;
+    for (int32_t n = 0; n < kSignalFrames; n++) {
+        const double t = static_cast<double>(n) / kSampleRate;
+        phase += 2.0 * M_PI * (140.0 + 30.0 * std::sin(2.0 * M_PI * 0.7 * t)) / kSampleRate;
+        double envelope = std::max(0.0, std::sin(2.0 * M_PI * 3.0 * t));
+        if (std::fmod(t, 2.0) > 1.3) {
+            envelope = 0.0;
+        }
+        double sample = 0.0;
+        for (int harmonic = 1; harmonic <= 20; harmonic++) {
+            sample += std::sin(harmonic * phase) / harmonic * (harmonic < 4 ? 1.0 : 0.6);
+        }
+        speech[n] = static_cast<float>(0.15 * envelope * sample);
+    }
+    return speech;
+}
+
+// 白噪声加上一阶低通后的噪声，低频能量较多
+std::vector<float> colouredNoise() {
+    std::mt19937 rng(7);
+    std::normal_distribution<float> gaussian(0.0f, 1.0f);
+    std::vector<float> noise(kSignalFrames);
+    float lowpass = 0.0f;
+    for (float &sample : noise) {
+        float white = gaussian(rng);
+        lowpass = 0.95f * lowpass + 0.05f * white;
+        sample = 0.5f * white + 2.0f * lowpass;
+    }
+    return noise;
+}
+
+double energy(const std::vector<float> &signal) {
+    double sum = 0.0;
+    for (float sample : signal) {
+        sum += static_cast<double>(sample) * sample;
+    }
+    return sum;
+}
+
+void processInBlocks(NoiseReducer &reducer, std::vector<float> &signal, float strength) {
+    int block = 0;
+    for (int32_t position = 0; position < static_cast<int32_t>(signal.size());) {
+        int32_t length = std::min(static_cast<int32_t>(signal.size()) - position, kBlockSizes[block++ % 4]);
+        reducer.process(signal.data() + position, length, strength);
+        position += length;
+    }
+}
+
+// 收敛后输出相对干净信号的误差能量（dB，相对干净信号能量，即负的信噪比）
+double errorDb(const std::vector<float> &clean, const std::vector<float> &signal, int32_t delay) {
+    double cleanEnergy = 0.0;
+    double errorEnergy = 0.0;
+    for (int32_t n = kSettleFrames; n < kSignalFrames - delay; n++) {
+        cleanEnergy += static_cast<double>(clean[n]) * clean[n];
+        double error = static_cast<double>(signal[n + delay]) - clean[n];
+        errorEnergy += error * error;
+    }
+    return 10.0 * std::log10(errorEnergy / cleanEnergy);
+}
+
+struct SnrResult {
+    double inputSnrDb;
+    double outputSnrDb;
+};
+
+SnrResult measureSnr(const std::vector<float> &clean, const std::vector<float> &noise,
+                     double inputSnrDb, float strength) {
+    const float noiseScale = static_cast<float>(
+            std::sqrt(energy(clean) / energy(noise) / std::pow(10.0, inputSnrDb / 10.0)));
+    std::vector<float> noisy(kSignalFrames);
+    for (int32_t n = 0; n < kSignalFrames; n++) {
+        noisy[n] = clean[n] + noiseScale * noise[n];
+    }
+    std::vector<float> output(noisy);
+    NoiseReducer reducer;
+    reducer.configure(kSampleRate);
+    processInBlocks(reducer, output, strength);
+    return {-errorDb(clean, noisy, 0), -errorDb(clean, output, NoiseReducer::kLatencyFrames)};
+}
+
+} // namespace
+
+HOST_TEST(NoiseReducer, zeroStrength_reconstructsDelayedInput) {
+    std::vector<float> input = speechLikeSignal();
+    input.resize(kSampleRate);
+    std::vector<float> output(input);
+    NoiseReducer reducer;
+    reducer.configure(kSampleRate);
+    processInBlocks(reducer, output, 0.0f);
+
+    double maxError = 0.0;
+    for (int32_t n = NoiseReducer::kLatencyFrames; n < kSampleRate; n++) {
+        maxError = std::max(maxError, std::fabs(static_cast<double>(output[n]) - input[n - NoiseReducer::kLatencyFrames]));
+    }
+    CHECK_LT(maxError, 1e-5);
+}
+
+HOST_TEST(NoiseReducer, speechInNoise_improvesSnr) {
+    const std::vector<float> clean = speechLikeSignal();
+    const std::vector<float> noise = colouredNoise();
+    for (double inputSnrDb : {0.0, 5.0, 10.0}) {
+        SnrResult half = measureSnr(clean, noise, inputSnrDb, 0.5f);
+        SnrResult full = measureSnr(clean, noise, inputSnrDb, 1.0f);
+        printf("    输入信噪比 %4.1f dB：强度0.5 输出 %5.2f dB，强度1 输出 %5.2f dB\n",
+               full.inputSnrDb, half.outputSnrDb, full.outputSnrDb);
+        CHECK_GE(half.outputSnrDb - half.inputSnrDb, 4.0);
+        CHECK_GE(full.outputSnrDb - full.inputSnrDb, 6.0);
+        // 强度越大，最大衰减越大
+        CHECK_GT(full.outputSnrDb, half.outputSnrDb);
+    }
+}
+
+HOST_TEST(NoiseReducer, noiseOnly_attenuatedTowardsMaxAttenuation) {
+    // 只有噪声时，收敛后的输出能量降低接近kMaxAttenuationDb（20 dB）
+    std::vector<float> noise = colouredNoise();
+    for (float &sample : noise) {
+        sample *= 0.05f;
+    }
+    std::vector<float> output(noise);
+    NoiseReducer reducer;
+    reducer.configure(kSampleRate);
+    processInBlocks(reducer, output, 1.0f);
+
+    std::vector<float> settledInput(noise.begin() + kSettleFrames, noise.end());
+    std::vector<float> settledOutput(output.begin() + kSettleFrames, output.end());
+    double attenuationDb = 10.0 * std::log10(energy(settledInput) / energy(settledOutput));
+    printf("    噪声衰减 %.1f dB\n", attenuationDb);
+    CHECK_GE(attenuationDb, 12.0);
+    CHECK_LE(attenuationDb, 21.0);
+}
@@ -0,0 +1,62 @@
+#include "HostBenchmark.h"
+
+#include "PcmConverter.h"
+
+#include <cstdio>
+#include <cstring>
+#include <random>
+#include <vector>
+
+// 整数设备格式相对浮点路径多出的开销：浮点格式直接读写设备缓冲区，不做任何转换；
+// 整数格式每次回调多一次输入toFloat和一次输出fromFloat。按回调大小（192帧，单声道和立体声）测量这两次转换，
+// 与复制同样多的浮点数据（只经过一次内存，是任何转换的下限）对比，并换算为48 kHz回调周期的百分比
+namespace {
+
+const int32_t kCallbackFrames = 192;
+const int32_t kSampleRate = 48000;
+const aaudio_format_t kFormats[] = {AAUDIO_FORMAT_PCM_I16, AAUDIO_FORMAT_PCM_I24_PACKED, AAUDIO_FORMAT_PCM_I32};
+
+// 一次回调的输入和输出转换（或两次浮点复制）的纳秒数
+double measureCallbackNs(aaudio_format_t format, int32_t channelCount) {
+    const int32_t samples = kCallbackFrames * channelCount;
+    std::mt19937 rng(1);
+    std::uniform_real_distribution<float> uniform(-0.5f, 0.5f);
+    std::vector<float> source(samples);
+    for (float &sample : source) {
+        sample = uniform(rng);
+    }
+    std::vector<float> work(samples);
+    std::vector<uint8_t> device(static_cast<size_t>(samples) * sizeof(float));
+    PcmConverter converter;
+    converter.setFormat(format);
+    converter.fromFloat(source.data(), device.data(), samples);
+    return hostbenchmark::measureNs([&] {
+        if (format == AAUDIO_FORMAT_PCM_FLOAT) {
+            memcpy(work.data(), device.data(), samples * sizeof(float));
+            memcpy(device.data(), work.data(), samples * sizeof(float));
+        } else {
+            converter.toFloat(device.data(), work.data(), samples);
+            converter.fromFloat(work.data(), device.data(), samples);
+        }
+        hostbenchmark::keep(work[0]);
+    });
+}
+
+} // namespace
+
+HOST_BENCHMARK(PcmConverter) {
+    const double periodNs = 1e9 * kCallbackFrames / kSampleRate;
+    for (int32_t channelCount : {1, 2}) {
+        const double copyNs = measureCallbackNs(AAUDIO_FORMAT_PCM_FLOAT, channelCount);
+        printf("%d声道  %-6s%9.1f ns/回调 %6.3f ns/样本 %7.4f%%周期\n", channelCount, "浮点复制", copyNs,
+               copyNs / (kCallbackFrames * channelCount), 100.0 * copyNs / periodNs);
+        for (aaudio_format_t format : kFormats) {
+            const double ns = measureCallbackNs(format, channelCount);
+            printf("%d声道  %-6s%9.1f ns/回调 %6.3f ns/样本 %7.4f%%周期  （复制的%.1f倍）\n", channelCount,
+                   PcmConverter::formatName(format), ns, ns / (kCallbackFrames * channelCount),
+                   100.0 * ns / periodNs, ns / copyNs);
+        }
+    }
+    printf("（每次回调的输入转换加输出转换；浮点格式实际不转换也不复制；周期为%d帧@%d Hz；内核：%s）\n",
+           kCallbackFrames, kSampleRate, dsp::kernels().name);
+}
@@ -0,0 +1,166 @@
+#include "HostTest.h"
+
+#include "DspKernels.h"
+#include "PcmConverter.h"
+
+#include <algorithm>
+#include <cstdint>
+#include <cstring>
+#include <random>
+#include <vector>
+
+// 设备格式的往返：I16、I24的每个整数值经浮点处理链（增益为1）后原样写回；
+// I32只有24位有效数字能在单精度中精确表示，低8位为0的值（即32位容器中的24位样本）往返精确，其余误差不超过浮点精度。
+// 每个可在本机运行的内核表都检查一遍，块长不是SIMD宽度的整数倍，覆盖尾部的标量处理
+namespace {
+
+const int32_t kChunk = 4099;
+const int kMaxKernels = 8;
+
+// 把整数值序列分块写成设备格式、转为浮点再转回，返回与原值不同的样本数
+int64_t i16Mismatches(const DspKernels &kernels, const std::vector<int16_t> &values) {
+    std::vector<float> floats(kChunk);
+    std::vector<int16_t> output(kChunk);
+    int64_t mismatches = 0;
+    for (size_t start = 0; start < values.size(); start += kChunk) {
+        const int32_t length = static_cast<int32_t>(std::min<size_t>(kChunk, values.size() - start));
+        kernels.i16ToFloat(values.data() + start, floats.data(), length);
+        kernels.floatToI16(floats.data(), output.data(), length);
+        for (int32_t i = 0; i < length; i++) {
+            mismatches += output[i] != values[start + i];
+        }
+    }
+    return mismatches;
+}
+
+int64_t i24Mismatches(const DspKernels &kernels, int32_t firstValue, int32_t lastValue) {
+    std::vector<uint8_t> packed(kChunk * 3);
+    std::vector<float> floats(kChunk);
+    std::vector<uint8_t> output(kChunk * 3);
+    int64_t mismatches = 0;
+    for (int64_t start = firstValue; start <= lastValue; start += kChunk) {
+        const int32_t length = static_cast<int32_t>(std::min<int64_t>(kChunk, lastValue - start + 1));
+        for (int32_t i = 0; i < length; i++) {
+            const int32_t value = static_cast<int32_t>(start + i);
+            packed[3 * i] = static_cast<uint8_t>(value);
+            packed[3 * i + 1] = static_cast<uint8_t>(value >> 8);
+            packed[3 * i + 2] = static_cast<uint8_t>(value >> 16);
+        }
+        kernels.i24ToFloat(packed.data(), floats.data(), length);
+        kernels.floatToI24(floats.data(), output.data(), length);
+        for (int32_t i = 0; i < length * 3; i += 3) {
+            mismatches += memcmp(&output[i], &packed[i], 3) != 0;
+        }
+    }
+    return mismatches;
+}
+
+// 返回往返误差的最大绝对值（以整数单位计）
+int64_t i32MaxError(const DspKernels &kernels, const std::vector<int32_t> &values) {
+    std::vector<float> floats(kChunk);
+    std::vector<int32_t> output(kChunk);
+    int64_t maxError = 0;
+    for (size_t start = 0; start < values.size(); start += kChunk) {
+        const int32_t length = static_cast<int32_t>(std::min<size_t>(kChunk, values.size() - start));
+        kernels.i32ToFloat(values.data() + start, floats.data(), length);
+        kernels.floatToI32(floats.data(), output.data(), length);
+        for (int32_t i = 0; i < length; i++) {
+            const int64_t error = static_cast<int64_t>(output[i]) - values[start + i];
+            maxError = std::max(maxError, error < 0 ? -error : error);
+        }
+    }
+    return maxError;
+}
+
+} // namespace
+
+HOST_TEST(PcmConverter, i16EveryValue_roundTripsExactly) {
+    std::vector<int16_t> values;
+    for (int32_t value = -32768; value <= 32767; value++) {
+        values.push_back(static_cast<int16_t>(value));
+    }
+    const DspKernels *kernels[kMaxKernels];
+    int count = dsp::availableKernels(kernels, kMaxKernels);
+    for (int k = 0; k < count; k++) {
+        printf("    %s\n", kernels[k]->name);
+        CHECK_EQ(i16Mismatches(*kernels[k], values), 0);
+    }
+}
+
+HOST_TEST(PcmConverter, i24EveryValue_roundTripsExactly) {
+    const DspKernels *kernels[kMaxKernels];
+    int count = dsp::availableKernels(kernels, kMaxKernels);
+    for (int k = 0; k < count; k++) {
+        printf("    %s\n", kernels[k]->name);
+        CHECK_EQ(i24Mismatches(*kernels[k], -8388608, 8388607), 0);
+    }
+}
+
+HOST_TEST(PcmConverter, i32_24BitValuesExactAndOthersWithinFloatPrecision) {
+    // 低8位为0的每个值；任意值在[2^30, 2^31)内的浮点间隔为128，舍入误差不超过其一半，
+    // 只有正满量程附近舍入到2^31后限幅为2^31 - 128，误差最大127
+    std::vector<int32_t> aligned;
+    for (int64_t value = INT32_MIN; value <= INT32_MAX; value += 256) {
+        aligned.push_back(static_cast<int32_t>(value));
+    }
+    std::mt19937 rng(1);
+    std::uniform_int_distribution<int32_t> anyValue(INT32_MIN, INT32_MAX);
+    std::vector<int32_t> arbitrary(1 << 20);
+    for (int32_t &value : arbitrary) {
+        value = anyValue(rng);
+    }
+    const std::vector<int32_t> nearFullScale = {INT32_MAX, INT32_MAX - 63, INT32_MAX - 64, INT32_MIN, INT32_MIN + 1};
+    const DspKernels *kernels[kMaxKernels];
+    int count = dsp::availableKernels(kernels, kMaxKernels);
+    for (int k = 0; k < count; k++) {
+        printf("    %s：任意值最大误差 %lld\n", kernels[k]->name,
+               static_cast<long long>(i32MaxError(*kernels[k], arbitrary)));
+        CHECK_EQ(i32MaxError(*kernels[k], aligned), 0);
+        CHECK_LE(i32MaxError(*kernels[k], arbitrary), 64);
+        CHECK_LE(i32MaxError(*kernels[k], nearFullScale), 127);
+    }
+}
+
+HOST_TEST(PcmConverter, fromFloat_fullScaleAndOverRangeClipped) {
+    PcmConverter converter;
+    const float input[] = {1.0f, -1.0f, 2.0f, -2.0f, 0.5f};
+    int16_t i16[5];
+    CHECK(converter.setFormat(AAUDIO_FORMAT_PCM_I16));
+    converter.fromFloat(input, i16, 5);
+    CHECK_EQ(i16[0], 32767);
+    CHECK_EQ(i16[1], -32768);
+    CHECK_EQ(i16[2], 32767);
+    CHECK_EQ(i16[3], -32768);
+    CHECK_EQ(i16[4], 16384);
+    int32_t i32[5];
+    CHECK(converter.setFormat(AAUDIO_FORMAT_PCM_I32));
+    converter.fromFloat(input, i32, 5);
+    CHECK_EQ(i32[0], 2147483520);
+    CHECK_EQ(i32[1], INT32_MIN);
+    CHECK_EQ(i32[4], 1073741824);
+    uint8_t i24[15];
+    CHECK(converter.setFormat(AAUDIO_FORMAT_PCM_I24_PACKED));
+    converter.fromFloat(input, i24, 5);
+    const uint8_t expected[15] = {0xFF, 0xFF, 0x7F, 0x00, 0x00, 0x80, 0xFF, 0xFF, 0x7F, 0x00, 0x00, 0x80,
+                                  0x00, 0x00, 0x40};
+    CHECK(memcmp(i24, expected, sizeof(expected)) == 0);
+}
+
+HOST_TEST(PcmConverter, floatFormat_copiesBitsUnchanged) {
+    PcmConverter converter;
+    CHECK(converter.isFloat());
+    std::vector<float> input = {0.25f, -1.5f, 1e-40f, -0.0f, 3.0f};
+    std::vector<float> converted(input.size());
+    std::vector<float> output(input.size());
+    converter.toFloat(input.data(), converted.data(), static_cast<int32_t>(input.size()));
+    converter.fromFloat(converted.data(), output.data(), static_cast<int32_t>(output.size()));
+    CHECK(memcmp(input.data(), output.data(), input.size() * sizeof(float)) == 0);
+}
+
+HOST_TEST(PcmConverter, unsupportedFormat_rejectedAndPreviousKept) {
+    PcmConverter converter;
+    CHECK(converter.setFormat(AAUDIO_FORMAT_PCM_I24_PACKED));
+    CHECK(!converter.setFormat(AAUDIO_FORMAT_UNSPECIFIED));
+    CHECK_EQ(converter.getFormat(), AAUDIO_FORMAT_PCM_I24_PACKED);
+    CHECK_EQ(converter.getBytesPerSample(), 3);
+}
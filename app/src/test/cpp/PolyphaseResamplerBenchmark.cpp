@@ -0,0 +1,75 @@
+#include "HostBenchmark.h"
+
+#include "PolyphaseResampler.h"
+
+#include <cstdio>
+#include <random>
+#include <vector>
+
+// 多相重采样器按回调大小（每次192个输出帧，单声道）的耗时，每个质量等级分别测量标称比例和比例微调（插值相邻相位）。
+// 打印每个输出样本的纳秒数和时钟周期数（周期数只在有周期计数器的架构上打印）
+namespace {
+
+const int32_t kOutputFrames = 192;
+const int32_t kRatePairs[][2] = {{44100, 48000}, {48000, 44100}, {16000, 48000}, {48000, 16000}, {48000, 48000}};
+const char *const kQualityNames[PolyphaseResampler::kNumQualities] = {"low", "medium", "high"};
+
+// 连续处理一段噪声（到末尾后从头开始），返回每个输出样本的纳秒数
+double measureNsPerSample(int32_t inputRate, int32_t outputRate, int quality, double adjustment) {
+    PolyphaseResampler resampler;
+    resampler.configure(inputRate, outputRate, 1, quality);
+    resampler.setRatioAdjustment(adjustment);
+    std::mt19937 rng(1);
+    std::uniform_real_distribution<float> uniform(-0.5f, 0.5f);
+    std::vector<float> input(inputRate);
+    for (float &sample : input) {
+        sample = uniform(rng);
+    }
+    std::vector<float> output(kOutputFrames);
+    const int32_t maxInputFrames = resampler.inputFramesNeeded(kOutputFrames) + 2;
+    size_t position = 0;
+    double ns = hostbenchmark::measureNs([&] {
+        if (position + maxInputFrames > input.size()) {
+            position = 0;
+        }
+        const int32_t needed = resampler.inputFramesNeeded(kOutputFrames);
+        resampler.process(input.data() + position, output.data(), kOutputFrames);
+        position += needed;
+        hostbenchmark::keep(output[0]);
+    });
+    return ns / kOutputFrames;
+}
+
+} // namespace
+
+HOST_BENCHMARK(PolyphaseResampler) {
+    const double cyclesPerNs = hostbenchmark::cyclesPerNs();
+    printf("%-16s", "");
+    for (const char *name : kQualityNames) {
+        printf("%14s%14s", name, "（微调）");
+    }
+    printf("\n");
+    for (const auto &pair : kRatePairs) {
+        printf("%5d -> %-7d", pair[0], pair[1]);
+        for (int quality = 0; quality < PolyphaseResampler::kNumQualities; quality++) {
+            for (double adjustment : {0.0, 123e-6}) {
+                if (pair[0] == pair[1] && adjustment == 0.0) {
+                    printf("%14s", "-");
+                    continue;
+                }
+                const double ns = measureNsPerSample(pair[0], pair[1], quality, adjustment);
+                if (cyclesPerNs > 0.0) {
+                    printf("%7.1f(%5.1f)", ns, ns * cyclesPerNs);
+                } else {
+                    printf("%14.1f", ns);
+                }
+            }
+        }
+        printf("\n");
+    }
+    if (cyclesPerNs > 0.0) {
+        printf("（每输出样本耗时，单位ns，括号内为时钟周期数（%.2f GHz）；内核：%s）\n", cyclesPerNs, dsp::kernels().name);
+    } else {
+        printf("（每输出样本耗时，单位ns；内核：%s）\n", dsp::kernels().name);
+    }
+}
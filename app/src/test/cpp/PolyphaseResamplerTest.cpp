@@ -0,0 +1,263 @@
+#include "HostTest.h"
+
+#include "PolyphaseResampler.h"
+#include "ResamplingInputSource.h"
+
+#include <algorithm>
+#include <cmath>
+#include <cstdint>
+#include <cstring>
+#include <random>
+#include <vector>
+
+// 多相重采样器的频率响应：常用采样率对（44.1k<->48k、16k<->48k）在每个质量等级下
+// 通带（到设计通带边缘的90%）纹波足够小，输出中除目标正弦外的成分（镜像、混叠、系数量化）低于阻带指标，
+// 降采样时高于较低采样率奈奎斯特频率的输入被衰减到阻带指标以下；另外检查群延迟、分块读取和比例微调
+namespace {
+
+const int32_t kRatePairs[][2] = {{44100, 48000}, {48000, 44100}, {16000, 48000}, {48000, 16000}};
+
+// 与PolyphaseResampler的各质量等级相同：每相位抽头数（按较低的采样率计）和阻带衰减
+struct QualitySpec {
+    const char *name;
+    int32_t tapsPerPhase;
+    double stopbandDb;
+    double maxRippleDb;
+};
+const QualitySpec kQualities[PolyphaseResampler::kNumQualities] = {
+        {"low", 16, 60.0, 0.05},
+        {"medium", 32, 80.0, 0.01},
+        {"high", 64, 100.0, 0.01},
+};
+
+// 测量值允许比设计指标差的余量（Kaiser窗的近似公式和单精度系数）
+const double kStopbandMarginDb = 6.0;
+const double kAmplitude = 0.5;
+// 每次测量的输出长度，拟合时跳过两端（滤波器启动和输入用完）
+const int32_t kOutputFrames = 24000;
+const int32_t kSkipFrames = 2000;
+
+// 设计通带边缘：阻带从较低采样率的奈奎斯特频率开始，过渡带宽按Kaiser公式由阻带衰减和抽头数决定
+double passbandEdge(int32_t inputRate, int32_t outputRate, const QualitySpec &quality) {
+    const double lowerRate = std::min(inputRate, outputRate);
+    const double transition = (quality.stopbandDb - 7.95) / 14.36 * lowerRate / quality.tapsPerPhase;
+    return lowerRate / 2.0 - transition;
+}
+
+std::vector<float> sine(double frequency, int32_t sampleRate, int32_t frames) {
+    std::vector<float> signal(frames);
+    for (int32_t n = 0; n < frames; n++) {
+        signal[n] = static_cast<float>(kAmplitude * std::sin(2.0 * M_PI * frequency * n / sampleRate));
+    }
+    return signal;
+}
+
+// 从头处理kOutputFrames帧单声道输出
+std::vector<float> resample(PolyphaseResampler &resampler, const std::vector<float> &input) {
+    std::vector<float> output(kOutputFrames);
+    resampler.reset();
+    CHECK_LE(resampler.inputFramesNeeded(kOutputFrames), static_cast<int32_t>(input.size()));
+    resampler.process(input.data(), output.data(), kOutputFrames);
+    return output;
+}
+
+struct ToneFit {
+    double gainDb;              // 拟合的正弦幅度相对输入
+    double residualDb;          // 拟合后残差的RMS相对输入幅度
+};
+
+// 在输出中按最小二乘拟合给定频率的正弦
+ToneFit fitTone(const std::vector<float> &output, double frequency, int32_t sampleRate) {
+    double ss = 0.0, sc = 0.0, cc = 0.0, ys = 0.0, yc = 0.0;
+    const int32_t end = static_cast<int32_t>(output.size()) - kSkipFrames;
+    for (int32_t n = kSkipFrames; n < end; n++) {
+        const double phase = 2.0 * M_PI * frequency * n / sampleRate;
+        const double s = std::sin(phase), c = std::cos(phase);
+        ss += s * s;
+        cc += c * c;
+        sc += s * c;
+        ys += output[n] * s;
+        yc += output[n] * c;
+    }
+    const double det = ss * cc - sc * sc;
+    const double a = (ys * cc - yc * sc) / det;
+    const double b = (yc * ss - ys * sc) / det;
+    double residual = 0.0;
+    for (int32_t n = kSkipFrames; n < end; n++) {
+        const double phase = 2.0 * M_PI * frequency * n / sampleRate;
+        const double error = output[n] - a * std::sin(phase) - b * std::cos(phase);
+        residual += error * error;
+    }
+    residual = std::sqrt(residual / (end - kSkipFrames));
+    return {20.0 * std::log10(std::sqrt(a * a + b * b) / kAmplitude), 20.0 * std::log10(residual / kAmplitude)};
+}
+
+// 按需读取预先生成的交错输入的输入源，每次可读的帧数由测试控制
+class VectorInput : public AudioInputSource {
+public:
+    VectorInput(const std::vector<float> &samples, int32_t channelCount)
+        : mSamples(samples), mChannelCount(channelCount), mPosition(0), mAvailable(0) {
+    }
+
+    void makeAvailable(int32_t frames) { mAvailable += frames; }
+
+    int32_t readInput(float *buffer, int32_t numFrames) override {
+        int32_t frames = std::min(numFrames, availableInputFrames());
+        memcpy(buffer, mSamples.data() + static_cast<size_t>(mPosition) * mChannelCount,
+               static_cast<size_t>(frames) * mChannelCount * sizeof(float));
+        mPosition += frames;
+        mAvailable -= frames;
+        return frames;
+    }
+
+    int32_t availableInputFrames() override {
+        const int32_t remaining = static_cast<int32_t>(mSamples.size()) / mChannelCount - mPosition;
+        return std::min(mAvailable, remaining);
+    }
+
+private:
+    const std::vector<float> &mSamples;
+    int32_t mChannelCount;
+    int32_t mPosition;
+    int32_t mAvailable;
+};
+
+} // namespace
+
+HOST_TEST(PolyphaseResampler, passband_flatAndSpuriousBelowStopband) {
+    for (const auto &pair : kRatePairs) {
+        for (int q = 0; q < PolyphaseResampler::kNumQualities; q++) {
+            const QualitySpec &quality = kQualities[q];
+            PolyphaseResampler resampler;
+            CHECK(resampler.configure(pair[0], pair[1], 1, q));
+            const int32_t inputFrames = resampler.inputFramesNeeded(kOutputFrames) + 1;
+            const double edge = passbandEdge(pair[0], pair[1], quality);
+            double minGain = 1e9, maxGain = -1e9, worstResidual = -1e9;
+            for (double frequency = 100.0; frequency <= 0.9 * edge; frequency *= 1.12) {
+                ToneFit fit = fitTone(resample(resampler, sine(frequency, pair[0], inputFrames)), frequency, pair[1]);
+                minGain = std::min(minGain, fit.gainDb);
+                maxGain = std::max(maxGain, fit.gainDb);
+                worstResidual = std::max(worstResidual, fit.residualDb);
+            }
+            printf("    %5d -> %5d %-6s：通带（至 %.0f Hz）纹波 %.4f dB，杂散 %.1f dB\n", pair[0], pair[1],
+                   quality.name, 0.9 * edge, maxGain - minGain, worstResidual);
+            CHECK_LT(maxGain - minGain, quality.maxRippleDb);
+            CHECK_LT(std::fabs(maxGain), quality.maxRippleDb);
+            CHECK_LT(worstResidual, -(quality.stopbandDb - kStopbandMarginDb));
+        }
+    }
+}
+
+HOST_TEST(PolyphaseResampler, downsampling_aliasesRejected) {
+    // 高于输出奈奎斯特频率的输入折叠到通带内：输出的总能量相对输入正弦
+    for (const auto &pair : kRatePairs) {
+        if (pair[0] < pair[1]) {
+            continue;
+        }
+        for (int q = 0; q < PolyphaseResampler::kNumQualities; q++) {
+            const QualitySpec &quality = kQualities[q];
+            PolyphaseResampler resampler;
+            CHECK(resampler.configure(pair[0], pair[1], 1, q));
+            const int32_t inputFrames = resampler.inputFramesNeeded(kOutputFrames) + 1;
+            double worstAliasDb = -1e9;
+            for (double frequency = pair[1] / 2.0; frequency < 0.49 * pair[0]; frequency += 0.0065 * pair[0]) {
+                std::vector<float> output = resample(resampler, sine(frequency, pair[0], inputFrames));
+                double energy = 0.0;
+                for (int32_t n = kSkipFrames; n < kOutputFrames - kSkipFrames; n++) {
+                    energy += static_cast<double>(output[n]) * output[n];
+                }
+                const double power = energy / (kOutputFrames - 2 * kSkipFrames);
+                worstAliasDb = std::max(worstAliasDb, 10.0 * std::log10(power / (kAmplitude * kAmplitude / 2.0)));
+            }
+            printf("    %5d -> %5d %-6s：混叠 %.1f dB\n", pair[0], pair[1], quality.name, worstAliasDb);
+            CHECK_LT(worstAliasDb, -(quality.stopbandDb - kStopbandMarginDb));
+        }
+    }
+}
+
+HOST_TEST(PolyphaseResampler, groupDelay_matchesReported) {
+    // 1kHz正弦的相位滞后（按周期展开到报告值附近）
+    for (const auto &pair : kRatePairs) {
+        PolyphaseResampler resampler;
+        CHECK(resampler.configure(pair[0], pair[1], 1, PolyphaseResampler::kDefaultQuality));
+        const double frequency = 1000.0;
+        const int32_t inputFrames = resampler.inputFramesNeeded(kOutputFrames) + 1;
+        std::vector<float> output = resample(resampler, sine(frequency, pair[0], inputFrames));
+        double ss = 0.0, sc = 0.0;
+        for (int32_t n = kSkipFrames; n < kOutputFrames - kSkipFrames; n++) {
+            const double phase = 2.0 * M_PI * frequency * n / pair[1];
+            ss += output[n] * std::sin(phase);
+            sc += output[n] * std::cos(phase);
+        }
+        const double period = pair[1] / frequency;
+        double lag = std::fmod(-std::atan2(sc, ss) / (2.0 * M_PI) * period + 10.0 * period, period);
+        while (lag < resampler.getDelayFrames() - period / 2.0) {
+            lag += period;
+        }
+        CHECK_NEAR(lag, resampler.getDelayFrames(), 0.05);
+    }
+}
+
+HOST_TEST(PolyphaseResampler, readInChunksThroughInputSource_identicalToSingleCall) {
+    // 双声道白噪声：下层每次可读的帧数和每次请求的帧数都随机，结果与一次处理完全相同
+    const int32_t channels = 2;
+    for (const auto &pair : kRatePairs) {
+        std::mt19937 rng(7);
+        std::uniform_real_distribution<float> uniform(-1.0f, 1.0f);
+        std::vector<float> input(static_cast<size_t>(pair[0]) * channels);
+        for (float &sample : input) {
+            sample = uniform(rng);
+        }
+        PolyphaseResampler reference;
+        CHECK(reference.configure(pair[0], pair[1], channels, PolyphaseResampler::kDefaultQuality));
+        const int32_t outputFrames = reference.outputFramesAvailable(pair[0]) - 10;
+        std::vector<float> expected(static_cast<size_t>(outputFrames) * channels);
+        reference.process(input.data(), expected.data(), outputFrames);
+
+        VectorInput source(input, channels);
+        ResamplingInputSource resampling;
+        CHECK(resampling.configure(&source, channels, pair[0], pair[1], PolyphaseResampler::kDefaultQuality, 192));
+        std::vector<float> actual;
+        std::vector<float> buffer(192 * channels);
+        while (static_cast<int32_t>(actual.size()) < outputFrames * channels) {
+            source.makeAvailable(static_cast<int32_t>(rng() % 300));
+            const int32_t available = resampling.availableInputFrames();
+            const int32_t frames = resampling.readInput(buffer.data(), 1 + static_cast<int32_t>(rng() % 192));
+            CHECK_LE(frames, available);
+            actual.insert(actual.end(), buffer.begin(), buffer.begin() + frames * channels);
+        }
+        actual.resize(expected.size());
+        CHECK(actual == expected);
+    }
+}
+
+HOST_TEST(PolyphaseResampler, ratioAdjusted_toneShiftedWithoutSpurs) {
+    // 比例微调（时钟漂移补偿）时在相邻相位之间插值：输出频率按比例偏移，杂散仍低于阻带指标
+    const int32_t pairs[][2] = {{48000, 48000}, {44100, 48000}, {48000, 44100}};
+    for (const auto &pair : pairs) {
+        for (int q = 0; q < PolyphaseResampler::kNumQualities; q++) {
+            const QualitySpec &quality = kQualities[q];
+            for (double adjustment : {-300e-6, 450e-6}) {
+                PolyphaseResampler resampler;
+                CHECK(resampler.configure(pair[0], pair[1], 1, q));
+                const int32_t inputFrames = static_cast<int32_t>(
+                        static_cast<int64_t>(kOutputFrames) * pair[0] / pair[1] * 1.01) + 300;
+                const double edge = passbandEdge(pair[0], pair[1], quality);
+                double minGain = 1e9, maxGain = -1e9, worstResidual = -1e9;
+                for (double frequency = 150.0; frequency <= 0.9 * edge; frequency *= 1.3) {
+                    std::vector<float> input = sine(frequency, pair[0], inputFrames);
+                    std::vector<float> output(kOutputFrames);
+                    resampler.reset();
+                    resampler.setRatioAdjustment(adjustment);
+                    resampler.process(input.data(), output.data(), kOutputFrames);
+                    ToneFit fit = fitTone(output, frequency * (1.0 + adjustment), pair[1]);
+                    minGain = std::min(minGain, fit.gainDb);
+                    maxGain = std::max(maxGain, fit.gainDb);
+                    worstResidual = std::max(worstResidual, fit.residualDb);
+                }
+                CHECK_LT(maxGain - minGain, quality.maxRippleDb);
+                CHECK_LT(worstResidual, -(quality.stopbandDb - kStopbandMarginDb));
+            }
+        }
+    }
+}
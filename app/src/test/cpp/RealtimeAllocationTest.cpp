@@ -0,0 +1,122 @@
+#include "HostTest.h"
+#include "FakeAAudio.h"
+
+#include "AAudioProcessor.h"
+#include "RealtimeGuard.h"
+
+#include <cmath>
+#include <cstdint>
+#include <vector>
+
+// 音频回调路径上不能有堆分配：在RealtimeGuard的计数模式下（不中止）通过公开的静态数据回调驱动完整的处理链，
+// 所有处理级都启用，参数在回调之间不断改变，检测到的分配次数必须为0。
+// 需要定义LISTENHELP_RT_ALLOC_CHECK（本目录的CMakeLists.txt总是定义），否则计数恒为0，第一个测试会失败
+namespace {
+
+const int32_t kCallbacks = 2000;
+
+float testTone(int64_t frame, int32_t sampleRate) {
+    const double t = static_cast<double>(frame) / sampleRate;
+    return static_cast<float>(0.3 * std::sin(2.0 * M_PI * 440.0 * t) + 0.1 * std::sin(2.0 * M_PI * 3100.0 * t));
+}
+
+// 启用所有处理级并设置非零参数（在非实时线程上调用）
+void enableAllStages(AAudioProcessor &processor) {
+    processor.setInputVolume(80);
+    processor.setOutputVolume(90);
+    processor.setAmplificationFactor(4.0f);
+    processor.setParameterRampTime(20.0f);
+    processor.setFeedbackCancellation(true);
+    processor.setHowlSuppression(true);
+    processor.setNoiseReduction(true, 0.7f);
+    for (int band = 0; band < 8; band++) {
+        processor.setEqualizerBand(band, band % 2 == 0 ? 6 : -4);
+    }
+    processor.setCompressorEnabled(true);
+    for (int band = 0; band < 4; band++) {
+        processor.setCompressorBand(band, -40.0f + band * 5.0f, 3.0f, 5.0f, 80.0f, 6.0f);
+    }
+    processor.setLimiterLookahead(2.0f);
+}
+
+// 运行kCallbacks次数据回调，期间改变参数、开始一次回环测量，返回实时作用域内检测到的分配次数
+int64_t runCallbacks(AAudioProcessor &processor, int32_t outputChannels, int32_t bytesPerSample) {
+    AAudioStream *stream = fakeaaudio::getOutputStream();
+    CHECK(stream != nullptr);
+    std::vector<uint8_t> audioData(static_cast<size_t>(fakeaaudio::kFramesPerBurst) * outputChannels * bytesPerSample);
+    int64_t before = rtguard::getRealtimeAllocationCount();
+    for (int32_t callback = 0; callback < kCallbacks; callback++) {
+        if (callback % 100 == 50) {
+            processor.setAmplificationFactor(callback % 200 == 50 ? 8.0f : 2.0f);
+            processor.setEqualizerBand(callback / 100 % 8, callback % 200 == 50 ? 10 : 0);
+            processor.setCompressorBand(1, -30.0f, callback % 200 == 50 ? 4.0f : 2.0f, 5.0f, 80.0f, 3.0f);
+        }
+        if (callback == 500) {
+            CHECK(processor.startLoopbackMeasurement());
+        }
+        fakeaaudio::advanceInput(fakeaaudio::kFramesPerBurst);
+        aaudio_data_callback_result_t result = AAudioProcessor::dataCallback(
+                stream, &processor, audioData.data(), fakeaaudio::kFramesPerBurst);
+        CHECK_EQ(result, AAUDIO_CALLBACK_RESULT_CONTINUE);
+    }
+    int64_t allocations = rtguard::getRealtimeAllocationCount() - before;
+    // 确认处理链确实在运行（数据泵积累水位后输出不再是静音）
+    bool silent = true;
+    for (uint8_t byte : audioData) {
+        silent = silent && byte == 0;
+    }
+    CHECK(!silent);
+    return allocations;
+}
+
+} // namespace
+
+HOST_TEST(RealtimeAllocation, allocationInRealtimeScope_isCounted) {
+    rtguard::setAbortOnRealtimeAllocation(false);
+    int64_t before = rtguard::getRealtimeAllocationCount();
+    {
+        rtguard::ScopedRealtime realtime;
+        std::vector<float> allocated(16);
+        CHECK_EQ(allocated.size(), 16);
+    }
+    std::vector<float> notCounted(16);
+    CHECK_EQ(rtguard::getRealtimeAllocationCount() - before, 1);
+    rtguard::setAbortOnRealtimeAllocation(true);
+}
+
+HOST_TEST(RealtimeAllocation, floatStreams_noAllocationInCallback) {
+    fakeaaudio::reset();
+    fakeaaudio::setInputSignal(testTone);
+    rtguard::setAbortOnRealtimeAllocation(false);
+    {
+        AAudioProcessor processor;
+        enableAllStages(processor);
+        CHECK(processor.setupStreams(48000, 2, AAUDIO_FORMAT_PCM_FLOAT, 0, 0));
+        CHECK(processor.start());
+        CHECK_EQ(runCallbacks(processor, 2, sizeof(float)), 0);
+        processor.cleanup();
+    }
+    rtguard::setAbortOnRealtimeAllocation(true);
+}
+
+HOST_TEST(RealtimeAllocation, resampledIntegerStreams_noAllocationInCallback) {
+    // 输入设备为44.1kHz的I16（经重采样和格式转换），输出设备为48kHz的紧排I24
+    fakeaaudio::reset();
+    fakeaaudio::setDeviceConfig(5, 44100, AAUDIO_FORMAT_PCM_I16);
+    fakeaaudio::setDeviceConfig(6, 48000, AAUDIO_FORMAT_PCM_I24_PACKED);
+    fakeaaudio::setInputSignal(testTone);
+    rtguard::setAbortOnRealtimeAllocation(false);
+    {
+        AAudioProcessor processor;
+        enableAllStages(processor);
+        CHECK(processor.setupStreams(AAUDIO_UNSPECIFIED, 2, AAUDIO_FORMAT_UNSPECIFIED, 5, 6));
+        int32_t state[AAudioProcessor::kNumLatencyState];
+        processor.getLatencyState(state);
+        CHECK_EQ(state[AAudioProcessor::kLatencyStateInputFormat], AAUDIO_FORMAT_PCM_I16);
+        CHECK_EQ(state[AAudioProcessor::kLatencyStateOutputFormat], AAUDIO_FORMAT_PCM_I24_PACKED);
+        CHECK(processor.start());
+        CHECK_EQ(runCallbacks(processor, 2, 3), 0);
+        processor.cleanup();
+    }
+    rtguard::setAbortOnRealtimeAllocation(true);
+}
@@ -0,0 +1,409 @@
+#include "HostTest.h"
+#include "FakeAAudio.h"
+
+#include "AAudioProcessor.h"
+#include "StreamRecovery.h"
+
+#include <chrono>
+#include <condition_variable>
+#include <cstdint>
+#include <mutex>
+#include <thread>
+#include <vector>
+
+// 断开恢复：先用假的流后端（可注入打开失败、关闭时旧的流再次报告断开、用户中途停止）检查StreamRecovery的重试策略，
+// 再让FakeAAudio在另一个线程上对AAudioProcessor的流发出断开错误回调，检查流被重新打开并继续处理
+namespace {
+
+const int32_t kRequestedDeviceId = 7;
+const int32_t kEventTimeoutMs = 3000;
+
+// 监听器收到的事件，测试线程可以等待某个事件
+class EventLog {
+public:
+    struct Entry {
+        int32_t event;
+        int32_t attempts;
+        int64_t elapsedMs;
+    };
+
+    StreamRecovery::EventListener listener() {
+        return [this](int32_t event, int32_t attempts, int64_t elapsedMs) {
+            std::lock_guard<std::mutex> lock(mMutex);
+            mEntries.push_back({event, attempts, elapsedMs});
+            mCondition.notify_all();
+        };
+    }
+
+    // 等待第count个event事件，超时返回false
+    bool waitFor(int32_t event, int count = 1) {
+        std::unique_lock<std::mutex> lock(mMutex);
+        return mCondition.wait_for(lock, std::chrono::milliseconds(kEventTimeoutMs),
+                                   [&] { return countLocked(event) >= count; });
+    }
+
+    std::vector<Entry> entries() {
+        std::lock_guard<std::mutex> lock(mMutex);
+        return mEntries;
+    }
+
+private:
+    int countLocked(int32_t event) const {
+        int count = 0;
+        for (const Entry &entry : mEntries) {
+            count += entry.event == event ? 1 : 0;
+        }
+        return count;
+    }
+
+    std::mutex mMutex;
+    std::condition_variable mCondition;
+    std::vector<Entry> mEntries;
+};
+
+// 假的流后端，与AAudioProcessor的closeStreamsForRecovery/reopenStreamsForRecovery行为相同：
+// 当前的流没有断开时忽略请求；流被用户停止或重新设置（generation改变）后放弃恢复
+struct FakeBackend {
+    std::mutex mutex;
+    StreamRecovery *recovery = nullptr;
+    bool running = true;
+    bool disconnected = true;
+    int32_t failOpens = 0;              // 前几次打开失败
+    bool staleReportOnClose = false;    // 关闭时另一个流也报告断开（输入输出流先后断开）
+    uint32_t generation = 0;
+    uint32_t recoveryGeneration = 0;
+    int32_t closes = 0;
+    int32_t opens = 0;
+    std::vector<int32_t> openedDevices;
+
+    bool close() {
+        std::lock_guard<std::mutex> lock(mutex);
+        if (!running || !disconnected) {
+            return false;
+        }
+        closes++;
+        if (staleReportOnClose) {
+            recovery->requestRecovery();
+        }
+        running = false;
+        recoveryGeneration = ++generation;
+        return true;
+    }
+
+    StreamRecovery::OpenResult open(int32_t attempt) {
+        std::lock_guard<std::mutex> lock(mutex);
+        if (generation != recoveryGeneration) {
+            return StreamRecovery::kOpenAborted;
+        }
+        opens++;
+        openedDevices.push_back(attempt == 0 ? kRequestedDeviceId : 0);
+        recoveryGeneration = ++generation;
+        if (opens <= failOpens) {
+            return StreamRecovery::kOpenFailed;
+        }
+        running = true;
+        disconnected = false;
+        return StreamRecovery::kOpenSucceeded;
+    }
+
+    // 用户在恢复期间停止了处理
+    void userStop() {
+        std::lock_guard<std::mutex> lock(mutex);
+        running = false;
+        generation++;
+    }
+
+    void start(StreamRecovery &streamRecovery, EventLog &log) {
+        recovery = &streamRecovery;
+        streamRecovery.setListener(log.listener());
+        streamRecovery.start([this] { return close(); }, [this](int32_t attempt) { return open(attempt); });
+    }
+};
+
+int64_t elapsedMs(std::chrono::steady_clock::time_point since) {
+    return std::chrono::duration_cast<std::chrono::milliseconds>(std::chrono::steady_clock::now() - since).count();
+}
+
+// 打开、启动并运行一段时间，确认数据回调在运行
+void startProcessor(AAudioProcessor &processor, EventLog &log, int32_t deviceId) {
+    fakeaaudio::reset();
+    processor.setStreamEventCallback(log.listener());
+    CHECK(processor.setupStreams(48000, 1, AAUDIO_FORMAT_PCM_FLOAT, deviceId, deviceId));
+    CHECK(processor.start());
+    CHECK_EQ(fakeaaudio::pumpOutput(50), 50);
+}
+
+} // namespace
+
+HOST_TEST(StreamRecovery, bothStreamsReport_recoveredOnce) {
+    // 输入输出流各自发出一次断开通知，只恢复一次
+    EventLog log;
+    FakeBackend backend;
+    StreamRecovery recovery;
+    backend.start(recovery, log);
+    recovery.requestRecovery();
+    recovery.requestRecovery();
+    CHECK(log.waitFor(StreamRecovery::kEventRecovered));
+    recovery.stop();
+
+    std::vector<EventLog::Entry> entries = log.entries();
+    CHECK_EQ(entries.size(), 2u);
+    CHECK_EQ(entries[0].event, StreamRecovery::kEventRecovering);
+    CHECK_EQ(entries[1].attempts, 1);
+    CHECK_EQ(backend.closes, 1);
+    CHECK_EQ(backend.opens, 1);
+    CHECK_EQ(backend.openedDevices[0], kRequestedDeviceId);
+    CHECK_EQ(recovery.getRequestCount(), 2);
+    CHECK_EQ(recovery.getRecoveryCount(), 1);
+    CHECK_EQ(recovery.getFailureCount(), 0);
+}
+
+HOST_TEST(StreamRecovery, staleReportDuringClose_ignored) {
+    // 关闭期间旧的流再次报告断开：这个请求被丢弃，恢复后新的流不会再被关闭
+    EventLog log;
+    FakeBackend backend;
+    backend.staleReportOnClose = true;
+    StreamRecovery recovery;
+    backend.start(recovery, log);
+    recovery.requestRecovery();
+    CHECK(log.waitFor(StreamRecovery::kEventRecovered));
+    std::this_thread::sleep_for(std::chrono::milliseconds(100));
+    recovery.stop();
+
+    CHECK_EQ(log.entries().size(), 2u);
+    CHECK_EQ(backend.closes, 1);
+    CHECK_EQ(backend.opens, 1);
+    CHECK(backend.running);
+    CHECK_EQ(recovery.getRequestCount(), 2);
+    CHECK_EQ(recovery.getRecoveryCount(), 1);
+}
+
+HOST_TEST(StreamRecovery, healthyStreamReport_ignored) {
+    // 恢复完成后才到达的通知（新的流没有断开），以及没有在运行的流时的请求都被忽略
+    EventLog log;
+    FakeBackend backend;
+    StreamRecovery recovery;
+    backend.start(recovery, log);
+    recovery.requestRecovery();
+    CHECK(log.waitFor(StreamRecovery::kEventRecovered));
+    recovery.requestRecovery();
+    std::this_thread::sleep_for(std::chrono::milliseconds(100));
+    backend.userStop();
+    recovery.requestRecovery();
+    std::this_thread::sleep_for(std::chrono::milliseconds(100));
+    recovery.stop();
+
+    CHECK_EQ(log.entries().size(), 2u);
+    CHECK_EQ(backend.closes, 1);
+    CHECK_EQ(backend.opens, 1);
+    CHECK_EQ(recovery.getRequestCount(), 3);
+    CHECK_EQ(recovery.getRecoveryCount(), 1);
+}
+
+HOST_TEST(StreamRecovery, secondDisconnect_recoveredAgain) {
+    EventLog log;
+    FakeBackend backend;
+    StreamRecovery recovery;
+    backend.start(recovery, log);
+    for (int disconnect = 1; disconnect <= 3; disconnect++) {
+        {
+            std::lock_guard<std::mutex> lock(backend.mutex);
+            backend.disconnected = true;
+        }
+        recovery.requestRecovery();
+        CHECK(log.waitFor(StreamRecovery::kEventRecovered, disconnect));
+    }
+    recovery.stop();
+    CHECK_EQ(backend.closes, 3);
+    CHECK_EQ(backend.opens, 3);
+    CHECK_EQ(recovery.getRecoveryCount(), 3);
+}
+
+HOST_TEST(StreamRecovery, openFails_retriesWithBackoffOnDefaultDevice) {
+    // 设备被拔出：第一次打开原设备失败，之后按倍增间隔重试默认设备
+    EventLog log;
+    FakeBackend backend;
+    backend.failOpens = 2;
+    StreamRecovery recovery;
+    backend.start(recovery, log);
+    recovery.requestRecovery();
+    CHECK(log.waitFor(StreamRecovery::kEventRecovered));
+    recovery.stop();
+
+    std::vector<EventLog::Entry> entries = log.entries();
+    CHECK_EQ(entries.size(), 2u);
+    CHECK_EQ(entries[1].attempts, 3);
+    // 两次重试分别等待kRetryDelayMs和2 * kRetryDelayMs
+    CHECK_GE(entries[1].elapsedMs, 3 * StreamRecovery::kRetryDelayMs);
+    CHECK_EQ(backend.openedDevices.size(), 3u);
+    CHECK_EQ(backend.openedDevices[0], kRequestedDeviceId);
+    CHECK_EQ(backend.openedDevices[1], 0);
+    CHECK_EQ(backend.openedDevices[2], 0);
+    CHECK_EQ(recovery.getLastRecoveryMs(), static_cast<int32_t>(entries[1].elapsedMs));
+}
+
+HOST_TEST(StreamRecovery, deviceNeverOpens_failsWithinLimits) {
+    EventLog log;
+    FakeBackend backend;
+    backend.failOpens = 1000;
+    StreamRecovery recovery;
+    backend.start(recovery, log);
+    recovery.requestRecovery();
+    CHECK(log.waitFor(StreamRecovery::kEventFailed));
+    recovery.stop();
+
+    std::vector<EventLog::Entry> entries = log.entries();
+    printf("    %d 次尝试后放弃，耗时 %lld ms\n", entries.back().attempts,
+           static_cast<long long>(entries.back().elapsedMs));
+    CHECK_EQ(entries.size(), 2u);
+    CHECK_LE(entries.back().attempts, StreamRecovery::kMaxAttempts);
+    CHECK_EQ(backend.opens, entries.back().attempts);
+    CHECK_LE(entries.back().elapsedMs, StreamRecovery::kTimeoutMs);
+    CHECK_EQ(recovery.getRecoveryCount(), 0);
+    CHECK_EQ(recovery.getFailureCount(), 1);
+}
+
+HOST_TEST(StreamRecovery, userStopsDuringRetries_aborted) {
+    EventLog log;
+    FakeBackend backend;
+    backend.failOpens = 1000;
+    StreamRecovery recovery;
+    backend.start(recovery, log);
+    recovery.requestRecovery();
+    CHECK(log.waitFor(StreamRecovery::kEventRecovering));
+    backend.userStop();
+    CHECK(log.waitFor(StreamRecovery::kEventAborted));
+    recovery.stop();
+
+    // 停止后最多还有一次打开（停止前已开始），之后的尝试被放弃；中止不报告为失败
+    CHECK_LE(backend.opens, 2);
+    CHECK(!backend.running);
+    std::vector<EventLog::Entry> entries = log.entries();
+    CHECK_EQ(entries.size(), 2u);
+    CHECK_EQ(entries.back().event, StreamRecovery::kEventAborted);
+    CHECK_EQ(recovery.getFailureCount(), 0);
+}
+
+HOST_TEST(StreamRecovery, stopDuringRetryWait_returnsPromptly) {
+    // 析构（停止工作线程）不等待剩余的重试间隔
+    EventLog log;
+    FakeBackend backend;
+    backend.failOpens = 1000;
+    StreamRecovery recovery;
+    backend.start(recovery, log);
+    recovery.requestRecovery();
+    CHECK(log.waitFor(StreamRecovery::kEventRecovering));
+    std::this_thread::sleep_for(std::chrono::milliseconds(StreamRecovery::kRetryDelayMs + 20));
+    auto stopStart = std::chrono::steady_clock::now();
+    recovery.stop();
+    CHECK_LT(elapsedMs(stopStart), StreamRecovery::kRetryDelayMs);
+    CHECK_LT(backend.opens, StreamRecovery::kMaxAttempts);
+    CHECK_EQ(log.entries().back().event, StreamRecovery::kEventAborted);
+    CHECK_EQ(recovery.getFailureCount(), 0);
+}
+
+HOST_TEST(StreamRecovery, processorDisconnected_reopensAndKeepsProcessing) {
+    // FakeAAudio像真实AAudio一样在另一个线程上对输入输出流各调用一次错误回调
+    EventLog log;
+    AAudioProcessor processor;
+    startProcessor(processor, log, 0);
+    for (int disconnect = 1; disconnect <= 3; disconnect++) {
+        fakeaaudio::disconnectAll(0);
+        fakeaaudio::waitForErrorCallbacks();
+        CHECK(log.waitFor(StreamRecovery::kEventRecovered, disconnect));
+        CHECK_EQ(fakeaaudio::getOpenStreamCount(), 2);
+        CHECK_EQ(fakeaaudio::pumpOutput(50), 50);
+    }
+
+    int32_t stats[AAudioProcessor::kNumRecoveryStats];
+    processor.getRecoveryStats(stats);
+    CHECK_EQ(stats[AAudioProcessor::kRecoveryStatDisconnects], 6);
+    CHECK_EQ(stats[AAudioProcessor::kRecoveryStatRecoveries], 3);
+    CHECK_EQ(stats[AAudioProcessor::kRecoveryStatFailures], 0);
+    CHECK_EQ(log.entries().size(), 6u);
+    processor.stop();
+    processor.cleanup();
+    CHECK_EQ(fakeaaudio::getOpenStreamCount(), 0);
+}
+
+HOST_TEST(StreamRecovery, processorDeviceUnplugged_fallsBackToDefaultDevice) {
+    EventLog log;
+    AAudioProcessor processor;
+    startProcessor(processor, log, kRequestedDeviceId);
+    CHECK_EQ(AAudioStream_getDeviceId(fakeaaudio::getOutputStream()), kRequestedDeviceId);
+
+    // 原设备已拔出：再次打开它失败，第二次尝试打开默认设备
+    fakeaaudio::disconnectAll(1);
+    CHECK(log.waitFor(StreamRecovery::kEventRecovered));
+    std::vector<EventLog::Entry> entries = log.entries();
+    CHECK_EQ(entries.back().attempts, 2);
+    CHECK_EQ(fakeaaudio::getOpenStreamCount(), 2);
+    CHECK_EQ(AAudioStream_getDeviceId(fakeaaudio::getOutputStream()), fakeaaudio::kDefaultDeviceId);
+    CHECK_EQ(fakeaaudio::pumpOutput(50), 50);
+    processor.stop();
+    processor.cleanup();
+}
+
+HOST_TEST(StreamRecovery, processorRestartedDuringRecovery_abortedWithoutFailure) {
+    // 旧的流关闭后、重新打开之前用户重新设置并启动了处理（生命周期代数改变）：
+    // 恢复被放弃，不报告失败（Java层收到失败会认为处理已停止），用户打开的流继续运行
+    EventLog log;
+    AAudioProcessor processor;
+    startProcessor(processor, log, kRequestedDeviceId);
+    EventLog::Entry last = {-1, 0, 0};
+    std::mutex mutex;
+    std::condition_variable condition;
+    bool restarted = false;
+    bool done = false;
+    processor.setStreamEventCallback([&](int32_t event, int32_t attempts, int64_t elapsedMs) {
+        std::lock_guard<std::mutex> lock(mutex);
+        if (event == StreamRecovery::kEventRecovering) {
+            // 在恢复线程开始重新打开之前完成用户操作，使结果确定
+            restarted = processor.setupStreams(48000, 1, AAUDIO_FORMAT_PCM_FLOAT, 0, 0) && processor.start();
+        } else {
+            last = {event, attempts, elapsedMs};
+            done = true;
+        }
+        condition.notify_all();
+    });
+    fakeaaudio::disconnectAll(0);
+    fakeaaudio::waitForErrorCallbacks();
+    {
+        std::unique_lock<std::mutex> lock(mutex);
+        CHECK(condition.wait_for(lock, std::chrono::milliseconds(kEventTimeoutMs), [&] { return done; }));
+    }
+    CHECK(restarted);
+    CHECK_EQ(last.event, StreamRecovery::kEventAborted);
+    CHECK_EQ(last.attempts, 1);
+    int32_t stats[AAudioProcessor::kNumRecoveryStats];
+    processor.getRecoveryStats(stats);
+    CHECK_EQ(stats[AAudioProcessor::kRecoveryStatRecoveries], 0);
+    CHECK_EQ(stats[AAudioProcessor::kRecoveryStatFailures], 0);
+    CHECK_EQ(fakeaaudio::getOpenStreamCount(), 2);
+    CHECK_EQ(AAudioStream_getDeviceId(fakeaaudio::getOutputStream()), fakeaaudio::kDefaultDeviceId);
+    CHECK_EQ(fakeaaudio::pumpOutput(50), 50);
+    processor.setStreamEventCallback(nullptr);
+    processor.stop();
+    processor.cleanup();
+    CHECK_EQ(fakeaaudio::getOpenStreamCount(), 0);
+}
+
+HOST_TEST(StreamRecovery, processorStoppedBeforeRecovery_staysStopped) {
+    // 用户已经停止处理之后才到达的断开通知：不重新打开
+    EventLog log;
+    AAudioProcessor processor;
+    startProcessor(processor, log, 0);
+    processor.stop();
+    fakeaaudio::disconnectAll(0);
+    fakeaaudio::waitForErrorCallbacks();
+    std::this_thread::sleep_for(std::chrono::milliseconds(100));
+    int32_t stats[AAudioProcessor::kNumRecoveryStats];
+    processor.getRecoveryStats(stats);
+    CHECK_EQ(stats[AAudioProcessor::kRecoveryStatDisconnects], 2);
+    CHECK_EQ(stats[AAudioProcessor::kRecoveryStatRecoveries], 0);
+    CHECK_EQ(stats[AAudioProcessor::kRecoveryStatFailures], 0);
+    CHECK(log.entries().empty());
+    CHECK_EQ(fakeaaudio::pumpOutput(1), 0);
+    processor.cleanup();
+    CHECK_EQ(fakeaaudio::getOpenStreamCount(), 0);
+}
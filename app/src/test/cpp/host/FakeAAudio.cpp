@@ -0,0 +1,465 @@
+#include "FakeAAudio.h"
+
+#include <algorithm>
+#include <atomic>
+#include <chrono>
+#include <cmath>
+#include <cstring>
+#include <map>
+#include <mutex>
+#include <set>
+#include <thread>
+#include <time.h>
+#include <utility>
+#include <vector>
+
+struct AAudioStreamBuilderStruct {
+    aaudio_direction_t direction = AAUDIO_DIRECTION_OUTPUT;
+    int32_t sampleRate = AAUDIO_UNSPECIFIED;
+    int32_t channelCount = 1;
+    int32_t deviceId = AAUDIO_UNSPECIFIED;
+    aaudio_format_t format = AAUDIO_FORMAT_UNSPECIFIED;
+    int32_t framesPerDataCallback = AAUDIO_UNSPECIFIED;
+    AAudioStream_dataCallback dataCallback = nullptr;
+    void *dataUserData = nullptr;
+    AAudioStream_errorCallback errorCallback = nullptr;
+    void *errorUserData = nullptr;
+};
+
+struct AAudioStreamStruct {
+    AAudioStreamBuilderStruct config;
+    std::atomic<aaudio_stream_state_t> state{AAUDIO_STREAM_STATE_OPEN};
+    std::atomic<int64_t> framesWritten{0};
+    std::atomic<int64_t> framesRead{0};
+    std::atomic<int32_t> xRunCount{0};
+    std::atomic<int32_t> bufferSizeFrames{fakeaaudio::kFramesPerBurst * 2};
+    int64_t inputRemainder = 0;           // 输入流按采样率换算时累计的余数，由gCallbackMutex保护
+};
+
+namespace {
+
+// gMutex保护流的集合与配置；gCallbackMutex在数据回调运行期间持有，停止和关闭流时等待回调返回（与AAudio相同）
+std::mutex gMutex;
+std::mutex gCallbackMutex;
+std::set<AAudioStream*> gStreams;
+AAudioStream *gOutputStream = nullptr;
+std::map<int32_t, std::pair<int32_t, aaudio_format_t>> gDeviceConfigs;
+fakeaaudio::InputSignal gInputSignal = nullptr;
+int32_t gOpenFailures = 0;
+std::atomic<int32_t> gPendingErrorCallbacks(0);
+std::atomic<int64_t> gOutputCallbacks(0);
+std::atomic<float> gLastOutputPeak(0.0f);
+
+int32_t bytesPerSample(aaudio_format_t format) {
+    switch (format) {
+        case AAUDIO_FORMAT_PCM_I16:
+            return 2;
+        case AAUDIO_FORMAT_PCM_I24_PACKED:
+            return 3;
+        default:
+            return 4;
+    }
+}
+
+void encodeSample(float value, aaudio_format_t format, uint8_t *dest) {
+    value = std::max(-1.0f, std::min(1.0f, value));
+    switch (format) {
+        case AAUDIO_FORMAT_PCM_I16: {
+            int16_t sample = static_cast<int16_t>(std::lrint(std::min(value * 32768.0f, 32767.0f)));
+            memcpy(dest, &sample, sizeof(sample));
+            break;
+        }
+        case AAUDIO_FORMAT_PCM_I24_PACKED: {
+            int32_t sample = static_cast<int32_t>(std::lrint(std::min(value * 8388608.0f, 8388607.0f)));
+            dest[0] = static_cast<uint8_t>(sample);
+            dest[1] = static_cast<uint8_t>(sample >> 8);
+            dest[2] = static_cast<uint8_t>(sample >> 16);
+            break;
+        }
+        case AAUDIO_FORMAT_PCM_I32: {
+            int32_t sample = static_cast<int32_t>(std::llrint(std::min(value * 2147483648.0, 2147483647.0)));
+            memcpy(dest, &sample, sizeof(sample));
+            break;
+        }
+        default:
+            memcpy(dest, &value, sizeof(value));
+            break;
+    }
+}
+
+float decodeSample(aaudio_format_t format, const uint8_t *src) {
+    switch (format) {
+        case AAUDIO_FORMAT_PCM_I16: {
+            int16_t sample;
+            memcpy(&sample, src, sizeof(sample));
+            return sample / 32768.0f;
+        }
+        case AAUDIO_FORMAT_PCM_I24_PACKED: {
+            int32_t sample = static_cast<int32_t>(static_cast<uint32_t>(src[0]) << 8 |
+                                                  static_cast<uint32_t>(src[1]) << 16 |
+                                                  static_cast<uint32_t>(src[2]) << 24);
+            return sample / 2147483648.0f;
+        }
+        case AAUDIO_FORMAT_PCM_I32: {
+            int32_t sample;
+            memcpy(&sample, src, sizeof(sample));
+            return sample / 2147483648.0f;
+        }
+        default: {
+            float sample;
+            memcpy(&sample, src, sizeof(sample));
+            return sample;
+        }
+    }
+}
+
+int32_t capacityFrames() {
+    return fakeaaudio::kFramesPerBurst * fakeaaudio::kCapacityBursts;
+}
+
+// 已启动的输入流前进outputFrames个输出帧的时长，积压超过容量时丢弃最旧的数据并记一次xrun（需持有gMutex）
+void advanceInputLocked(int32_t outputFrames, int32_t outputSampleRate) {
+    for (AAudioStream *stream : gStreams) {
+        if (stream->config.direction != AAUDIO_DIRECTION_INPUT ||
+            stream->state.load() != AAUDIO_STREAM_STATE_STARTED) {
+            continue;
+        }
+        stream->inputRemainder += static_cast<int64_t>(outputFrames) * stream->config.sampleRate;
+        stream->framesWritten += stream->inputRemainder / outputSampleRate;
+        stream->inputRemainder %= outputSampleRate;
+        int64_t backlog = stream->framesWritten.load() - stream->framesRead.load();
+        if (backlog > capacityFrames()) {
+            stream->framesRead += backlog - capacityFrames();
+            stream->xRunCount++;
+        }
+    }
+}
+
+} // namespace
+
+extern "C" {
+
+const char *AAudio_convertResultToText(aaudio_result_t returnCode) {
+    switch (returnCode) {
+        case AAUDIO_OK:
+            return "AAUDIO_OK";
+        case AAUDIO_ERROR_DISCONNECTED:
+            return "AAUDIO_ERROR_DISCONNECTED";
+        case AAUDIO_ERROR_INVALID_STATE:
+            return "AAUDIO_ERROR_INVALID_STATE";
+        case AAUDIO_ERROR_UNAVAILABLE:
+            return "AAUDIO_ERROR_UNAVAILABLE";
+        default:
+            return "AAUDIO_ERROR";
+    }
+}
+
+aaudio_result_t AAudio_createStreamBuilder(AAudioStreamBuilder **builder) {
+    *builder = new AAudioStreamBuilderStruct();
+    return AAUDIO_OK;
+}
+
+aaudio_result_t AAudioStreamBuilder_delete(AAudioStreamBuilder *builder) {
+    delete builder;
+    return AAUDIO_OK;
+}
+
+void AAudioStreamBuilder_setChannelCount(AAudioStreamBuilder *builder, int32_t channelCount) {
+    builder->channelCount = channelCount;
+}
+
+void AAudioStreamBuilder_setDataCallback(AAudioStreamBuilder *builder,
+                                         AAudioStream_dataCallback callback, void *userData) {
+    builder->dataCallback = callback;
+    builder->dataUserData = userData;
+}
+
+void AAudioStreamBuilder_setErrorCallback(AAudioStreamBuilder *builder,
+                                          AAudioStream_errorCallback callback, void *userData) {
+    builder->errorCallback = callback;
+    builder->errorUserData = userData;
+}
+
+void AAudioStreamBuilder_setDeviceId(AAudioStreamBuilder *builder, int32_t deviceId) {
+    builder->deviceId = deviceId;
+}
+
+void AAudioStreamBuilder_setDirection(AAudioStreamBuilder *builder, aaudio_direction_t direction) {
+    builder->direction = direction;
+}
+
+void AAudioStreamBuilder_setFormat(AAudioStreamBuilder *builder, aaudio_format_t format) {
+    builder->format = format;
+}
+
+void AAudioStreamBuilder_setPerformanceMode(AAudioStreamBuilder*, aaudio_performance_mode_t) {}
+
+void AAudioStreamBuilder_setFramesPerDataCallback(AAudioStreamBuilder *builder, int32_t numFrames) {
+    builder->framesPerDataCallback = numFrames;
+}
+
+void AAudioStreamBuilder_setSampleRate(AAudioStreamBuilder *builder, int32_t sampleRate) {
+    builder->sampleRate = sampleRate;
+}
+
+void AAudioStreamBuilder_setSharingMode(AAudioStreamBuilder*, aaudio_sharing_mode_t) {}
+
+aaudio_result_t AAudioStreamBuilder_openStream(AAudioStreamBuilder *builder, AAudioStream **stream) {
+    std::lock_guard<std::mutex> lock(gMutex);
+    if (builder->deviceId != AAUDIO_UNSPECIFIED && gOpenFailures > 0) {
+        gOpenFailures--;
+        return AAUDIO_ERROR_UNAVAILABLE;
+    }
+    AAudioStream *opened = new AAudioStreamStruct();
+    opened->config = *builder;
+    if (opened->config.deviceId == AAUDIO_UNSPECIFIED) {
+        opened->config.deviceId = fakeaaudio::kDefaultDeviceId;
+    }
+    int32_t nativeRate = fakeaaudio::kDefaultSampleRate;
+    aaudio_format_t nativeFormat = AAUDIO_FORMAT_PCM_FLOAT;
+    auto config = gDeviceConfigs.find(opened->config.deviceId);
+    if (config != gDeviceConfigs.end()) {
+        nativeRate = config->second.first;
+        nativeFormat = config->second.second;
+    }
+    if (opened->config.sampleRate == AAUDIO_UNSPECIFIED) {
+        opened->config.sampleRate = nativeRate;
+    }
+    if (opened->config.format == AAUDIO_FORMAT_UNSPECIFIED) {
+        opened->config.format = nativeFormat;
+    }
+    gStreams.insert(opened);
+    if (opened->config.direction == AAUDIO_DIRECTION_OUTPUT) {
+        gOutputStream = opened;
+    }
+    *stream = opened;
+    return AAUDIO_OK;
+}
+
+aaudio_result_t AAudioStream_requestStart(AAudioStream *stream) {
+    if (stream->state.load() == AAUDIO_STREAM_STATE_DISCONNECTED) {
+        return AAUDIO_ERROR_DISCONNECTED;
+    }
+    stream->state = AAUDIO_STREAM_STATE_STARTED;
+    return AAUDIO_OK;
+}
+
+aaudio_result_t AAudioStream_requestStop(AAudioStream *stream) {
+    std::lock_guard<std::mutex> lock(gCallbackMutex);
+    if (stream->state.load() == AAUDIO_STREAM_STATE_DISCONNECTED) {
+        return AAUDIO_ERROR_DISCONNECTED;
+    }
+    stream->state = AAUDIO_STREAM_STATE_STOPPED;
+    return AAUDIO_OK;
+}
+
+aaudio_result_t AAudioStream_close(AAudioStream *stream) {
+    std::lock_guard<std::mutex> callbackLock(gCallbackMutex);
+    std::lock_guard<std::mutex> lock(gMutex);
+    gStreams.erase(stream);
+    if (gOutputStream == stream) {
+        gOutputStream = nullptr;
+    }
+    delete stream;
+    return AAUDIO_OK;
+}
+
+aaudio_result_t AAudioStream_read(AAudioStream *stream, void *buffer, int32_t numFrames, int64_t) {
+    if (stream->state.load() == AAUDIO_STREAM_STATE_DISCONNECTED) {
+        return AAUDIO_ERROR_DISCONNECTED;
+    }
+    int64_t first = stream->framesRead.load();
+    int32_t frames = static_cast<int32_t>(std::max<int64_t>(0, std::min<int64_t>(
+            stream->framesWritten.load() - first, numFrames)));
+    const int32_t channels = stream->config.channelCount;
+    const int32_t sampleBytes = bytesPerSample(stream->config.format);
+    uint8_t *dest = static_cast<uint8_t*>(buffer);
+    for (int32_t frame = 0; frame < frames; frame++) {
+        float value = gInputSignal != nullptr ? gInputSignal(first + frame, stream->config.sampleRate) : 0.0f;
+        for (int32_t ch = 0; ch < channels; ch++) {
+            encodeSample(value, stream->config.format, dest + (frame * channels + ch) * sampleBytes);
+        }
+    }
+    stream->framesRead += frames;
+    return frames;
+}
+
+aaudio_result_t AAudioStream_write(AAudioStream *stream, const void*, int32_t numFrames, int64_t) {
+    if (stream->state.load() == AAUDIO_STREAM_STATE_DISCONNECTED) {
+        return AAUDIO_ERROR_DISCONNECTED;
+    }
+    stream->framesWritten += numFrames;
+    return numFrames;
+}
+
+aaudio_result_t AAudioStream_setBufferSizeInFrames(AAudioStream *stream, int32_t numFrames) {
+    int32_t frames = std::max(fakeaaudio::kFramesPerBurst, std::min(numFrames, capacityFrames()));
+    stream->bufferSizeFrames = frames;
+    return frames;
+}
+
+int32_t AAudioStream_getBufferSizeInFrames(AAudioStream *stream) {
+    return stream->bufferSizeFrames.load();
+}
+
+int32_t AAudioStream_getBufferCapacityInFrames(AAudioStream*) {
+    return capacityFrames();
+}
+
+int32_t AAudioStream_getFramesPerBurst(AAudioStream*) {
+    return fakeaaudio::kFramesPerBurst;
+}
+
+int32_t AAudioStream_getFramesPerDataCallback(AAudioStream *stream) {
+    return stream->config.framesPerDataCallback;
+}
+
+int32_t AAudioStream_getChannelCount(AAudioStream *stream) {
+    return stream->config.channelCount;
+}
+
+int32_t AAudioStream_getDeviceId(AAudioStream *stream) {
+    return stream->config.deviceId;
+}
+
+int32_t AAudioStream_getSampleRate(AAudioStream *stream) {
+    return stream->config.sampleRate;
+}
+
+aaudio_format_t AAudioStream_getFormat(AAudioStream *stream) {
+    return stream->config.format;
+}
+
+aaudio_stream_state_t AAudioStream_getState(AAudioStream *stream) {
+    return stream->state.load();
+}
+
+int32_t AAudioStream_getXRunCount(AAudioStream *stream) {
+    return stream->xRunCount.load();
+}
+
+int64_t AAudioStream_getFramesRead(AAudioStream *stream) {
+    return stream->framesRead.load();
+}
+
+int64_t AAudioStream_getFramesWritten(AAudioStream *stream) {
+    return stream->framesWritten.load();
+}
+
+aaudio_result_t AAudioStream_getTimestamp(AAudioStream *stream, int32_t,
+                                          int64_t *framePosition, int64_t *timeNanoseconds) {
+    if (stream->state.load() != AAUDIO_STREAM_STATE_STARTED) {
+        return AAUDIO_ERROR_INVALID_STATE;
+    }
+    struct timespec now;
+    clock_gettime(CLOCK_MONOTONIC, &now);
+    // 输出流报告的位置落后已写入一个突发（正在播放），输入流报告已采集的位置
+    int64_t position = stream->framesWritten.load();
+    if (stream->config.direction == AAUDIO_DIRECTION_OUTPUT) {
+        position = std::max<int64_t>(0, position - fakeaaudio::kFramesPerBurst);
+    }
+    *framePosition = position;
+    *timeNanoseconds = now.tv_sec * 1000000000LL + now.tv_nsec;
+    return AAUDIO_OK;
+}
+
+} // extern "C"
+
+namespace fakeaaudio {
+
+void reset() {
+    std::lock_guard<std::mutex> lock(gMutex);
+    gDeviceConfigs.clear();
+    gInputSignal = nullptr;
+    gOpenFailures = 0;
+    gOutputCallbacks = 0;
+    gLastOutputPeak = 0.0f;
+}
+
+void setDeviceConfig(int32_t deviceId, int32_t sampleRate, aaudio_format_t format) {
+    std::lock_guard<std::mutex> lock(gMutex);
+    gDeviceConfigs[deviceId] = std::make_pair(sampleRate, format);
+}
+
+void setInputSignal(InputSignal signal) {
+    std::lock_guard<std::mutex> lock(gMutex);
+    gInputSignal = signal;
+}
+
+int32_t pumpOutput(int32_t bursts) {
+    std::vector<uint8_t> buffer;
+    for (int32_t burst = 0; burst < bursts; burst++) {
+        std::lock_guard<std::mutex> callbackLock(gCallbackMutex);
+        AAudioStream *stream;
+        {
+            std::lock_guard<std::mutex> lock(gMutex);
+            stream = gOutputStream;
+            if (stream == nullptr || stream->state.load() != AAUDIO_STREAM_STATE_STARTED) {
+                return burst;
+            }
+            advanceInputLocked(kFramesPerBurst, stream->config.sampleRate);
+        }
+        const int32_t samples = kFramesPerBurst * stream->config.channelCount;
+        const int32_t sampleBytes = bytesPerSample(stream->config.format);
+        buffer.assign(static_cast<size_t>(samples) * sampleBytes, 0);
+        stream->config.dataCallback(stream, stream->config.dataUserData, buffer.data(), kFramesPerBurst);
+        float peak = 0.0f;
+        for (int32_t i = 0; i < samples; i++) {
+            peak = std::max(peak, std::fabs(decodeSample(stream->config.format, buffer.data() + i * sampleBytes)));
+        }
+        gLastOutputPeak = peak;
+        stream->framesWritten += kFramesPerBurst;
+        gOutputCallbacks++;
+    }
+    return bursts;
+}
+
+void advanceInput(int32_t outputFrames) {
+    std::lock_guard<std::mutex> lock(gMutex);
+    int32_t outputRate = gOutputStream != nullptr ? gOutputStream->config.sampleRate : kDefaultSampleRate;
+    advanceInputLocked(outputFrames, outputRate);
+}
+
+AAudioStream *getOutputStream() {
+    std::lock_guard<std::mutex> lock(gMutex);
+    return gOutputStream;
+}
+
+void disconnectAll(int32_t openFailures) {
+    std::lock_guard<std::mutex> lock(gMutex);
+    gOpenFailures = openFailures;
+    for (AAudioStream *stream : gStreams) {
+        stream->state = AAUDIO_STREAM_STATE_DISCONNECTED;
+        AAudioStream_errorCallback callback = stream->config.errorCallback;
+        if (callback == nullptr) {
+            continue;
+        }
+        void *userData = stream->config.errorUserData;
+        gPendingErrorCallbacks++;
+        std::thread([stream, callback, userData] {
+            callback(stream, userData, AAUDIO_ERROR_DISCONNECTED);
+            gPendingErrorCallbacks--;
+        }).detach();
+    }
+}
+
+void waitForErrorCallbacks() {
+    while (gPendingErrorCallbacks.load() > 0) {
+        std::this_thread::sleep_for(std::chrono::milliseconds(1));
+    }
+}
+
+int32_t getOpenStreamCount() {
+    std::lock_guard<std::mutex> lock(gMutex);
+    return static_cast<int32_t>(gStreams.size());
+}
+
+int64_t getOutputCallbackCount() {
+    return gOutputCallbacks.load();
+}
+
+float getLastOutputPeak() {
+    return gLastOutputPeak.load();
+}
+
+} // namespace fakeaaudio
@@ -0,0 +1,52 @@
+#ifndef LISTENHELP6_FAKEAAUDIO_H
+#define LISTENHELP6_FAKEAAUDIO_H
+
+#include <aaudio/AAudio.h>
+#include <cstdint>
+
+// 主机测试用的假AAudio后端（实现host/aaudio/AAudio.h声明的函数）
+// 流没有自己的线程：测试调用pumpOutput让已启动的输出流运行数据回调（或直接调用AAudioProcessor::dataCallback），
+// 每次回调前输入流按自己的采样率前进同样时长的帧。设备的原生采样率和格式可以按设备ID配置，
+// disconnectAll像真实AAudio一样在另一个线程上对每个流调用错误回调，用来测试断开恢复。
+namespace fakeaaudio {
+
+static const int32_t kFramesPerBurst = 192;
+static const int32_t kCapacityBursts = 8;
+static const int32_t kDefaultDeviceId = 2;       // 请求默认设备（0）时实际打开的设备
+static const int32_t kDefaultSampleRate = 48000;
+
+// 输入信号：按输入流自己的帧序号生成样本（各声道相同），默认静音
+typedef float (*InputSignal)(int64_t frame, int32_t sampleRate);
+
+// 恢复默认状态：清除设备配置、输入信号、注入的打开失败和统计（没有打开的流时调用）
+void reset();
+
+// 设置设备的原生采样率和格式（请求AAUDIO_UNSPECIFIED时使用），未设置的设备为48kHz浮点
+void setDeviceConfig(int32_t deviceId, int32_t sampleRate, aaudio_format_t format);
+
+void setInputSignal(InputSignal signal);
+
+// 已启动的输出流运行bursts次数据回调（每次一个突发），返回实际运行的次数（没有已启动的输出流时停止）
+int32_t pumpOutput(int32_t bursts);
+
+// 输入流前进outputFrames个输出帧对应的时长，测试直接调用数据回调时使用
+void advanceInput(int32_t outputFrames);
+
+// 最近打开的输出流，没有时为nullptr
+AAudioStream *getOutputStream();
+
+// 断开所有流，并在另一个线程上调用它们的错误回调；之后openFailures次打开指定设备（非0）的请求失败，模拟设备已拔出
+void disconnectAll(int32_t openFailures);
+
+// 等待disconnectAll发出的错误回调全部返回
+void waitForErrorCallbacks();
+
+int32_t getOpenStreamCount();
+int64_t getOutputCallbackCount();
+
+// 最近一次pumpOutput输出的峰值（按流的格式解码为浮点）
+float getLastOutputPeak();
+
+} // namespace fakeaaudio
+
+#endif //LISTENHELP6_FAKEAAUDIO_H
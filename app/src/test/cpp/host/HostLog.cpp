@@ -0,0 +1,31 @@
+#include <android/log.h>
+
+#include <cstdarg>
+#include <cstdio>
+#include <cstdlib>
+
+// 默认只输出警告和错误，设置环境变量LISTENHELP_HOST_LOG=verbose时输出全部日志
+static bool isLoggable(int priority) {
+    static const bool verbose = getenv("LISTENHELP_HOST_LOG") != nullptr;
+    return verbose || priority >= ANDROID_LOG_WARN;
+}
+
+extern "C" int __android_log_print(int priority, const char *tag, const char *format, ...) {
+    if (!isLoggable(priority)) {
+        return 0;
+    }
+    va_list args;
+    va_start(args, format);
+    fprintf(stderr, "[%s] ", tag);
+    vfprintf(stderr, format, args);
+    fputc('\n', stderr);
+    va_end(args);
+    return 0;
+}
+
+extern "C" int __android_log_write(int priority, const char *tag, const char *text) {
+    if (isLoggable(priority)) {
+        fprintf(stderr, "[%s] %s\n", tag, text);
+    }
+    return 0;
+}
@@ -0,0 +1,141 @@
+#ifndef LISTENHELP6_HOST_AAUDIO_H
+#define LISTENHELP6_HOST_AAUDIO_H
+
+#include <stdint.h>
+
+// 主机测试用的<aaudio/AAudio.h>：常量取值与NDK相同，只声明原生代码用到的函数，
+// 实现是FakeAAudio.cpp中由测试驱动的假流（见FakeAAudio.h）
+
+typedef int32_t aaudio_result_t;
+typedef int32_t aaudio_format_t;
+typedef int32_t aaudio_direction_t;
+typedef int32_t aaudio_stream_state_t;
+typedef int32_t aaudio_data_callback_result_t;
+typedef int32_t aaudio_sharing_mode_t;
+typedef int32_t aaudio_performance_mode_t;
+
+enum {
+    AAUDIO_UNSPECIFIED = 0
+};
+
+enum {
+    AAUDIO_OK = 0,
+    AAUDIO_ERROR_BASE = -900,
+    AAUDIO_ERROR_DISCONNECTED = -899,
+    AAUDIO_ERROR_ILLEGAL_ARGUMENT = -898,
+    AAUDIO_ERROR_INTERNAL = -896,
+    AAUDIO_ERROR_INVALID_STATE = -895,
+    AAUDIO_ERROR_INVALID_HANDLE = -892,
+    AAUDIO_ERROR_UNIMPLEMENTED = -890,
+    AAUDIO_ERROR_UNAVAILABLE = -889,
+    AAUDIO_ERROR_NO_FREE_HANDLES = -888,
+    AAUDIO_ERROR_NO_MEMORY = -887,
+    AAUDIO_ERROR_NULL = -886,
+    AAUDIO_ERROR_TIMEOUT = -885,
+    AAUDIO_ERROR_WOULD_BLOCK = -884,
+    AAUDIO_ERROR_INVALID_FORMAT = -883,
+    AAUDIO_ERROR_OUT_OF_RANGE = -882,
+    AAUDIO_ERROR_NO_SERVICE = -881,
+    AAUDIO_ERROR_INVALID_RATE = -880
+};
+
+enum {
+    AAUDIO_FORMAT_INVALID = -1,
+    AAUDIO_FORMAT_UNSPECIFIED = 0,
+    AAUDIO_FORMAT_PCM_I16 = 1,
+    AAUDIO_FORMAT_PCM_FLOAT = 2,
+    AAUDIO_FORMAT_PCM_I24_PACKED = 3,
+    AAUDIO_FORMAT_PCM_I32 = 4
+};
+
+enum {
+    AAUDIO_DIRECTION_OUTPUT = 0,
+    AAUDIO_DIRECTION_INPUT = 1
+};
+
+enum {
+    AAUDIO_STREAM_STATE_UNINITIALIZED = 0,
+    AAUDIO_STREAM_STATE_UNKNOWN = 1,
+    AAUDIO_STREAM_STATE_OPEN = 2,
+    AAUDIO_STREAM_STATE_STARTING = 3,
+    AAUDIO_STREAM_STATE_STARTED = 4,
+    AAUDIO_STREAM_STATE_PAUSING = 5,
+    AAUDIO_STREAM_STATE_PAUSED = 6,
+    AAUDIO_STREAM_STATE_FLUSHING = 7,
+    AAUDIO_STREAM_STATE_FLUSHED = 8,
+    AAUDIO_STREAM_STATE_STOPPING = 9,
+    AAUDIO_STREAM_STATE_STOPPED = 10,
+    AAUDIO_STREAM_STATE_CLOSING = 11,
+    AAUDIO_STREAM_STATE_CLOSED = 12,
+    AAUDIO_STREAM_STATE_DISCONNECTED = 13
+};
+
+enum {
+    AAUDIO_SHARING_MODE_EXCLUSIVE = 0,
+    AAUDIO_SHARING_MODE_SHARED = 1
+};
+
+enum {
+    AAUDIO_PERFORMANCE_MODE_NONE = 10,
+    AAUDIO_PERFORMANCE_MODE_POWER_SAVING = 11,
+    AAUDIO_PERFORMANCE_MODE_LOW_LATENCY = 12
+};
+
+enum {
+    AAUDIO_CALLBACK_RESULT_CONTINUE = 0,
+    AAUDIO_CALLBACK_RESULT_STOP = 1
+};
+
+typedef struct AAudioStreamStruct AAudioStream;
+typedef struct AAudioStreamBuilderStruct AAudioStreamBuilder;
+
+typedef aaudio_data_callback_result_t (*AAudioStream_dataCallback)(
+        AAudioStream *stream, void *userData, void *audioData, int32_t numFrames);
+typedef void (*AAudioStream_errorCallback)(
+        AAudioStream *stream, void *userData, aaudio_result_t error);
+
+extern "C" {
+
+const char *AAudio_convertResultToText(aaudio_result_t returnCode);
+
+aaudio_result_t AAudio_createStreamBuilder(AAudioStreamBuilder **builder);
+aaudio_result_t AAudioStreamBuilder_delete(AAudioStreamBuilder *builder);
+aaudio_result_t AAudioStreamBuilder_openStream(AAudioStreamBuilder *builder, AAudioStream **stream);
+void AAudioStreamBuilder_setChannelCount(AAudioStreamBuilder *builder, int32_t channelCount);
+void AAudioStreamBuilder_setDataCallback(AAudioStreamBuilder *builder,
+                                         AAudioStream_dataCallback callback, void *userData);
+void AAudioStreamBuilder_setErrorCallback(AAudioStreamBuilder *builder,
+                                          AAudioStream_errorCallback callback, void *userData);
+void AAudioStreamBuilder_setDeviceId(AAudioStreamBuilder *builder, int32_t deviceId);
+void AAudioStreamBuilder_setDirection(AAudioStreamBuilder *builder, aaudio_direction_t direction);
+void AAudioStreamBuilder_setFormat(AAudioStreamBuilder *builder, aaudio_format_t format);
+void AAudioStreamBuilder_setFramesPerDataCallback(AAudioStreamBuilder *builder, int32_t numFrames);
+void AAudioStreamBuilder_setPerformanceMode(AAudioStreamBuilder *builder, aaudio_performance_mode_t mode);
+void AAudioStreamBuilder_setSampleRate(AAudioStreamBuilder *builder, int32_t sampleRate);
+void AAudioStreamBuilder_setSharingMode(AAudioStreamBuilder *builder, aaudio_sharing_mode_t sharingMode);
+
+aaudio_result_t AAudioStream_close(AAudioStream *stream);
+aaudio_result_t AAudioStream_requestStart(AAudioStream *stream);
+aaudio_result_t AAudioStream_requestStop(AAudioStream *stream);
+aaudio_result_t AAudioStream_read(AAudioStream *stream, void *buffer, int32_t numFrames, int64_t timeoutNanos);
+aaudio_result_t AAudioStream_write(AAudioStream *stream, const void *buffer, int32_t numFrames,
+                                   int64_t timeoutNanos);
+aaudio_result_t AAudioStream_setBufferSizeInFrames(AAudioStream *stream, int32_t numFrames);
+int32_t AAudioStream_getBufferSizeInFrames(AAudioStream *stream);
+int32_t AAudioStream_getBufferCapacityInFrames(AAudioStream *stream);
+int32_t AAudioStream_getFramesPerBurst(AAudioStream *stream);
+int32_t AAudioStream_getFramesPerDataCallback(AAudioStream *stream);
+int32_t AAudioStream_getChannelCount(AAudioStream *stream);
+int32_t AAudioStream_getDeviceId(AAudioStream *stream);
+int32_t AAudioStream_getSampleRate(AAudioStream *stream);
+aaudio_format_t AAudioStream_getFormat(AAudioStream *stream);
+aaudio_stream_state_t AAudioStream_getState(AAudioStream *stream);
+int32_t AAudioStream_getXRunCount(AAudioStream *stream);
+int64_t AAudioStream_getFramesRead(AAudioStream *stream);
+int64_t AAudioStream_getFramesWritten(AAudioStream *stream);
+aaudio_result_t AAudioStream_getTimestamp(AAudioStream *stream, int32_t clockid,
+                                          int64_t *framePosition, int64_t *timeNanoseconds);
+
+}
+
+#endif //LISTENHELP6_HOST_AAUDIO_H
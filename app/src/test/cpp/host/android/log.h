@@ -0,0 +1,23 @@
+#ifndef LISTENHELP6_HOST_ANDROID_LOG_H
+#define LISTENHELP6_HOST_ANDROID_LOG_H
+
+// 主机测试用的<android/log.h>：只声明原生代码用到的部分，实现（写到stderr）见HostLog.cpp
+enum {
+    ANDROID_LOG_UNKNOWN = 0,
+    ANDROID_LOG_DEFAULT,
+    ANDROID_LOG_VERBOSE,
+    ANDROID_LOG_DEBUG,
+    ANDROID_LOG_INFO,
+    ANDROID_LOG_WARN,
+    ANDROID_LOG_ERROR,
+    ANDROID_LOG_FATAL,
+    ANDROID_LOG_SILENT
+};
+
+extern "C" {
+int __android_log_print(int priority, const char *tag, const char *format, ...)
+        __attribute__((format(printf, 3, 4)));
+int __android_log_write(int priority, const char *tag, const char *text);
+}
+
+#endif //LISTENHELP6_HOST_ANDROID_LOG_H
@@ -0,0 +1,139 @@
+package com.example.listenhelp6.audio;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * CallbackStats的分位数精度：按原生层的分桶规则生成直方图，与精确分位数比较
+ */
+public class CallbackStatsTest {
+    private static final double MAX_RELATIVE_ERROR = 1.0 / (2 * CallbackStats.SUB_BUCKETS);
+
+    @Test
+    public void buckets_coverValuesContiguously() {
+        for (int i = 1; i < AAudioProcessorJNI.STATS_HISTOGRAM_BUCKETS; i++) {
+            assertEquals(CallbackStats.bucketLowerBound(i - 1) + CallbackStats.bucketWidth(i - 1),
+                    CallbackStats.bucketLowerBound(i));
+        }
+        for (long value = 0; value < (1L << 20); value++) {
+            int index = CallbackStats.bucketIndex(value);
+            assertTrue(value >= CallbackStats.bucketLowerBound(index));
+            assertTrue(value < CallbackStats.bucketLowerBound(index) + CallbackStats.bucketWidth(index));
+        }
+        // 超出范围的值计入最后一个桶
+        assertEquals(AAudioProcessorJNI.STATS_HISTOGRAM_BUCKETS - 1, CallbackStats.bucketIndex(1L << 30));
+    }
+
+    @Test
+    public void bucketVectors_matchNative() {
+        // 与原生层LogLinearHistogramTest.cpp的kBucketVectors相同：{值, 桶, 桶下界}，两处一起更新
+        long[][] vectors = {
+                {0, 0, 0},
+                {1, 1, 1},
+                {31, 31, 31},
+                {32, 32, 32},
+                {33, 33, 33},
+                {63, 63, 63},
+                {64, 64, 64},
+                {65, 64, 64},
+                {66, 65, 66},
+                {100, 82, 100},
+                {127, 95, 126},
+                {128, 96, 128},
+                {1000, 190, 992},
+                {4800, 261, 4736},
+                {65535, 383, 64512},
+                {65536, 384, 65536},
+                {16777215, 639, 16515072},
+                {16777216, 639, 16515072},
+                {4294967295L, 639, 16515072},
+        };
+        for (long[] vector : vectors) {
+            assertEquals("值 " + vector[0], vector[1], CallbackStats.bucketIndex(vector[0]));
+            assertEquals("桶 " + vector[1], vector[2], CallbackStats.bucketLowerBound((int) vector[1]));
+        }
+        assertEquals(640, AAudioProcessorJNI.STATS_HISTOGRAM_BUCKETS);
+    }
+
+    @Test
+    public void waveformDroppedFrames_parsed() {
+        long[] stats = new long[AAudioProcessorJNI.STATS_COUNT];
+        stats[AAudioProcessorJNI.STATS_WAVEFORM_DROPPED] = 4800;
+        assertEquals(4800, new CallbackStats(stats).getWaveformDroppedFrames());
+        assertEquals(0, new CallbackStats(null).getWaveformDroppedFrames());
+    }
+
+    @Test
+    public void smallValues_areExact() {
+        long[] values = new long[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 20;
+        }
+        CallbackStats stats = new CallbackStats(buildStats(values, new long[0]));
+        assertEquals(exactPercentile(values, 0.5), stats.getWallTimePercentileUs(0.5), 0.0);
+        assertEquals(exactPercentile(values, 0.99), stats.getWallTimePercentileUs(0.99), 0.0);
+    }
+
+    @Test
+    public void percentiles_withinBucketResolution() {
+        Random random = new Random(1234);
+        long[] wallTimes = new long[20000];
+        long[] loads = new long[20000];
+        for (int i = 0; i < wallTimes.length; i++) {
+            // 对数正态分布的耗时（约0.5ms），偶尔出现长尾
+            wallTimes[i] = Math.round(500.0 * Math.exp(0.4 * random.nextGaussian()));
+            if (random.nextInt(200) == 0) {
+                wallTimes[i] *= 8;
+            }
+            loads[i] = Math.round(2500.0 * Math.exp(0.3 * random.nextGaussian()));
+        }
+        CallbackStats stats = new CallbackStats(buildStats(wallTimes, loads));
+        for (double quantile : new double[] {0.01, 0.5, 0.9, 0.99, 0.999, 1.0}) {
+            double expected = exactPercentile(wallTimes, quantile);
+            assertEquals(expected, stats.getWallTimePercentileUs(quantile), expected * MAX_RELATIVE_ERROR);
+            double expectedLoad = exactPercentile(loads, quantile) / 100.0;
+            assertEquals(expectedLoad, stats.getLoadPercentile(quantile), expectedLoad * MAX_RELATIVE_ERROR);
+        }
+        assertEquals(wallTimes.length, stats.getCallbackCount());
+        assertEquals(Arrays.stream(wallTimes).average().getAsDouble(), stats.getMeanWallTimeUs(), 1e-9);
+        assertEquals(Arrays.stream(loads).max().getAsLong() / 100.0, stats.getMaxLoadPercent(), 0.0);
+    }
+
+    @Test
+    public void emptyOrInvalidStats_returnZero() {
+        CallbackStats stats = new CallbackStats(null);
+        assertEquals(0, stats.getCallbackCount());
+        assertEquals(0.0, stats.getWallTimePercentileUs(0.99), 0.0);
+        assertEquals(0.0, stats.getMeanLoadPercent(), 0.0);
+    }
+
+    // 模拟原生层getStats的输出：计数、总和、最大值和两个直方图
+    private static long[] buildStats(long[] wallTimes, long[] loads) {
+        long[] stats = new long[AAudioProcessorJNI.STATS_COUNT];
+        stats[AAudioProcessorJNI.STATS_CALLBACKS] = wallTimes.length;
+        for (long value : wallTimes) {
+            stats[AAudioProcessorJNI.STATS_WALL_TIME_SUM_US] += value;
+            stats[AAudioProcessorJNI.STATS_WALL_TIME_MAX_US] =
+                    Math.max(stats[AAudioProcessorJNI.STATS_WALL_TIME_MAX_US], value);
+            stats[AAudioProcessorJNI.STATS_WALL_TIME_HISTOGRAM + CallbackStats.bucketIndex(value)]++;
+        }
+        for (long value : loads) {
+            stats[AAudioProcessorJNI.STATS_LOAD_SUM] += value;
+            stats[AAudioProcessorJNI.STATS_LOAD_MAX] = Math.max(stats[AAudioProcessorJNI.STATS_LOAD_MAX], value);
+            stats[AAudioProcessorJNI.STATS_LOAD_HISTOGRAM + CallbackStats.bucketIndex(value)]++;
+        }
+        return stats;
+    }
+
+    // 最近排名法：第ceil(q * n)小的值
+    private static double exactPercentile(long[] values, double quantile) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int rank = Math.max(1, (int) Math.ceil(quantile * sorted.length));
+        return sorted[rank - 1];
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.listenhelp6.audio;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+/**
+ * WaveformBinQueue：生产者每毫秒推送一次（相当于每个音频块一次回调），消费者按vsync每帧取走一次，
+ * 积压和重绘请求都应受帧率限制而不是生产频率；第n个桶的三个值都是n，用来检查顺序和丢失
+ */
+public class WaveformBinQueueTest {
+    private static final int STRIDE = AAudioProcessorJNI.WAVEFORM_BIN_STRIDE;
+    private static final int CAPACITY = 1024;
+    private static final int BINS_PER_BLOCK = 2;
+    private static final double FRAME_INTERVAL_MS = 1000.0 / 60;
+
+    @Test
+    public void offer_requestsOneFramePerDrain() {
+        WaveformBinQueue queue = new WaveformBinQueue(CAPACITY);
+        float[] dest = new float[CAPACITY * STRIDE];
+
+        assertTrue(queue.offer(bins(0, 3), 3));
+        assertFalse(queue.offer(bins(3, 3), 3));
+        assertEquals(6, queue.size());
+        assertEquals(6, queue.drain(dest));
+        assertBins(dest, 6, 0);
+        assertEquals(0, queue.size());
+
+        // 取走后下一次推送重新请求一帧
+        assertTrue(queue.offer(bins(6, 1), 1));
+        assertEquals(1, queue.drain(dest));
+        assertBins(dest, 1, 6);
+        assertEquals(0, queue.getOverwrittenCount());
+    }
+
+    @Test
+    public void offer_overwritesOldestBinsWhenFull() {
+        WaveformBinQueue queue = new WaveformBinQueue(8);
+        float[] dest = new float[8 * STRIDE];
+
+        queue.offer(bins(0, 5), 5);
+        queue.offer(bins(5, 5), 5);
+        assertEquals(8, queue.size());
+        assertEquals(8, queue.drain(dest));
+        assertBins(dest, 8, 2);
+        assertEquals(2, queue.getOverwrittenCount());
+
+        // 一次推送超过容量时只保留最新的部分
+        queue.offer(bins(10, 12), 12);
+        assertEquals(8, queue.drain(dest));
+        assertBins(dest, 8, 14);
+        assertEquals(6, queue.getOverwrittenCount());
+
+        // dest放不下时取最新的部分
+        queue.offer(bins(22, 6), 6);
+        float[] small = new float[4 * STRIDE];
+        assertEquals(4, queue.drain(small));
+        assertBins(small, 4, 24);
+        assertEquals(8, queue.getOverwrittenCount());
+    }
+
+    @Test
+    public void simulatedKiloHertzProducer_depthBoundedByFrameRate() {
+        WaveformBinQueue queue = new WaveformBinQueue(CAPACITY);
+        float[] dest = new float[CAPACITY * STRIDE];
+        int frameRequests = 0;
+        int frames = 0;
+        int maxDepth = 0;
+        int next = 0;
+        int expected = 0;
+        double nextFrameMs = FRAME_INTERVAL_MS;
+
+        // 模拟10秒：每毫秒一个音频块，约每16.7毫秒一个vsync
+        for (int ms = 1; ms <= 10000; ms++) {
+            if (queue.offer(bins(next, BINS_PER_BLOCK), BINS_PER_BLOCK)) {
+                frameRequests++;
+            }
+            next += BINS_PER_BLOCK;
+            maxDepth = Math.max(maxDepth, queue.size());
+
+            if (ms >= nextFrameMs) {
+                int count = queue.drain(dest);
+                assertBins(dest, count, expected);
+                expected += count;
+                frames++;
+                nextFrameMs += FRAME_INTERVAL_MS;
+            }
+        }
+
+        // 每帧最多一个重绘请求，积压不超过一帧内产生的桶，没有丢失
+        assertTrue(frameRequests <= frames + 1);
+        assertTrue("每帧积压 " + maxDepth, maxDepth <= ((int) Math.ceil(FRAME_INTERVAL_MS)) * BINS_PER_BLOCK);
+        assertEquals(0, queue.getOverwrittenCount());
+        assertEquals(next, expected + queue.size());
+    }
+
+    @Test
+    public void concurrentKiloHertzProducer_requestsStayBounded() throws Exception {
+        final WaveformBinQueue queue = new WaveformBinQueue(CAPACITY);
+        final AtomicInteger frameRequests = new AtomicInteger();
+        final AtomicInteger produced = new AtomicInteger();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> {
+            // 每个块新建数组，与JNI回调每次传入新数组相同
+            int next = 0;
+            while (running.get()) {
+                if (queue.offer(bins(next, BINS_PER_BLOCK), BINS_PER_BLOCK)) {
+                    frameRequests.incrementAndGet();
+                }
+                next += BINS_PER_BLOCK;
+                produced.set(next);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }, "SimulatedProducer");
+        producer.start();
+
+        float[] dest = new float[CAPACITY * STRIDE];
+        int frames = 0;
+        int maxDepth = 0;
+        long expected = 0;
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1000);
+        try {
+            while (System.nanoTime() < end) {
+                Thread.sleep(16);
+                maxDepth = Math.max(maxDepth, queue.size());
+                int count = queue.drain(dest);
+                if (count > 0) {
+                    long first = (long) dest[AAudioProcessorJNI.WAVEFORM_BIN_MIN];
+                    // 积压没有超过容量时不应丢失桶
+                    if (queue.getOverwrittenCount() == 0) {
+                        assertEquals(expected, first);
+                    }
+                    assertBins(dest, count, first);
+                    expected = first + count;
+                }
+                frames++;
+            }
+        } finally {
+            running.set(false);
+            producer.join();
+        }
+
+        assertTrue("没有收到数据", expected > 0);
+        // 重绘请求数受帧数限制，与生产者推送的次数无关
+        assertTrue(frameRequests.get() + " 次请求 / " + frames + " 帧", frameRequests.get() <= frames + 1);
+        assertTrue(maxDepth <= CAPACITY);
+        assertTrue(produced.get() / BINS_PER_BLOCK > frameRequests.get());
+    }
+
+    private static float[] bins(int first, int count) {
+        float[] data = new float[count * STRIDE];
+        for (int i = 0; i < count; i++) {
+            for (int k = 0; k < STRIDE; k++) {
+                data[i * STRIDE + k] = first + i;
+            }
+        }
+        return data;
+    }
+
+    private static void assertBins(float[] dest, int count, long first) {
+        for (int i = 0; i < count; i++) {
+            float value = first + i;
+            assertEquals(value, dest[i * STRIDE + AAudioProcessorJNI.WAVEFORM_BIN_MIN], 0f);
+            assertEquals(value, dest[i * STRIDE + AAudioProcessorJNI.WAVEFORM_BIN_MAX], 0f);
+            assertEquals(value, dest[i * STRIDE + AAudioProcessorJNI.WAVEFORM_BIN_RMS], 0f);
+        }
+    }
+}
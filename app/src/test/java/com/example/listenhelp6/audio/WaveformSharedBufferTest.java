@@ -0,0 +1,209 @@
+package com.example.listenhelp6.audio;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * WaveformSharedBuffer的读取端：用与原生层WaveformSharedBuffer::publish相同步骤的Java写入端模拟原生线程，
+ * 第n个桶的三个值都写为n，读到的桶三个值不同或不连续就说明读到了写了一半的数据而没有发现
+ */
+public class WaveformSharedBufferTest {
+    private static final int STRIDE = AAudioProcessorJNI.WAVEFORM_BIN_STRIDE;
+    private static final int CAPACITY = 64;
+    private static final int MAX_EXACT_VALUE = (1 << 24) - CAPACITY;
+
+    @Test
+    public void readNewBins_returnsPublishedBinsOnce() {
+        WaveformSharedBuffer shared = new WaveformSharedBuffer(CAPACITY);
+        SimulatedWriter writer = new SimulatedWriter(shared, false);
+        float[] dest = new float[CAPACITY * STRIDE];
+
+        writer.publish(WaveformSharedBuffer.CHANNEL_OUTPUT, 10);
+        assertEquals(0, shared.readNewBins(WaveformSharedBuffer.CHANNEL_INPUT, dest));
+        assertEquals(10, shared.readNewBins(WaveformSharedBuffer.CHANNEL_OUTPUT, dest));
+        assertBins(dest, 10, 0);
+        assertEquals(0, shared.readNewBins(WaveformSharedBuffer.CHANNEL_OUTPUT, dest));
+
+        writer.publish(WaveformSharedBuffer.CHANNEL_OUTPUT, 5);
+        assertEquals(5, shared.readNewBins(WaveformSharedBuffer.CHANNEL_OUTPUT, dest));
+        assertBins(dest, 5, 10);
+        assertEquals(0, shared.getTornReadCount());
+    }
+
+    @Test
+    public void readNewBins_keepsNewestBinsWhenBehind() {
+        WaveformSharedBuffer shared = new WaveformSharedBuffer(CAPACITY);
+        SimulatedWriter writer = new SimulatedWriter(shared, false);
+        float[] dest = new float[CAPACITY * STRIDE];
+
+        writer.publish(WaveformSharedBuffer.CHANNEL_INPUT, 40);
+        writer.publish(WaveformSharedBuffer.CHANNEL_INPUT, 40);
+        assertEquals(CAPACITY, shared.readNewBins(WaveformSharedBuffer.CHANNEL_INPUT, dest));
+        assertBins(dest, CAPACITY, 80 - CAPACITY);
+
+        // dest放不下时也只取最新的部分
+        float[] small = new float[8 * STRIDE];
+        writer.publish(WaveformSharedBuffer.CHANNEL_INPUT, 20);
+        assertEquals(8, shared.readNewBins(WaveformSharedBuffer.CHANNEL_INPUT, small));
+        assertBins(small, 8, 92);
+    }
+
+    @Test
+    public void readNewBins_followsWrittenCountAcrossOverflow() {
+        WaveformSharedBuffer shared = new WaveformSharedBuffer(CAPACITY);
+        SimulatedWriter writer = new SimulatedWriter(shared, false);
+        float[] dest = new float[CAPACITY * STRIDE];
+
+        // 累计桶数接近32位上限，写入后按无符号回绕
+        shared.getBuffer().putInt(WaveformSharedBuffer.WRITTEN_OFFSET, -10);
+        shared.skipPending();
+        writer.publish(WaveformSharedBuffer.CHANNEL_INPUT, 30);
+        assertEquals(20, shared.getBuffer().getInt(WaveformSharedBuffer.WRITTEN_OFFSET));
+        assertEquals(30, shared.readNewBins(WaveformSharedBuffer.CHANNEL_INPUT, dest));
+        assertBins(dest, 30, 0);
+    }
+
+    @Test
+    public void oddSequence_isReportedAsTornRead() {
+        WaveformSharedBuffer shared = new WaveformSharedBuffer(CAPACITY);
+        SimulatedWriter writer = new SimulatedWriter(shared, false);
+        float[] dest = new float[CAPACITY * STRIDE];
+        writer.publish(WaveformSharedBuffer.CHANNEL_INPUT, 10);
+
+        // 写入端停在写入中途：每次尝试都发现序号为奇数，放弃后保留位置
+        ByteBuffer buffer = shared.getBuffer();
+        int sequence = buffer.getInt(WaveformSharedBuffer.SEQUENCE_OFFSET);
+        buffer.putInt(WaveformSharedBuffer.SEQUENCE_OFFSET, sequence + 1);
+        assertEquals(0, shared.readNewBins(WaveformSharedBuffer.CHANNEL_INPUT, dest));
+        assertEquals(WaveformSharedBuffer.MAX_READ_ATTEMPTS, shared.getTornReadCount());
+
+        buffer.putInt(WaveformSharedBuffer.SEQUENCE_OFFSET, sequence + 2);
+        assertEquals(10, shared.readNewBins(WaveformSharedBuffer.CHANNEL_INPUT, dest));
+        assertBins(dest, 10, 0);
+    }
+
+    @Test
+    public void writeDuringCopy_isDetectedAndRetried() {
+        final SimulatedWriter[] writer = new SimulatedWriter[1];
+        final boolean[] interleaved = new boolean[1];
+        // 第一次复制完成后、再次检查序号前，写入端写入60个桶并覆盖正在读取的位置
+        WaveformSharedBuffer shared = new WaveformSharedBuffer(CAPACITY) {
+            @Override
+            void copyBins(int channel, int first, int count, float[] dest) {
+                super.copyBins(channel, first, count, dest);
+                if (!interleaved[0]) {
+                    interleaved[0] = true;
+                    writer[0].publish(channel, 60);
+                }
+            }
+        };
+        writer[0] = new SimulatedWriter(shared, false);
+        float[] dest = new float[CAPACITY * STRIDE];
+        writer[0].publish(WaveformSharedBuffer.CHANNEL_INPUT, 10);
+
+        // 第一次读到的数据作废，重读时取最新的容量个桶
+        assertEquals(CAPACITY, shared.readNewBins(WaveformSharedBuffer.CHANNEL_INPUT, dest));
+        assertEquals(1, shared.getTornReadCount());
+        assertBins(dest, CAPACITY, 70 - CAPACITY);
+    }
+
+    @Test
+    public void concurrentWriter_tornReadsAreDetected() throws Exception {
+        final WaveformSharedBuffer shared = new WaveformSharedBuffer(CAPACITY);
+        final SimulatedWriter writer = new SimulatedWriter(shared, true);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread writerThread = new Thread(() -> {
+            // float能精确表示的整数范围内
+            while (running.get() && writer.next < MAX_EXACT_VALUE) {
+                writer.publish(WaveformSharedBuffer.CHANNEL_INPUT, 1 + writer.next % 7);
+                Thread.yield();
+            }
+        }, "SimulatedWriter");
+        writerThread.start();
+
+        float[] dest = new float[CAPACITY * STRIDE];
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        long expected = 0;
+        long binsRead = 0;
+        try {
+            while (System.nanoTime() < deadline
+                    && (binsRead < 100000 || shared.getTornReadCount() == 0)) {
+                int count = shared.readNewBins(WaveformSharedBuffer.CHANNEL_INPUT, dest);
+                if (count == 0) {
+                    Thread.yield();
+                    continue;
+                }
+                long first = (long) dest[AAudioProcessorJNI.WAVEFORM_BIN_MIN];
+                // 只有积压超过容量时才允许跳过旧的桶
+                if (count < CAPACITY) {
+                    assertEquals("桶不连续", expected, first);
+                } else {
+                    assertTrue("桶倒退", first >= expected);
+                }
+                assertBins(dest, count, first);
+                expected = first + count;
+                binsRead += count;
+            }
+        } finally {
+            running.set(false);
+            writerThread.join();
+        }
+
+        assertTrue("没有读到数据", binsRead > 0);
+        assertTrue("写入端始终没有与读取端重叠", shared.getTornReadCount() > 0);
+    }
+
+    private static void assertBins(float[] dest, int count, long first) {
+        for (int i = 0; i < count; i++) {
+            float value = first + i;
+            assertEquals(value, dest[i * STRIDE + AAudioProcessorJNI.WAVEFORM_BIN_MIN], 0f);
+            assertEquals(value, dest[i * STRIDE + AAudioProcessorJNI.WAVEFORM_BIN_MAX], 0f);
+            assertEquals(value, dest[i * STRIDE + AAudioProcessorJNI.WAVEFORM_BIN_RMS], 0f);
+        }
+    }
+
+    /**
+     * 按原生层的步骤写入：序号加一（奇数）、写桶、更新累计桶数、序号再加一；第n个桶的三个值都是n
+     */
+    private static class SimulatedWriter {
+        private final ByteBuffer buffer;
+        private final int capacity;
+        private final boolean slow;
+        int next = 0;
+
+        SimulatedWriter(WaveformSharedBuffer shared, boolean slow) {
+            this.buffer = shared.getBuffer();
+            this.capacity = shared.getCapacityBins();
+            // 在写入中途让出CPU，使读取端有机会读到写了一半的数据
+            this.slow = slow;
+        }
+
+        void publish(int channel, int count) {
+            int writtenOffset = WaveformSharedBuffer.WRITTEN_OFFSET + channel * 4;
+            int total = buffer.getInt(writtenOffset);
+            int ringOffset = WaveformSharedBuffer.HEADER_BYTES + channel * capacity * WaveformSharedBuffer.BIN_BYTES;
+
+            int sequence = buffer.getInt(WaveformSharedBuffer.SEQUENCE_OFFSET);
+            buffer.putInt(WaveformSharedBuffer.SEQUENCE_OFFSET, sequence + 1);
+            WaveformSharedBuffer.fullFence();
+            for (int i = 0; i < count; i++) {
+                int offset = ringOffset + ((total + i) & (capacity - 1)) * WaveformSharedBuffer.BIN_BYTES;
+                float value = next++;
+                for (int k = 0; k < STRIDE; k++) {
+                    buffer.putFloat(offset + k * 4, value);
+                    if (slow && i == 0 && k == 0) {
+                        Thread.yield();
+                    }
+                }
+            }
+            buffer.putInt(writtenOffset, total + count);
+            WaveformSharedBuffer.fullFence();
+            buffer.putInt(WaveformSharedBuffer.SEQUENCE_OFFSET, sequence + 2);
+        }
+    }
+}